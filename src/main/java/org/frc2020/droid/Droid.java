@@ -15,7 +15,6 @@ import org.frc2020.droid.droidsubsystem.DroidRobotSubsystem;
 // import org.frc2020.droid.turret.TurretSubsystem;
 
 import org.xero1425.simulator.engine.ModelFactory;
-import org.xero1425.simulator.engine.SimulationEngine;
 import org.xero1425.base.XeroRobot;
 import org.xero1425.base.actions.Action;
 import org.xero1425.base.alarms.AlarmSubsystem;
@@ -36,11 +35,15 @@ public class Droid extends XeroRobot {
     static private byte[] practice_bot_mac_addr = new byte[] { 0x00, -128, 0x2F, 0x17, -119, -111 };
 
     Droid() {
-        super(0.02);
+        this(new SimArgs()) ;
+    }
+
+    Droid(SimArgs args) {
+        super(0.02, args);
     }
 
     public String getSimulationFileName() {
-        String ret = SimArgs.InputFileName ;
+        String ret = getSimArgs().getInputFileName() ;
         if (ret != null)
             return ret ;
 
@@ -48,7 +51,7 @@ public class Droid extends XeroRobot {
     }
 
     protected void addRobotSimulationModels() {
-        ModelFactory factory = SimulationEngine.getInstance().getModelFactory() ;
+        ModelFactory factory = getSimulationEngine().getModelFactory() ;
         factory.registerModel("conveyor", "org.frc2020.models.ConveyorModel");
         factory.registerModel("droidoi", "org.frc2020.models.DroidOIModel");
         factory.registerModel("intake", "org.frc2020.models.IntakeModel");
@@ -65,6 +68,10 @@ public class Droid extends XeroRobot {
         return new DroidAutoController(this) ;
     }
 
+    protected boolean isBinaryLogEnabled() {
+        return true ;
+    }
+
     protected byte[] getPracticeBotMacAddress() {
         return practice_bot_mac_addr ;
     }
@@ -27,15 +27,16 @@ public final class Main {
  */
     public static void main(final String... args) {
 
+        final SimArgs simargs = new SimArgs() ;
         int i = 0 ;
         while (i < args.length) {
             if (args[i].equals("--input")) {
                 i++ ;
                 if (i == args.length) {
-                    System.err.println("command line argument --logfile requires an additional argument") ;
+                    System.err.println("command line argument --input requires an additional argument") ;
                     System.exit(2) ;                    
                 }
-                SimArgs.InputFileName = args[i];
+                simargs.setInputFileName(args[i]) ;
             }
             else if (args[i].equals("--logfile")) {
                 i++ ;
@@ -43,7 +44,25 @@ public final class Main {
                     System.err.println("command line argument --logfile requires an additional argument") ;
                     System.exit(2) ;                    
                 }
-                SimArgs.LogFileName = args[i] ;
+                simargs.setLogFileName(args[i]) ;
+            }
+            else if (args[i].equals("--results")) {
+                i++ ;
+                if (i == args.length) {
+                    System.err.println("command line argument --results requires an additional argument") ;
+                    System.exit(2) ;
+                }
+                simargs.setResultsFileName(args[i]) ;
+            }
+            else if (args[i].equals("--prop")) {
+                i++ ;
+                if (i == args.length || !simargs.parseModelProperty(args[i])) {
+                    System.err.println("command line argument --prop requires an additional argument of the form model:instance:name=value") ;
+                    System.exit(2) ;
+                }
+            }
+            else if (args[i].equals("--headless")) {
+                simargs.setHeadless(true) ;
             }
             else {
                 System.err.println("unknown command line argument '" + args[i] + "'") ;
@@ -53,6 +72,6 @@ public final class Main {
             i++ ;
         }
 
-        RobotBase.startRobot(Droid::new);
+        RobotBase.startRobot(() -> new Droid(simargs));
     }
 }
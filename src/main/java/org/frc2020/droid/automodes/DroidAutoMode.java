@@ -24,6 +24,7 @@ import org.xero1425.base.motorsubsystem.MotorEncoderGotoAction;
 import org.xero1425.base.tankdrive.TankDriveFollowPathAction;
 import org.xero1425.base.tankdrive.TankDriveSubsystem;
 import org.xero1425.misc.BadParameterTypeException;
+import org.xero1425.misc.BadParameterValueException;
 import org.xero1425.misc.MissingParameterException;
 
 public class DroidAutoMode extends AutoMode {
@@ -81,7 +82,7 @@ public class DroidAutoMode extends AutoMode {
         addSubActionPair(gp, new StopCollectAction(gp), true);
     }
 
-    private SequenceAction setTurretToTrack(double angle) throws InvalidActionRequest, BadParameterTypeException, MissingParameterException {
+    private SequenceAction setTurretToTrack(double angle) throws InvalidActionRequest, BadParameterTypeException, BadParameterValueException, MissingParameterException {
         TurretSubsystem turret = getDroidSubsystem().getTurret() ;
         DroidLimeLightSubsystem ll = getDroidSubsystem().getLimeLight() ;
         TankDriveSubsystem db = getDroidSubsystem().getTankDrive() ;
@@ -12,9 +12,12 @@ import org.xero1425.base.actions.Action;
 import org.xero1425.base.tankdrive.TankDriveSubsystem;
 import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.MessageType;
+import org.xero1425.misc.BadParameterTypeException;
+import org.xero1425.misc.MissingParameterException;
+import org.xero1425.misc.SettingsListener;
 import org.xero1425.misc.SettingsParser;
 
-public class FireAction extends Action {
+public class FireAction extends Action implements SettingsListener {
     
     GamePieceManipulatorSubsystem sub_ ;
     TargetTrackerSubsystem tracker_ ;
@@ -54,6 +57,7 @@ public class FireAction extends Action {
         "shooter_ready",
         "drivebase_ready",
     } ;
+    private final double[] plot_data_ = new double[plot_columns_.length] ;
     
     public FireAction(GamePieceManipulatorSubsystem gp, TargetTrackerSubsystem tracker, 
                     TurretSubsystem turret, TankDriveSubsystem db) throws Exception {
@@ -68,6 +72,32 @@ public class FireAction extends Action {
         emit_action_ = new ConveyorEmitAction(gp.getConveyor()) ;
 
         SettingsParser settings = gp.getRobot().getSettingsParser() ;
+        readSettings(settings) ;
+        settings.addListener("shooter:aim:", this) ;
+        settings.addListener("gamepiecemanipulator:fire:", this) ;
+
+        plot_id_ = gp.initPlot("FireAction") ;
+
+        hood_pos_ = HoodPosition.Down ;        
+    }
+
+    //
+    // The shooter aim polynomials were changed in the settings file
+    //
+    @Override
+    public void settingsChanged(SettingsParser settings) {
+        try {
+            readSettings(settings) ;
+        }
+        catch(BadParameterTypeException | MissingParameterException ex) {
+            MessageLogger logger = sub_.getRobot().getMessageLogger() ;
+            logger.startMessage(MessageType.Error) ;
+            logger.add("cannot read changed fire action parameters - ").add(ex.getMessage()) ;
+            logger.endMessage();
+        }
+    }
+
+    private void readSettings(SettingsParser settings) throws BadParameterTypeException, MissingParameterException {
         db_velocity_threshold_ = settings.get("gamepiecemanipulator:fire:max_drivebase_velocity").getDouble() ;
 
         hood_down_a_ = settings.get("shooter:aim:hood_down:a").getDouble() ;
@@ -80,10 +110,6 @@ public class FireAction extends Action {
 
         max_hood_up_distance_ = settings.get("shooter:aim:max_hood_up").getDouble() ;
         min_hood_down_distance_ = settings.get("shooter:aim:min_hood_down").getDouble() ;
-
-        plot_id_ = gp.initPlot("FireAction") ;
-
-        hood_pos_ = HoodPosition.Down ;        
     }
 
     @Override
@@ -173,17 +199,16 @@ public class FireAction extends Action {
         logger.add("balls", sub_.getConveyor().getBallCount()) ;
         logger.endMessage();
 
-        Double[] data = new Double[plot_columns_.length] ;
-        data[0] = sub_.getRobot().getTime() - start_time_ ;
-        data[1] = is_firing_ ? 1.0 : 0.0 ;
-        data[2] = ready_to_fire ? 1.1 : 0.0 ;
-        data[3] = ready_to_fire_except_shooter ? 1.2 : 0.0 ;
-        data[4] = tracker_ready ? 1.3 : 0.0 ;
-        data[5] = turret_ready ? 1.4 : 0.0 ;
-        data[6] = shooter_ready ? 1.5 : 0.0 ;
-        data[7] = db_ready ? 1.6 : 0.0 ;
-
-        sub_.addPlotData(plot_id_, data);
+        plot_data_[0] = sub_.getRobot().getTime() - start_time_ ;
+        plot_data_[1] = is_firing_ ? 1.0 : 0.0 ;
+        plot_data_[2] = ready_to_fire ? 1.1 : 0.0 ;
+        plot_data_[3] = ready_to_fire_except_shooter ? 1.2 : 0.0 ;
+        plot_data_[4] = tracker_ready ? 1.3 : 0.0 ;
+        plot_data_[5] = turret_ready ? 1.4 : 0.0 ;
+        plot_data_[6] = shooter_ready ? 1.5 : 0.0 ;
+        plot_data_[7] = db_ready ? 1.6 : 0.0 ;
+
+        sub_.addPlotData(plot_id_, plot_data_);
 
         if (sub_.getConveyor().isEmpty()) {
             sub_.endPlot(plot_id_) ;
@@ -128,31 +128,34 @@ public class ConveyorSubsystem extends Subsystem {
 
             if (prev_sensor_states_[i] != sensor_states_[i]) {
                 Sensor s = Sensor.fromInt(i);
-                logger.startMessage(MessageType.Debug, getLoggerID());
-                logger.add("Conveyor:").add("sensor ").add(s.toString());
-                logger.add(" transitioned to ").add(sensor_states_[i]);
-                logger.endMessage();
+                if (logger.isEnabled(MessageType.Debug, getLoggerID())) {
+                    logger.startMessage(MessageType.Debug, getLoggerID());
+                    logger.add("Conveyor:").add("sensor ").add(s.toString());
+                    logger.add(" transitioned to ").add(sensor_states_[i]);
+                    logger.endMessage();
+                }
                 putDashboard(s.toString(), DisplayType.Verbose, sensor_states_[i]);
             }
         }
 
-        logger.startMessage(MessageType.Debug, getSensorLoggerID()) ;
-        logger.add("sensors") ;
-        for(int i = 0 ; i < SENSOR_COUNT ; i++) {
-            logger.add(" [ ").add(Sensor.fromInt(i).toString()) ;
-            logger.add(" ").add(prev_sensor_states_[i]) ;
-            logger.add(" ").add(sensor_states_[i]) ;
-            logger.add(" ").add(didSensorLowToHigh(Sensor.fromInt(i))) ;
-            logger.add(" ").add(didSensorHighToLow(Sensor.fromInt(i))) ;            
-            logger.add("]") ;
+        if (logger.isEnabled(MessageType.Debug, getSensorLoggerID())) {
+            logger.startMessage(MessageType.Debug, getSensorLoggerID()) ;
+            logger.add("sensors") ;
+            for(int i = 0 ; i < SENSOR_COUNT ; i++) {
+                Sensor s = Sensor.fromInt(i) ;
+                logger.add(" [ ").add(s.toString()) ;
+                logger.add(" ").add(prev_sensor_states_[i]) ;
+                logger.add(" ").add(sensor_states_[i]) ;
+                logger.add(" ").add(didSensorLowToHigh(s)) ;
+                logger.add(" ").add(didSensorHighToLow(s)) ;            
+                logger.add("]") ;
+            }
+            logger.endMessage();
         }
-        logger.endMessage();
 
         if (prev_sensor_states_[Sensor.D.value] == true && sensor_states_[Sensor.D.value] == false) {
             staged_for_fire_ = true ;
-            logger.startMessage(MessageType.Debug, getLoggerID()) ;
-            logger.add("setting iStagedForFire() to true in subsystem") ;
-            logger.endMessage(); ;
+            logger.logMessage(MessageType.Debug, getLoggerID(), (l) -> l.add("setting iStagedForFire() to true in subsystem")) ;
         }
 
         putDashboard("staged-fire", DisplayType.Verbose, staged_for_fire_) ;
@@ -2,10 +2,11 @@ package org.frc2020.droid.gamepiecemanipulator.intake ;
 
 import org.xero1425.base.motorsubsystem.MotorEncoderGotoAction;
 import org.xero1425.misc.BadParameterTypeException;
+import org.xero1425.misc.BadParameterValueException;
 import org.xero1425.misc.MissingParameterException;
 
 public class CollectOffAction extends MotorEncoderGotoAction {
-    public CollectOffAction(IntakeSubsystem sub) throws BadParameterTypeException, MissingParameterException {
+    public CollectOffAction(IntakeSubsystem sub) throws BadParameterTypeException, BadParameterValueException, MissingParameterException {
         super(sub, "intake:arm:collectoff:pos", true);
 
         sub_ = sub;
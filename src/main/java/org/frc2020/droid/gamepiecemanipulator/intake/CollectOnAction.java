@@ -2,10 +2,11 @@ package org.frc2020.droid.gamepiecemanipulator.intake ;
 
 import org.xero1425.base.motorsubsystem.MotorEncoderGotoAction;
 import org.xero1425.misc.BadParameterTypeException;
+import org.xero1425.misc.BadParameterValueException;
 import org.xero1425.misc.MissingParameterException;
 
 public class CollectOnAction extends MotorEncoderGotoAction {
-    public CollectOnAction(IntakeSubsystem sub) throws BadParameterTypeException, MissingParameterException {
+    public CollectOnAction(IntakeSubsystem sub) throws BadParameterTypeException, BadParameterValueException, MissingParameterException {
         super(sub, "intake:arm:collecton:pos", true);
 
         sub_ = sub;
@@ -89,11 +89,13 @@ public class TargetTrackerSubsystem extends Subsystem {
 
                 most_recent_sample_ = getRobot().getTime() ;
                 
-                logger.startMessage(MessageType.Debug, getLoggerID()) ;
-                logger.add("targettracker: adding sample") ;
-                logger.add(" dist", dist) ;
-                logger.add(" angle", yaw) ;
-                logger.endMessage();
+                if (logger.isEnabled(MessageType.Debug, getLoggerID())) {
+                    logger.startMessage(MessageType.Debug, getLoggerID()) ;
+                    logger.add("targettracker: adding sample") ;
+                    logger.add(" dist", dist) ;
+                    logger.add(" angle", yaw) ;
+                    logger.endMessage();
+                }
             }
 
             //
@@ -107,13 +109,10 @@ public class TargetTrackerSubsystem extends Subsystem {
                 // amount of times while balls fly in front of the camera, but the target will come back in a 
                 // timely fashion.
                 //
-                logger.startMessage(MessageType.Debug, getLoggerID()) ;
-                logger.add("targettracker: not ready") ;
-                logger.add(" age", (getRobot().getTime() - most_recent_sample_)) ;
-                logger.add(" maxage", max_sample_age_) ;
-                logger.add(" actual_samples", distances_.size()) ;
-                logger.add(" required_samples", samples_) ;
-                logger.endMessage();
+                logger.logMessage(MessageType.Debug, getLoggerID(), this, (l, me) -> {
+                    l.add("targettracker: not ready") ;
+                    me.addSampleState(l) ;
+                }) ;
                 is_ready_ = false ;
             }
             else {
@@ -136,13 +135,10 @@ public class TargetTrackerSubsystem extends Subsystem {
                     // I am not currently locked in, so I take the good data I have an lock it
                     // in for the duration of the shot.
                     //
-                    logger.startMessage(MessageType.Debug, getLoggerID()) ;
-                    logger.add("targettracker: ready") ;
-                    logger.add(" age", (getRobot().getTime() - most_recent_sample_)) ;
-                    logger.add(" maxage", max_sample_age_) ;
-                    logger.add(" actual_samples", distances_.size()) ;
-                    logger.add(" required_samples", samples_) ;
-                    logger.endMessage();
+                    logger.logMessage(MessageType.Debug, getLoggerID(), this, (l, me) -> {
+                        l.add("targettracker: ready") ;
+                        me.addSampleState(l) ;
+                    }) ;
 
                     distance_ = calcDistances(distances_) ;
                     error_ = calcError(angles_) ;
@@ -163,6 +159,13 @@ public class TargetTrackerSubsystem extends Subsystem {
         return error_ ;
     }
 
+    private void addSampleState(MessageLogger logger) {
+        logger.add(" age", (getRobot().getTime() - most_recent_sample_)) ;
+        logger.add(" maxage", max_sample_age_) ;
+        logger.add(" actual_samples", distances_.size()) ;
+        logger.add(" required_samples", samples_) ;
+    }
+
     private double calculateDesiredCameraOffset() {
         return camera_offset_angle_ ;
     }
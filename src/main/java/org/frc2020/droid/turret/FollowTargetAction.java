@@ -21,12 +21,13 @@ public class FollowTargetAction extends MotorAction {
         sub_ = sub ;
         tracker_ = tracker ;
         threshold_ = sub.getRobot().getSettingsParser().get("turret:fire_threshold").getDouble() ;
+        pid_ = new PIDCtrl(sub.getRobot().getSettingsParser(), "turret:follow", false);
     }
 
     @Override
     public void start() throws Exception {
         super.start() ;
-        pid_ = new PIDCtrl(getSubsystem().getRobot().getSettingsParser(), "turret:follow", false);
+        pid_.reset() ;
         ll_.setLedMode(LedMode.ForceOn);
     }
 
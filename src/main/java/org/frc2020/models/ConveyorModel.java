@@ -2,6 +2,7 @@ package org.frc2020.models;
 
 import java.text.DecimalFormat;
 import java.util.Arrays;
+import java.util.Map;
 
 import edu.wpi.first.hal.sim.mockdata.DIODataJNI;
 import edu.wpi.first.networktables.NetworkTable;
@@ -30,10 +31,16 @@ public class ConveyorModel extends SimulationModel {
         super(engine, model, inst);
 
         fmt_ = new DecimalFormat("00.000") ;
+        balls_shot_ = 0 ;
 
         ball_position_logger_id_ = engine.getMessageLogger().registerSubsystem(LogBallPosition) ;
     }
 
+    @Override
+    public void addResults(Map<String, Double> results) {
+        results.put("shot", (double)balls_shot_) ;
+    }
+
     @Override
     public String statusString() {
         return Integer.toString(getBallCount()) ;
@@ -211,6 +218,14 @@ public class ConveyorModel extends SimulationModel {
         setSensors() ;
     }
 
+    // When the conveyor is off and the intake is not feeding it, the balls do not move
+    public double getStepSize() {
+        if (isConveyorOff() && !intake_model_.isDownAndRunning())
+            return NoStepLimit ;
+
+        return super.getStepSize() ;
+    }
+
     private boolean isConveyorOff() {
         return Math.abs(intake_.getPower()) < 0.01 && Math.abs(shooter_.getPower()) < 0.01 ;
     }
@@ -496,6 +511,7 @@ public class ConveyorModel extends SimulationModel {
                 logger.startMessage(MessageType.Debug, getLoggerID()) ;
                 logger.add("ball exited via shooter").endMessage();
                 balls_[i].setPresent(false) ;
+                balls_shot_++ ;
             }
             i-- ;
         }
@@ -529,6 +545,8 @@ public class ConveyorModel extends SimulationModel {
 
     private DecimalFormat fmt_ ;
 
+    private int balls_shot_ ;
+
     private int ball_position_logger_id_ ;
     private boolean [] state_ ;
 
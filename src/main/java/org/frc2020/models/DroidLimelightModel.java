@@ -294,6 +294,11 @@ public class DroidLimelightModel extends SimulationModel {
             limelight_.setTV(0.0) ;
         }
     }
+
+    // The outputs are computed from the current state, not integrated, so any step size is fine
+    public double getStepSize() {
+        return NoStepLimit ;
+    }
     
     private TurretModel turret_ ;
     private LimeLightModel limelight_ ;
@@ -145,6 +145,11 @@ public class DroidOIModel extends SimulationModel {
     public void run(double dt) {
     }
 
+    // Nothing changes with time, so any step size is fine
+    public double getStepSize() {
+        return NoStepLimit ;
+    }
+
     public boolean processEvent(String name, SettingsValue value) {
         int which = 0 ;
 
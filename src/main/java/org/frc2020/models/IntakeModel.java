@@ -60,6 +60,14 @@ public class IntakeModel extends SimulationModel {
         table.getEntry("speed").setNumber(spin_.getPower()) ;
     }
 
+    // When the up/down motor is off the intake does not move
+    public double getStepSize() {
+        if (updown_.getPower() == 0.0)
+            return NoStepLimit ;
+
+        return super.getStepSize() ;
+    }
+
     public boolean isDownAndRunning() {
         return ticks_ > 1400 && spin_.getPower() > 0.3 ;
     }
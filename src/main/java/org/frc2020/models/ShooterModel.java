@@ -119,6 +119,14 @@ public class ShooterModel extends SimulationModel {
         NetworkTable table = NetworkTableInstance.getDefault().getTable(SimulationEngine.NetworkTableName).getSubTable(SubTableName) ;
         table.getEntry("speed").setNumber(current_speed_rpm_) ;
     }
+
+    // When the motor is off and the shooter wheel is stopped, nothing changes
+    public double getStepSize() {
+        if (motors_.getPower() == 0.0 && current_speed_rpm_ == 0.0)
+            return NoStepLimit ;
+
+        return super.getStepSize() ;
+    }
     
     private SimMotorController motors_ ;
     private double current_speed_rpm_ ;
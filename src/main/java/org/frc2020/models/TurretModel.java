@@ -154,6 +154,14 @@ public class TurretModel extends SimulationModel {
         AnalogInDataJNI.setVoltage(encoder_input_, voltage_) ;
     }
 
+    // When the motor is off the turret does not move
+    public double getStepSize() {
+        if (motor_.getPower() == 0.0)
+            return NoStepLimit ;
+
+        return super.getStepSize() ;
+    }
+
     public Rotation2d getAngle() {
         return Rotation2d.fromDegrees(angle_) ;
     }
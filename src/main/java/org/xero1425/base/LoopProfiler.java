@@ -0,0 +1,184 @@
+package org.xero1425.base ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import org.xero1425.misc.MessageLogger;
+import org.xero1425.misc.MessageType;
+import org.xero1425.misc.TimingHistogram;
+
+/// \file
+
+/// \brief This class keeps the histograms of the time taken by each part of the robot loop.
+///
+/// Each subsystem records the time taken by computeMyState(), by its own run() not counting its children, and
+/// by the run() of its action.  The robot records the time taken by the whole robot loop and by the controller.
+/// Every PublishLoops robot loops the count, mean, percentiles, and maximum of each histogram, in milliseconds,
+/// are published under KEY/GROUP/NAME, where GROUP is the subsystem name or "robot".  When the robot changes mode,
+/// for instance at the end of a match, the histograms for the mode that ended are written to the log file and
+/// cleared, so the log shows what caused any loop overruns.
+public class LoopProfiler
+{
+    // The name of the group for the histograms of the whole robot loop
+    public static final String RobotGroup = "robot" ;
+
+    // The number of robot loops between updates of the network tables
+    public static final int PublishLoops = 50 ;
+
+    // The names of the entries published for each histogram, and the percentiles published
+    private static final String[] EntryNames = { "count", "mean", "p50", "p90", "p99", "max" } ;
+    private static final double[] Percentiles = { 50.0, 90.0, 99.0 } ;
+
+    public LoopProfiler(MessageLogger logger, String key, double period) {
+        logger_ = logger ;
+        key_ = key ;
+        period_ = period ;
+        table_ = null ;
+        histograms_ = new ArrayList<Histogram>() ;
+        mode_ = null ;
+        loops_ = 0 ;
+        overruns_ = 0 ;
+
+        loop_ = getHistogram(RobotGroup, "loop") ;
+        controller_ = getHistogram(RobotGroup, "controller") ;
+    }
+
+    // Return the histogram for a part of the robot loop, creating it the first time.  This should be
+    // called when a subsystem is created, not in the robot loop.
+    public TimingHistogram getHistogram(String group, String name) {
+        for(Histogram h : histograms_) {
+            if (h.group_.equals(group) && h.histogram_.getName().equals(name))
+                return h.histogram_ ;
+        }
+
+        Histogram h = new Histogram(group, new TimingHistogram(name)) ;
+        histograms_.add(h) ;
+        return h.histogram_ ;
+    }
+
+    // The histogram for the time taken by the controller each robot loop
+    public TimingHistogram getControllerHistogram() {
+        return controller_ ;
+    }
+
+    // The number of robot loops since the mode started
+    public int getLoopCount() {
+        return loops_ ;
+    }
+
+    // The number of robot loops since the mode started that took longer than the robot period
+    public int getOverrunCount() {
+        return overruns_ ;
+    }
+
+    // Start profiling a new mode.  If any robot loops ran in the mode that ended, the histograms
+    // are written to the log file.  The histograms are then cleared.
+    public void start(String mode) {
+        if (loops_ > 0)
+            dump() ;
+
+        for(Histogram h : histograms_)
+            h.histogram_.reset() ;
+
+        mode_ = mode ;
+        loops_ = 0 ;
+        overruns_ = 0 ;
+    }
+
+    // Record the time taken by a robot loop, and publish the histograms every PublishLoops loops
+    public void endLoop(long nanos) {
+        loop_.recordNanos(nanos) ;
+        loops_++ ;
+        if (nanos > period_ * 1.0e9)
+            overruns_++ ;
+
+        if (loops_ % PublishLoops == 0)
+            publish() ;
+    }
+
+    // Publish the histograms in the network tables
+    public void publish() {
+        if (table_ == null) {
+            table_ = NetworkTableInstance.getDefault().getTable(key_) ;
+            overruns_entry_ = table_.getSubTable(RobotGroup).getEntry("overruns") ;
+        }
+
+        for(Histogram h : histograms_) {
+            if (h.entries_ == null) {
+                NetworkTable sub = table_.getSubTable(h.group_).getSubTable(h.histogram_.getName()) ;
+                h.entries_ = new NetworkTableEntry[EntryNames.length] ;
+                for(int i = 0 ; i < EntryNames.length ; i++)
+                    h.entries_[i] = sub.getEntry(EntryNames[i]) ;
+            }
+
+            TimingHistogram hist = h.histogram_ ;
+            h.entries_[0].setDouble(hist.getCount()) ;
+            h.entries_[1].setDouble(hist.getMean() * 1000.0) ;
+            for(int i = 0 ; i < Percentiles.length ; i++)
+                h.entries_[i + 2].setDouble(hist.getPercentile(Percentiles[i]) * 1000.0) ;
+            h.entries_[EntryNames.length - 1].setDouble(hist.getMax() * 1000.0) ;
+        }
+
+        overruns_entry_.setDouble(overruns_) ;
+    }
+
+    // Write the histograms to the log file, most expensive first by total time
+    public void dump() {
+        publish() ;
+
+        logger_.startMessage(MessageType.Info) ;
+        logger_.add("loop profile for ").add(mode_ == null ? "unknown" : mode_).add(" mode,") ;
+        logger_.add("loops", loops_) ;
+        logger_.add("overruns", overruns_) ;
+        logger_.add("period", period_ * 1000.0) ;
+        logger_.endMessage() ;
+
+        List<Histogram> sorted = new ArrayList<Histogram>(histograms_) ;
+        sorted.sort((a, b) -> Double.compare(b.histogram_.getMean() * b.histogram_.getCount(), a.histogram_.getMean() * a.histogram_.getCount())) ;
+
+        for(Histogram h : sorted) {
+            TimingHistogram hist = h.histogram_ ;
+            if (hist.getCount() == 0)
+                continue ;
+
+            logger_.startMessage(MessageType.Info) ;
+            logger_.add("    ").add(h.group_).add(" ").add(hist.getName()).add(" (ms):") ;
+            logger_.add("count", (int)hist.getCount()) ;
+            logger_.add("mean", hist.getMean() * 1000.0) ;
+            logger_.add("p50", hist.getPercentile(50.0) * 1000.0) ;
+            logger_.add("p90", hist.getPercentile(90.0) * 1000.0) ;
+            logger_.add("p99", hist.getPercentile(99.0) * 1000.0) ;
+            logger_.add("p99.9", hist.getPercentile(99.9) * 1000.0) ;
+            logger_.add("max", hist.getMax() * 1000.0) ;
+            logger_.endMessage() ;
+        }
+    }
+
+    // A histogram, the group it belongs to, and its network table entries once published
+    private static class Histogram {
+        Histogram(String group, TimingHistogram histogram) {
+            group_ = group ;
+            histogram_ = histogram ;
+            entries_ = null ;
+        }
+
+        final String group_ ;
+        final TimingHistogram histogram_ ;
+        NetworkTableEntry[] entries_ ;
+    }
+
+    private MessageLogger logger_ ;
+    private String key_ ;
+    private double period_ ;
+    private NetworkTable table_ ;
+    private NetworkTableEntry overruns_entry_ ;
+    private List<Histogram> histograms_ ;
+    private TimingHistogram loop_ ;
+    private TimingHistogram controller_ ;
+    private String mode_ ;
+    private int loops_ ;
+    private int overruns_ ;
+}
@@ -0,0 +1,82 @@
+package org.xero1425.base ;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
+import org.xero1425.misc.MessageLogger;
+import org.xero1425.misc.MessageType;
+
+/// \file
+
+/// \brief This class lets the messages logged be turned on and off from NetworkTables while the robot runs.
+///
+/// A boolean entry is published for each registered subsystem under KEY/subsystems and for each message type
+/// under KEY/types.  When one of these entries is changed, for instance from OutlineViewer or the dashboard,
+/// the matching logger ID or message type is enabled or disabled.  This happens on the NetworkTables thread
+/// and only flips a bit in the tables of the MessageLogger, so the robot loop is never held up.
+public class MessageLoggerTable
+{
+    public static final String SubsystemsTableName = "subsystems" ;
+    public static final String TypesTableName = "types" ;
+
+    public MessageLoggerTable(MessageLogger logger, String key) {
+        logger_ = logger ;
+        table_ = NetworkTableInstance.getDefault().getTable(key) ;
+        listening_ = false ;
+    }
+
+    // Publish an entry for each subsystem registered so far and each message type, and start
+    // listening for changes.  This should be called after all subsystems are created.
+    public void publish() {
+        NetworkTable subs = table_.getSubTable(SubsystemsTableName) ;
+        for(String name : logger_.getSubsystemNames()) {
+            subs.getEntry(name).setBoolean(logger_.isSubsystemEnabled(name)) ;
+        }
+
+        NetworkTable types = table_.getSubTable(TypesTableName) ;
+        for(MessageType mt : MessageType.values()) {
+            types.getEntry(mt.toString()).setBoolean(logger_.isTypeEnabled(mt)) ;
+        }
+
+        if (!listening_) {
+            int flags = EntryListenerFlags.kNew | EntryListenerFlags.kUpdate ;
+            subs.addEntryListener((table, key, entry, value, f) -> subsystemChanged(key, value), flags) ;
+            types.addEntryListener((table, key, entry, value, f) -> typeChanged(key, value), flags) ;
+            listening_ = true ;
+        }
+    }
+
+    private void subsystemChanged(String name, NetworkTableValue value) {
+        if (!value.isBoolean())
+            return ;
+
+        int id = logger_.getLoggerID(name) ;
+        if (id == -1)
+            return ;
+
+        if (value.getBoolean())
+            logger_.enableLoggerID(id) ;
+        else
+            logger_.disableLoggerID(id) ;
+    }
+
+    private void typeChanged(String name, NetworkTableValue value) {
+        if (!value.isBoolean())
+            return ;
+
+        for(MessageType mt : MessageType.values()) {
+            if (mt.toString().equals(name)) {
+                if (value.getBoolean())
+                    logger_.enableMessageType(mt) ;
+                else
+                    logger_.disableMessageType(mt) ;
+                break ;
+            }
+        }
+    }
+
+    private MessageLogger logger_ ;
+    private NetworkTable table_ ;
+    private boolean listening_ ;
+}
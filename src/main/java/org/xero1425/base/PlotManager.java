@@ -1,18 +1,43 @@
 package org.xero1425.base ;
 
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.networktables.NetworkTableEntry ;
+import java.util.Arrays ;
 import java.util.Map ;
 import java.util.HashMap ;
+import org.xero1425.misc.PlotFileRecorder ;
 
+/// \file
+
+/// \brief This class stores plot data in the network tables for display programs to read.
+///
+/// Two formats are supported.  In the per sample format, each sample is stored in its own entry
+/// named data/N and the points entry is updated with every sample.  In the batched format, samples
+/// are collected in a primitive array and published as one packed array, row after row, in an entry
+/// named batch/N once a given number of samples are collected or a given amount of time has passed.
+/// In the batched format, the batches entry holds the number of batches published, and the points entry
+/// holds the number of samples published across all batches.
+///
+/// The entries for each data/N and batch/N are looked up the first time they are used and kept, so when a plot
+/// is run again no entry names are built.  Samples added to a plot that is not started, or that has ended, are
+/// dropped.
+///
+/// Publishing to the network tables is turned off when the FMS is attached.  If a PlotFileRecorder is
+/// given, every plot is also recorded to a file, including when the FMS is attached.
 class PlotManager
 {
     static private String CompleteEntry = "complete" ;
     static private String PointsEntry = "points" ;
     static private String ColumnsEntry = "columns" ;
     static private String DataEntry = "data" ;
+    static private String BatchEntry = "batch" ;
+    static private String BatchesEntry = "batches" ;
+
+    static final int DefaultBatchSize = 1 ;
+    static final double DefaultBatchPeriod = 0.1 ;
 
     protected PlotManager(String key)
     {
@@ -20,105 +45,253 @@ class PlotManager
         next_plot_id_ = 0 ;
         plot_table_ = key ;
         enabled_ = false ;
+        batch_size_ = DefaultBatchSize ;
+        batch_period_ = DefaultBatchPeriod ;
+        recorder_ = null ;
     }
 
     public void enable(boolean b) {
         enabled_ = b ;
     }
 
+    /// \brief set the number of samples published together
+    /// A size of one or less selects the per sample format.  This must be called before plots are started.
+    /// \param size the maximum number of samples in a batch
+    /// \param period the maximum time in seconds a sample is held before it is published
+    public void setBatching(int size, double period) {
+        batch_size_ = Math.max(1, size) ;
+        batch_period_ = period ;
+    }
+
+    public boolean isBatching() {
+        return batch_size_ > 1 ;
+    }
+
+    /// \brief set the recorder that stores every plot in a file
+    /// \param recorder the recorder, or null to stop recording
+    public void setRecorder(PlotFileRecorder recorder) {
+        recorder_ = recorder ;
+    }
+
+    public PlotFileRecorder getRecorder() {
+        return recorder_ ;
+    }
+
     int initPlot(String name)
     {
-        if (!enabled_ || DriverStation.getInstance().isFMSAttached())
+        if (!isPublishing() && recorder_ == null)
             return -1 ;
 
-        for(int key : plots_.keySet())
+        for(PlotInfo info : plots_.values())
         {
-            if (plots_.get(key).name_ == name)
-                return key ;
+            if (info.name_.equals(name))
+                return info.id_ ;
         }
 
         PlotInfo info = new PlotInfo(name, next_plot_id_++) ;
-        plots_.put(info.index_, info) ;
+        plots_.put(info.id_, info) ;
 
-        return info.index_ ;
+        return info.id_ ;
     }
 
     void startPlot(int id, String[] cols)
     {
-        if (!enabled_ || DriverStation.getInstance().isFMSAttached() || !plots_.containsKey(id))
+        if (!plots_.containsKey(id))
             return ;
-        
+
         PlotInfo info = plots_.get(id) ;
         info.cols_ = cols.length ;
-        info.index_ = 0 ;
+        info.points_ = 0 ;
+        info.batches_ = 0 ;
+        info.rows_ = 0 ;
+        info.first_time_ = 0.0 ;
+        info.active_ = true ;
 
-        NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
-        NetworkTable table = inst.getTable(getKeyForPlot(id)) ;
-        NetworkTableEntry entry ;
-        
-        entry = table.getEntry(ColumnsEntry) ;
-        entry.setStringArray(cols) ;
+        if (recorder_ != null)
+            recorder_.startPlot(id, info.name_, cols) ;
+
+        info.publishing_ = isPublishing() ;
+        if (!info.publishing_)
+            return ;
+
+        if (info.table_ == null) {
+            NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
+            info.table_ = inst.getTable(plot_table_ + "/" + info.name_) ;
+            info.points_entry_ = info.table_.getEntry(PointsEntry) ;
+            info.complete_entry_ = info.table_.getEntry(CompleteEntry) ;
+            info.batches_entry_ = info.table_.getEntry(BatchesEntry) ;
+        }
 
-        entry = table.getEntry(PointsEntry) ;
-        entry.setNumber(0) ;
+        if (isBatching()) {
+            if (info.buffer_ == null || info.buffer_.length != batch_size_ * info.cols_)
+                info.buffer_ = new double[batch_size_ * info.cols_] ;
+        }
+        else {
+            info.buffer_ = null ;
+        }
 
-        entry = table.getEntry(CompleteEntry) ;
-        entry.setBoolean(false) ;
+        info.table_.getEntry(ColumnsEntry).setStringArray(cols) ;
+        info.points_entry_.setNumber(0) ;
+        info.batches_entry_.setNumber(0) ;
+        info.complete_entry_.setBoolean(false) ;
 
-        table.delete(DataEntry) ;
+        info.table_.delete(DataEntry) ;
+        info.table_.delete(BatchEntry) ;
     }
 
     void addPlotData(int id, Double[] data)
     {
-        if (!enabled_ || DriverStation.getInstance().isFMSAttached() || !plots_.containsKey(id))
+        if (!plots_.containsKey(id))
             return ;
-            
+
         PlotInfo info = plots_.get(id) ;
         if (data.length == info.cols_)
         {
-            NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
-            NetworkTable table = inst.getTable(getKeyForPlot(id)) ;
-            NetworkTableEntry entry = table.getEntry(DataEntry + "/" + Integer.toString(info.index_)) ;
-            entry.setNumberArray(data) ;
-            entry = table.getEntry(PointsEntry) ;
-            info.index_++ ;
-            entry.setNumber(info.index_) ;
+            if (info.unboxed_ == null || info.unboxed_.length != data.length)
+                info.unboxed_ = new double[data.length] ;
+
+            for(int i = 0 ; i < data.length ; i++)
+                info.unboxed_[i] = data[i] ;
+
+            addPlotData(id, info.unboxed_) ;
         }
     }
 
-    void endPlot(int id)
+    void addPlotData(int id, double[] data)
     {
-        if (!enabled_ || DriverStation.getInstance().isFMSAttached() || !plots_.containsKey(id))
+        PlotInfo info = plots_.get(id) ;
+        if (info == null || !info.active_)
             return ;
-            
-        NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
-        NetworkTable table = inst.getTable(getKeyForPlot(id)) ;
-        NetworkTableEntry entry = table.getEntry(CompleteEntry) ;
-        entry.setBoolean(true) ;
+
+        if (data.length == info.cols_)
+        {
+            if (recorder_ != null)
+                recorder_.addPlotData(id, data) ;
+
+            if (!info.publishing_)
+                return ;
+
+            if (info.buffer_ == null) {
+                info.data_entries_ = getEntry(info, info.data_entries_, DataEntry, info.points_) ;
+                info.data_entries_[info.points_].setDoubleArray(data) ;
+                info.points_++ ;
+                info.points_entry_.setNumber(info.points_) ;
+            }
+            else {
+                System.arraycopy(data, 0, info.buffer_, info.rows_ * info.cols_, data.length) ;
+                addedRow(info) ;
+            }
+        }
     }
 
-    private String getKeyForPlot(int id)
+    void endPlot(int id)
     {
-        if (!plots_.containsKey(id))
-            return null ;
-
         PlotInfo info = plots_.get(id) ;
-        return plot_table_ + "/" + info.name_ ;
+        if (info == null || !info.active_)
+            return ;
+
+        info.active_ = false ;
+        if (recorder_ != null)
+            recorder_.endPlot(id) ;
+
+        if (!info.publishing_)
+            return ;
+
+        publishBatch(info) ;
+        info.complete_entry_.setBoolean(true) ;
+    }
+
+    private boolean isPublishing() {
+        return enabled_ && !DriverStation.getInstance().isFMSAttached() ;
+    }
+
+    // Called after a row is copied into the batch buffer, publishes the batch if it is full or old enough
+    private void addedRow(PlotInfo info) {
+        double now = Timer.getFPGATimestamp() ;
+        if (info.rows_ == 0)
+            info.first_time_ = now ;
+
+        info.rows_++ ;
+        if (info.rows_ == batch_size_ || now - info.first_time_ >= batch_period_)
+            publishBatch(info) ;
+    }
+
+    private void publishBatch(PlotInfo info) {
+        if (info.rows_ == 0)
+            return ;
+
+        int count = info.rows_ * info.cols_ ;
+        double[] packed = (count == info.buffer_.length) ? info.buffer_ : Arrays.copyOf(info.buffer_, count) ;
+
+        info.batch_entries_ = getEntry(info, info.batch_entries_, BatchEntry, info.batches_) ;
+        info.batch_entries_[info.batches_].setDoubleArray(packed) ;
+
+        info.batches_++ ;
+        info.points_ += info.rows_ ;
+        info.rows_ = 0 ;
+
+        info.batches_entry_.setNumber(info.batches_) ;
+        info.points_entry_.setNumber(info.points_) ;
+    }
+
+    // Make sure the entry for an index is in the array of entries, looking it up the first time the index is used.
+    // Returns the array, which is replaced with a larger one when needed.
+    private static NetworkTableEntry[] getEntry(PlotInfo info, NetworkTableEntry[] entries, String prefix, int index) {
+        if (entries == null || index >= entries.length) {
+            int size = (entries == null) ? 256 : entries.length ;
+            while (size <= index)
+                size *= 2 ;
+            entries = (entries == null) ? new NetworkTableEntry[size] : Arrays.copyOf(entries, size) ;
+        }
+
+        if (entries[index] == null)
+            entries[index] = info.table_.getEntry(prefix + "/" + Integer.toString(index)) ;
+
+        return entries ;
     }
 
     private class PlotInfo
     {
-        PlotInfo(String name, int index) {
+        PlotInfo(String name, int id) {
             name_ = name ;
-            index_ = index ;
+            id_ = id ;
         }
         public String name_ ;
+        public int id_ ;
         public int cols_ ;
-        public int index_ ;
+        public int points_ ;
+        public int batches_ ;
+
+        // If true, the plot is started and has not ended, samples for a plot that is not active are dropped
+        public boolean active_ ;
+
+        // If true, this plot is published to the network tables, decided when the plot is started
+        public boolean publishing_ ;
+
+        // Reused to unbox the data passed to the Double[] version of addPlotData()
+        public double[] unboxed_ ;
+
+        // The rows collected in the current batch, and the time the first one was collected
+        public double[] buffer_ ;
+        public int rows_ ;
+        public double first_time_ ;
+
+        // The network table handles, looked up once when the plot is first started
+        public NetworkTable table_ ;
+        public NetworkTableEntry points_entry_ ;
+        public NetworkTableEntry complete_entry_ ;
+        public NetworkTableEntry batches_entry_ ;
+
+        // The data/N and batch/N entries, indexed by N, looked up the first time each is used
+        public NetworkTableEntry[] data_entries_ ;
+        public NetworkTableEntry[] batch_entries_ ;
     } ;
 
     int next_plot_id_ ;
     String plot_table_ ;
     Map<Integer, PlotInfo> plots_ ;
     boolean enabled_ ;
-} ;
\ No newline at end of file
+    int batch_size_ ;
+    double batch_period_ ;
+    PlotFileRecorder recorder_ ;
+} ;
@@ -0,0 +1,80 @@
+package org.xero1425.base ;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
+import org.xero1425.misc.SettingsListener;
+import org.xero1425.misc.SettingsParser;
+import org.xero1425.misc.SettingsValue;
+
+/// \file
+
+/// \brief This class lets the values in the settings file be changed from NetworkTables while the robot runs.
+///
+/// An entry is published under KEY for each name in the settings file.  When one of these entries is changed,
+/// for instance from OutlineViewer or the dashboard, the new value is staged in the SettingsParser.  This happens
+/// on the NetworkTables thread, and the robot applies the staged values between robot loops.  When the robot
+/// applies changed values, from NetworkTables or from the settings file being read again, the entries are
+/// published again so NetworkTables shows the values in use.
+public class SettingsTable implements SettingsListener
+{
+    public SettingsTable(SettingsParser settings, String key) {
+        settings_ = settings ;
+        table_ = NetworkTableInstance.getDefault().getTable(key) ;
+        listening_ = false ;
+    }
+
+    // Publish an entry for each value in the settings file, and start listening for changes
+    public void publish() {
+        publishValues() ;
+
+        if (!listening_) {
+            int flags = EntryListenerFlags.kNew | EntryListenerFlags.kUpdate ;
+            table_.addEntryListener((table, key, entry, value, f) -> valueChanged(key, value), flags) ;
+            settings_.addListener("", this) ;
+            listening_ = true ;
+        }
+    }
+
+    // Publish the values again after the robot applies changed values.  This is called between robot loops.
+    @Override
+    public void settingsChanged(SettingsParser settings) {
+        publishValues() ;
+    }
+
+    private void publishValues() {
+        for(String name : settings_.getNames()) {
+            SettingsValue v = settings_.getOrNull(name) ;
+            try {
+                switch(v.getType()) {
+                    case Integer:
+                    case Double:
+                        table_.getEntry(name).setDouble(v.getDouble()) ;
+                        break ;
+                    case Boolean:
+                        table_.getEntry(name).setBoolean(v.getBoolean()) ;
+                        break ;
+                    case String:
+                        table_.getEntry(name).setString(v.getString()) ;
+                        break ;
+                }
+            }
+            catch(Exception ex) {
+            }
+        }
+    }
+
+    private void valueChanged(String name, NetworkTableValue value) {
+        if (value.isDouble())
+            settings_.stageValue(name, new SettingsValue(value.getDouble())) ;
+        else if (value.isBoolean())
+            settings_.stageValue(name, new SettingsValue(value.getBoolean())) ;
+        else if (value.isString())
+            settings_.stageValue(name, new SettingsValue(value.getString())) ;
+    }
+
+    private SettingsParser settings_ ;
+    private NetworkTable table_ ;
+    private boolean listening_ ;
+}
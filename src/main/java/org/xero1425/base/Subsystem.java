@@ -1,7 +1,6 @@
 package org.xero1425.base;
 
 import java.util.List;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import org.xero1425.base.actions.Action;
 import org.xero1425.misc.BadParameterTypeException;
@@ -10,6 +9,7 @@ import org.xero1425.misc.MessageType;
 import org.xero1425.misc.MissingParameterException;
 import org.xero1425.misc.SettingsParser;
 import org.xero1425.misc.SettingsValue;
+import org.xero1425.misc.TimingHistogram;
 
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
@@ -73,30 +73,17 @@ public class Subsystem {
     private boolean finished_default_ ;
 
     //
-    // The total time spent running code in this subsystem.  This captures the compute state
-    // run time since this is the method that takes a lot of time in time critical subsystem code.
+    // The histograms of the time spent in computeMyState(), in run() not counting the children,
+    // and in the run() of the action, kept by the loop profiler of the robot
     //
-    private double total_time_ ;
+    private TimingHistogram compute_hist_ ;
+    private TimingHistogram run_hist_ ;
+    private TimingHistogram action_hist_ ;
 
     //
-    // The number of times this subsystem has been run
+    // The time spent running the children of this subsystem in the current call to run(), in nanoseconds
     //
-    private int total_cnt_ ;
-
-    //
-    // The maximum time spent on any one robot loop in the code for this subsystem
-    //
-    private double max_time_ ;
-
-    //
-    // The minimum time spend on any one robot loop in the code for this subsystem
-    //
-    private double min_time_ ;
-
-    //
-    // The output format for logging information about the subsystem run times
-    //
-    private DecimalFormat fmt_ ;
+    private long child_nanos_ ;
 
     //
     // If true, this subsystem logs much information
@@ -127,14 +114,12 @@ public class Subsystem {
         }
 
         finished_default_ = false;
-        total_time_ = 0.0;
-        total_cnt_ = 0;
-        min_time_ = Double.MAX_VALUE;
-        max_time_ = 0.0;
-        fmt_ = new DecimalFormat("00.000");
         verbose_ = false;
+        child_nanos_ = 0 ;
 
         if (getRobot() != null) {
+            createHistograms() ;
+
             String pname = name_ + ":verbose";
             SettingsParser p = getRobot().getSettingsParser();
             try {
@@ -257,8 +242,8 @@ public class Subsystem {
     /// \brief this method computes the current state of the subsystem.
     /// This method is called when the robot is disabled, in auto mode, or in teleop mode.  This
     /// method calls subsystem specific computeMyState() which should be implemented by any
-    /// derived class.  This specific implementation keeps track of execution time of the
-    /// subsystem state computations as this is the most CPU intensive operation of the robot.
+    /// derived class.  This specific implementation records the execution time of the
+    /// subsystem state computations in the loop profiler of the robot.
     /// Note, this method also catches all exceptions from the computeMyState() method keeping
     /// the exception from propogating up and crashing the robot code.
     ///
@@ -269,25 +254,9 @@ public class Subsystem {
         }
 
         try {
-            double start = getRobot().getTime() ;
+            long start = System.nanoTime() ;
             computeMyState() ;
-            double elapsed = getRobot().getTime() - start ;
-            total_time_ += elapsed ;
-            total_cnt_++ ;
-
-            min_time_ = Math.min(min_time_, elapsed) ;
-            max_time_ = Math.max(max_time_, elapsed) ;
-
-            if (total_cnt_ > 0 && (total_cnt_ % 500) == 0) {
-                MessageLogger logger = getRobot().getMessageLogger() ;
-                logger.startMessage(MessageType.Debug, getRobot().getLoggerID()) ;
-                logger.add("subsystem ").addQuoted(getName()) ;
-                logger.add("count", total_cnt_) ;
-                logger.add("min", fmt_.format(min_time_ * 1000)) ;
-                logger.add("average", fmt_.format(total_time_ / total_cnt_ * 1000)) ;
-                logger.add("max", fmt_.format(max_time_ * 1000)) ;
-                logger.endMessage();
-            }
+            compute_hist_.recordNanos(System.nanoTime() - start) ;
         }
         catch(Exception ex) {
             MessageLogger logger = getRobot().getMessageLogger() ;            
@@ -308,7 +277,9 @@ public class Subsystem {
         {
             try {
                 if (!action_.isDone()) {
+                    long start = System.nanoTime() ;
                     action_.run() ;
+                    action_hist_.recordNanos(System.nanoTime() - start) ;
                     if (action_.isDone()) {
                         if (action_ == default_action_)
                             finished_default_ = true ;
@@ -348,8 +319,26 @@ public class Subsystem {
             }
         }
 
-        for(Subsystem sub : children_)
-            sub.run();        
+        for(Subsystem sub : children_) {
+            long start = System.nanoTime() ;
+            sub.runTimed() ;
+            child_nanos_ += System.nanoTime() - start ;
+        }
+    }
+
+    //
+    // Call run() and record the time spent in this subsystem, not counting its children.  This
+    // is called by the robot for the robot subsystem, and by run() for each child.
+    //
+    void runTimed() throws Exception {
+        child_nanos_ = 0 ;
+        long start = System.nanoTime() ;
+        try {
+            run() ;
+        }
+        finally {
+            run_hist_.recordNanos(System.nanoTime() - start - child_nanos_) ;
+        }
     }
 
     /// \brief set the current action for the subsystem
@@ -566,6 +555,14 @@ public class Subsystem {
         getRobot().getPlotManager().addPlotData(id, data) ;
     }
 
+    /// \brief add data to a plot without boxing the values
+    /// The array is copied before this returns, so the caller can reuse the same array for every sample.
+    /// \param id the handle for a plot returned by initPlot()
+    /// \param data the data for the plot, should be the same size as the cols array in startPlot()
+    public void addPlotData(int id, double[] data) {
+        getRobot().getPlotManager().addPlotData(id, data) ;
+    }
+
     /// \brief end a plot
     /// This signals to any software listening to plots that this plot is complete and all data is present
     /// \param id the handle for a plot returned by initPlot()
@@ -577,6 +574,14 @@ public class Subsystem {
     /// \param robot the robot object for the main robot class
     protected void setRobot(XeroRobot robot) {
         robot_ = robot ;
+        createHistograms() ;
+    }
+
+    private void createHistograms() {
+        LoopProfiler profiler = getRobot().getLoopProfiler() ;
+        compute_hist_ = profiler.getHistogram(name_, "computeState") ;
+        run_hist_ = profiler.getHistogram(name_, "run") ;
+        action_hist_ = profiler.getHistogram(name_, "action") ;
     }
 
     /// \brief stub version of the computeMyState method.
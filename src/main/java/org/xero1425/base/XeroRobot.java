@@ -19,13 +19,18 @@ import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.xero1425.simulator.engine.SimulationEngine;
 import org.xero1425.misc.MessageType;
+import org.xero1425.misc.PlotFileRecorder;
 import org.xero1425.misc.MissingParameterException;
 import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.BadParameterTypeException;
 import org.xero1425.misc.MessageDestination;
+import org.xero1425.misc.MessageDestinationBinaryFile;
 import org.xero1425.misc.MessageDestinationFile;
 import org.xero1425.misc.MessageDestinationThumbFile;
+import org.xero1425.misc.MessageDestinationThumbFile.DropPolicy;
 import org.xero1425.misc.SettingsParser;
+import org.xero1425.misc.SettingsValue;
+import org.xero1425.misc.SettingsWatcher;
 import org.xero1425.misc.SimArgs;
 import org.xero1425.misc.XeroPathManager;
 import org.xero1425.base.motors.MotorFactory;
@@ -37,10 +42,22 @@ public abstract class XeroRobot extends TimedRobot {
     public static final String LoggerName = "xerorobot" ;
     private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
 
+    // The number of log messages that can wait for the thumb drive writer thread
+    private static final int LogQueueSize = 8192 ;
+
+    // The time between checks of the parameters file for changes, in seconds
+    private static final double DefaultSettingsReloadPeriod = 1.0 ;
+
     public XeroRobot(final double period) {
+        this(period, new SimArgs()) ;
+    }
+
+    public XeroRobot(final double period, final SimArgs args) {
         super(period);
 
         period_ = period;
+        sim_args_ = args ;
+        engine_ = null ;
 
         final String name = getName();
         robot_paths_ = new RobotPaths(RobotBase.isSimulation(), name);
@@ -56,9 +73,14 @@ public abstract class XeroRobot extends TimedRobot {
                 System.out.println("The code is setup to simulate, but the derived robot class did not provide a stimulus file") ;
                 System.exit(1) ;
             }
-            SimulationEngine.initializeSimulator(this, logger_);
+            // The driver station is created on first use.  Create it before the simulation models,
+            // which change the simulated driver station state, so it exists when they first run.
+            DriverStation.getInstance() ;
+            engine_ = new SimulationEngine(this, logger_) ;
             addRobotSimulationModels() ;
-            SimulationEngine.getInstance().initAll(str) ;
+            engine_.initAll(str) ;
+            if (sim_args_.isHeadless())
+                engine_.startHeadless() ;
         }
 
         // Get the network MAC address, used to determine comp bot versus practice bot
@@ -82,6 +104,12 @@ public abstract class XeroRobot extends TimedRobot {
         // Create the plot manager
         plot_mgr_ = new PlotManager("/XeroPlot");
 
+        // Create the table used to turn messages on and off while the robot runs
+        logger_table_ = new MessageLoggerTable(logger_, "/XeroLogger") ;
+
+        // Create the profiler for the time taken by each part of the robot loop
+        profiler_ = new LoopProfiler(logger_, "/XeroProfile", period_) ;
+
         // Store the initial time
         last_time_ = getTime();
 
@@ -94,6 +122,15 @@ public abstract class XeroRobot extends TimedRobot {
 
     protected abstract String getSimulationFileName() ;
 
+    public SimArgs getSimArgs() {
+        return sim_args_ ;
+    }
+
+    // The simulation engine, or null if the robot is not simulated
+    public SimulationEngine getSimulationEngine() {
+        return engine_ ;
+    }
+
     public void setRobotSubsystem(RobotSubsystem sub) {
         robot_subsystem_ = sub;
     }
@@ -121,13 +158,43 @@ public abstract class XeroRobot extends TimedRobot {
             plot_mgr_.enable(false);
         }
 
+        //
+        // Each plot sample gets its own network table entry unless plotting:batch is set to more
+        // than one, in which case samples are published in batches
+        //
+        int batch = PlotManager.DefaultBatchSize ;
+        try {
+            batch = settings_.get("plotting:batch").getInteger() ;
+        } catch (Exception ex) {
+            // Either missing or not an integer, do not batch samples
+        }
+        plot_mgr_.setBatching(batch, PlotManager.DefaultBatchPeriod) ;
+
+        //
+        // If plotting:record is true, every plot is also recorded to a file next to the log file.  This
+        // works when the FMS is attached, where plots are not published to the network tables.
+        //
+        try {
+            v = settings_.get("plotting:record").getBoolean() ;
+        } catch (Exception ex) {
+            v = false ;
+        }
+        if (v && log_file_name_ != null) {
+            try {
+                plot_mgr_.setRecorder(new PlotFileRecorder(log_file_name_ + ".xplot", PlotFileRecorder.DefaultSize)) ;
+            }
+            catch(Exception ex) {
+                logger_.startMessage(MessageType.Error).add("cannot create plot recording file - ").add(ex.getMessage()).endMessage() ;
+            }
+        }
+
         //
         // initialize the basic hardware
         //
         try {
             hardwareInit();
             if (RobotBase.isSimulation())
-                SimulationEngine.getInstance().createModels() ;
+                engine_.createModels() ;
         } catch (Exception ex) {
             logger_.startMessage(MessageType.Error);
             logger_.add("exception thrown in hardwareInit() - ").add(ex.getMessage());
@@ -144,6 +211,12 @@ public abstract class XeroRobot extends TimedRobot {
             return;
         }
 
+        // All subsystems and models have registered with the logger, so they can be controlled now
+        logger_table_.publish() ;
+
+        // Let the parameters be changed while the robot runs, if enabled
+        startSettingsReload() ;
+
         delta_time_ = period_;
         try {
             robot_subsystem_.computeState();
@@ -191,6 +264,7 @@ public abstract class XeroRobot extends TimedRobot {
 
         updateAutoMode();
         logAutoModeState();
+        profiler_.start("autonomous") ;
 
         current_controller_ = auto_controller_;
         if (current_controller_ != null)
@@ -217,6 +291,7 @@ public abstract class XeroRobot extends TimedRobot {
             return;
 
         logger_.startMessage(MessageType.Info).add("Staring teleop mode").endMessage();
+        profiler_.start("teleop") ;
 
         current_controller_ = teleop_controller_;
         if (current_controller_ != null)
@@ -243,6 +318,7 @@ public abstract class XeroRobot extends TimedRobot {
             return;
 
         logger_.startMessage(MessageType.Info).add("Staring teleop mode").endMessage();
+        profiler_.start("test") ;
 
         current_controller_ = test_controller_;
         if (current_controller_ != null)
@@ -267,6 +343,9 @@ public abstract class XeroRobot extends TimedRobot {
 
     @Override
     public void simulationPeriodic() {
+        // This is called last in every robot loop, in every mode, so a headless simulation steps the time here
+        if (engine_ != null)
+            engine_.loopDone() ;
     }
 
     @Override
@@ -277,6 +356,13 @@ public abstract class XeroRobot extends TimedRobot {
         current_controller_ = null;
         robot_subsystem_.reset();
 
+        // Write the loop profile for the mode that just ended, for instance at the end of a match
+        profiler_.start("disabled") ;
+
+        // Write the plots recorded during the last match to the storage device
+        if (plot_mgr_.getRecorder() != null)
+            plot_mgr_.getRecorder().flush() ;
+
         automode_ = -1;
         robot_subsystem_.init(LoopType.Disabled);
 
@@ -290,6 +376,7 @@ public abstract class XeroRobot extends TimedRobot {
 
         double initial_time = getTime();
         delta_time_ = initial_time - last_time_;
+        settings_.applyChanges() ;
         updateAutoMode();
         try {
             robot_subsystem_.computeState();
@@ -300,10 +387,8 @@ public abstract class XeroRobot extends TimedRobot {
             logger_.endMessage();
         }
 
-        if (isSimulation()) {
-            SimulationEngine engine = SimulationEngine.getInstance() ;
-            engine.run(getTime()) ;
-        }
+        if (isSimulation())
+            engine_.run(getTime()) ;
 
         last_time_ = initial_time;
         loop_count_++ ;
@@ -319,6 +404,10 @@ public abstract class XeroRobot extends TimedRobot {
         return robot_subsystem_;
     }
 
+    public AutoController getAutoController() {
+        return auto_controller_ ;
+    }
+
     public double getTime() {
         return Timer.getFPGATimestamp();
     }
@@ -347,12 +436,21 @@ public abstract class XeroRobot extends TimedRobot {
         return plot_mgr_;
     }
 
+    public LoopProfiler getLoopProfiler() {
+        return profiler_ ;
+    }
+
     protected void enableMessages() {
     }
 
     protected void addRobotSimulationModels() {
     }
 
+    // If true, messages are also logged to a binary file next to the text log file on the thumb drive
+    protected boolean isBinaryLogEnabled() {
+        return false ;
+    }
+
     public String getName() {
         return "XeroRobot";
     }
@@ -397,16 +495,19 @@ public abstract class XeroRobot extends TimedRobot {
             return ;
         }
 
+        long loop_start = System.nanoTime() ;
+
+        // Apply any parameters changed since the last loop, before anything uses them
+        settings_.applyChanges() ;
+
         logger_.startMessage(MessageType.Debug, logger_id_) ;
         logger_.add("xerorobot: starting loop,") ;
         logger_.add("time", initial_time) ;
         logger_.add("delta", delta_time_) ;
         logger_.endMessage() ;
 
-        if (isSimulation()) {
-            SimulationEngine engine = SimulationEngine.getInstance() ;
-            engine.run(delta_time_) ;
-        }        
+        if (isSimulation())
+            engine_.run(delta_time_) ;
 
         try {
             robot_subsystem_.computeState();
@@ -418,11 +519,14 @@ public abstract class XeroRobot extends TimedRobot {
             logger_.endMessage();
         }
 
-        if (current_controller_ != null)
+        if (current_controller_ != null) {
+            long start = System.nanoTime() ;
             current_controller_.run() ;
+            profiler_.getControllerHistogram().recordNanos(System.nanoTime() - start) ;
+        }
 
         try {
-            robot_subsystem_.run();
+            robot_subsystem_.runTimed();
         }
         catch(Exception ex) {
             logger_.startMessage(MessageType.Error) ;
@@ -431,6 +535,7 @@ public abstract class XeroRobot extends TimedRobot {
             logger_.endMessage();            
         }
 
+        profiler_.endLoop(System.nanoTime() - loop_start) ;
 
         last_time_ = initial_time ;
     }
@@ -523,7 +628,7 @@ public abstract class XeroRobot extends TimedRobot {
     }
 
     private void enableMessageLogger() {
-        String logfile = SimArgs.LogFileName ;
+        String logfile = sim_args_.getLogFileName() ;
         MessageDestination dest ;
 
         logger_ = new MessageLogger();
@@ -531,9 +636,14 @@ public abstract class XeroRobot extends TimedRobot {
 
         if (logfile != null) {
             dest = new MessageDestinationFile(logfile) ;
+            log_file_name_ = logfile ;
         }
         else {
-            dest = new MessageDestinationThumbFile(robot_paths_.logFileDirectory(), 250);
+            MessageDestinationThumbFile thumb = new MessageDestinationThumbFile(robot_paths_.logFileDirectory(), 250, LogQueueSize, DropPolicy.DropNewest);
+            if (isBinaryLogEnabled() && thumb.getFileName() != null)
+                logger_.addDataDestination(new MessageDestinationBinaryFile(thumb.getFileName() + ".xlog")) ;
+            dest = thumb ;
+            log_file_name_ = thumb.getFileName() ;
         }
         logger_.addDestination(dest);
         enableMessages();
@@ -556,10 +666,68 @@ public abstract class XeroRobot extends TimedRobot {
         }
     }
 
+    //
+    // If settings:reload:enabled is true, watch the parameters file and publish the parameters in the
+    // network tables so either can be used to change parameters while the robot runs.  The changes are
+    // applied between robot loops.  This is never done in a simulation, which must be repeatable.
+    //
+    private void startSettingsReload() {
+        boolean enabled = false ;
+        double period = DefaultSettingsReloadPeriod ;
+
+        try {
+            SettingsValue v = settings_.getOrNull("settings:reload:enabled") ;
+            if (v != null)
+                enabled = v.getBoolean() ;
+
+            v = settings_.getOrNull("settings:reload:period") ;
+            if (v != null)
+                period = v.getDouble() ;
+        }
+        catch(BadParameterTypeException ex) {
+            logger_.startMessage(MessageType.Error).add("invalid settings:reload parameters - ").add(ex.getMessage()).endMessage();
+            enabled = false ;
+        }
+
+        if (!enabled || isSimulation())
+            return ;
+
+        settings_watcher_ = new SettingsWatcher(settings_, period) ;
+        settings_watcher_.start() ;
+
+        settings_table_ = new SettingsTable(settings_, "/XeroSettings") ;
+        settings_table_.publish() ;
+
+        logger_.startMessage(MessageType.Info).add("parameters may be changed while the robot runs").endMessage();
+    }
+
     protected void loadPathsFile() throws Exception {
         XeroPathManager mgr = getPathManager() ;
         mgr.setExtensions("_left.csv", "_right.csv");
 
+        //
+        // paths:load is one of serial, parallel, or lazy, and paths:cache turns the compiled
+        // binary form of the paths on and off.  By default paths are loaded in parallel with the cache.
+        //
+        try {
+            String mode = settings_.get("paths:load").getString() ;
+            if (mode.equals("serial"))
+                mgr.setLoadMode(XeroPathManager.LoadMode.Serial) ;
+            else if (mode.equals("lazy"))
+                mgr.setLoadMode(XeroPathManager.LoadMode.Lazy) ;
+            else
+                mgr.setLoadMode(XeroPathManager.LoadMode.Parallel) ;
+        } catch (Exception ex) {
+            mgr.setLoadMode(XeroPathManager.LoadMode.Parallel) ;
+        }
+
+        try {
+            mgr.setCacheEnabled(settings_.get("paths:cache").getBoolean()) ;
+        } catch (Exception ex) {
+            mgr.setCacheEnabled(true) ;
+        }
+
+        List<String> names = new ArrayList<String>() ;
         try (Stream<Path> walk = Files.walk(Paths.get(mgr.getBaseDir()))) {
 
             List<String> result = walk.map(x -> x.toString()).filter(f -> f.endsWith("_main.csv")).collect(Collectors.toList());
@@ -568,12 +736,14 @@ public abstract class XeroRobot extends TimedRobot {
                 if (index != -1) {
                     name = name.substring(index + 1) ;
                     name = name.substring(0, name.length() - 9) ;
-                    mgr.loadPath(name) ;
+                    names.add(name) ;
                 }
             }
         }
         catch(IOException ex) {
         }
+
+        mgr.loadPaths(names) ;
     }        
 
     private void getMacAddress() {
@@ -651,10 +821,17 @@ public abstract class XeroRobot extends TimedRobot {
 
     private final RobotPaths robot_paths_;
     private final double period_ ;
+    private final SimArgs sim_args_ ;
+    private SimulationEngine engine_ ;
     private double delta_time_ ;
     private MessageLogger logger_ ;
     private SettingsParser settings_ ;
     private PlotManager plot_mgr_ ;
+    private MessageLoggerTable logger_table_ ;
+    private LoopProfiler profiler_ ;
+    private SettingsWatcher settings_watcher_ ;
+    private SettingsTable settings_table_ ;
+    private String log_file_name_ ;
     private XeroPathManager paths_ ;
     private MotorFactory motors_ ;
     private double last_time_;
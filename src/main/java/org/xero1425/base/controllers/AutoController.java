@@ -17,6 +17,9 @@ public abstract class AutoController extends BaseController {
     public AutoController(XeroRobot robot, String name) throws MissingParameterException, BadParameterTypeException {
         super(robot, name) ;
 
+        start_time_ = 0.0 ;
+        done_time_ = -1.0 ;
+
         SettingsParser settings = robot.getSettingsParser() ;
         if (settings.isDefined(testmode)) {
             SettingsValue v = settings.get(testmode) ;
@@ -46,6 +49,8 @@ public abstract class AutoController extends BaseController {
                 try {
                     current_automode_.start() ;
                     started_ = true ;
+                    start_time_ = getRobot().getTime() ;
+                    done_time_ = -1.0 ;
                 }
                 catch(Exception ex) {
                     MessageLogger logger = getRobot().getMessageLogger();
@@ -56,6 +61,8 @@ public abstract class AutoController extends BaseController {
             }
             try {
                 current_automode_.run() ;
+                if (done_time_ < 0.0 && current_automode_.isDone())
+                    done_time_ = getRobot().getTime() ;
             }
             catch(Exception ex) {
                 MessageLogger logger = getRobot().getMessageLogger();
@@ -86,12 +93,25 @@ public abstract class AutoController extends BaseController {
         return current_automode_.getName() ;
     }
 
+    //
+    // Returns the time the current automode took to finish, or -1 if it has not finished
+    //
+    public double getAutoModeTime() {
+        if (!started_ || done_time_ < 0.0)
+            return -1.0 ;
+
+        return done_time_ - start_time_ ;
+    }
+
     protected void setAutoMode(AutoMode m) {
         current_automode_ = m ;
         started_ = false ;
+        done_time_ = -1.0 ;
     }
 
     private AutoMode current_automode_ ;
     private boolean test_mode_ ;
     private boolean started_ ;
+    private double start_time_ ;
+    private double done_time_ ;
 } ;
\ No newline at end of file
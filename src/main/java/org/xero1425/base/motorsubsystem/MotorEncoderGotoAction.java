@@ -2,40 +2,68 @@ package org.xero1425.base.motorsubsystem;
 
 import org.xero1425.base.XeroRobot;
 import org.xero1425.misc.BadParameterTypeException;
+import org.xero1425.misc.BadParameterValueException;
 import org.xero1425.misc.MissingParameterException;
+import org.xero1425.misc.MotionProfile;
 import org.xero1425.misc.PIDACtrl;
+import org.xero1425.misc.ProfileSample;
 import org.xero1425.misc.SettingsParser;
-import org.xero1425.misc.TrapezoidalProfile;
 import org.xero1425.misc.XeroMath;
 
 public class MotorEncoderGotoAction extends MotorAction {
     public MotorEncoderGotoAction(MotorEncoderSubsystem sub, double target, boolean addhold)
-            throws BadParameterTypeException, MissingParameterException {
+            throws BadParameterTypeException, BadParameterValueException, MissingParameterException {
         super(sub) ;
         target_ = target ;
         addhold_ = addhold ;
 
-        SettingsParser settings = sub.getRobot().getSettingsParser() ;
-        profile_ = new TrapezoidalProfile(settings, sub.getName() + ":goto") ;
-        plot_id_ = sub.initPlot(sub.getName() + "-" + toString(0)) ;
+        init(sub) ;
     }
 
     public MotorEncoderGotoAction(MotorEncoderSubsystem sub, String target, boolean addhold)
-            throws BadParameterTypeException, MissingParameterException {
+            throws BadParameterTypeException, BadParameterValueException, MissingParameterException {
         super(sub) ;
         target_ = getSubsystem().getRobot().getSettingsParser().get(target).getDouble() ;
 
+        init(sub) ;
+    }
+
+    //
+    // Everything that depends on the settings is created here, once, so starting the action does
+    // not look up settings or create controllers
+    //
+    private void init(MotorEncoderSubsystem sub) throws BadParameterTypeException, BadParameterValueException, MissingParameterException {
         SettingsParser settings = sub.getRobot().getSettingsParser() ;
-        profile_ = new TrapezoidalProfile(settings, sub.getName() + ":goto") ;
-        plot_id_ = sub.initPlot(sub.getName() + "-" + toString(0)) ;        
+        profile_ = MotionProfile.create(settings, sub.getName() + ":goto") ;
+        up_ctrl_ = new PIDACtrl(settings, sub.getName() + ":follower:up", sub.isAngular()) ;
+        down_ctrl_ = new PIDACtrl(settings, sub.getName() + ":follower:down", sub.isAngular()) ;
+        if (addhold_)
+            hold_ = new MotorEncoderHoldAction(sub, target_) ;
+        plot_id_ = sub.initPlot(sub.getName() + "-" + toString(0)) ;
     }
 
     public void start() throws Exception {
         super.start() ;
-        setTarget() ;
+        startMove() ;
+        plot_start_ = getSubsystem().getRobot().getTime() ;
         getSubsystem().startPlot(plot_id_, plot_columns_) ;
     }
 
+    /// \brief change the target of the action
+    /// If the action is moving, the profile is planned again from the current position and
+    /// velocity, so the subsystem goes to the new target without stopping first.  Otherwise, the
+    /// new target is used when the action is started.
+    /// \param target the new target
+    public void setTarget(double target) throws BadParameterTypeException, MissingParameterException {
+        target_ = target ;
+        if (moving_)
+            replan() ;
+    }
+
+    public double getTarget() {
+        return target_ ;
+    }
+
     public void run() throws Exception {
         super.run() ;
 
@@ -50,30 +78,32 @@ public class MotorEncoderGotoAction extends MotorAction {
         if (elapsed > profile_.getTotalTime())
         {
             setDone() ;
+            moving_ = false ;
             sub.setPower(0.0) ;
             sub.endPlot(plot_id_);
         }
         else
         {
-            double targetDist = profile_.getDistance(elapsed) ;
-            double targetVel = profile_.getVelocity(elapsed) ;
-            double targetAcc = profile_.getAccel(elapsed) ;
+            profile_.sample(elapsed, sample_) ;
+            double targetDist = sample_.getDistance() ;
+            double targetVel = sample_.getVelocity() ;
+            double targetAcc = sample_.getAccel() ;
             double out = ctrl_.getOutput(targetAcc, targetVel, targetDist, traveled, dt) ;
             sub.setPower(out) ;
 
-            Double[] data = new Double[plot_columns_.length] ;
-            data[0] = elapsed ;
-            data[1] = start_position_ + targetDist ;
-            data[2] = position ;
-            data[3] = targetVel ;
-            data[4] = sub.getVelocity() ;
-            data[5] = out ;
-            sub.addPlotData(plot_id_, data);
+            plot_data_[0] = robot.getTime() - plot_start_ ;
+            plot_data_[1] = start_position_ + targetDist ;
+            plot_data_[2] = position ;
+            plot_data_[3] = targetVel ;
+            plot_data_[4] = sub.getVelocity() ;
+            plot_data_[5] = out ;
+            sub.addPlotData(plot_id_, plot_data_);
         }
     }
 
     public void cancel() {
         super.cancel() ;
+        moving_ = false ;
         getSubsystem().setPower(0.0) ;
     }
 
@@ -88,10 +118,12 @@ public class MotorEncoderGotoAction extends MotorAction {
         return pos ;
     }
 
-    private void setTarget() throws BadParameterTypeException, MissingParameterException {
+    private void startMove() throws BadParameterTypeException, MissingParameterException {
         MotorEncoderSubsystem sub = (MotorEncoderSubsystem)getSubsystem() ;
-        if (addhold_)
-            sub.setDefaultAction(new MotorEncoderHoldAction(sub, target_)) ;
+        if (addhold_) {
+            hold_.setTarget(target_) ;
+            sub.setDefaultAction(hold_) ;
+        }
 
         double dist = normalizePosition(sub, target_ - sub.getPosition()) ;
         if (Math.abs(dist) < threshold_)
@@ -100,28 +132,78 @@ public class MotorEncoderGotoAction extends MotorAction {
         }
         else
         {
-            String config = sub.getName() + ":follower" ;
-            SettingsParser settings = sub.getRobot().getSettingsParser() ;
-            if (dist < 0)
-                ctrl_ = new PIDACtrl(settings, config + ":down", sub.isAngular());
-            else
-                ctrl_ = new PIDACtrl(settings, config + ":up", sub.isAngular()) ;
-
+            createController(dist) ;
             profile_.update(dist, 0, 0) ;
             start_time_ = sub.getRobot().getTime() ;
             start_position_ = sub.getPosition() ;
+            moving_ = true ;
+        }
+    }
+
+    //
+    // Plan the profile again from the current position and velocity.  The profile can only move in one
+    // direction, so if the subsystem is moving away from the new target the profile starts from rest
+    // and the controller stops the subsystem.
+    //
+    private void replan() throws BadParameterTypeException, MissingParameterException {
+        MotorEncoderSubsystem sub = (MotorEncoderSubsystem)getSubsystem() ;
+        if (addhold_) {
+            hold_.setTarget(target_) ;
+            sub.setDefaultAction(hold_) ;
         }
+
+        double position = sub.getPosition() ;
+        double dist = normalizePosition(sub, target_ - position) ;
+        double velocity = sub.getVelocity() ;
+
+        if (Math.abs(dist) < threshold_)
+        {
+            setDone() ;
+            moving_ = false ;
+            sub.setPower(0.0) ;
+            sub.endPlot(plot_id_) ;
+        }
+        else
+        {
+            if (dist * velocity < 0.0)
+                velocity = 0.0 ;
+
+            if ((dist < 0) != (last_dist_ < 0))
+                createController(dist) ;
+
+            profile_.update(dist, velocity, 0) ;
+            start_time_ = sub.getRobot().getTime() ;
+            start_position_ = position ;
+        }
+    }
+
+    private void createController(double dist) {
+        if (dist < 0)
+            ctrl_ = down_ctrl_ ;
+        else
+            ctrl_ = up_ctrl_ ;
+
+        ctrl_.reset() ;
+        last_dist_ = dist ;
     }
 
     private double threshold_ ;
     private double target_ ;
     private double start_time_ ;
     private double start_position_ ;
+    private double plot_start_ ;
+    private double last_dist_ ;
+    private boolean moving_ ;
     PIDACtrl ctrl_ ;
-    TrapezoidalProfile profile_ ;
+    PIDACtrl up_ctrl_ ;
+    PIDACtrl down_ctrl_ ;
+    MotorEncoderHoldAction hold_ ;
+    MotionProfile profile_ ;
+    final ProfileSample sample_ = new ProfileSample() ;
     boolean addhold_ ;
 
     int plot_id_ ;
     static final String [] plot_columns_ = { "time", "tpos", "apos", "tvel", "avel", "out" } ;
+    final double[] plot_data_ = new double[plot_columns_.length] ;
 }
 
@@ -27,6 +27,11 @@ public class MotorEncoderHoldAction extends MotorAction {
         return target_ ;
     }
 
+    public void setTarget(double target) {
+        has_explicit_target_ = true ;
+        target_ = target ;
+    }
+
     @Override
     public void start() throws Exception {
         super.start() ;
@@ -35,7 +40,10 @@ public class MotorEncoderHoldAction extends MotorAction {
         if (!has_explicit_target_)
             target_ = me.getPosition() ;
 
-        pid_ = new PIDCtrl(me.getRobot().getSettingsParser(), me.getName() + ":hold", me.isAngular()) ;
+        if (pid_ == null)
+            pid_ = new PIDCtrl(me.getRobot().getSettingsParser(), me.getName() + ":hold", me.isAngular()) ;
+        else
+            pid_.reset() ;
     }
 
     @Override
@@ -49,14 +49,13 @@ public class MotorEncoderPowerAction extends MotorPowerAction
 
     @Override
     public void run() {
-        Double [] data = new Double[plot_columns_.length] ;
-        data[0] = getSubsystem().getRobot().getTime() - start_ ;
-        data[1] = ((MotorEncoderSubsystem)(getSubsystem())).getPosition() ;
-        data[2] = ((MotorEncoderSubsystem)(getSubsystem())).getVelocity() ;
-        data[3] = ((MotorEncoderSubsystem)(getSubsystem())).getAcceleration() ;
-        data[4] = getSubsystem().getPower() ;
-        data[5] = ((MotorEncoderSubsystem)(getSubsystem())).getEncoderRawCount() ;
-        getSubsystem().addPlotData(plot_id_, data);
+        plot_data_[0] = getSubsystem().getRobot().getTime() - start_ ;
+        plot_data_[1] = ((MotorEncoderSubsystem)(getSubsystem())).getPosition() ;
+        plot_data_[2] = ((MotorEncoderSubsystem)(getSubsystem())).getVelocity() ;
+        plot_data_[3] = ((MotorEncoderSubsystem)(getSubsystem())).getAcceleration() ;
+        plot_data_[4] = getSubsystem().getPower() ;
+        plot_data_[5] = ((MotorEncoderSubsystem)(getSubsystem())).getEncoderRawCount() ;
+        getSubsystem().addPlotData(plot_id_, plot_data_);
         
         if (isDone())
             getSubsystem().endPlot(plot_id_) ;
@@ -64,7 +63,7 @@ public class MotorEncoderPowerAction extends MotorPowerAction
         super.run() ;
 
         // int cnt = getSubsystem().getRobot().getLoopCount() ;
-        // System.out.println("Data: " + cnt + " " + data[0] + " " + data[1] + " " + data[5]) ;
+        // System.out.println("Data: " + cnt + " " + plot_data_[0] + " " + plot_data_[1] + " " + plot_data_[5]) ;
     }
 
     @Override
@@ -76,4 +75,5 @@ public class MotorEncoderPowerAction extends MotorPowerAction
     private double start_ ;
     private int plot_id_ ;
     private static String[] plot_columns_ = {"time","pos","vel","accel","out","encoder" } ;
+    private final double[] plot_data_ = new double[plot_columns_.length] ;
 }
\ No newline at end of file
@@ -62,13 +62,13 @@ public class MotorEncoderSubsystem extends MotorSubsystem
         putDashboard(getName() + ":vel", DisplayType.Verbose, speedometer_.getVelocity()) ;
 
         MessageLogger logger = getRobot().getMessageLogger()  ;
-        logger.startMessage(MessageType.Debug, getLoggerID()) ;
-        logger.add(getName()) ;
-        logger.add("power", getPower()) ;
-        logger.add("pos", pos) ;
-        logger.add("velocity", speedometer_.getVelocity());
-        logger.add("accel", speedometer_.getAcceleration()) ;
-        logger.endMessage();
+        logger.logMessage(MessageType.Debug, getLoggerID(), this, (l, me) -> {
+            l.add(me.getName()) ;
+            l.add("power", me.getPower()) ;
+            l.add("pos", me.speedometer_.getDistance()) ;
+            l.add("velocity", me.speedometer_.getVelocity());
+            l.add("accel", me.speedometer_.getAcceleration()) ;
+        }) ;
     }
 
     @Override
@@ -94,12 +94,11 @@ public class MotorEncoderVelocityAction extends MotorAction {
         logger.endMessage();
 
         if (plot_id_ != -1) {
-            Double[] data = new Double[columns_.length] ;
-            data[0] = getSubsystem().getRobot().getTime() - start_ ;
-            data[1] = me.getPosition() ;
-            data[2] = me.getVelocity() ;
-            data[3] = me.getAcceleration() ;
-            getSubsystem().addPlotData(plot_id_, data);
+            plot_data_[0] = getSubsystem().getRobot().getTime() - start_ ;
+            plot_data_[1] = me.getPosition() ;
+            plot_data_[2] = me.getVelocity() ;
+            plot_data_[3] = me.getAcceleration() ;
+            getSubsystem().addPlotData(plot_id_, plot_data_);
         }
 
         if (getSubsystem().getRobot().getTime() - start_ > duration_) {
@@ -125,4 +124,5 @@ public class MotorEncoderVelocityAction extends MotorAction {
     private PIDCtrl pid_ ;
     private int plot_id_ ;
     private static String [] columns_ = { "time", "pos", "velocity", "accel" }  ;
+    private final double[] plot_data_ = new double[columns_.length] ;
 }
\ No newline at end of file
@@ -7,7 +7,6 @@ import org.xero1425.misc.MissingPathException;
 import org.xero1425.misc.PIDACtrl;
 import org.xero1425.misc.XeroMath;
 import org.xero1425.misc.XeroPath;
-import org.xero1425.misc.XeroPathSegment;
 
 public class TankDriveFollowPathAction extends TankDriveAction {
     public TankDriveFollowPathAction(TankDriveSubsystem drive, String path, boolean reverse)
@@ -24,7 +23,7 @@ public class TankDriveFollowPathAction extends TankDriveAction {
         angle_correction_ = drive.getRobot().getSettingsParser().get("tankdrive:follower:angle_correction").getDouble() ;
 
         plot_id_ = drive.initPlot(toString(0)) ;
-        plot_data_ = new Double[plot_columns_.length] ;
+        plot_data_ = new double[plot_columns_.length] ;
     }
 
     public String getPathName() {
@@ -40,10 +39,9 @@ public class TankDriveFollowPathAction extends TankDriveAction {
         left_start_ = getSubsystem().getLeftDistance() ;
         right_start_ = getSubsystem().getRightDistance() ;
 
-        index_ = 0 ;
         start_time_ = getSubsystem().getRobot().getTime() ;
         start_angle_ = getSubsystem().getAngle() ;
-        target_start_angle_ = path_.getLeftSegment(0).getHeading() ;
+        target_start_angle_ = path_.getLeft(XeroPath.Heading, 0) ;
 
         getSubsystem().startPlot(plot_id_, plot_columns_);
         getSubsystem().startTrip("pathfollower") ;
@@ -56,11 +54,16 @@ public class TankDriveFollowPathAction extends TankDriveAction {
         TankDriveSubsystem td = getSubsystem();
         XeroRobot robot = td.getRobot() ;
 
-        if (index_ < path_.getSize())
+        if (!isDone())
         {
             double dt = robot.getDeltaTime();
-            XeroPathSegment lseg = path_.getLeftSegment(index_) ;
-            XeroPathSegment rseg = path_.getRightSegment(index_) ;
+
+            //
+            // Look up the path by the time since the path started, so the path is followed at the
+            // right pace even when robot loops take longer than the time between path segments
+            //
+            double ptime = path_.getStartTime() + robot.getTime() - start_time_ ;
+            int index = path_.findIndex(ptime) ;
 
             double laccel, lvel, lpos ;
             double raccel, rvel, rpos ;
@@ -68,26 +71,24 @@ public class TankDriveFollowPathAction extends TankDriveAction {
 
             if (reverse_)
             {
-                laccel = -rseg.getAccel() ;
-                lvel = -rseg.getVelocity() ;
-                lpos = -rseg.getPosition() ;
-                raccel = -lseg.getAccel() ;
-                rvel = -lseg.getVelocity() ;
-                rpos = -lseg.getPosition() ;
-                thead = XeroMath.normalizeAngleDegrees(lseg.getHeading() - target_start_angle_) ;
-                ahead = XeroMath.normalizeAngleDegrees(getSubsystem().getAngle() - start_angle_) ;                 
+                laccel = -path_.getRightAtTime(XeroPath.Accel, index, ptime) ;
+                lvel = -path_.getRightAtTime(XeroPath.Velocity, index, ptime) ;
+                lpos = -path_.getRightAtTime(XeroPath.Position, index, ptime) ;
+                raccel = -path_.getLeftAtTime(XeroPath.Accel, index, ptime) ;
+                rvel = -path_.getLeftAtTime(XeroPath.Velocity, index, ptime) ;
+                rpos = -path_.getLeftAtTime(XeroPath.Position, index, ptime) ;
             }
             else
             {
-                laccel = lseg.getAccel() ;
-                lvel = lseg.getVelocity() ;
-                lpos = lseg.getPosition() ;
-                raccel = rseg.getAccel() ;
-                rvel = rseg.getVelocity() ;
-                rpos = rseg.getPosition() ;
-                thead = XeroMath.normalizeAngleDegrees(lseg.getHeading() - target_start_angle_) ;  
-                ahead = XeroMath.normalizeAngleDegrees(getSubsystem().getAngle() - start_angle_) ;
+                laccel = path_.getLeftAtTime(XeroPath.Accel, index, ptime) ;
+                lvel = path_.getLeftAtTime(XeroPath.Velocity, index, ptime) ;
+                lpos = path_.getLeftAtTime(XeroPath.Position, index, ptime) ;
+                raccel = path_.getRightAtTime(XeroPath.Accel, index, ptime) ;
+                rvel = path_.getRightAtTime(XeroPath.Velocity, index, ptime) ;
+                rpos = path_.getRightAtTime(XeroPath.Position, index, ptime) ;
             }
+            thead = XeroMath.normalizeAngleDegrees(path_.getLeftAtTime(XeroPath.Heading, index, ptime) - target_start_angle_) ;
+            ahead = XeroMath.normalizeAngleDegrees(getSubsystem().getAngle() - start_angle_) ;
 
             double ldist, rdist ;
             ldist = td.getLeftDistance() - left_start_ ;
@@ -113,7 +114,7 @@ public class TankDriveFollowPathAction extends TankDriveAction {
             plot_data_[5] = laccel ;
             plot_data_[6] = td.getLeftAcceleration() ;
             plot_data_[7] = lout ;
-            plot_data_[8] = (double)td.getLeftTick() ;
+            plot_data_[8] = td.getLeftTick() ;
             plot_data_[9] = left_follower_.getVPart() ;
             plot_data_[10] = left_follower_.getAPart() ;
             plot_data_[11] = left_follower_.getPPart() ;
@@ -128,7 +129,7 @@ public class TankDriveFollowPathAction extends TankDriveAction {
             plot_data_[18] = raccel ;
             plot_data_[19] = td.getRightAcceleration() ;
             plot_data_[20] = rout ;
-            plot_data_[21] = (double)td.getRightTick() ;
+            plot_data_[21] = td.getRightTick() ;
             plot_data_[22] = right_follower_.getVPart() ;
             plot_data_[23] = right_follower_.getAPart() ;
             plot_data_[24] = right_follower_.getPPart() ;
@@ -140,21 +141,19 @@ public class TankDriveFollowPathAction extends TankDriveAction {
             plot_data_[29] = turn ;
 
             td.addPlotData(plot_id_, plot_data_);
-        }
-        index_++ ;
 
-        if (index_ == path_.getSize())
-        {
-            td.endPlot(plot_id_);
-            td.setPower(0.0, 0.0) ;
-            setDone() ;
+            if (ptime >= path_.getDuration())
+            {
+                td.endPlot(plot_id_);
+                td.setPower(0.0, 0.0) ;
+                setDone() ;
+            }
         }
     }
 
     @Override
     public void cancel() {
         super.cancel() ;
-        index_ = path_.getSize() ;
 
         getSubsystem().setPower(0.0, 0.0) ;
         getSubsystem().endPlot(plot_id_);
@@ -166,7 +165,6 @@ public class TankDriveFollowPathAction extends TankDriveAction {
         return ret ;
     }
 
-    private int index_ ;
     double left_start_ ;
     double right_start_ ;
     double start_time_ ;
@@ -180,7 +178,7 @@ public class TankDriveFollowPathAction extends TankDriveAction {
     double start_angle_ ;
     double target_start_angle_ ;
     private int plot_id_ ;
-    Double [] plot_data_ ;
+    double [] plot_data_ ;
     static final String[] plot_columns_ = {             
         "time", 
         "ltpos", "lapos", "ltvel", "lavel", "ltaccel", "laaccel", "lout","lticks","lvout","laout","lpout","ldout","lerr",
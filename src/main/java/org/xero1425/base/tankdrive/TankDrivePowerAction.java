@@ -76,16 +76,15 @@ public class TankDrivePowerAction extends TankDriveAction {
                 getSubsystem().endPlot(plot_id_) ;
             }
 
-            Double[] data = new Double[plot_columns_.length] ;
-            data[0] = getSubsystem().getRobot().getTime() - start_ ;
-            data[1] = getSubsystem().getDistance() ;
-            data[2] = getSubsystem().getVelocity() ;
-            data[3] = getSubsystem().getAcceleration() ;
-            data[4] = (double)getSubsystem().getLeftTick() ;
-            data[5] = (double)getSubsystem().getRightTick() ;
-            data[6] = left_ ;
-            data[7] = right_ ;
-            getSubsystem().addPlotData(plot_id_, data);
+            plot_data_[0] = getSubsystem().getRobot().getTime() - start_ ;
+            plot_data_[1] = getSubsystem().getDistance() ;
+            plot_data_[2] = getSubsystem().getVelocity() ;
+            plot_data_[3] = getSubsystem().getAcceleration() ;
+            plot_data_[4] = getSubsystem().getLeftTick() ;
+            plot_data_[5] = getSubsystem().getRightTick() ;
+            plot_data_[6] = left_ ;
+            plot_data_[7] = right_ ;
+            getSubsystem().addPlotData(plot_id_, plot_data_);
         }
     }
 
@@ -118,4 +117,5 @@ public class TankDrivePowerAction extends TankDriveAction {
     private boolean timed_ ;
     private int plot_id_ ;
     private static String [] plot_columns_ = { "time", "dist", "velocity", "acceleration", "lticks", "rticks", "left", "right" } ;
+    private final double[] plot_data_ = new double[plot_columns_.length] ;
 } ;
\ No newline at end of file
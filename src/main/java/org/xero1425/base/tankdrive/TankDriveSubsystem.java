@@ -199,14 +199,14 @@ public class TankDriveSubsystem extends Subsystem {
         putDashboard("dbangle", DisplayType.Verbose, angular_.getDistance());        
 
         MessageLogger logger = getRobot().getMessageLogger() ;
-        logger.startMessage(MessageType.Debug, getLoggerID()) ;
-        logger.add("tankdrive:") ;
-        logger.add(" powerl", left_power_).add(" powerr", right_power_) ;
-        logger.add(" ticksl", ticks_left_).add(" ticksr ", ticks_right_) ;
-        logger.add(" distl", dist_l_).add(" distr", dist_r_) ;
-        logger.add(" velocityl", getLeftVelocity()).add(" velocityr", getRightVelocity()) ;
-        logger.add(" speed", getVelocity()).add(" angle", getAngle()) ;
-        logger.endMessage();
+        logger.logMessage(MessageType.Debug, getLoggerID(), this, (l, me) -> {
+            l.add("tankdrive:") ;
+            l.add(" powerl", me.left_power_).add(" powerr", me.right_power_) ;
+            l.add(" ticksl", me.ticks_left_).add(" ticksr ", me.ticks_right_) ;
+            l.add(" distl", me.dist_l_).add(" distr", me.dist_r_) ;
+            l.add(" velocityl", me.getLeftVelocity()).add(" velocityr", me.getRightVelocity()) ;
+            l.add(" speed", me.getVelocity()).add(" angle", me.getAngle()) ;
+        }) ;
     }
 
     protected void setPower(double left, double right) {
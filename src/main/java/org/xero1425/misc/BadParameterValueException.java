@@ -0,0 +1,35 @@
+package org.xero1425.misc ;
+
+import java.lang.Exception ;
+
+/// \file
+
+/// \brief this exception is thrown when a parameter has the right type but a value that is not allowed
+public class BadParameterValueException extends Exception
+{
+    private String param_ ;
+    private String value_ ;
+
+    static final long serialVersionUID = 42 ;
+
+    /// \brief create the exception object
+    /// \param param the name of the parameter
+    /// \param value the value that is not allowed
+    public BadParameterValueException(String param, String value) {
+        super("bad value '" + value + "' for parameter '" + param + "'") ;
+        param_ = param ;
+        value_ = value ;
+    }
+
+    /// \brief returns the name of the parameter
+    /// \returns the name of the parameter
+    public String getParameter() {
+        return param_ ;
+    }
+
+    /// \brief returns the value that is not allowed
+    /// \returns the value that is not allowed
+    public String getValue() {
+        return value_ ;
+    }
+}
@@ -0,0 +1,35 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief this exception is thrown when a path file cannot be parsed
+public class BadPathFileException extends Exception
+{
+    private String filename_ ;
+    private int line_ ;
+
+    static final long serialVersionUID = 42 ;
+
+    /// \brief create the exception to throw
+    /// \param filename the name of the path file
+    /// \param line the line number in the path file, starting at one
+    /// \param msg a description of the problem
+    public BadPathFileException(String filename, int line, String msg) {
+        super(filename + ":" + Integer.toString(line) + ": " + msg) ;
+
+        filename_ = filename ;
+        line_ = line ;
+    }
+
+    /// \brief returns the name of the path file
+    /// \returns the name of the path file
+    public String getFileName() {
+        return filename_ ;
+    }
+
+    /// \brief returns the line number in the path file, starting at one
+    /// \returns the line number in the path file
+    public int getLine() {
+        return line_ ;
+    }
+}
@@ -0,0 +1,43 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief a handle to a boolean value in the settings file.
+/// The handle is created once by calling SettingsParser.booleanKey() with the name of the value.  The
+/// name is checked and the value is stored in a slot of a flat array in the SettingsParser, so get()
+/// is an array read with no string handling, map lookup, or boxing.
+public final class BooleanSetting
+{
+    //
+    // The settings parser that holds the value
+    //
+    private final SettingsParser parser_ ;
+
+    //
+    // The name of the value in the settings file
+    //
+    private final String name_ ;
+
+    //
+    // The index of the value in the settings parser slots
+    //
+    private final int slot_ ;
+
+    BooleanSetting(SettingsParser parser, String name, int slot) {
+        parser_ = parser ;
+        name_ = name ;
+        slot_ = slot ;
+    }
+
+    /// \brief returns the name of the value in the settings file
+    /// \returns the name of the value in the settings file
+    public String getName() {
+        return name_ ;
+    }
+
+    /// \brief returns the value
+    /// \returns the value
+    public boolean get() {
+        return parser_.getSlot(slot_) != 0.0 ;
+    }
+} ;
@@ -0,0 +1,346 @@
+package org.xero1425.misc;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// \file
+
+/// \brief This class converts a binary log file written by MessageDestinationBinaryFile to text or CSV.
+///
+/// The text output has the same layout as the text log files written by the MessageLogger.  The CSV output
+/// has one row for each named value in each message, with the columns time, type, subsystem, name, and
+/// value.  This class can be run from the command line with the arguments [--csv] infile [outfile].  If no
+/// output file is given, the output is written to standard output.
+public class MessageBinaryDecoder
+{
+    //
+    // The dictionary of strings read from the file
+    //
+    private List<String> strings_ ;
+
+    //
+    // The subsystem names read from the file
+    //
+    private Map<Integer, String> subsystems_ ;
+
+    //
+    // The fields of the message being decoded
+    //
+    private MessageFields fields_ ;
+
+    //
+    // The message being decoded as text
+    //
+    private StringBuilder text_ ;
+
+    //
+    // The buffer for each output line
+    //
+    private StringBuilder line_ ;
+
+    //
+    // The kinds of fields, indexed by the ordinal stored in the file
+    //
+    private static final MessageFields.Kind[] Kinds = MessageFields.Kind.values() ;
+
+    //
+    // The message types, indexed by the ordinal stored in the file
+    //
+    private static final MessageType[] Types = MessageType.values() ;
+
+    /// \brief create a new decoder
+    public MessageBinaryDecoder() {
+        strings_ = new ArrayList<String>() ;
+        subsystems_ = new HashMap<Integer, String>() ;
+        fields_ = new MessageFields(1024) ;
+        text_ = new StringBuilder() ;
+        line_ = new StringBuilder() ;
+    }
+
+    /// \brief decode a binary log file
+    /// \param data the contents of the binary log file
+    /// \param out the writer for the decoded output
+    /// \param csv if true, write CSV, otherwise write text in the layout of the MessageLogger
+    /// \throws IOException if the data is not a valid binary log file or the output cannot be written
+    public void decode(final ByteBuffer data, final Writer out, final boolean csv) throws IOException {
+        strings_.clear() ;
+        subsystems_.clear() ;
+
+        if (data.remaining() < 5 || data.getInt() != MessageDestinationBinaryFile.Magic)
+            throw new IOException("not a binary log file") ;
+
+        final int version = data.get() ;
+        if (version != MessageDestinationBinaryFile.Version)
+            throw new IOException("unsupported binary log file version " + version) ;
+
+        if (csv)
+            out.write("time,type,subsystem,name,value\n") ;
+
+        final List<MessageDestination> dests = new ArrayList<MessageDestination>() ;
+        dests.add((type, subsystem, msg) -> writeLine(out, msg)) ;
+
+        while (data.hasRemaining()) {
+            final int start = data.position() ;
+            final int tag = data.get() ;
+            final int len = getVarInt(data) ;
+            if (len < 0 || len > data.remaining())
+                throw new IOException("truncated entry at offset " + start) ;
+
+            final ByteBuffer entry = data.slice() ;
+            entry.limit(len) ;
+            data.position(data.position() + len) ;
+
+            switch(tag) {
+                case MessageDestinationBinaryFile.StringEntry:
+                    {
+                        final int id = getVarInt(entry) ;
+                        final String str = StandardCharsets.UTF_8.decode(entry).toString() ;
+                        final int index = id - MessageDestinationBinaryFile.FirstStringID ;
+                        while (strings_.size() <= index)
+                            strings_.add(null) ;
+                        strings_.set(index, str) ;
+                    }
+                    break ;
+
+                case MessageDestinationBinaryFile.SubsystemEntry:
+                    {
+                        final int id = getVarInt(entry) ;
+                        subsystems_.put(id, getString(entry)) ;
+                    }
+                    break ;
+
+                case MessageDestinationBinaryFile.MessageEntry:
+                    {
+                        final double time = entry.getDouble() ;
+                        final MessageType type = Types[entry.get()] ;
+                        final int subsystem = getVarInt(entry) ;
+                        final String subname = subsystems_.get(subsystem) ;
+                        final int flags = entry.get() ;
+                        decodeFields(entry) ;
+
+                        if (csv) {
+                            writeCSV(out, time, type, subsystem, subname) ;
+                        }
+                        else {
+                            text_.setLength(0) ;
+                            fields_.appendText(text_) ;
+                            if ((flags & MessageDestinationBinaryFile.TruncatedFlag) != 0)
+                                text_.append(" ...") ;
+                            MessageLogger.outputLines(line_, time, type, subsystem, subname, text_, dests) ;
+                        }
+                    }
+                    break ;
+
+                default:
+                    //
+                    // An entry from a newer version of the format, the length lets us skip it
+                    //
+                    break ;
+            }
+        }
+
+        out.flush() ;
+    }
+
+    private void decodeFields(final ByteBuffer entry) throws IOException {
+        fields_.clear() ;
+
+        final int count = getVarInt(entry) ;
+        for(int i = 0 ; i < count ; i++) {
+            final MessageFields.Kind kind = Kinds[entry.get()] ;
+            final String name = getString(entry) ;
+
+            switch(kind) {
+                case Text:
+                    fields_.add(kind, name, 0) ;
+                    break ;
+                case Quoted:
+                case String:
+                    fields_.add(kind, name, getString(entry)) ;
+                    break ;
+                case Char:
+                    fields_.add(kind, name, getVarInt(entry)) ;
+                    break ;
+                case Integer:
+                case Long:
+                    fields_.add(kind, name, unzigzag(getVarLong(entry))) ;
+                    break ;
+                case Float:
+                    fields_.add(name, entry.getFloat()) ;
+                    break ;
+                case Double:
+                    fields_.add(name, entry.getDouble()) ;
+                    break ;
+                case Boolean:
+                    fields_.add(kind, name, entry.get()) ;
+                    break ;
+            }
+        }
+    }
+
+    private void writeCSV(final Writer out, final double time, final MessageType type, final int subsystem, final String subname) throws IOException {
+        for(int i = 0 ; i < fields_.size() ; i++) {
+            final String name = fields_.getName(i) ;
+            if (name == null || fields_.getKind(i) == MessageFields.Kind.Text)
+                continue ;
+
+            line_.setLength(0) ;
+            line_.append(time).append(',') ;
+            line_.append(type.toString()).append(',') ;
+            if (subsystem == MessageLogger.NOSUBSYSTEM)
+                line_.append("global") ;
+            else if (subname != null)
+                appendCSV(line_, subname) ;
+            else
+                line_.append("missing(").append(subsystem).append(")") ;
+            line_.append(',') ;
+            appendCSV(line_, name) ;
+            line_.append(',') ;
+
+            text_.setLength(0) ;
+            switch(fields_.getKind(i)) {
+                case Quoted:
+                case String:
+                    text_.append(fields_.getString(i)) ;
+                    break ;
+                case Char:
+                    text_.append((char)fields_.getLong(i)) ;
+                    break ;
+                case Boolean:
+                    text_.append(fields_.getLong(i) != 0) ;
+                    break ;
+                case Float:
+                case Double:
+                    text_.append(fields_.getDouble(i)) ;
+                    break ;
+                default:
+                    text_.append(fields_.getLong(i)) ;
+                    break ;
+            }
+            appendCSV(line_, text_) ;
+
+            writeLine(out, line_) ;
+        }
+    }
+
+    private static void appendCSV(final StringBuilder bld, final CharSequence str) {
+        boolean quote = false ;
+        for(int i = 0 ; i < str.length() && !quote ; i++) {
+            final char ch = str.charAt(i) ;
+            quote = (ch == ',' || ch == '"' || ch == '\n') ;
+        }
+
+        if (!quote) {
+            bld.append(str) ;
+            return ;
+        }
+
+        bld.append('"') ;
+        for(int i = 0 ; i < str.length() ; i++) {
+            final char ch = str.charAt(i) ;
+            if (ch == '"')
+                bld.append('"') ;
+            bld.append(ch) ;
+        }
+        bld.append('"') ;
+    }
+
+    private static void writeLine(final Writer out, final CharSequence line) {
+        try {
+            out.append(line).append('\n') ;
+        }
+        catch(final IOException ex) {
+            throw new RuntimeException(ex) ;
+        }
+    }
+
+    private String getString(final ByteBuffer buf) throws IOException {
+        final int id = getVarInt(buf) ;
+        if (id == MessageDestinationBinaryFile.NoString)
+            return null ;
+
+        if (id == MessageDestinationBinaryFile.InlineString) {
+            final int len = getVarInt(buf) ;
+            final ByteBuffer str = buf.slice() ;
+            str.limit(len) ;
+            buf.position(buf.position() + len) ;
+            return StandardCharsets.UTF_8.decode(str).toString() ;
+        }
+
+        final int index = id - MessageDestinationBinaryFile.FirstStringID ;
+        if (index >= strings_.size() || strings_.get(index) == null)
+            throw new IOException("reference to undefined string " + id) ;
+
+        return strings_.get(index) ;
+    }
+
+    private static long unzigzag(final long v) {
+        return (v >>> 1) ^ -(v & 1) ;
+    }
+
+    private static int getVarInt(final ByteBuffer buf) {
+        return (int)getVarLong(buf) ;
+    }
+
+    private static long getVarLong(final ByteBuffer buf) {
+        long ret = 0 ;
+        int shift = 0 ;
+        while (true) {
+            final byte b = buf.get() ;
+            ret |= (long)(b & 0x7F) << shift ;
+            if ((b & 0x80) == 0)
+                break ;
+            shift += 7 ;
+        }
+        return ret ;
+    }
+
+    /// \brief convert a binary log file to text or CSV
+    /// \param args the command line arguments, [--csv] infile [outfile]
+    public static void main(final String[] args) {
+        boolean csv = false ;
+        String infile = null ;
+        String outfile = null ;
+
+        for(String arg : args) {
+            if (arg.equals("--csv"))
+                csv = true ;
+            else if (infile == null)
+                infile = arg ;
+            else if (outfile == null)
+                outfile = arg ;
+            else {
+                System.err.println("usage: MessageBinaryDecoder [--csv] infile [outfile]") ;
+                System.exit(1) ;
+            }
+        }
+
+        if (infile == null) {
+            System.err.println("usage: MessageBinaryDecoder [--csv] infile [outfile]") ;
+            System.exit(1) ;
+        }
+
+        try {
+            final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(Paths.get(infile))) ;
+            final Writer out = (outfile == null) ? new OutputStreamWriter(System.out) : new FileWriter(outfile) ;
+            try (BufferedWriter bout = new BufferedWriter(out)) {
+                new MessageBinaryDecoder().decode(data, bout, csv) ;
+            }
+        }
+        catch(final Exception ex) {
+            System.err.println("cannot decode binary log file '" + infile + "' - " + ex.getMessage()) ;
+            System.exit(1) ;
+        }
+    }
+}
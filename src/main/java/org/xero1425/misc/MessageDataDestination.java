@@ -0,0 +1,16 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief an interface that defines the required function of a destination that receives messages
+/// as typed fields rather than as text
+public interface MessageDataDestination
+{
+    /// \brief display a message
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param subname the name of the subsystem, or null for messages with no subsystem
+    /// \param time the time of the message, or NaN if the logger has no time source
+    /// \param fields the fields of the message, only valid for the duration of the call
+    public abstract void displayData(MessageType type, int subsystem, String subname, double time, MessageFields fields) ;
+}
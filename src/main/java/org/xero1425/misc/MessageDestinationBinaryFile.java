@@ -0,0 +1,453 @@
+package org.xero1425.misc;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/// \file
+
+/// \brief a message destination that stores the logged messages as typed fields in a compact binary file
+///
+/// The file starts with a four byte magic number and a version byte.  The rest of the file is a series of
+/// entries, each of which is a one byte tag, the length of the entry payload, and the payload.  Lengths and
+/// most integers are stored as variable length integers, so small values take a single byte.  Names and
+/// strings are stored once in a dictionary entry and referred to by number after that, so a message such as
+/// the per loop drivebase message costs a few bytes per value rather than the full text.  The
+/// MessageBinaryDecoder class converts a file back to the text layout of the MessageLogger or to CSV.
+///
+/// Messages are encoded into a large buffer.  When the buffer is full, or once a second, it is handed to a
+/// background writer thread and encoding continues in an empty buffer, so the thread logging the messages
+/// never waits for the file system.  The writer thread returns the buffers it has written to be used again.
+/// If the writer falls behind by MaxBuffers buffers, the logging thread waits for a buffer to be written
+/// rather than dropping messages, since every entry may be needed to decode the ones after it.
+public class MessageDestinationBinaryFile implements MessageDataDestination
+{
+    /// \brief the magic number at the start of the file
+    public static final int Magic = 0x584c4f47 ;
+
+    /// \brief the version of the file format
+    public static final int Version = 1 ;
+
+    /// \brief the tag for an entry that adds a string to the dictionary
+    public static final int StringEntry = 1 ;
+
+    /// \brief the tag for an entry that names a subsystem
+    public static final int SubsystemEntry = 2 ;
+
+    /// \brief the tag for an entry that holds a message
+    public static final int MessageEntry = 3 ;
+
+    /// \brief the string reference for no string
+    public static final int NoString = 0 ;
+
+    /// \brief the string reference for a string stored in place rather than in the dictionary
+    public static final int InlineString = 1 ;
+
+    /// \brief the first string reference that refers to the dictionary
+    public static final int FirstStringID = 2 ;
+
+    /// \brief the flag in a message entry that indicates the message had more fields than were logged
+    public static final int TruncatedFlag = 0x01 ;
+
+    //
+    // The largest number of strings stored in the dictionary, strings beyond this are stored in place
+    //
+    private static final int MaxDictionarySize = 8192 ;
+
+    //
+    // The size of the buffer between the messages and the file
+    //
+    private static final int WriteBufferSize = 64 * 1024 ;
+
+    //
+    // The maximum number of buffers, either being filled, waiting for the writer thread, or being written
+    //
+    private static final int MaxBuffers = 16 ;
+
+    //
+    // The maximum time in milliseconds between handing the buffer to the writer thread
+    //
+    private static final long FlushPeriod = 1000 ;
+
+    //
+    // The maximum time in milliseconds close() waits for the writer thread to write what is left
+    //
+    private static final long CloseTimeout = 5000 ;
+
+    //
+    // The buffer given to the writer thread to tell it to exit
+    //
+    private static final ByteBuffer StopBuffer = ByteBuffer.allocate(0) ;
+
+    //
+    // The name of the file
+    //
+    private String filename_ ;
+
+    //
+    // The file the messages are written to
+    //
+    private FileChannel file_ ;
+
+    //
+    // If true, the file is valid
+    //
+    private boolean valid_ ;
+
+    //
+    // The buffer the entries are encoded into
+    //
+    private ByteBuffer out_ ;
+
+    //
+    // The buffers waiting for the writer thread, in the order they were filled
+    //
+    private BlockingQueue<ByteBuffer> full_ ;
+
+    //
+    // The buffers the writer thread has written, ready to be filled again
+    //
+    private BlockingQueue<ByteBuffer> free_ ;
+
+    //
+    // The number of buffers allocated
+    //
+    private int buffers_ ;
+
+    //
+    // The thread that writes the full buffers to the file
+    //
+    private Thread writer_ ;
+
+    //
+    // The buffer a message is encoded into before it is copied to the output buffer, this
+    // is needed because the length of the message comes before the message
+    //
+    private ByteBuffer msg_ ;
+
+    //
+    // The dictionary of strings that have been written to the file
+    //
+    private Map<String, Integer> strings_ ;
+
+    //
+    // The subsystems that have been named in the file
+    //
+    private Set<Integer> subsystems_ ;
+
+    //
+    // The time the buffer was last handed to the writer thread
+    //
+    private long lastflush_ ;
+
+    /// \brief create a new destination writing to the filename given
+    /// \param filename the name of the output file for messages
+    public MessageDestinationBinaryFile(final String filename) {
+        filename_ = filename ;
+        out_ = ByteBuffer.allocate(WriteBufferSize) ;
+        full_ = new LinkedBlockingQueue<ByteBuffer>() ;
+        free_ = new LinkedBlockingQueue<ByteBuffer>() ;
+        buffers_ = 1 ;
+        writer_ = null ;
+        msg_ = ByteBuffer.allocate(4096) ;
+        strings_ = new HashMap<String, Integer>() ;
+        subsystems_ = new HashSet<Integer>() ;
+        lastflush_ = System.currentTimeMillis() ;
+
+        try {
+            @SuppressWarnings("resource")
+            RandomAccessFile f = new RandomAccessFile(filename, "rw") ;
+            f.setLength(0) ;
+            file_ = f.getChannel() ;
+            valid_ = true ;
+
+            out_.putInt(Magic) ;
+            out_.put((byte)Version) ;
+
+            writer_ = new Thread(() -> writeLoop(), "binlogwriter") ;
+            writer_.setDaemon(true) ;
+            writer_.start() ;
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> close())) ;
+        }
+        catch(final Exception ex) {
+            valid_ = false ;
+            System.err.println("cannot open log file '" + filename_ + "' - " + ex.getMessage()) ;
+        }
+    }
+
+    /// \brief display a message by encoding it into the file
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param subname the name of the subsystem
+    /// \param time the time of the message
+    /// \param fields the fields of the message
+    public synchronized void displayData(final MessageType type, final int subsystem, final String subname, final double time, final MessageFields fields) {
+        if (!valid_)
+            return ;
+
+        try {
+            if (subname != null && !subsystems_.contains(subsystem))
+                defineSubsystem(subsystem, subname) ;
+
+            //
+            // Encoding can add strings to the dictionary, which are written directly to the output
+            // buffer so they come before the message that uses them
+            //
+            msg_.clear() ;
+            ensureMessageSpace(16) ;
+            msg_.putDouble(time) ;
+            msg_.put((byte)type.ordinal()) ;
+            putVarInt(msg_, subsystem) ;
+            msg_.put((byte)(fields.isTruncated() ? TruncatedFlag : 0)) ;
+            putVarInt(msg_, fields.size()) ;
+
+            for(int i = 0 ; i < fields.size() ; i++)
+                encodeField(fields, i) ;
+
+            msg_.flip() ;
+            ensureOutputSpace(msg_.remaining() + 6) ;
+            out_.put((byte)MessageEntry) ;
+            putVarInt(out_, msg_.remaining()) ;
+            out_.put(msg_) ;
+
+            final long now = System.currentTimeMillis() ;
+            if (now - lastflush_ >= FlushPeriod)
+                flush() ;
+        }
+        catch(final IOException ex) {
+            System.err.println("cannot write to log file '" + filename_ + "' - " + ex.getMessage()) ;
+        }
+    }
+
+    /// \brief hand any buffered messages to the writer thread to be written to the file
+    public synchronized void flush() {
+        if (!valid_)
+            return ;
+
+        handOff() ;
+        lastflush_ = System.currentTimeMillis() ;
+    }
+
+    /// \brief write any buffered messages, stop the writer thread, and close the file
+    public synchronized void close() {
+        if (!valid_)
+            return ;
+
+        flush() ;
+        full_.add(StopBuffer) ;
+        try {
+            writer_.join(CloseTimeout) ;
+        }
+        catch(final InterruptedException ex) {
+        }
+
+        try {
+            file_.close() ;
+        }
+        catch(final IOException ex) {
+        }
+        valid_ = false ;
+    }
+
+    private void encodeField(final MessageFields fields, final int i) throws IOException {
+        final MessageFields.Kind kind = fields.getKind(i) ;
+
+        ensureMessageSpace(16) ;
+        msg_.put((byte)kind.ordinal()) ;
+        putString(fields.getName(i)) ;
+
+        ensureMessageSpace(16) ;
+        switch(kind) {
+            case Text:
+                break ;
+            case Quoted:
+            case String:
+                putString(fields.getString(i)) ;
+                break ;
+            case Char:
+                putVarInt(msg_, (int)fields.getLong(i)) ;
+                break ;
+            case Integer:
+            case Long:
+                putVarLong(msg_, zigzag(fields.getLong(i))) ;
+                break ;
+            case Float:
+                msg_.putFloat((float)fields.getDouble(i)) ;
+                break ;
+            case Double:
+                msg_.putDouble(fields.getDouble(i)) ;
+                break ;
+            case Boolean:
+                msg_.put((byte)fields.getLong(i)) ;
+                break ;
+        }
+    }
+
+    //
+    // Write a reference to a string, adding it to the dictionary if there is room
+    //
+    private void putString(final String str) throws IOException {
+        if (str == null) {
+            putVarInt(msg_, NoString) ;
+            return ;
+        }
+
+        Integer id = strings_.get(str) ;
+        if (id == null && strings_.size() < MaxDictionarySize) {
+            id = strings_.size() + FirstStringID ;
+            strings_.put(str, id) ;
+
+            final byte[] bytes = str.getBytes(StandardCharsets.UTF_8) ;
+            final int len = bytes.length + varIntSize(id) ;
+            ensureOutputSpace(len + 6) ;
+            out_.put((byte)StringEntry) ;
+            putVarInt(out_, len) ;
+            putVarInt(out_, id) ;
+            out_.put(bytes) ;
+        }
+
+        if (id != null) {
+            ensureMessageSpace(5) ;
+            putVarInt(msg_, id) ;
+        }
+        else {
+            final byte[] bytes = str.getBytes(StandardCharsets.UTF_8) ;
+            ensureMessageSpace(bytes.length + 10) ;
+            putVarInt(msg_, InlineString) ;
+            putVarInt(msg_, bytes.length) ;
+            msg_.put(bytes) ;
+        }
+    }
+
+    private void defineSubsystem(final int subsystem, final String subname) throws IOException {
+        msg_.clear() ;
+        putString(subname) ;
+        msg_.flip() ;
+
+        ensureOutputSpace(msg_.remaining() + 11) ;
+        out_.put((byte)SubsystemEntry) ;
+        putVarInt(out_, msg_.remaining() + varIntSize(subsystem)) ;
+        putVarInt(out_, subsystem) ;
+        out_.put(msg_) ;
+
+        subsystems_.add(subsystem) ;
+    }
+
+    private void ensureOutputSpace(final int size) throws IOException {
+        if (out_.remaining() < size) {
+            handOff() ;
+            if (out_.remaining() < size)
+                out_ = grow(out_, size) ;
+        }
+    }
+
+    private void ensureMessageSpace(final int size) {
+        if (msg_.remaining() < size)
+            msg_ = grow(msg_, size) ;
+    }
+
+    //
+    // Give the output buffer to the writer thread and continue in an empty buffer
+    //
+    private void handOff() {
+        if (out_.position() == 0)
+            return ;
+
+        out_.flip() ;
+        full_.add(out_) ;
+
+        ByteBuffer next = free_.poll() ;
+        if (next == null) {
+            if (buffers_ < MaxBuffers) {
+                next = ByteBuffer.allocate(WriteBufferSize) ;
+                buffers_++ ;
+            }
+            else {
+                try {
+                    next = free_.take() ;
+                }
+                catch(final InterruptedException ex) {
+                    next = ByteBuffer.allocate(WriteBufferSize) ;
+                    Thread.currentThread().interrupt() ;
+                }
+            }
+        }
+
+        next.clear() ;
+        out_ = next ;
+    }
+
+    //
+    // The writer thread, writes the full buffers to the file in order and returns them to be filled again.
+    // The thread is not interrupted, since interrupting a write closes the file channel.
+    //
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer buf ;
+            try {
+                buf = full_.take() ;
+            }
+            catch(final InterruptedException ex) {
+                continue ;
+            }
+
+            if (buf == StopBuffer)
+                break ;
+
+            try {
+                while (buf.hasRemaining())
+                    file_.write(buf) ;
+            }
+            catch(final IOException ex) {
+                System.err.println("cannot write to log file '" + filename_ + "' - " + ex.getMessage()) ;
+            }
+
+            free_.add(buf) ;
+        }
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buf, final int size) {
+        final ByteBuffer ret = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + size)) ;
+        buf.flip() ;
+        ret.put(buf) ;
+        return ret ;
+    }
+
+    static long zigzag(final long v) {
+        return (v << 1) ^ (v >> 63) ;
+    }
+
+    static int varIntSize(int v) {
+        int ret = 1 ;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7 ;
+            ret++ ;
+        }
+        return ret ;
+    }
+
+    static void putVarInt(final ByteBuffer buf, int v) {
+        while ((v & ~0x7F) != 0) {
+            buf.put((byte)((v & 0x7F) | 0x80)) ;
+            v >>>= 7 ;
+        }
+        buf.put((byte)v) ;
+    }
+
+    static void putVarLong(final ByteBuffer buf, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte)((v & 0x7F) | 0x80)) ;
+            v >>>= 7 ;
+        }
+        buf.put((byte)v) ;
+    }
+}
@@ -1,14 +1,36 @@
 package org.xero1425.misc;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /// \file
 
 /// \brief This class is a MessageDestination that logs messages to a thumb drive on the roborio
+///
+/// In the synchronous mode, each message is written and flushed to the file by the thread that
+/// displays the message.  In the asynchronous mode, each message is placed in a bounded queue and
+/// a background writer thread removes messages from the queue in batches, writes them through a
+/// large buffer, and flushes the file periodically.  This keeps slow writes to the thumb drive out
+/// of the robot loop.  When the queue is full, the DropPolicy decides what happens to the message.
 public class MessageDestinationThumbFile implements MessageDestination
 {
+    /// \brief what to do with a message when the queue to the writer thread is full
+    public enum DropPolicy
+    {
+        DropNewest,             ///< Discard the message being displayed
+        DropOldest,             ///< Discard the oldest message in the queue to make room
+        Block                   ///< Wait for the writer thread to make room
+    } ;
+
     //
     // THe name of the file
     //
@@ -17,17 +39,234 @@ public class MessageDestinationThumbFile implements MessageDestination
     //
     // The file writer for writing information to the file
     //
-    private FileWriter file_ ;
+    private Writer file_ ;
 
     //
     // If true, the file writer is valid
     //
     private boolean valid_;
 
+    //
+    // The queue of messages waiting for the writer thread, null in the synchronous mode
+    //
+    private BlockingQueue<String> queue_ ;
+
+    //
+    // What to do when the queue is full
+    //
+    private DropPolicy policy_ ;
+
+    //
+    // The thread that writes messages to the file in the asynchronous mode
+    //
+    private Thread writer_ ;
+
+    //
+    // If true, the writer thread should write what is left and exit
+    //
+    private volatile boolean stopping_ ;
+
+    //
+    // The number of messages that were not written because the queue was full
+    //
+    private AtomicLong dropped_ ;
+
+    //
+    // The number of messages written to the file
+    //
+    private AtomicLong written_ ;
+
+    //
+    // The size of the buffer between the writer thread and the file
+    //
+    private static final int WriteBufferSize = 64 * 1024 ;
+
+    //
+    // The maximum number of messages the writer thread removes from the queue at once
+    //
+    private static final int BatchSize = 256 ;
+
+    //
+    // The maximum time in milliseconds a message can sit in the write buffer before it is flushed
+    //
+    private static final long FlushPeriod = 1000 ;
+
     /// \brief create a new object that logs messages to a thumb drive
     /// \param bdir the base directory for log files (e.g. /u) ;
     /// \param a timeout for trying to open a file in the base directory given
     public MessageDestinationThumbFile(final String bdir, final long timeout) {
+        dropped_ = new AtomicLong(0) ;
+        written_ = new AtomicLong(0) ;
+        queue_ = null ;
+        writer_ = null ;
+        openFile(bdir, timeout) ;
+    }
+
+    /// \brief create a new object that logs messages to a thumb drive from a background thread
+    /// \param bdir the base directory for log files (e.g. /u) ;
+    /// \param a timeout for trying to open a file in the base directory given
+    /// \param size the maximum number of messages waiting to be written
+    /// \param policy what to do with a message when the queue is full
+    public MessageDestinationThumbFile(final String bdir, final long timeout, final int size, final DropPolicy policy) {
+        this(bdir, timeout) ;
+
+        if (valid_) {
+            file_ = new BufferedWriter(file_, WriteBufferSize) ;
+            queue_ = new ArrayBlockingQueue<String>(size) ;
+            policy_ = policy ;
+            stopping_ = false ;
+
+            writer_ = new Thread(() -> writeLoop(), "logwriter") ;
+            writer_.setDaemon(true) ;
+            writer_.start() ;
+
+            //
+            // The robot code exits with System.exit() on a fatal error, so be sure
+            // what is in the queue reaches the file
+            //
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> close())) ;
+        }
+    }
+
+    /// \brief returns the name of the log file
+    /// \returns the name of the log file, or null if no file was opened
+    public String getFileName() {
+        return valid_ ? filename_ : null ;
+    }
+
+    /// \brief returns the number of messages dropped because the queue to the writer thread was full
+    /// \returns the number of messages dropped
+    public long getDroppedCount() {
+        return dropped_.get() ;
+    }
+
+    /// \brief returns the number of messages written to the file
+    /// \returns the number of messages written to the file
+    public long getWrittenCount() {
+        return written_.get() ;
+    }
+
+    /// \brief display a message by appending it to a file on the thumb drive
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param msg the text of the message
+    public void displayMessage(final MessageType type, final int subsystem, final String msg) {
+        if (!valid_)
+            return ;
+
+        if (queue_ == null) {
+            try
+            {
+                file_.write(msg) ;
+                file_.write("\n") ;
+                file_.flush() ;
+                written_.incrementAndGet() ;
+            }
+            catch(final Exception ex)
+            {
+                System.err.println("cannot write to log file '" + filename_ + "' - " + ex.getMessage()) ;
+            }
+        }
+        else {
+            enqueue(msg) ;
+        }
+    }
+
+    /// \brief stop the writer thread after it writes all queued messages to the file
+    public void close() {
+        if (writer_ == null)
+            return ;
+
+        stopping_ = true ;
+        writer_.interrupt() ;
+        try {
+            writer_.join(FlushPeriod) ;
+        }
+        catch(final InterruptedException ex) {
+        }
+    }
+
+    private void enqueue(final String msg) {
+        switch(policy_) {
+            case DropNewest:
+                if (!queue_.offer(msg))
+                    dropped_.incrementAndGet() ;
+                break ;
+
+            case DropOldest:
+                while (!queue_.offer(msg)) {
+                    if (queue_.poll() != null)
+                        dropped_.incrementAndGet() ;
+                }
+                break ;
+
+            case Block:
+                try {
+                    queue_.put(msg) ;
+                }
+                catch(final InterruptedException ex) {
+                    dropped_.incrementAndGet() ;
+                    Thread.currentThread().interrupt() ;
+                }
+                break ;
+        }
+    }
+
+    private void writeLoop() {
+        final List<String> batch = new ArrayList<String>(BatchSize) ;
+        long lastflush = System.currentTimeMillis() ;
+        boolean dirty = false ;
+
+        while (true) {
+            boolean idle = true ;
+            try {
+                String msg = queue_.poll(FlushPeriod, TimeUnit.MILLISECONDS) ;
+                if (msg != null) {
+                    batch.add(msg) ;
+                    queue_.drainTo(batch, BatchSize - 1) ;
+                    idle = false ;
+                }
+            }
+            catch(final InterruptedException ex) {
+                //
+                // We are interrupted when close() is called, pick up what is left and exit below
+                //
+            }
+
+            if (stopping_)
+                queue_.drainTo(batch) ;
+
+            try {
+                for(String msg : batch) {
+                    file_.write(msg) ;
+                    file_.write('\n') ;
+                }
+                written_.addAndGet(batch.size()) ;
+                dirty = dirty || batch.size() > 0 ;
+                batch.clear() ;
+
+                //
+                // Flush if nothing arrived for a flush period or the flush period has elapsed, so a
+                // message never waits long in the buffer if the robot loses power
+                //
+                final long now = System.currentTimeMillis() ;
+                if (dirty && (idle || now - lastflush >= FlushPeriod || stopping_)) {
+                    file_.flush() ;
+                    lastflush = now ;
+                    dirty = false ;
+                }
+            }
+            catch(final Exception ex) {
+                System.err.println("cannot write to log file '" + filename_ + "' - " + ex.getMessage()) ;
+                batch.clear() ;
+            }
+
+            if (stopping_ && queue_.isEmpty())
+                break ;
+        }
+    }
+
+    private void openFile(final String bdir, final long timeout) {
         int index = 1;
         valid_ = false;
         final long startms = new Date().getTime();
@@ -59,24 +298,4 @@ public class MessageDestinationThumbFile implements MessageDestination
             }
         }
     }
-
-    /// \brief display a message by appending it to a file on the thumb drive
-    /// \param type the message type
-    /// \param subsystem the subsystem ID for the message
-    /// \param msg the text of the message
-    public void displayMessage(final MessageType type, final int subsystem, final String msg) {
-        if (valid_) {
-            try
-            {
-                file_.write(msg) ;
-                file_.write("\n") ;
-                file_.flush() ;
-            }
-            catch(final Exception ex)
-            {
-                System.err.println("cannot write to log file '" + filename_ + "' - " + ex.getMessage()) ;
-            }
-        }
-    }
-
 }
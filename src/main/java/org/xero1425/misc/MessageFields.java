@@ -0,0 +1,238 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief This class holds the pieces of a message in the order they were added to the message.
+///
+/// Each piece is a field with a kind, an optional name, and a typed value.  Text added to a message
+/// with MessageLogger.add(String) is a Text field whose name is the text.  Values added without a
+/// name, such as MessageLogger.add(double), are fields with no name.  Values added with a name, such as
+/// MessageLogger.add(String, double), are fields with a name.  The storage is allocated once and reused
+/// for every message, so numeric values are never boxed.  A message holds at most a fixed number of
+/// fields, any fields beyond that are dropped and the message is marked as truncated.
+public class MessageFields
+{
+    /// \brief the kind of a field
+    public enum Kind
+    {
+        Text,                   ///< literal text, stored as the name of the field
+        Quoted,                 ///< a string that is displayed in quotes
+        Char,                   ///< a character value
+        Integer,                ///< an integer value
+        Long,                   ///< a long value
+        Float,                  ///< a float value
+        Double,                 ///< a double value
+        Boolean,                ///< a boolean value
+        String                  ///< a string value
+    } ;
+
+    //
+    // The kinds, indexed by ordinal, so we never call Kind.values() which allocates
+    //
+    private static final Kind[] Kinds = Kind.values() ;
+
+    //
+    // The kind of each field
+    //
+    private byte[] kinds_ ;
+
+    //
+    // The name of each field, or null if the field has no name
+    //
+    private String[] names_ ;
+
+    //
+    // The numeric value of each field, doubles and floats are stored as their raw bits
+    //
+    private long[] values_ ;
+
+    //
+    // The string value of each field
+    //
+    private String[] strings_ ;
+
+    //
+    // The number of fields in the message
+    //
+    private int count_ ;
+
+    //
+    // If true, fields were dropped because the message was full
+    //
+    private boolean truncated_ ;
+
+    /// \brief create a new set of fields
+    /// \param capacity the maximum number of fields in a message
+    public MessageFields(final int capacity) {
+        kinds_ = new byte[capacity] ;
+        names_ = new String[capacity] ;
+        values_ = new long[capacity] ;
+        strings_ = new String[capacity] ;
+        count_ = 0 ;
+        truncated_ = false ;
+    }
+
+    /// \brief remove all fields
+    public void clear() {
+        for(int i = 0 ; i < count_ ; i++) {
+            names_[i] = null ;
+            strings_[i] = null ;
+        }
+        count_ = 0 ;
+        truncated_ = false ;
+    }
+
+    /// \brief copy the fields from another set of fields
+    /// \param other the fields to copy
+    public void copyFrom(final MessageFields other) {
+        clear() ;
+
+        final int count = Math.min(other.count_, kinds_.length) ;
+        System.arraycopy(other.kinds_, 0, kinds_, 0, count) ;
+        System.arraycopy(other.names_, 0, names_, 0, count) ;
+        System.arraycopy(other.values_, 0, values_, 0, count) ;
+        System.arraycopy(other.strings_, 0, strings_, 0, count) ;
+        count_ = count ;
+        truncated_ = other.truncated_ || count < other.count_ ;
+    }
+
+    /// \brief returns the number of fields
+    /// \returns the number of fields
+    public int size() {
+        return count_ ;
+    }
+
+    /// \brief returns true if fields were dropped because the message was full
+    /// \returns true if fields were dropped
+    public boolean isTruncated() {
+        return truncated_ ;
+    }
+
+    /// \brief returns the kind of a field
+    /// \param index the index of the field
+    /// \returns the kind of a field
+    public Kind getKind(final int index) {
+        return Kinds[kinds_[index]] ;
+    }
+
+    /// \brief returns the name of a field
+    /// \param index the index of the field
+    /// \returns the name of the field, or null if the field has no name
+    public String getName(final int index) {
+        return names_[index] ;
+    }
+
+    /// \brief returns the value of an Integer, Long, Char, or Boolean field
+    /// \param index the index of the field
+    /// \returns the value of the field, booleans are 1 for true and 0 for false
+    public long getLong(final int index) {
+        return values_[index] ;
+    }
+
+    /// \brief returns the value of a Double or Float field
+    /// \param index the index of the field
+    /// \returns the value of the field
+    public double getDouble(final int index) {
+        if (kinds_[index] == Kind.Float.ordinal())
+            return Float.intBitsToFloat((int)values_[index]) ;
+
+        return Double.longBitsToDouble(values_[index]) ;
+    }
+
+    /// \brief returns the value of a String or Quoted field
+    /// \param index the index of the field
+    /// \returns the value of the field
+    public String getString(final int index) {
+        return strings_[index] ;
+    }
+
+    /// \brief add a field with a numeric value
+    /// \param kind the kind of field
+    /// \param name the name of the field, or null
+    /// \param value the value of the field
+    public void add(final Kind kind, final String name, final long value) {
+        if (count_ == kinds_.length) {
+            truncated_ = true ;
+            return ;
+        }
+
+        kinds_[count_] = (byte)kind.ordinal() ;
+        names_[count_] = name ;
+        values_[count_] = value ;
+        count_++ ;
+    }
+
+    /// \brief add a field with a string value
+    /// \param kind the kind of field
+    /// \param name the name of the field, or null
+    /// \param value the value of the field
+    public void add(final Kind kind, final String name, final String value) {
+        if (count_ == kinds_.length) {
+            truncated_ = true ;
+            return ;
+        }
+
+        kinds_[count_] = (byte)kind.ordinal() ;
+        names_[count_] = name ;
+        strings_[count_] = value ;
+        count_++ ;
+    }
+
+    /// \brief add a double field
+    /// \param name the name of the field, or null
+    /// \param value the value of the field
+    public void add(final String name, final double value) {
+        add(Kind.Double, name, Double.doubleToRawLongBits(value)) ;
+    }
+
+    /// \brief add a float field
+    /// \param name the name of the field, or null
+    /// \param value the value of the field
+    public void add(final String name, final float value) {
+        add(Kind.Float, name, Float.floatToRawIntBits(value)) ;
+    }
+
+    /// \brief append the text form of the fields, exactly as the MessageLogger would display them
+    /// \param bld the string builder to append to
+    public void appendText(final StringBuilder bld) {
+        for(int i = 0 ; i < count_ ; i++) {
+            final Kind kind = getKind(i) ;
+
+            if (kind == Kind.Text) {
+                bld.append(names_[i]) ;
+                continue ;
+            }
+
+            if (names_[i] != null) {
+                bld.append(" ").append(names_[i]).append(" = ") ;
+            }
+
+            switch(kind) {
+                case Quoted:
+                    bld.append("'").append(strings_[i]).append("'") ;
+                    break ;
+                case String:
+                    bld.append(strings_[i]) ;
+                    break ;
+                case Char:
+                    bld.append((char)values_[i]) ;
+                    break ;
+                case Integer:
+                case Long:
+                    bld.append(values_[i]) ;
+                    break ;
+                case Float:
+                    bld.append(Float.intBitsToFloat((int)values_[i])) ;
+                    break ;
+                case Double:
+                    bld.append(Double.longBitsToDouble(values_[i])) ;
+                    break ;
+                case Boolean:
+                    bld.append(values_[i] != 0) ;
+                    break ;
+                default:
+                    break ;
+            }
+        }
+    }
+}
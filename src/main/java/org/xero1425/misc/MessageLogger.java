@@ -2,9 +2,16 @@
 package org.xero1425.misc;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
-import java.text.DecimalFormat;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.ArrayList ;
 
 /// \file
@@ -23,81 +30,138 @@ import java.util.ArrayList ;
 /// console, and to a file located on a USB thumb drive on the robo rio.  Any optional time source can be registered
 /// with the message logger.  If a time source is registered, each message is tagged with the current time stamp.  
 /// The MessageLogger is thread safe and can be used with multiple threads concurrently.
+///
+/// Each thread builds its message in a per thread buffer that is reused from message to message, so no
+/// lock is taken and no memory is allocated while a message is being built.  When a message is ended, it is
+/// copied into a fixed size lock free ring of records.  The ring is drained to the destinations by whichever
+/// thread ends a message while no other thread is draining, so a thread never waits on another thread that
+/// is logging.  If the ring is full and cannot be drained, the message is dropped and counted.
+///
+/// Messages can also be sent to MessageDataDestination objects, which receive the message as the typed fields
+/// that were added to it rather than as text.  If there are no MessageDestination objects, the text of the
+/// message is never built.
 public final class MessageLogger
 {
     // The per thread data for the logger
-    private Map<Long, ThreadData> per_thread_data_ ;
+    private final ThreadLocal<ThreadData> per_thread_data_ ;
+
+    // The ring of completed messages waiting to be sent to the destinations
+    private final MessageRing ring_ ;
+
+    // If true, some thread is currently draining the ring to the destinations
+    private final AtomicBoolean draining_ ;
+
+    // The number of messages dropped because the ring was full
+    private final AtomicLong dropped_ ;
+
+    // The buffer used to build each line sent to the destinations, only used by the draining thread
+    private final StringBuilder line_ ;
 
     // The set of destinations for messages
     private List<MessageDestination> destinations_ ;
 
-    // The set of message types enabled
-    private List<MessageType> enabled_types_ ;
+    // The set of destinations for messages as typed fields
+    private List<MessageDataDestination> data_destinations_ ;
+
+    // The set of message types enabled, one bit per message type ordinal
+    private final AtomicInteger enabled_types_ ;
 
     // The time source for messages
     private MessageTimeSource time_src_ ;
 
-    // This is a mapping from subsystem number to subsystem name
-    private Map<Integer, String> subsystems_ ;
-
-    // The list of enabled subsytems
-    private List<Integer> enabled_subsystems_ ;
-
-    // This is the number for the next subsystem registered
-    private int subsystem_index_ ;
+    // This is a mapping from subsystem number to subsystem name, index 0 is NOSUBSYSTEM
+    private List<String> subsystems_ ;
 
-    // The lock for the serial number
-    private Object lock_ ;
+    // This is a mapping from subsystem name to subsystem number
+    private Map<String, Integer> subsystem_ids_ ;
 
-    // the list of subsystem to be enabled if ethey are created
-    private List<String> to_be_enabled_ ;
+    // The set of enabled subsytems, one bit per logger ID.  The table is only replaced when
+    // registering a subsystem outgrows it, enabling and disabling only flips bits.
+    private volatile AtomicLongArray enabled_subsystems_ ;
 
-    // the format for the time value
-    private DecimalFormat format_ ;
+    // the set of subsystem names to be enabled, including those not yet registered
+    private Set<String> to_be_enabled_ ;
 
     // Serial number for each message
-    static int global_serial_ = 1 ;
+    static AtomicInteger global_serial_ = new AtomicInteger(1) ;
 
     public static final int NOSUBSYSTEM = 0 ;
 
+    // The number of completed messages the ring can hold, must be a power of two
+    private static final int RingSize = 1024 ;
+
+    // The initial size of the per thread and per record message buffers
+    private static final int MessageBufferSize = 256 ;
+
+    // The maximum number of fields in a message sent to a data destination
+    private static final int MessageFieldCount = 64 ;
+
+    // The number of logger IDs the enabled table holds initially
+    private static final int InitialLoggerIDs = 256 ;
+
     /// \brief Create a new message logger object
     public MessageLogger()
     {
-        subsystems_ = new HashMap<Integer, String>() ;
-        subsystem_index_ = 1 ;
+        subsystems_ = new ArrayList<String>() ;
+        subsystems_.add(null) ;
+        subsystem_ids_ = new HashMap<String, Integer>() ;
         time_src_ = null ;
         destinations_ = new ArrayList<MessageDestination>() ;
-        per_thread_data_ = new HashMap<Long, ThreadData>() ;
-
-        enabled_types_ = new ArrayList<MessageType>() ;
-        enabled_types_.add(MessageType.Debug) ;
-        enabled_types_.add(MessageType.Info) ;
-        enabled_types_.add(MessageType.Warning) ;
-        enabled_types_.add(MessageType.Error) ;
-        enabled_types_.add(MessageType.Fatal) ;
+        data_destinations_ = new ArrayList<MessageDataDestination>() ;
+        per_thread_data_ = ThreadLocal.withInitial(() -> new ThreadData()) ;
 
-        enabled_subsystems_ = new ArrayList<Integer>() ;
-        to_be_enabled_ = new ArrayList<String>() ;
+        ring_ = new MessageRing(RingSize) ;
+        draining_ = new AtomicBoolean(false) ;
+        dropped_ = new AtomicLong(0) ;
+        line_ = new StringBuilder(MessageBufferSize) ;
 
-        lock_ = new Object() ;
+        enabled_types_ = new AtomicInteger((1 << MessageType.values().length) - 1) ;
 
-        format_ = new DecimalFormat("000.0000") ;
+        enabled_subsystems_ = new AtomicLongArray(InitialLoggerIDs / 64) ;
+        to_be_enabled_ = new HashSet<String>() ;
     }
 
     /// \brief register a new subsystem with the message logger
+    /// Logger IDs are handed out densely starting at one.  Registering a name that is already
+    /// registered returns the same ID.
     /// \param name the name of the subsystem
     /// \returns the message ID handle for messages
-    public int registerSubsystem(final String name) {
-        final int index = subsystem_index_++;
-        subsystems_.put(index, name);
+    public synchronized int registerSubsystem(final String name) {
+        final Integer existing = subsystem_ids_.get(name) ;
+        if (existing != null)
+            return existing ;
+
+        final int index = subsystems_.size() ;
+        subsystems_.add(name) ;
+        subsystem_ids_.put(name, index) ;
+
+        if (index >= enabled_subsystems_.length() * 64) {
+            final AtomicLongArray bigger = new AtomicLongArray(enabled_subsystems_.length() * 2) ;
+            for(int i = 0 ; i < enabled_subsystems_.length() ; i++)
+                bigger.set(i, enabled_subsystems_.get(i)) ;
+            enabled_subsystems_ = bigger ;
+        }
 
-        if (to_be_enabled_.contains(name)) {
+        if (to_be_enabled_.contains(name))
             enableLoggerID(index) ;
-            to_be_enabled_.remove(name) ;
-        }
+
         return index;
     }
 
+    /// \brief returns the logger ID for a subsystem name
+    /// \param name the name of the subsystem
+    /// \returns the logger ID for the subsystem, or -1 if no subsystem has the name given
+    public synchronized int getLoggerID(final String name) {
+        final Integer id = subsystem_ids_.get(name) ;
+        return (id == null) ? -1 : id ;
+    }
+
+    /// \brief returns the names of all registered subsystems
+    /// \returns the names of all registered subsystems, in logger ID order
+    public synchronized List<String> getSubsystemNames() {
+        return new ArrayList<String>(subsystems_.subList(1, subsystems_.size())) ;
+    }
+
     /// \brief register a time source to return time to the message logger
     /// \param src an object that can provide time, must be derived from the MessageTimeSource class
     public void setTimeSource(final MessageTimeSource src) {
@@ -107,6 +171,7 @@ public final class MessageLogger
     /// \brief clear all message destinations
     public void clear() {
         destinations_.clear();
+        data_destinations_.clear();
     }
 
     /// \brief add a new message destination
@@ -115,101 +180,160 @@ public final class MessageLogger
         destinations_.add(d);
     }
 
+    /// \brief add a new destination that receives messages as typed fields
+    /// This should be called before messages are logged, as it allocates the storage
+    /// for the fields of each message waiting to be sent to the destinations.
+    /// \param d the new message destination
+    public void addDataDestination(final MessageDataDestination d) {
+        ring_.allocateFields(MessageFieldCount) ;
+        data_destinations_.add(d);
+    }
+
+    /// \brief returns the number of messages dropped because the message ring was full
+    /// \returns the number of messages dropped
+    public long getDroppedMessageCount() {
+        return dropped_.get() ;
+    }
+
+    /// \brief send all completed messages to the destinations
+    /// This method waits for any other thread that is draining messages to finish, so it
+    /// should not be called from the robot loop.  It is used when the robot code is shutting
+    /// down to be sure all messages have reached the destinations.
+    public void flush() {
+        while (!ring_.isEmpty()) {
+            if (!drain())
+                Thread.yield() ;
+        }
+    }
+
     /// \brief enable a given message type
     /// \param mt the message type to enable
     public void enableMessageType(final MessageType mt) {
-        if (!enabled_types_.contains(mt))
-            enabled_types_.add(mt);
+        final int bit = 1 << mt.ordinal() ;
+        int mask ;
+        do {
+            mask = enabled_types_.get() ;
+        } while (!enabled_types_.compareAndSet(mask, mask | bit)) ;
     }
 
     /// \brief disable a given message type
     /// \param mt the message type to disable
     public void disableMessageType(final MessageType mt) {
-        if (enabled_types_.contains(mt))
-            enabled_types_.remove(mt);
+        final int bit = 1 << mt.ordinal() ;
+        int mask ;
+        do {
+            mask = enabled_types_.get() ;
+        } while (!enabled_types_.compareAndSet(mask, mask & ~bit)) ;
     }
 
     /// \brief returns true if a given message type is enabled
     /// \returns true if a given message type is enabled
     public boolean isTypeEnabled(final MessageType mt) {
-        return enabled_types_.contains(mt);
+        return (enabled_types_.get() & (1 << mt.ordinal())) != 0 ;
     }
 
     /// \brief enable the messages associated with a given subsystem message hangle
+    /// This can be called from any thread while messages are being logged.
     /// \param handle the handle for a given subsystem
-    private void enableLoggerID(final int handle) {
-        if (!enabled_subsystems_.contains(handle))
-            enabled_subsystems_.add(handle);
+    public void enableLoggerID(final int handle) {
+        setLoggerIDBit(handle, true) ;
     }
 
     /// \brief disable messages given a logger id
+    /// This can be called from any thread while messages are being logged.
     /// \param handle the handle for a given subsystem
     public void disableLoggerID(final int handle) {
-        if (enabled_subsystems_.contains(handle))
-            enabled_subsystems_.remove(handle);
+        setLoggerIDBit(handle, false) ;
     }
 
     /// \brief returns true if the given logger ID is enabled
     /// \param handle the handle to check to see if its enabled
     /// \returns true if the given logger ID is enabled
     public boolean isLoggerIDEnabled(final int handle) {
-        return enabled_subsystems_.contains(handle);
+        final AtomicLongArray table = enabled_subsystems_ ;
+        if (handle <= 0 || handle >= table.length() * 64)
+            return false ;
+
+        return (table.get(handle >> 6) & (1L << (handle & 63))) != 0 ;
+    }
+
+    /// \brief returns true if a message of the given type and logger ID would be displayed
+    /// This is a cheap check that can be used to skip the work of computing the values for a
+    /// message that will not be displayed.
+    /// \param mtype the type of message
+    /// \param handle the logger ID for the message
+    /// \returns true if a message of the given type and logger ID would be displayed
+    public boolean isEnabled(final MessageType mtype, final int handle) {
+        return (enabled_types_.get() & (1 << mtype.ordinal())) != 0 && subsystemEnabled(handle) ;
+    }
+
+    /// \brief log a message whose contents are only computed if the message is enabled
+    /// The body is called with this logger and the argument given to add the contents of the message,
+    /// only if the message would be displayed.  If the body only refers to its arguments, the lambda
+    /// is created once and a disabled message costs a single check with no memory allocated.
+    /// \param mtype the type of message
+    /// \param handle the logger ID for the message
+    /// \param arg the argument passed to the body, usually the object that owns the values logged
+    /// \param body the function that adds the contents of the message
+    public <T> void logMessage(final MessageType mtype, final int handle, final T arg, final BiConsumer<MessageLogger, T> body) {
+        if (!isEnabled(mtype, handle))
+            return ;
+
+        startMessage(mtype, handle) ;
+        body.accept(this, arg) ;
+        endMessage() ;
+    }
+
+    /// \brief log a message whose contents are only computed if the message is enabled
+    /// The body is called with this logger to add the contents of the message, only if the message
+    /// would be displayed.  Note, a lambda that captures local variables or this is created on
+    /// every call, use the form that takes an argument for messages logged every robot loop.
+    /// \param mtype the type of message
+    /// \param handle the logger ID for the message
+    /// \param body the function that adds the contents of the message
+    public void logMessage(final MessageType mtype, final int handle, final Consumer<MessageLogger> body) {
+        if (!isEnabled(mtype, handle))
+            return ;
+
+        startMessage(mtype, handle) ;
+        body.accept(this) ;
+        endMessage() ;
     }
 
     /// \brief enable messages for a given subsystem
+    /// The subsystem does not need to be registered yet, it is enabled when it is registered.
     /// \param the name of the subsystem to enable
     /// \returns true if the messages are enabled sucessfully
-    public boolean enableSubsystem(final String name) {
-        boolean ret = true;
-
-        for (final Integer key : subsystems_.keySet()) {
-            final String subname = subsystems_.get(key);
-            if (subname == name) {
-                enableLoggerID(key);
-                ret = true;
-                break;
-            }
-        }
+    public synchronized boolean enableSubsystem(final String name) {
+        to_be_enabled_.add(name) ;
 
-        if (!to_be_enabled_.contains(name))
-            to_be_enabled_.add(name) ;
+        final Integer id = subsystem_ids_.get(name) ;
+        if (id != null)
+            enableLoggerID(id) ;
 
-        return ret;
+        return true;
     }
 
     /// \brief disable messages for a given subsystem
     /// \param the name of the subsystem to disable
     /// \returns true if the messages are disabled sucessfully
-    public boolean disableSubsystem(final String name) {
-        boolean ret = false;
-
-        for (final Integer key : subsystems_.keySet()) {
-            final String subname = subsystems_.get(key);
-            if (subname == name) {
-                disableLoggerID(key);
-                ret = true;
-                break;
-            }
-        }
+    public synchronized boolean disableSubsystem(final String name) {
+        to_be_enabled_.remove(name) ;
+
+        final Integer id = subsystem_ids_.get(name) ;
+        if (id == null)
+            return false ;
 
-        return ret;
+        disableLoggerID(id) ;
+        return true;
     }
 
     /// \brief returns true if the subsystem given is enabled
     /// \param name the name of the subsystem to check for enabled
     /// \returns true if the subsystem given is enabled
-    public boolean isSubsystemEnabled(final String name) {
-        boolean ret = false;
-
-        for (final Integer key : subsystems_.keySet()) {
-            final String subname = subsystems_.get(key);
-            if (subname == name) {
-                ret = isLoggerIDEnabled(key);
-                break;
-            }
-        }
-
-        return ret;
+    public synchronized boolean isSubsystemEnabled(final String name) {
+        final Integer id = subsystem_ids_.get(name) ;
+        return id != null && isLoggerIDEnabled(id) ;
     }
 
     /// \brief start a new message
@@ -217,24 +341,38 @@ public final class MessageLogger
     /// \param subsystem the module or subsystem that is displaying the message
     /// \returns a reference to the message logger object
     public MessageLogger startMessage(final MessageType mtype, final int subsystem) {
-        final ThreadData per = getPerThreadData();
+        final ThreadData per = per_thread_data_.get();
 
         if (per.in_message_) {
             //
             // We have a nested message, someone forgot to close off the current
             // message.
             //
-            per.message_.append(" DID NOT CALL ENDMESSAGE, serial = ") ;
-            per.message_.append(per.serial_) ;
+            add(" DID NOT CALL ENDMESSAGE, serial = ") ;
+            add(per.serial_) ;
             endMessage();
         }
 
-        per.serial_ = getSerial() ;
         per.in_message_ = true;
-        per.message_ = new StringBuilder(80) ;
         per.type_ = mtype;
         per.subsystem_ = subsystem;
-        per.enabled_ = enabled_types_.contains(per.type_) && subsystemEnabled(per.subsystem_) ;
+        per.enabled_ = isEnabled(mtype, subsystem) ;
+        if (!per.enabled_) {
+            //
+            // Nothing added to this message will be displayed, so skip the rest
+            //
+            return this ;
+        }
+
+        per.serial_ = getSerial() ;
+        per.message_.setLength(0) ;
+        per.text_ = !destinations_.isEmpty() ;
+        per.data_ = !data_destinations_.isEmpty() ;
+        if (per.data_) {
+            if (per.fields_ == null)
+                per.fields_ = new MessageFields(MessageFieldCount) ;
+            per.fields_.clear() ;
+        }
 
         return this;
     }
@@ -246,80 +384,41 @@ public final class MessageLogger
         return startMessage(mtype, NOSUBSYSTEM);
     }
 
-    private void outputMessage(final ThreadData per)
-    {
-        String timestr ;
-        String typestr ;
-        String substr ;
-
-        if (time_src_ == null) {
-            timestr = "???.????";
-        } else {
-            timestr = format_.format(time_src_.getTime()) ;
-        }
-
-        typestr = ": " + per.type_.toString() + ": "  ;
-
-        if (per.subsystem_ == 0)
-        {
-            substr = "global: ";
-        }
-        else
-        {
-            String subname = subsystems_.get(per.subsystem_) ;
-            if (subname != null)
-                substr = subname + ": " ;
-            else
-                substr = "missing(" + per.subsystem_ + "): " ;
-        }
-
-        StringBuilder bld = new StringBuilder() ;
-        for(int i = 0 ; i < timestr.length() + typestr.length() ; i++)
-            bld.append(' ') ;
-        String spaces = bld.toString() ;
-
-        String[] lines = per.message_.toString().split("\n") ;
-        boolean first = true ;
-        for(String line : lines) {
-            String msg ;
-
-            if (first)
-                msg = timestr + typestr + substr + line ;
-            else
-                msg = spaces + substr + line ;
-
-            for (final MessageDestination dest : destinations_) {
-                dest.displayMessage(per.type_, per.subsystem_, msg);
-            }
-
-            first = false ;
-        }
-    }
-
     /// \brief ends the current message
     /// This method ends the current message and displays the message if the filter tests
     /// allow the message to be displayed.  The message is displayed by passing to each of
     /// the MessageDestination objects registered.
     public void endMessage() {
-        final ThreadData per = getPerThreadData();
+        final ThreadData per = per_thread_data_.get();
 
         if (!per.in_message_)
             return;
 
-        if (per.message_.length() > 0) {
-            if (enabled_types_.contains(per.type_) && subsystemEnabled(per.subsystem_)) {
-                outputMessage(per) ;
+        if (per.enabled_ && (per.message_.length() > 0 || (per.data_ && per.fields_.size() > 0))) {
+            double now = (time_src_ == null) ? Double.NaN : time_src_.getTime() ;
+            if (!ring_.publish(per, now)) {
+                //
+                // The ring is full, try to empty it ourselves and then give it one more
+                // chance.  If some other thread is draining, we just drop the message.
+                //
+                drain() ;
+                if (!ring_.publish(per, now))
+                    dropped_.incrementAndGet() ;
             }
+            drain() ;
         }
 
         if (per.type_ == MessageType.Fatal) {
+            flush() ;
             for (final MessageDestination dest : destinations_) {                
                 dest.displayMessage(per.type_, per.subsystem_, "fatal error occurred - code aborting") ;
             }
             System.exit(-2);
         }
 
-        per.message_ = null ;
+        per.message_.setLength(0) ;
+        if (per.fields_ != null)
+            per.fields_.clear() ;
         per.subsystem_ = 0;
         per.in_message_ = false;
     }
@@ -328,9 +427,13 @@ public final class MessageLogger
     /// \param str the string to add
     /// \returns the MessageLogger object
     public MessageLogger add(final String str) {
-        final ThreadData per = getPerThreadData();
-        if (per.enabled_ && per.in_message_)
-            per.message_.append(str) ;
+        final ThreadData per = per_thread_data_.get();
+        if (per.enabled_ && per.in_message_) {
+            if (per.text_)
+                per.message_.append(str) ;
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Text, str, 0) ;
+        }
         return this;
     }
 
@@ -339,12 +442,16 @@ public final class MessageLogger
     /// \param value the value to add
     /// \returns the MessageLogger object
     public MessageLogger add(final String name, final double value) {
-        final ThreadData per = getPerThreadData();
+        final ThreadData per = per_thread_data_.get();
         if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(value) ;
+            if (per.text_) {
+                per.message_.append(" ") ;
+                per.message_.append(name) ;
+                per.message_.append(" = ") ;
+                per.message_.append(value) ;
+            }
+            if (per.data_)
+                per.fields_.add(name, value) ;
         }
 
         return this;        
@@ -355,12 +462,16 @@ public final class MessageLogger
     /// \param value the value to add
     /// \returns the MessageLogger object
     public MessageLogger add(final String name, final int value) {
-        final ThreadData per = getPerThreadData();
+        final ThreadData per = per_thread_data_.get();
         if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(value) ;
+            if (per.text_) {
+                per.message_.append(" ") ;
+                per.message_.append(name) ;
+                per.message_.append(" = ") ;
+                per.message_.append(value) ;
+            }
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Integer, name, value) ;
         }
 
         return this;        
@@ -371,12 +482,16 @@ public final class MessageLogger
     /// \param value the value to add
     /// \returns the MessageLogger object    
     public MessageLogger add(final String name, final boolean value) {
-        final ThreadData per = getPerThreadData();
+        final ThreadData per = per_thread_data_.get();
         if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(value) ;
+            if (per.text_) {
+                per.message_.append(" ") ;
+                per.message_.append(name) ;
+                per.message_.append(" = ") ;
+                per.message_.append(value) ;
+            }
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Boolean, name, value ? 1 : 0) ;
         }
 
         return this;        
@@ -387,12 +502,16 @@ public final class MessageLogger
     /// \param value the value to add
     /// \returns the MessageLogger object    
     public MessageLogger add(final String name, final String value) {
-        final ThreadData per = getPerThreadData();
+        final ThreadData per = per_thread_data_.get();
         if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(value) ;
+            if (per.text_) {
+                per.message_.append(" ") ;
+                per.message_.append(name) ;
+                per.message_.append(" = ") ;
+                per.message_.append(value) ;
+            }
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.String, name, value) ;
         }
 
         return this;        
@@ -402,12 +521,16 @@ public final class MessageLogger
     /// \param str the string to add
     /// \returns the MessageLogger object  
     public MessageLogger addQuoted(final String str) {
-        final ThreadData per = getPerThreadData();
+        final ThreadData per = per_thread_data_.get();
         if (per.enabled_&& per.in_message_)
         {
-            per.message_.append("'") ;
-            per.message_.append(str) ;
-            per.message_.append("'") ;
+            if (per.text_) {
+                per.message_.append("'") ;
+                per.message_.append(str) ;
+                per.message_.append("'") ;
+            }
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Quoted, null, str) ;
         }
 
         return this;
@@ -417,9 +540,13 @@ public final class MessageLogger
     /// \param str the character to add
     /// \returns the MessageLogger object  
     public MessageLogger add(final char ch) {
-        final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_)
-            per.message_.append(ch) ;
+        final ThreadData per = per_thread_data_.get();
+        if (per.enabled_&& per.in_message_) {
+            if (per.text_)
+                per.message_.append(ch) ;
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Char, null, ch) ;
+        }
 
         return this;        
     }
@@ -428,9 +555,13 @@ public final class MessageLogger
     /// \param str the integer to add
     /// \returns the MessageLogger object     
     public MessageLogger add(final int value) {
-        final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+        final ThreadData per = per_thread_data_.get();
+        if (per.enabled_&& per.in_message_) {
+            if (per.text_)
+                per.message_.append(value) ;
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Integer, null, value) ;
+        }
 
         return this;
     }
@@ -439,9 +570,13 @@ public final class MessageLogger
     /// \param str the value to add
     /// \returns the MessageLogger object     
     public MessageLogger add(final long value) {
-        final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+        final ThreadData per = per_thread_data_.get();
+        if (per.enabled_&& per.in_message_) {
+            if (per.text_)
+                per.message_.append(value) ;
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Long, null, value) ;
+        }
 
         return this;
     }
@@ -450,9 +585,13 @@ public final class MessageLogger
     /// \param str the value to add
     /// \returns the MessageLogger object     
     public MessageLogger add(final boolean value) {
-        final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+        final ThreadData per = per_thread_data_.get();
+        if (per.enabled_&& per.in_message_) {
+            if (per.text_)
+                per.message_.append(value) ;
+            if (per.data_)
+                per.fields_.add(MessageFields.Kind.Boolean, null, value ? 1 : 0) ;
+        }
 
         return this;
     }
@@ -461,9 +600,13 @@ public final class MessageLogger
     /// \param str the value to add
     /// \returns the MessageLogger object     
     public MessageLogger add(final double value) {
-        final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+        final ThreadData per = per_thread_data_.get();
+        if (per.enabled_&& per.in_message_) {
+            if (per.text_)
+                per.message_.append(value) ;
+            if (per.data_)
+                per.fields_.add(null, value) ;
+        }
 
         return this;
     }
@@ -472,39 +615,181 @@ public final class MessageLogger
     /// \param str the value to add
     /// \returns the MessageLogger object     
     public MessageLogger add(final float value) {
-        final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+        final ThreadData per = per_thread_data_.get();
+        if (per.enabled_&& per.in_message_) {
+            if (per.text_)
+                per.message_.append(value) ;
+            if (per.data_)
+                per.fields_.add(null, value) ;
+        }
 
         return this;
     }
 
-    static private /* synchronized */ int getSerial() {
-        return global_serial_++ ;
+    static private int getSerial() {
+        return global_serial_.getAndIncrement() ;
     }
 
     private boolean subsystemEnabled(final int sub) {
-        return sub == NOSUBSYSTEM || enabled_subsystems_.contains(sub);
+        return sub == NOSUBSYSTEM || isLoggerIDEnabled(sub) ;
     }
 
-    private ThreadData getPerThreadData() {
-        ThreadData per = null;
+    private void setLoggerIDBit(final int handle, final boolean enabled) {
+        final AtomicLongArray table = enabled_subsystems_ ;
+        if (handle <= 0 || handle >= table.length() * 64)
+            return ;
+
+        final int word = handle >> 6 ;
+        final long bit = 1L << (handle & 63) ;
+        long value ;
+        do {
+            value = table.get(word) ;
+        } while (!table.compareAndSet(word, value, enabled ? (value | bit) : (value & ~bit))) ;
+    }
+
+    private String getSubsystemName(final int sub) {
+        return (sub > 0 && sub < subsystems_.size()) ? subsystems_.get(sub) : null ;
+    }
 
-        synchronized(lock_) {
-            final long id = Thread.currentThread().getId();
-            if (per_thread_data_.containsKey(id))
-            {
-                per = per_thread_data_.get(id) ;
+    //
+    // Send all of the messages in the ring to the destinations.  If another thread is already
+    // draining the ring, this returns false immediately and the other thread sends our messages.
+    //
+    private boolean drain() {
+        boolean ret = false ;
+
+        do {
+            if (!draining_.compareAndSet(false, true))
+                return ret ;
+
+            try {
+                MessageRecord rec ;
+                while ((rec = ring_.peek()) != null) {
+                    if (rec.text_.length() > 0)
+                        outputMessage(rec) ;
+                    if (rec.fields_ != null && rec.fields_.size() > 0)
+                        outputData(rec) ;
+                    ring_.release() ;
+                }
             }
-            else
-            {
-                per = new ThreadData() ;
-                per.in_message_ = false ;
-                per_thread_data_.put(id, per) ;
+            finally {
+                draining_.set(false) ;
             }
+            ret = true ;
+
+            //
+            // A message may have been published after we found the ring empty but before we
+            // released the draining flag, in which case its owner saw us draining and left it
+            // for us.  Check again so it is not stranded until the next message.
+            //
+        } while (!ring_.isEmpty()) ;
+
+        return ret ;
+    }
+
+    private void outputMessage(final MessageRecord rec)
+    {
+        outputLines(line_, rec.time_, rec.type_, rec.subsystem_, getSubsystemName(rec.subsystem_), rec.text_, destinations_) ;
+    }
+
+    //
+    // Split the text of a message into lines, add the time, type, and subsystem prefix to each
+    // line, and send each line to the destinations given.  The line buffer is reused for each line.
+    //
+    static void outputLines(final StringBuilder line, final double time, final MessageType type, final int subsystem,
+                            final String subname, final CharSequence text, final List<MessageDestination> dests)
+    {
+        int start = 0 ;
+        int prefix = 0 ;
+        boolean first = true ;
+
+        while (true) {
+            int end = start ;
+            while (end < text.length() && text.charAt(end) != '\n')
+                end++ ;
+
+            line.setLength(0) ;
+            if (first) {
+                if (Double.isNaN(time))
+                    line.append("???.????") ;
+                else
+                    appendTime(line, time) ;
+
+                line.append(": ").append(type.toString()).append(": ") ;
+                prefix = line.length() ;
+            }
+            else {
+                for(int i = 0 ; i < prefix ; i++)
+                    line.append(' ') ;
+            }
+
+            appendSubsystem(line, subsystem, subname) ;
+            line.append(text, start, end) ;
+
+            final String msg = line.toString() ;
+            for (final MessageDestination dest : dests) {
+                dest.displayMessage(type, subsystem, msg);
+            }
+
+            if (end >= text.length() - 1)
+                break ;
+
+            start = end + 1 ;
+            first = false ;
         }
+    }
 
-        return per ;
+    private void outputData(final MessageRecord rec)
+    {
+        final String subname = getSubsystemName(rec.subsystem_) ;
+        for (final MessageDataDestination dest : data_destinations_) {
+            dest.displayData(rec.type_, rec.subsystem_, subname, rec.time_, rec.fields_);
+        }
+    }
+
+    //
+    // Append the subsystem part of the prefix for a line of a message
+    //
+    static void appendSubsystem(final StringBuilder line, final int subsystem, final String subname) {
+        if (subsystem == NOSUBSYSTEM)
+        {
+            line.append("global: ") ;
+        }
+        else
+        {
+            if (subname != null)
+                line.append(subname).append(": ") ;
+            else
+                line.append("missing(").append(subsystem).append("): ") ;
+        }
+    }
+
+    //
+    // Append the time in the form 000.0000 without using a DecimalFormat, which allocates
+    //
+    static void appendTime(final StringBuilder line, final double time) {
+        long ticks = Math.round(time * 10000.0) ;
+        if (ticks < 0) {
+            line.append('-') ;
+            ticks = -ticks ;
+        }
+
+        final long whole = ticks / 10000 ;
+        final long frac = ticks % 10000 ;
+
+        if (whole < 100)
+            line.append('0') ;
+        if (whole < 10)
+            line.append('0') ;
+        line.append(whole).append('.') ;
+
+        if (frac < 1000)
+            line.append('0') ;
+        if (frac < 100)
+            line.append('0') ;
+        if (frac < 10)
+            line.append('0') ;
+        line.append(frac) ;
     }
 
     private class ThreadData
@@ -513,8 +798,116 @@ public final class MessageLogger
         public boolean enabled_ ;
         public MessageType type_ ;
         public int subsystem_ ;
-        public StringBuilder message_ ;
+        public StringBuilder message_ = new StringBuilder(MessageBufferSize) ;
+        public MessageFields fields_ ;
+        public boolean text_ ;
+        public boolean data_ ;
         public int serial_ ;
     } ;
 
-}
\ No newline at end of file
+    //
+    // A completed message waiting in the ring to be sent to the destinations
+    //
+    private static class MessageRecord
+    {
+        public MessageType type_ ;
+        public int subsystem_ ;
+        public int serial_ ;
+        public double time_ ;
+        public final StringBuilder text_ = new StringBuilder(MessageBufferSize) ;
+        public MessageFields fields_ ;
+    } ;
+
+    //
+    // A bounded, lock free ring of message records.  Any number of threads may publish
+    // records.  Only one thread at a time may peek and release records, which the logger
+    // guarantees with the draining flag.  Each slot carries a sequence number that tells a
+    // publisher when the slot is free and the consumer when the slot is full, so neither
+    // side ever needs a lock.  The records and their buffers are allocated once, up front.
+    //
+    private static class MessageRing
+    {
+        private final MessageRecord[] records_ ;
+        private final AtomicLongArray sequence_ ;
+        private final AtomicLong tail_ ;
+        private final AtomicLong head_ ;
+        private final int mask_ ;
+
+        MessageRing(int size) {
+            records_ = new MessageRecord[size] ;
+            sequence_ = new AtomicLongArray(size) ;
+            for(int i = 0 ; i < size ; i++) {
+                records_[i] = new MessageRecord() ;
+                sequence_.set(i, i) ;
+            }
+
+            tail_ = new AtomicLong(0) ;
+            head_ = new AtomicLong(0) ;
+            mask_ = size - 1 ;
+        }
+
+        void allocateFields(int count) {
+            for(MessageRecord rec : records_) {
+                if (rec.fields_ == null)
+                    rec.fields_ = new MessageFields(count) ;
+            }
+        }
+
+        boolean publish(ThreadData per, double time) {
+            long pos = tail_.get() ;
+            while (true) {
+                final int slot = (int)(pos & mask_) ;
+                final long diff = sequence_.get(slot) - pos ;
+                if (diff == 0) {
+                    if (tail_.compareAndSet(pos, pos + 1)) {
+                        final MessageRecord rec = records_[slot] ;
+                        rec.type_ = per.type_ ;
+                        rec.subsystem_ = per.subsystem_ ;
+                        rec.serial_ = per.serial_ ;
+                        rec.time_ = time ;
+                        rec.text_.setLength(0) ;
+                        rec.text_.append(per.message_) ;
+                        if (rec.fields_ != null) {
+                            if (per.data_)
+                                rec.fields_.copyFrom(per.fields_) ;
+                            else
+                                rec.fields_.clear() ;
+                        }
+                        sequence_.set(slot, pos + 1) ;
+                        return true ;
+                    }
+                    pos = tail_.get() ;
+                }
+                else if (diff < 0) {
+                    //
+                    // The slot still holds a record from the last trip around the ring, so it is full
+                    //
+                    return false ;
+                }
+                else {
+                    pos = tail_.get() ;
+                }
+            }
+        }
+
+        MessageRecord peek() {
+            final long pos = head_.get() ;
+            final int slot = (int)(pos & mask_) ;
+            if (sequence_.get(slot) != pos + 1)
+                return null ;
+
+            return records_[slot] ;
+        }
+
+        void release() {
+            final long pos = head_.get() ;
+            head_.set(pos + 1) ;
+            sequence_.set((int)(pos & mask_), pos + records_.length) ;
+        }
+
+        boolean isEmpty() {
+            final long pos = head_.get() ;
+            return sequence_.get((int)(pos & mask_)) != pos + 1 ;
+        }
+    } ;
+}
@@ -0,0 +1,78 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief an interface that defines the required functions of a speed profile used to travel a distance
+///
+/// A profile is planned with update() and then queried with the time since update() was called.  The
+/// TrapezoidalProfile has constant acceleration segments and the SCurveProfile limits the jerk, so the
+/// acceleration changes smoothly.
+public interface MotionProfile
+{
+    /// \brief plan a speed profile that covers the distance given, with the start and end velocities as conditions
+    /// \param dist the distance the speed profile should cover
+    /// \param start_velocity the start velocity of the object
+    /// \param end_velocity the end velocity of the object
+    public abstract void update(double dist, double start_velocity, double end_velocity) ;
+
+    /// \brief return the planned distance, velocity, and acceleration for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \param out the object that receives the values
+    public abstract void sample(double t, ProfileSample out) ;
+
+    /// \brief return the planned distance for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \returns the distance for the time of interest
+    public abstract double getDistance(double t) ;
+
+    /// \brief return the planned velocity for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \returns the velocity for the time of interest
+    public abstract double getVelocity(double t) ;
+
+    /// \brief return the planned acceleration for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \returns the acceleration for the time of interest
+    public abstract double getAccel(double t) ;
+
+    /// \brief return the total time for the profile
+    /// \returns the total time for the profile
+    public abstract double getTotalTime() ;
+
+    /// \brief given a distance, return the when that distance will be hit
+    /// \returns the time when a specific distance will be hit.
+    public abstract double getTimeForDistance(double dist) ;
+
+    /// \brief return the maximum velocity in the profile
+    /// \returns the maximum velocity in the profile
+    public abstract double getActualMaxVelocity() ;
+
+    /// \brief return the start velocity for the speed profile
+    /// \returns the start velocity for the speed profile
+    public abstract double getStartVelocity() ;
+
+    /// \brief return the end velocity for the speed profile
+    /// \returns the end velocity for the speed profile
+    public abstract double getEndVelocity() ;
+
+    /// \brief create the profile selected in the settings file
+    /// The type of the profile is found by appending ":type" to the basename.  If the type is "scurve",
+    /// an SCurveProfile is created.  If the type is missing or "trapezoid", a TrapezoidalProfile is created.
+    /// Any other type is reported with a BadParameterValueException.
+    /// \param settings the settings file parser
+    /// \param name the basename used to look up parameters
+    /// \returns the profile
+    public static MotionProfile create(SettingsParser settings, String name)
+                    throws BadParameterTypeException, BadParameterValueException, MissingParameterException {
+        SettingsValue v = settings.getOrNull(name + ":type") ;
+        String type = (v != null) ? v.getString() : "trapezoid" ;
+
+        if (type.equals("scurve"))
+            return new SCurveProfile(settings, name) ;
+
+        if (!type.equals("trapezoid"))
+            throw new BadParameterValueException(name + ":type", type) ;
+
+        return new TrapezoidalProfile(settings, name) ;
+    }
+}
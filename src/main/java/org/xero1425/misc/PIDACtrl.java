@@ -7,7 +7,7 @@ package org.xero1425.misc ;
 /// velocity, and position at regular time steps along a plan.  Both the path following
 /// in the tank drive for the drivebase and the TrapezoidalProfile provide outputs that
 /// are suitable as inputs to this controller.
-public class PIDACtrl
+public class PIDACtrl implements SettingsListener
 {
     //
     // The acceleration feed forward constant
@@ -34,6 +34,19 @@ public class PIDACtrl
     //
     private boolean angle_ ;
 
+    //
+    // The basename of the constants in the settings file, or null if not read from the settings file
+    //
+    private String name_ ;
+
+    //
+    // The handles to the constants in the settings file
+    //
+    private DoubleSetting kv_handle_ ;
+    private DoubleSetting ka_handle_ ;
+    private DoubleSetting kp_handle_ ;
+    private DoubleSetting kd_handle_ ;
+
     //
     // The last error value calculated
     //
@@ -68,11 +81,14 @@ public class PIDACtrl
     /// \param angle if true it is managing an angle between =180 and +180
     public PIDACtrl(SettingsParser settings, String name, boolean angle) 
                     throws BadParameterTypeException, MissingParameterException {
-        kv_ = settings.get(name + ":kv").getDouble() ;
-        ka_ = settings.get(name + ":ka").getDouble() ;
-        kp_ = settings.get(name + ":kp").getDouble() ;
-        kd_ = settings.get(name + ":kd").getDouble() ;
+        kv_handle_ = settings.doubleKey(name + ":kv") ;
+        ka_handle_ = settings.doubleKey(name + ":ka") ;
+        kp_handle_ = settings.doubleKey(name + ":kp") ;
+        kd_handle_ = settings.doubleKey(name + ":kd") ;
+        readSettings() ;
         angle_ = angle ;
+        name_ = name ;
+        settings.addListener(name + ":", this) ;
     }
 
     /// \brief create a new object
@@ -114,6 +130,28 @@ public class PIDACtrl
         return output ;
     }
 
+    /// \brief read the constants again when they change in the settings file
+    /// \param settings the settings parser
+    @Override
+    public void settingsChanged(SettingsParser settings) {
+        readSettings() ;
+    }
+
+    /// \brief reset the controller so it can follow a new motion plan
+    public void reset() {
+        last_error_ = 0.0 ;
+    }
+
+    //
+    // Copy the constants from the handles, which hold the new values when the listeners are told about a change
+    //
+    private void readSettings() {
+        kv_ = kv_handle_.get() ;
+        ka_ = ka_handle_.get() ;
+        kp_ = kp_handle_.get() ;
+        kd_ = kd_handle_.get() ;
+    }
+
     /// \brief returns the V portion of the output value
     /// \returns the V portion of the output value
     public double getVPart() {
@@ -4,7 +4,7 @@ package org.xero1425.misc ;
 
 /// \brief This class implements a classic PIDF controller
 /// More information about this can be found @https://www.xerosw.org/dokuwiki/doku.php?id=software:followers
-public class PIDCtrl
+public class PIDCtrl implements SettingsListener
 {
     //
     // The P constant
@@ -24,6 +24,21 @@ public class PIDCtrl
 
     private double integral_;
 
+    //
+    // The basename of the constants in the settings file, or null if not read from the settings file
+    //
+    private String name_ ;
+
+    //
+    // The handles to the constants in the settings file, in the order kp, ki, kd, kf, min, max, imax
+    //
+    private DoubleSetting[] handles_ ;
+
+    //
+    // The names of the constants, appended to the basename
+    //
+    private static final String[] SettingNames = { ":kp", ":ki", ":kd", ":kf", ":min", ":max", ":imax" } ;
+
     public PIDCtrl(boolean isangle) {
         kp_ = 0 ;
         ki_ = 0 ;
@@ -76,13 +91,38 @@ public class PIDCtrl
     /// \param settings the settings parser
     /// \param name the basename to use to extract params from the settings parser
     public void init(SettingsParser settings, String name)  throws MissingParameterException, BadParameterTypeException {
-        kp_ = settings.get(name + ":kp").getDouble() ;
-        ki_ = settings.get(name + ":ki").getDouble() ;
-        kd_ = settings.get(name + ":kd").getDouble() ;
-        kf_ = settings.get(name + ":kf").getDouble() ;
-        kmin_ = settings.get(name + ":min").getDouble() ;
-        kmax_ = settings.get(name + ":max").getDouble() ;
-        kimax_ = settings.get(name + ":imax").getDouble() ;                                        
+        if (name_ == null || !name_.equals(name)) {
+            DoubleSetting[] handles = new DoubleSetting[SettingNames.length] ;
+            for(int i = 0 ; i < SettingNames.length ; i++)
+                handles[i] = settings.doubleKey(name + SettingNames[i]) ;
+
+            handles_ = handles ;
+            settings.removeListener(this) ;
+            settings.addListener(name + ":", this) ;
+        }
+        name_ = name ;
+        readSettings() ;
+    }
+
+    /// \brief read the constants again when they change in the settings file
+    /// \param settings the settings parser
+    @Override
+    public void settingsChanged(SettingsParser settings) {
+        readSettings() ;
+    }
+
+    //
+    // Copy the constants from the handles.  The handles already hold the new values when the
+    // listeners are told about a change, and reading them does not look up any names.
+    //
+    private void readSettings() {
+        kp_ = handles_[0].get() ;
+        ki_ = handles_[1].get() ;
+        kd_ = handles_[2].get() ;
+        kf_ = handles_[3].get() ;
+        kmin_ = handles_[4].get() ;
+        kmax_ = handles_[5].get() ;
+        kimax_ = handles_[6].get() ;
     }
 
     /// \brief get the output by using variables & performing the PID calculations
@@ -0,0 +1,244 @@
+package org.xero1425.misc;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// \file
+
+/// \brief This class converts a plot file written by PlotFileRecorder to CSV files.
+///
+/// Each time a plot is started in the plot file, a new CSV file is written with the name of the
+/// plot and a sequence number, for example tankdrive-path_1.csv.  The first row of the CSV file
+/// has the column names and each following row has one sample.  A sample for a plot that has ended
+/// is skipped and counted, see getSkippedCount().  A sample for a plot that was never started cannot
+/// be skipped, since the number of columns is not known, so the conversion stops there and the CSV files
+/// already written are kept.  This class can be run from the
+/// command line with the arguments infile [outdir].  If no output directory is given, the CSV files
+/// are written to the directory containing the plot file.
+public class PlotFileConverter
+{
+    //
+    // The directory for the CSV files
+    //
+    private String outdir_ ;
+
+    //
+    // The open CSV files, indexed by plot id
+    //
+    private Map<Integer, Writer> writers_ ;
+
+    //
+    // The number of columns in each open plot, indexed by plot id
+    //
+    private Map<Integer, Integer> columns_ ;
+
+    //
+    // The number of times each plot name has been seen, used to name the CSV files
+    //
+    private Map<String, Integer> counts_ ;
+
+    //
+    // The names of the CSV files written
+    //
+    private List<String> files_ ;
+
+    //
+    // The number of samples skipped because their plot had ended
+    //
+    private int skipped_ ;
+
+    //
+    // A description of the problem that stopped the conversion early, or null
+    //
+    private String stopped_ ;
+
+    /// \brief create a new converter
+    /// \param outdir the directory for the CSV files
+    public PlotFileConverter(String outdir) {
+        outdir_ = outdir ;
+        writers_ = new HashMap<Integer, Writer>() ;
+        columns_ = new HashMap<Integer, Integer>() ;
+        counts_ = new HashMap<String, Integer>() ;
+        files_ = new ArrayList<String>() ;
+        skipped_ = 0 ;
+        stopped_ = null ;
+    }
+
+    /// \brief returns the number of samples skipped because their plot had ended
+    /// \returns the number of samples skipped
+    public int getSkippedCount() {
+        return skipped_ ;
+    }
+
+    /// \brief returns the reason the conversion stopped before the end of the records
+    /// \returns the reason the conversion stopped early, or null if all records were converted
+    public String getStoppedReason() {
+        return stopped_ ;
+    }
+
+    /// \brief convert the contents of a plot file to CSV files
+    /// \param buf the contents of the plot file
+    /// \returns the names of the CSV files written
+    public List<String> convert(ByteBuffer buf) throws IOException {
+        try {
+            if (buf.remaining() < 8 || buf.getInt() != PlotFileRecorder.Magic)
+                throw new IOException("not a plot file") ;
+
+            int version = buf.getInt() ;
+            if (version != PlotFileRecorder.Version)
+                throw new IOException("unsupported plot file version " + Integer.toString(version)) ;
+
+            while (buf.hasRemaining()) {
+                byte tag = buf.get() ;
+                if (tag == PlotFileRecorder.EndTag)
+                    break ;
+
+                switch(tag) {
+                    case PlotFileRecorder.StartTag:
+                        readStart(buf) ;
+                        break ;
+
+                    case PlotFileRecorder.SampleTag:
+                        if (!readSample(buf))
+                            return files_ ;
+                        break ;
+
+                    case PlotFileRecorder.CompleteTag:
+                        closePlot(buf.getInt()) ;
+                        break ;
+
+                    default:
+                        throw new IOException("invalid record tag " + Integer.toString(tag) + " at offset " + Integer.toString(buf.position() - 1)) ;
+                }
+            }
+        }
+        finally {
+            for(Writer w : writers_.values())
+                w.close() ;
+            writers_.clear() ;
+        }
+
+        return files_ ;
+    }
+
+    /// \brief convert a plot file to CSV files
+    /// \param args the command line arguments, infile [outdir]
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: PlotFileConverter infile [outdir]") ;
+            System.exit(1) ;
+        }
+
+        String outdir ;
+        if (args.length == 2) {
+            outdir = args[1] ;
+        }
+        else {
+            File parent = new File(args[0]).getAbsoluteFile().getParentFile() ;
+            outdir = parent.getPath() ;
+        }
+
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(Paths.get(args[0]))) ;
+            PlotFileConverter conv = new PlotFileConverter(outdir) ;
+            for(String name : conv.convert(buf))
+                System.out.println(name) ;
+
+            if (conv.getSkippedCount() > 0)
+                System.err.println("PlotFileConverter: skipped " + Integer.toString(conv.getSkippedCount()) + " samples for plots that had ended") ;
+
+            if (conv.getStoppedReason() != null)
+                System.err.println("PlotFileConverter: stopped early - " + conv.getStoppedReason()) ;
+        }
+        catch(IOException ex) {
+            System.err.println("PlotFileConverter: " + ex.getMessage()) ;
+            System.exit(1) ;
+        }
+    }
+
+    private void readStart(ByteBuffer buf) throws IOException {
+        int id = buf.getInt() ;
+        String name = readString(buf) ;
+        int count = buf.getShort() & 0xffff ;
+
+        closePlot(id) ;
+
+        int seq = counts_.getOrDefault(name, 0) + 1 ;
+        counts_.put(name, seq) ;
+
+        String filename = outdir_ + File.separator + fileName(name) + "_" + Integer.toString(seq) + ".csv" ;
+        Writer w = new BufferedWriter(new FileWriter(filename)) ;
+        writers_.put(id, w) ;
+        columns_.put(id, count) ;
+        files_.add(filename) ;
+
+        for(int i = 0 ; i < count ; i++) {
+            if (i != 0)
+                w.write(",") ;
+            w.write(readString(buf)) ;
+        }
+        w.write("\n") ;
+    }
+
+    // Returns false if the sample cannot be read because its plot was never started
+    private boolean readSample(ByteBuffer buf) throws IOException {
+        int id = buf.getInt() ;
+        Integer count = columns_.get(id) ;
+        if (count == null) {
+            stopped_ = "sample for plot " + Integer.toString(id) + " which was not started at offset " + Integer.toString(buf.position() - 5) ;
+            return false ;
+        }
+
+        Writer w = writers_.get(id) ;
+        if (w == null) {
+            buf.position(buf.position() + count * 8) ;
+            skipped_++ ;
+            return true ;
+        }
+
+        for(int i = 0 ; i < count ; i++) {
+            if (i != 0)
+                w.write(",") ;
+            w.write(Double.toString(buf.getDouble())) ;
+        }
+        w.write("\n") ;
+        return true ;
+    }
+
+    private void closePlot(int id) throws IOException {
+        Writer w = writers_.remove(id) ;
+        if (w != null)
+            w.close() ;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getShort() & 0xffff ;
+        byte[] bytes = new byte[len] ;
+        buf.get(bytes) ;
+        return new String(bytes, StandardCharsets.UTF_8) ;
+    }
+
+    // Plot names are built from action descriptions, so replace anything that does not belong in a file name
+    private static String fileName(String name) {
+        StringBuilder b = new StringBuilder() ;
+        for(int i = 0 ; i < name.length() ; i++) {
+            char ch = name.charAt(i) ;
+            if (Character.isLetterOrDigit(ch) || ch == '-' || ch == '.')
+                b.append(ch) ;
+            else
+                b.append('_') ;
+        }
+        return b.toString() ;
+    }
+}
@@ -0,0 +1,188 @@
+package org.xero1425.misc;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/// \file
+
+/// \brief This class records plot data to a memory mapped file for offline analysis.
+///
+/// The file is created at its full size when the recorder is created and mapped into memory,
+/// so recording a sample is only a copy into memory and the operating system writes the pages
+/// to the file in the background.  This is cheap enough to leave on during matches.  The file
+/// starts with a magic number and version, followed by a series of records that each start with
+/// a one byte tag.  A start record has the plot id, the plot name, and the column names.  A sample
+/// record has the plot id and one double for each column.  A complete record has the plot id.  The
+/// unused part of the file is zero, which reads as an end tag.  When the file is full, later records
+/// are dropped.  Samples for a plot that is not started, or that has ended, are not recorded.  Use PlotFileConverter to convert the file to CSV files.
+public class PlotFileRecorder
+{
+    /// \brief the magic number at the start of the file, "XPLT"
+    public static final int Magic = 0x58504c54 ;
+
+    /// \brief the version of the file format
+    public static final int Version = 1 ;
+
+    /// \brief the tag that marks the end of the records
+    public static final byte EndTag = 0 ;
+
+    /// \brief the tag for a record that starts a plot
+    public static final byte StartTag = 1 ;
+
+    /// \brief the tag for a record that holds one sample of a plot
+    public static final byte SampleTag = 2 ;
+
+    /// \brief the tag for a record that marks a plot complete
+    public static final byte CompleteTag = 3 ;
+
+    /// \brief the default size of the file
+    public static final int DefaultSize = 32 * 1024 * 1024 ;
+
+    //
+    // The name of the file
+    //
+    private String filename_ ;
+
+    //
+    // The memory mapped contents of the file
+    //
+    private MappedByteBuffer buffer_ ;
+
+    //
+    // The number of columns in each plot, indexed by plot id
+    //
+    private int[] columns_ ;
+
+    //
+    // If true, the plot is started and has not ended, indexed by plot id
+    //
+    private boolean[] active_ ;
+
+    //
+    // The number of records dropped because the file was full
+    //
+    private long dropped_ ;
+
+    /// \brief create a new recorder
+    /// \param filename the name of the file to create
+    /// \param size the size of the file in bytes
+    public PlotFileRecorder(String filename, int size) throws IOException {
+        filename_ = filename ;
+        columns_ = new int[16] ;
+        active_ = new boolean[16] ;
+        dropped_ = 0 ;
+
+        try(RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.setLength(size) ;
+            buffer_ = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size) ;
+        }
+
+        buffer_.putInt(Magic) ;
+        buffer_.putInt(Version) ;
+    }
+
+    /// \brief returns the name of the file
+    /// \returns the name of the file
+    public String getFileName() {
+        return filename_ ;
+    }
+
+    /// \brief returns the number of records dropped because the file was full
+    /// \returns the number of records dropped
+    public long getDroppedCount() {
+        return dropped_ ;
+    }
+
+    /// \brief returns the number of bytes used in the file
+    /// \returns the number of bytes used in the file
+    public int getSize() {
+        return buffer_.position() ;
+    }
+
+    /// \brief record the start of a plot
+    /// \param id the id of the plot
+    /// \param name the name of the plot
+    /// \param cols the names of the columns in the plot
+    public void startPlot(int id, String name, String[] cols) {
+        if (id >= columns_.length) {
+            int[] cols2 = new int[Math.max(id + 1, columns_.length * 2)] ;
+            System.arraycopy(columns_, 0, cols2, 0, columns_.length) ;
+            columns_ = cols2 ;
+
+            boolean[] active2 = new boolean[cols2.length] ;
+            System.arraycopy(active_, 0, active2, 0, active_.length) ;
+            active_ = active2 ;
+        }
+        columns_[id] = cols.length ;
+        active_[id] = true ;
+
+        byte[] bname = name.getBytes(StandardCharsets.UTF_8) ;
+        byte[][] bcols = new byte[cols.length][] ;
+        int size = 1 + 4 + 2 + bname.length + 2 ;
+        for(int i = 0 ; i < cols.length ; i++) {
+            bcols[i] = cols[i].getBytes(StandardCharsets.UTF_8) ;
+            size += 2 + bcols[i].length ;
+        }
+
+        if (!reserve(size))
+            return ;
+
+        buffer_.put(StartTag) ;
+        buffer_.putInt(id) ;
+        buffer_.putShort((short)bname.length) ;
+        buffer_.put(bname) ;
+        buffer_.putShort((short)bcols.length) ;
+        for(byte[] col : bcols) {
+            buffer_.putShort((short)col.length) ;
+            buffer_.put(col) ;
+        }
+    }
+
+    /// \brief record one sample of a plot
+    /// \param id the id of the plot
+    /// \param data the data for the sample, should be the same size as the columns given in startPlot()
+    public void addPlotData(int id, double[] data) {
+        if (id < 0 || id >= columns_.length || !active_[id] || data.length != columns_[id])
+            return ;
+
+        if (!reserve(1 + 4 + data.length * 8))
+            return ;
+
+        buffer_.put(SampleTag) ;
+        buffer_.putInt(id) ;
+        for(int i = 0 ; i < data.length ; i++)
+            buffer_.putDouble(data[i]) ;
+    }
+
+    /// \brief record the end of a plot
+    /// \param id the id of the plot
+    public void endPlot(int id) {
+        if (id < 0 || id >= active_.length || !active_[id])
+            return ;
+
+        active_[id] = false ;
+        if (!reserve(1 + 4))
+            return ;
+
+        buffer_.put(CompleteTag) ;
+        buffer_.putInt(id) ;
+    }
+
+    /// \brief write the contents of the file to the storage device
+    public void flush() {
+        buffer_.force() ;
+    }
+
+    // Returns true if there is room for a record of the given size, leaving room for the end tag
+    private boolean reserve(int size) {
+        if (buffer_.remaining() < size + 1) {
+            dropped_++ ;
+            return false ;
+        }
+
+        return true ;
+    }
+}
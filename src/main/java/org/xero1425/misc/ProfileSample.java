@@ -0,0 +1,43 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief This class holds the distance, velocity, and acceleration of a speed profile at one point in time.
+/// One object is usually created by the user of a profile and filled in by the profile every robot loop.
+public class ProfileSample
+{
+    private double distance_ ;
+    private double velocity_ ;
+    private double accel_ ;
+
+    /// \brief create a new sample with all values zero
+    public ProfileSample() {
+        distance_ = 0.0 ;
+        velocity_ = 0.0 ;
+        accel_ = 0.0 ;
+    }
+
+    /// \brief returns the distance for the sample
+    /// \returns the distance for the sample
+    public double getDistance() {
+        return distance_ ;
+    }
+
+    /// \brief returns the velocity for the sample
+    /// \returns the velocity for the sample
+    public double getVelocity() {
+        return velocity_ ;
+    }
+
+    /// \brief returns the acceleration for the sample
+    /// \returns the acceleration for the sample
+    public double getAccel() {
+        return accel_ ;
+    }
+
+    void set(double dist, double vel, double accel) {
+        distance_ = dist ;
+        velocity_ = vel ;
+        accel_ = accel ;
+    }
+}
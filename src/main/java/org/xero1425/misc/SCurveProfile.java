@@ -0,0 +1,553 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief this class is a solver for the jerk limited (S-curve) speed profile required to travel a distance
+///
+/// The profile has seven segments.  While accelerating, the jerk is positive until the acceleration reaches
+/// its maximum, zero while the acceleration is held at the maximum, and negative until the acceleration is
+/// zero again at the cruise velocity.  The profile then cruises and decelerates the same way.  If the velocity
+/// change is too small to reach the maximum acceleration, the constant acceleration segment is empty.  If the
+/// distance is too short to reach the maximum velocity, the peak velocity is found by bisection, since the
+/// distance covered is an increasing function of the peak velocity.
+///
+/// With a very large maximum jerk, the profile is the same as the TrapezoidalProfile.
+public class SCurveProfile implements MotionProfile, SettingsListener
+{
+    //
+    // The number of segments in the profile
+    //
+    private static final int Segments = 7 ;
+
+    //
+    // The number of bisection steps used to find the peak velocity
+    //
+    private static final int BisectionSteps = 60 ;
+
+    //
+    // The number of steps used to find the time for a distance in a segment
+    //
+    private static final int NewtonSteps = 50 ;
+
+    //
+    // The maximum acceleration
+    //
+    private double maxa_ ;
+
+    //
+    // The maximum deceleration, a negative number
+    //
+    private double maxd_ ;
+
+    //
+    // The maximum velocity
+    //
+    private double maxv_ ;
+
+    //
+    // The maximum jerk
+    //
+    private double maxj_ ;
+
+    //
+    // The start velocity for the profile
+    //
+    private double start_velocity_ ;
+
+    //
+    // The end velocity for the profile
+    //
+    private double end_velocity_ ;
+
+    //
+    // The distance covered by the profile
+    //
+    private double distance_ ;
+
+    //
+    // If true, the final output should be negative
+    //
+    private boolean isneg_ ;
+
+    //
+    // The actual max velocity
+    //
+    private double actual_max_velocity_ ;
+
+    //
+    // The time spent accelerating, cruising, and decelerating
+    //
+    private double ta_ ;
+    private double tc_ ;
+    private double td_ ;
+
+    //
+    // The start time of each segment, and the end time of the profile as the last entry
+    //
+    private double[] times_ ;
+
+    //
+    // The distance, velocity, and acceleration at the start of each segment
+    //
+    private double[] dists_ ;
+    private double[] vels_ ;
+    private double[] accels_ ;
+
+    //
+    // The jerk in each segment
+    //
+    private double[] jerks_ ;
+
+    //
+    // The handles to the characteristics in the settings file, or null if they were given
+    //
+    private DoubleSetting maxa_handle_ ;
+    private DoubleSetting maxd_handle_ ;
+    private DoubleSetting maxv_handle_ ;
+    private DoubleSetting maxj_handle_ ;
+
+    //
+    // If true, the characteristics changed in the settings file since the last call to update()
+    //
+    private boolean settings_changed_ ;
+
+    /// \brief create the object given the performance characteristics of the movement
+    /// \param accel the maximum acceleration
+    /// \param decel the maximum deceleration, a negative number
+    /// \param maxv the maximum velocity
+    /// \param jerk the maximum jerk
+    public SCurveProfile(double accel, double decel, double maxv, double jerk) {
+        maxa_ = accel ;
+        maxd_ = decel ;
+        maxv_ = maxv ;
+        maxj_ = jerk ;
+        maxa_handle_ = null ;
+        maxd_handle_ = null ;
+        maxv_handle_ = null ;
+        maxj_handle_ = null ;
+        settings_changed_ = false ;
+        init() ;
+    }
+
+    /// \brief create the object reading the performance characteristics from the settings file
+    /// The max acceleration is found by appending ":maxa" to the basename.  The maximum deceleration
+    /// is found by appending ":maxd" to the basename.  The maximum velocity is found by appending
+    /// ":maxv" to the basename.  The maximum jerk is found by appending ":maxj" to the basename.
+    /// \param settings the settings file parser
+    /// \param name the basename used to look up parameters.
+    public SCurveProfile(SettingsParser settings, String name) throws BadParameterTypeException, MissingParameterException {
+        maxa_handle_ = settings.doubleKey(name + ":maxa") ;
+        maxd_handle_ = settings.doubleKey(name + ":maxd") ;
+        maxv_handle_ = settings.doubleKey(name + ":maxv") ;
+        maxj_handle_ = settings.doubleKey(name + ":maxj") ;
+        readSettings() ;
+        init() ;
+
+        settings_changed_ = false ;
+        settings.addListener(name + ":", this) ;
+    }
+
+    /// \brief note that the performance characteristics changed in the settings file.
+    /// The new values are used the next time update() is called, so a move in progress keeps the
+    /// profile it started with.
+    /// \param settings the settings parser
+    @Override
+    public void settingsChanged(SettingsParser settings) {
+        settings_changed_ = true ;
+    }
+
+    private void readSettings() {
+        maxa_ = maxa_handle_.get() ;
+        maxd_ = maxd_handle_.get() ;
+        maxv_ = maxv_handle_.get() ;
+        maxj_ = maxj_handle_.get() ;
+    }
+
+    /// \brief create a speed profile that covers the distance given, with the start and end velocities as conditions
+    /// The acceleration is zero at the start and end of the profile.
+    /// \param dist the distance the speed profile should cover
+    /// \param start_velocity the start velocity of the object
+    /// \param end_velocity the end velocity of the object
+    public void update(double dist, double start_velocity, double end_velocity) {
+        if (settings_changed_) {
+            settings_changed_ = false ;
+            readSettings() ;
+        }
+
+        start_velocity_ = Math.abs(start_velocity) ;
+        end_velocity_ = Math.abs(end_velocity) ;
+
+        isneg_ = (dist < 0) ;
+        distance_ = Math.abs(dist) ;
+
+        double decel = -maxd_ ;
+        double vlo = Math.max(start_velocity_, end_velocity_) ;
+        double vhi = Math.max(maxv_, vlo) ;
+        double vp ;
+
+        if (rampDistance(start_velocity_, vhi, maxa_) + rampDistance(end_velocity_, vhi, decel) <= distance_) {
+            //
+            // There is time to reach the maximum velocity and cruise
+            //
+            vp = vhi ;
+        }
+        else if (rampDistance(start_velocity_, vlo, maxa_) + rampDistance(end_velocity_, vlo, decel) >= distance_) {
+            //
+            // There is not even time to get from the start velocity to the end velocity, just ramp
+            // from one to the other
+            //
+            vp = vlo ;
+        }
+        else {
+            double lo = vlo ;
+            double hi = vhi ;
+            for(int i = 0 ; i < BisectionSteps ; i++) {
+                double mid = 0.5 * (lo + hi) ;
+                if (rampDistance(start_velocity_, mid, maxa_) + rampDistance(end_velocity_, mid, decel) > distance_)
+                    hi = mid ;
+                else
+                    lo = mid ;
+            }
+            vp = lo ;
+        }
+
+        actual_max_velocity_ = vp ;
+
+        double da = rampDistance(start_velocity_, vp, maxa_) ;
+        double dd = rampDistance(end_velocity_, vp, decel) ;
+        tc_ = (vp > 0.0) ? Math.max(0.0, (distance_ - da - dd) / vp) : 0.0 ;
+
+        //
+        // Build the segments, first the acceleration
+        //
+        double tj = rampJerkTime(vp - start_velocity_, maxa_) ;
+        double tk = rampConstTime(vp - start_velocity_, maxa_) ;
+        ta_ = 2.0 * tj + tk ;
+
+        double[] durations = new double[Segments] ;
+        durations[0] = tj ;
+        durations[1] = tk ;
+        durations[2] = tj ;
+        jerks_[0] = maxj_ ;
+        jerks_[1] = 0.0 ;
+        jerks_[2] = -maxj_ ;
+
+        durations[3] = tc_ ;
+        jerks_[3] = 0.0 ;
+
+        tj = rampJerkTime(vp - end_velocity_, decel) ;
+        tk = rampConstTime(vp - end_velocity_, decel) ;
+        td_ = 2.0 * tj + tk ;
+
+        durations[4] = tj ;
+        durations[5] = tk ;
+        durations[6] = tj ;
+        jerks_[4] = -maxj_ ;
+        jerks_[5] = 0.0 ;
+        jerks_[6] = maxj_ ;
+
+        times_[0] = 0.0 ;
+        dists_[0] = 0.0 ;
+        vels_[0] = start_velocity_ ;
+        accels_[0] = 0.0 ;
+
+        for(int i = 0 ; i < Segments ; i++) {
+            double dt = durations[i] ;
+            double j = jerks_[i] ;
+            double a = accels_[i] ;
+            double v = vels_[i] ;
+
+            times_[i + 1] = times_[i] + dt ;
+            dists_[i + 1] = dists_[i] + v * dt + 0.5 * a * dt * dt + j * dt * dt * dt / 6.0 ;
+            vels_[i + 1] = v + a * dt + 0.5 * j * dt * dt ;
+            accels_[i + 1] = a + j * dt ;
+        }
+
+        //
+        // The segment end points are not exact due to rounding, so clean up the known values
+        //
+        accels_[2] = maxa_ ;
+        accels_[3] = 0.0 ;
+        accels_[4] = 0.0 ;
+        accels_[6] = maxd_ ;
+        accels_[Segments] = 0.0 ;
+        vels_[3] = vp ;
+        vels_[4] = vp ;
+        vels_[Segments] = end_velocity_ ;
+
+        if (durations[1] == 0.0) {
+            accels_[1] = accels_[2] = jerks_[0] * durations[0] ;
+        }
+
+        if (durations[5] == 0.0) {
+            accels_[5] = accels_[6] = jerks_[4] * durations[4] ;
+        }
+    }
+
+    /// \brief return the planned distance, velocity, and acceleration for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \param out the object that receives the values
+    public void sample(double t, ProfileSample out) {
+        double dist, vel, accel ;
+
+        if (t < 0.0) {
+            dist = 0.0 ;
+            vel = start_velocity_ ;
+            accel = 0.0 ;
+        }
+        else if (t >= times_[Segments]) {
+            dist = distance_ ;
+            vel = end_velocity_ ;
+            accel = 0.0 ;
+        }
+        else {
+            int i = findSegment(t) ;
+            double dt = t - times_[i] ;
+            double j = jerks_[i] ;
+            double a = accels_[i] ;
+            double v = vels_[i] ;
+
+            dist = dists_[i] + v * dt + 0.5 * a * dt * dt + j * dt * dt * dt / 6.0 ;
+            vel = v + a * dt + 0.5 * j * dt * dt ;
+            accel = a + j * dt ;
+        }
+
+        if (isneg_)
+            out.set(-dist, -vel, -accel) ;
+        else
+            out.set(dist, vel, accel) ;
+    }
+
+    /// \brief return the planned acceleration for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \returns the acceleration for the time of interest
+    public double getAccel(double t) {
+        double ret ;
+
+        if (t < 0.0 || t >= times_[Segments]) {
+            ret = 0.0 ;
+        }
+        else {
+            int i = findSegment(t) ;
+            ret = accels_[i] + jerks_[i] * (t - times_[i]) ;
+        }
+
+        return isneg_ ? -ret : ret ;
+    }
+
+    /// \brief return the planned velocity for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \returns the velocity for the time of interest
+    public double getVelocity(double t) {
+        double ret ;
+
+        if (t < 0.0) {
+            ret = start_velocity_ ;
+        }
+        else if (t >= times_[Segments]) {
+            ret = end_velocity_ ;
+        }
+        else {
+            int i = findSegment(t) ;
+            double dt = t - times_[i] ;
+            ret = vels_[i] + accels_[i] * dt + 0.5 * jerks_[i] * dt * dt ;
+        }
+
+        return isneg_ ? -ret : ret ;
+    }
+
+    /// \brief return the planned distance for the time given relative to the time when update() was called
+    /// \param t the time of interest
+    /// \returns the distance for the time of interest
+    public double getDistance(double t) {
+        double ret ;
+
+        if (t < 0.0) {
+            ret = 0.0 ;
+        }
+        else if (t >= times_[Segments]) {
+            ret = distance_ ;
+        }
+        else {
+            int i = findSegment(t) ;
+            double dt = t - times_[i] ;
+            ret = dists_[i] + vels_[i] * dt + 0.5 * accels_[i] * dt * dt + jerks_[i] * dt * dt * dt / 6.0 ;
+        }
+
+        return isneg_ ? -ret : ret ;
+    }
+
+    /// \brief given a distance, return the when that distance will be hit
+    /// In the segments with no jerk the time is found from the quadratic.  In the segments with jerk the
+    /// distance is a cubic in time that increases through the segment, so the time is found with Newton's
+    /// method, falling back to bisection when a step leaves the segment.
+    /// \returns the time when a specific distance will be hit.
+    public double getTimeForDistance(double dist) {
+        if (isneg_)
+            dist = -dist ;
+
+        if (dist <= 0.0)
+            return 0.0 ;
+
+        if (dist >= dists_[Segments] || dist >= distance_)
+            return times_[Segments] ;
+
+        int i = 0 ;
+        while (i < Segments - 1 && dist >= dists_[i + 1])
+            i++ ;
+
+        double dur = times_[i + 1] - times_[i] ;
+        double d = dist - dists_[i] ;
+        double v = vels_[i] ;
+        double a = accels_[i] ;
+        double j = jerks_[i] ;
+
+        if (j == 0.0)
+            return times_[i] + Math.min(dur, timeToTravel(a, v, d)) ;
+
+        double lo = 0.0 ;
+        double hi = dur ;
+        double dt = 0.5 * dur ;
+        for(int k = 0 ; k < NewtonSteps ; k++) {
+            double f = v * dt + 0.5 * a * dt * dt + j * dt * dt * dt / 6.0 - d ;
+            if (f > 0.0)
+                hi = dt ;
+            else
+                lo = dt ;
+
+            double fp = v + a * dt + 0.5 * j * dt * dt ;
+            double next = (fp > 0.0) ? dt - f / fp : lo ;
+            if (next <= lo || next >= hi)
+                next = 0.5 * (lo + hi) ;
+
+            if (Math.abs(next - dt) < 1e-12) {
+                dt = next ;
+                break ;
+            }
+
+            dt = next ;
+        }
+
+        return times_[i] + dt ;
+    }
+
+    /// \brief return a human readable string describing the speed profile
+    /// \returns a human readable string describing the speed profile
+    public String toString() {
+        String ret = "[scurve" ;
+        ret += ", sv " + Double.toString(start_velocity_) ;
+        ret += ", mv " + Double.toString(actual_max_velocity_) ;
+        ret += ", ev " + Double.toString(end_velocity_) ;
+        ret += ", ta " + Double.toString(ta_) ;
+        ret += ", tc " + Double.toString(tc_) ;
+        ret += ", td " + Double.toString(td_) ;
+        ret += "]" ;
+
+        return ret ;
+    }
+
+    /// \brief return the time spent acceleration
+    /// \returns the time spent acceleration
+    public double getTimeAccel() {
+        return ta_ ;
+    }
+
+    /// \brief return the time spent cruising
+    /// \returns the time spent cruising
+    public double getTimeCruise() {
+        return tc_ ;
+    }
+
+    /// \brief return the time spent deceleration
+    /// \returns the time spent deceleration
+    public double getTimeDecel() {
+        return td_ ;
+    }
+
+    /// \brief return the total time for the profile
+    /// \returns the total time for the profile
+    public double getTotalTime() {
+        return times_[Segments] ;
+    }
+
+    /// \brief return the maximum velocity in the profile
+    /// \returns the maximum velocity in the profile
+    public double getActualMaxVelocity() {
+        if (isneg_)
+            return -actual_max_velocity_ ;
+
+        return actual_max_velocity_ ;
+    }
+
+    /// \brief return the start velocity for the speed profile
+    /// \returns the start velocity for the speed profile
+    public double getStartVelocity() {
+        return start_velocity_ ;
+    }
+
+    /// \brief return the end velocity for the speed profile
+    /// \returns the end velocity for the speed profile
+    public double getEndVelocity() {
+        return end_velocity_ ;
+    }
+
+    private void init() {
+        times_ = new double[Segments + 1] ;
+        dists_ = new double[Segments + 1] ;
+        vels_ = new double[Segments + 1] ;
+        accels_ = new double[Segments + 1] ;
+        jerks_ = new double[Segments] ;
+    }
+
+    // Returns the segment that contains the time given, which must be inside the profile
+    private int findSegment(double t) {
+        int i = 0 ;
+        while (i < Segments - 1 && t >= times_[i + 1])
+            i++ ;
+
+        return i ;
+    }
+
+    // Returns the time spent at the maximum jerk at each end of a change in velocity
+    private double rampJerkTime(double dv, double accel) {
+        if (dv <= 0.0)
+            return 0.0 ;
+
+        if (dv >= accel * accel / maxj_)
+            return accel / maxj_ ;
+
+        return Math.sqrt(dv / maxj_) ;
+    }
+
+    // Returns the time spent at the maximum acceleration during a change in velocity
+    private double rampConstTime(double dv, double accel) {
+        if (dv <= 0.0)
+            return 0.0 ;
+
+        return Math.max(0.0, dv / accel - accel / maxj_) ;
+    }
+
+    // Returns the distance covered while changing between the two velocities.  The acceleration
+    // is symmetric in time, so the average velocity is halfway between the two.
+    private double rampDistance(double v0, double v1, double accel) {
+        double dv = v1 - v0 ;
+        if (dv <= 0.0)
+            return 0.0 ;
+
+        double t = 2.0 * rampJerkTime(dv, accel) + rampConstTime(dv, accel) ;
+        return 0.5 * (v0 + v1) * t ;
+    }
+
+    // Returns the smallest non-negative time to travel the distance given, starting at the velocity given
+    // with a constant acceleration.  The result is exact, without the cancellation in the quadratic formula.
+    private static double timeToTravel(double accel, double vel, double dist) {
+        if (dist <= 0.0)
+            return 0.0 ;
+
+        if (Math.abs(accel) < 1e-12)
+            return dist / vel ;
+
+        double disc = Math.max(0.0, vel * vel + 2.0 * accel * dist) ;
+        return 2.0 * dist / (vel + Math.sqrt(disc)) ;
+    }
+}
@@ -0,0 +1,56 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/// \file
+
+/// \brief This program compiles a settings file into its binary form, once for each set of defines.
+/// The arguments are the settings file and then the sets of defines, with the defines in a set
+/// separated by commas, for example "droid.dat PRACTICE COMPETITION".  The binary files are written next
+/// to the settings file, and SettingsParser.readFile() reads them instead of the settings file while they
+/// match it.  Run it with "gradlew compileSettings".
+public class SettingsCompiler
+{
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: SettingsCompiler SETTINGSFILE DEFINES[,DEFINES...] ...") ;
+            System.exit(1) ;
+        }
+
+        MessageLogger logger = new MessageLogger() ;
+        logger.addDestination((type, subsystem, msg) -> {
+            if (type == MessageType.Error)
+                System.err.println(msg) ;
+        }) ;
+
+        for(int i = 1 ; i < args.length ; i++) {
+            SettingsParser parser = new SettingsParser(logger) ;
+            parser.setSnapshotEnabled(false) ;
+            for(String def : args[i].split(",")) {
+                if (def.length() > 0)
+                    parser.addDefine(def) ;
+            }
+
+            if (!parser.readFile(args[0])) {
+                logger.flush() ;
+                System.err.println("cannot compile settings file '" + args[0] + "' for '" + args[i] + "'") ;
+                System.exit(1) ;
+            }
+
+            Map<String, SettingsValue> values = new LinkedHashMap<String, SettingsValue>() ;
+            for(String name : parser.getNames())
+                values.put(name, parser.getOrNull(name)) ;
+
+            try {
+                File f = SettingsSnapshot.write(args[0], parser.getDefines(), values) ;
+                System.out.println("wrote " + values.size() + " values to '" + f.getPath() + "'") ;
+            }
+            catch(Exception ex) {
+                System.err.println("cannot write compiled settings file for '" + args[i] + "' - " + ex.getMessage()) ;
+                System.exit(1) ;
+            }
+        }
+    }
+}
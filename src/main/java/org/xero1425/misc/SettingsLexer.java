@@ -0,0 +1,325 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief This class splits the text of a settings file into lines of the form "name value # comment",
+/// "if NAME", and "endif".
+/// The text is scanned once, a character at a time, with no regular expressions and no copies of
+/// lines.  Blank lines and comment lines are skipped.  The value of a line is only classified as an
+/// integer, double, boolean, or string when getValue() is called, so lines skipped by an if are
+/// never classified.  Errors give the line and column of the problem.
+final class SettingsLexer
+{
+    /// \brief the kind of line found by next()
+    enum Token
+    {
+        If,                     ///< an if line, getName() is the name of the define
+        EndIf,                  ///< an endif line
+        Define,                 ///< a name and a value
+        End                     ///< the end of the text
+    } ;
+
+    //
+    // Copied in a value from the microsoft windows calculator.  This prepends the text with
+    // a middle right to left indicator (to indicate left to right display) even when not needed.
+    //
+    private static final char LeftToRightOverride = 8237 ;
+
+    //
+    // The text of the file
+    //
+    private final char[] text_ ;
+
+    //
+    // The number of characters in text_
+    //
+    private final int length_ ;
+
+    //
+    // The index of the next character to scan
+    //
+    private int pos_ ;
+
+    //
+    // The number of the line last returned by next(), starting at one
+    //
+    private int line_ ;
+
+    //
+    // The index of the first character of the line last returned by next()
+    //
+    private int line_start_ ;
+
+    //
+    // The name found by next(), from name_start_ up to name_end_
+    //
+    private int name_start_ ;
+    private int name_end_ ;
+
+    //
+    // The value found by next(), from value_start_ up to value_end_.  If there is no value these
+    // are both the index where the value should have started.
+    //
+    private int value_start_ ;
+    private int value_end_ ;
+
+    //
+    // The last error, and the index of the character where it was found
+    //
+    private String error_ ;
+    private int error_pos_ ;
+
+    /// \brief create a lexer for the text given
+    /// \param text the text of the settings file
+    /// \param length the number of characters of text
+    SettingsLexer(char[] text, int length) {
+        text_ = text ;
+        length_ = length ;
+        pos_ = 0 ;
+        line_ = 0 ;
+        error_ = null ;
+    }
+
+    /// \brief find the next line that is not blank or a comment
+    /// \returns the kind of line found
+    Token next() {
+        while (pos_ < length_) {
+            line_++ ;
+            line_start_ = pos_ ;
+
+            int end = pos_ ;
+            while (end < length_ && text_[end] != '\n' && text_[end] != '\r')
+                end++ ;
+
+            int start = skipSpace(pos_, end) ;
+
+            //
+            // Move past the line ending, which is \n, \r\n, or \r
+            //
+            pos_ = end ;
+            if (pos_ < length_ && text_[pos_] == '\r')
+                pos_++ ;
+            if (pos_ < length_ && text_[pos_] == '\n' && (pos_ == end || text_[pos_ - 1] == '\r'))
+                pos_++ ;
+
+            if (start == end || text_[start] == '#')
+                continue ;
+
+            if (isKeyword(start, end, "endif"))
+                return Token.EndIf ;
+
+            if (isKeyword(start, end, "if")) {
+                name_start_ = skipSpace(start + 2, end) ;
+                name_end_ = endOfWord(name_start_, end) ;
+                return Token.If ;
+            }
+
+            name_start_ = start ;
+            name_end_ = endOfWord(start, end) ;
+
+            value_start_ = skipSpace(name_end_, end) ;
+            if (value_start_ < end && text_[value_start_] == '"') {
+                value_end_ = value_start_ + 1 ;
+                while (value_end_ < end && text_[value_end_] != '"')
+                    value_end_++ ;
+
+                // Include the closing quote, if there is one
+                if (value_end_ < end)
+                    value_end_++ ;
+            }
+            else {
+                value_end_ = endOfWord(value_start_, end) ;
+            }
+
+            return Token.Define ;
+        }
+
+        return Token.End ;
+    }
+
+    /// \brief returns the number of the line last found by next(), starting at one
+    /// \returns the number of the line last found by next()
+    int getLine() {
+        return line_ ;
+    }
+
+    /// \brief returns the name of the value for a Define line, or of the define for an If line
+    /// \returns the name, which is empty if there is no name
+    String getName() {
+        return new String(text_, name_start_, name_end_ - name_start_) ;
+    }
+
+    /// \brief returns true if the Define line has a value after the name
+    /// \returns true if the Define line has a value after the name
+    boolean hasValue() {
+        return value_end_ > value_start_ ;
+    }
+
+    /// \brief returns the column of the value of the Define line, starting at one
+    /// \returns the column of the value of the Define line
+    int getValueColumn() {
+        return value_start_ - line_start_ + 1 ;
+    }
+
+    /// \brief classify and return the value of the Define line
+    /// \returns the value, or null if the value is not valid and getError() describes why
+    SettingsValue getValue() {
+        error_ = null ;
+
+        int start = value_start_ ;
+        int end = value_end_ ;
+
+        if (start < end && text_[start] == LeftToRightOverride) {
+            start = skipSpace(start + 1, end) ;
+            while (end > start && Character.isWhitespace(text_[end - 1]))
+                end-- ;
+        }
+
+        if (start == end)
+            return error("missing value", start) ;
+
+        char first = text_[start] ;
+        if (first == '"') {
+            if (end - start < 2 || text_[end - 1] != '"')
+                return error("missing trailing quote (\") in value", end) ;
+
+            return new SettingsValue(new String(text_, start + 1, end - start - 2)) ;
+        }
+
+        if (matchesIgnoreCase(start, end, "true"))
+            return new SettingsValue(true) ;
+
+        if (matchesIgnoreCase(start, end, "false"))
+            return new SettingsValue(false) ;
+
+        //
+        // Numbers are [-+]digits for an integer, or [-+][digits][.digits][e[-+]digits] for a double
+        //
+        int i = start ;
+        boolean negative = false ;
+        if (text_[i] == '-' || text_[i] == '+') {
+            negative = (text_[i] == '-') ;
+            i++ ;
+        }
+
+        int digits_start = i ;
+        long ivalue = 0 ;
+        boolean overflow = false ;
+        while (i < end && isDigit(text_[i])) {
+            ivalue = ivalue * 10 + (text_[i] - '0') ;
+            if (ivalue > (long)Integer.MAX_VALUE + 1)
+                overflow = true ;
+            i++ ;
+        }
+        int int_digits = i - digits_start ;
+
+        if (i == end) {
+            if (int_digits == 0)
+                return error("invalid value", start) ;
+
+            if (negative)
+                ivalue = -ivalue ;
+
+            if (overflow || ivalue > Integer.MAX_VALUE || ivalue < Integer.MIN_VALUE)
+                return error("integer value out of range", start) ;
+
+            return new SettingsValue((int)ivalue) ;
+        }
+
+        int frac_digits = 0 ;
+        if (text_[i] == '.') {
+            i++ ;
+            while (i < end && isDigit(text_[i])) {
+                frac_digits++ ;
+                i++ ;
+            }
+
+            if (frac_digits == 0)
+                return error("expected a digit after the decimal point", i) ;
+        }
+
+        if (int_digits + frac_digits == 0)
+            return error("invalid value", start) ;
+
+        if (i < end && (text_[i] == 'e' || text_[i] == 'E')) {
+            i++ ;
+            if (i < end && (text_[i] == '-' || text_[i] == '+'))
+                i++ ;
+
+            int exp_start = i ;
+            while (i < end && isDigit(text_[i]))
+                i++ ;
+
+            if (i == exp_start)
+                return error("expected a digit in the exponent", i) ;
+        }
+
+        if (i != end)
+            return error("invalid value", start) ;
+
+        return new SettingsValue(Double.parseDouble(new String(text_, start, end - start))) ;
+    }
+
+    /// \brief returns the last error from getValue()
+    /// \returns the last error from getValue()
+    String getError() {
+        return error_ ;
+    }
+
+    /// \brief returns the column of the last error from getValue(), starting at one
+    /// \returns the column of the last error from getValue()
+    int getErrorColumn() {
+        return error_pos_ - line_start_ + 1 ;
+    }
+
+    private SettingsValue error(String msg, int pos) {
+        error_ = msg ;
+        error_pos_ = pos ;
+        return null ;
+    }
+
+    private int skipSpace(int pos, int end) {
+        while (pos < end && Character.isWhitespace(text_[pos]))
+            pos++ ;
+
+        return pos ;
+    }
+
+    // Words end at white space or at the start of a comment
+    private int endOfWord(int pos, int end) {
+        while (pos < end && !Character.isWhitespace(text_[pos]) && text_[pos] != '#')
+            pos++ ;
+
+        return pos ;
+    }
+
+    // Returns true if the line starts with the keyword followed by white space, a comment, or the end of the line
+    private boolean isKeyword(int start, int end, String keyword) {
+        int len = keyword.length() ;
+        if (end - start < len)
+            return false ;
+
+        for(int i = 0 ; i < len ; i++) {
+            if (text_[start + i] != keyword.charAt(i))
+                return false ;
+        }
+
+        return start + len == end || Character.isWhitespace(text_[start + len]) || text_[start + len] == '#' ;
+    }
+
+    private boolean matchesIgnoreCase(int start, int end, String word) {
+        if (end - start != word.length())
+            return false ;
+
+        for(int i = 0 ; i < word.length() ; i++) {
+            if (Character.toLowerCase(text_[start + i]) != word.charAt(i))
+                return false ;
+        }
+
+        return true ;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9' ;
+    }
+} ;
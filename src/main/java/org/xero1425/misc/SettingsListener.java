@@ -0,0 +1,16 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief an object that is told when values in the settings file change while the robot runs
+/// A listener is added with SettingsParser.addListener() along with the prefix of the names of
+/// the values it uses.  The settings parser holds the listener with a weak reference, so adding a
+/// listener does not keep it from being garbage collected.
+public interface SettingsListener
+{
+    /// \brief called when one or more values whose names start with the listener prefix have changed.
+    /// This is called from SettingsParser.applyChanges(), which the robot calls between robot loops, so
+    /// all of the values that changed together are seen together.
+    /// \param settings the settings parser with the new values
+    void settingsChanged(SettingsParser settings) ;
+} ;
@@ -2,12 +2,16 @@
 package org.xero1425.misc;
 
 import java.util.List;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
 import java.util.HashMap ;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.lang.ref.WeakReference;
 
 /// \file
 
@@ -31,35 +35,111 @@ public final class SettingsParser
     //
     private final List<String> defines_;
 
+    //
+    // The same defines as defines_, for looking up the name in each if statement
+    //
+    private final Set<String> define_set_;
+
     //
     // The settings read from the settings file
     //
     private final Map<String, SettingsValue> values_;
 
     //
-    // If true, we are skipping settings from the settings file due to a defined
+    // The values that have a typed handle (DoubleSetting, IntegerSetting, BooleanSetting).  Each
+    // value is stored as a double in one slot of this array.  Integers are stored exactly, and
+    // booleans are stored as 1.0 or 0.0.
+    //
+    private double[] slots_ ;
+
+    //
+    // The type of the value stored in each slot
+    //
+    private SettingsValue.SettingsType[] slot_types_ ;
+
+    //
+    // The number of slots in use
+    //
+    private int slot_count_ ;
+
+    //
+    // The slot assigned to each value name that has a typed handle
+    //
+    private final Map<String, Integer> slot_index_ ;
+
+    //
+    // The name of the settings file read
+    //
+    private String filename_ ;
+
+    //
+    // If true, readFile() uses the compiled binary form of the settings file when it matches
+    //
+    private boolean snapshot_enabled_ ;
+
+    //
+    // The values read by stageFile() or given to stageValue() waiting for applyChanges()
     //
-    private boolean skipping_ ;
+    private Map<String, SettingsValue> pending_ ;
 
     //
-    // If skipping the level of if statements we have seen.  We must see a matching
-    // number of endif statements to be through skipping.
+    // If true, there are values in pending_.  This is checked without the lock each robot loop.
     //
-    private int skipping_level_ ;
+    private volatile boolean has_pending_ ;
+
+    //
+    // The lock for pending_
+    //
+    private final Object pending_lock_ ;
+
+    //
+    // The listeners for changed values
+    //
+    private final List<Listener> listeners_ ;
 
     //
     // The name of the message for the log file
     //
     static private final String LoggerName = "settings" ;
 
+    //
+    // The initial size of the array of slots for typed handles
+    //
+    static private final int InitialSlotCount = 64 ;
+
+    //
+    // A listener for changed values and the prefix of the names it uses
+    //
+    private static class Listener {
+        Listener(String prefix, SettingsListener listener) {
+            prefix_ = prefix ;
+            ref_ = new WeakReference<SettingsListener>(listener) ;
+        }
+
+        final String prefix_ ;
+        final WeakReference<SettingsListener> ref_ ;
+    }
+
     /// \brief create a new settings parser
     /// \param logger the message logger
     public SettingsParser(final MessageLogger logger) {
         logger_ = logger;
         logger_id_ = logger_.registerSubsystem(LoggerName);
         defines_ = new ArrayList<String>();
+        define_set_ = new HashSet<String>();
         values_ = new HashMap<String, SettingsValue>();
-        skipping_ = false ;
+
+        slots_ = new double[InitialSlotCount] ;
+        slot_types_ = new SettingsValue.SettingsType[InitialSlotCount] ;
+        slot_count_ = 0 ;
+        slot_index_ = new HashMap<String, Integer>() ;
+
+        filename_ = null ;
+        snapshot_enabled_ = true ;
+        pending_ = new LinkedHashMap<String, SettingsValue>() ;
+        has_pending_ = false ;
+        pending_lock_ = new Object() ;
+        listeners_ = new ArrayList<Listener>() ;
     }
 
     /// \brief print all of the keys read and their values to the message logger
@@ -83,7 +163,7 @@ public final class SettingsParser
     /// \brief add a define to be honored while reading the settings file
     /// \param def the define to be added to the define list
     public void addDefine(final String def) {
-        if (!defines_.contains(def))
+        if (define_set_.add(def))
             defines_.add(def);
     }
 
@@ -100,67 +180,294 @@ public final class SettingsParser
         return values_.containsKey(def);
     }
 
+    /// \brief enable or disable reading the compiled binary form of the settings file
+    /// \param enabled if true, readFile() reads the compiled binary form when it matches the settings file
+    public void setSnapshotEnabled(boolean enabled) {
+        snapshot_enabled_ = enabled ;
+    }
+
     /// \brief read a settings file
+    /// If the compiled binary form of the settings file for the current defines exists and matches the
+    /// settings file, it is read instead of the settings file (see SettingsCompiler).
     /// If there is a failure while reading the settings file, there will be no settings stored in the file.
     /// \param filename the name of the file to read
     /// \returns true if the file was read sucessfully, otherwise false
     public boolean readFile(final String filename) {
-        FileReader rdr ;
-        boolean ret = true ;
+        Map<String, SettingsValue> values = null ;
 
-        logger_.startMessage(MessageType.Debug, logger_id_).add("reading file '")
-                .add(filename).add("'").endMessage();
+        if (snapshot_enabled_) {
+            values = SettingsSnapshot.read(filename, defines_) ;
+            if (values != null) {
+                logger_.startMessage(MessageType.Debug, logger_id_).add("read compiled settings file '")
+                        .add(SettingsSnapshot.getFile(filename, defines_).getPath()).add("'").endMessage();
+            }
+        }
 
-        try {
-            rdr = new FileReader(filename);
+        if (values == null)
+            values = parseFile(filename) ;
+
+        if (values == null) {
+            values_.clear() ;
+            return false ;
         }
-        catch(final Exception ex)
-        {
-            logger_.startMessage(MessageType.Error).add("cannot open file '").add(filename) ;
-            logger_.add("' for reading - ").add(ex.getMessage()).endMessage();
+
+        for(Map.Entry<String, SettingsValue> entry : values.entrySet()) {
+            if (!updateSlot(entry.getKey(), entry.getValue())) {
+                values_.clear() ;
+                return false ;
+            }
+            values_.put(entry.getKey(), entry.getValue()) ;
+        }
+
+        filename_ = filename ;
+        return true ;
+    }
+
+    /// \brief returns the name of the last settings file read
+    /// \returns the name of the last settings file read, or null if no file was read
+    public String getFileName() {
+        return filename_ ;
+    }
+
+    /// \brief read the settings file again and stage its values to be applied by applyChanges().
+    /// This may be called from any thread.  The values in use do not change until applyChanges() is called.
+    /// \returns true if the file was read sucessfully, otherwise false
+    public boolean stageFile() {
+        if (filename_ == null)
             return false ;
+
+        Map<String, SettingsValue> values = parseFile(filename_) ;
+        if (values == null)
+            return false ;
+
+        synchronized(pending_lock_) {
+            pending_.putAll(values) ;
+            has_pending_ = true ;
         }
+        return true ;
+    }
 
-        final BufferedReader br = new BufferedReader(rdr) ;
+    /// \brief stage a value to replace the value from the settings file when applyChanges() is called.
+    /// This may be called from any thread, for instance when a value is changed in the network tables.
+    /// \param name the name of the value
+    /// \param value the new value
+    public void stageValue(final String name, final SettingsValue value) {
+        synchronized(pending_lock_) {
+            pending_.put(name, value) ;
+            has_pending_ = true ;
+        }
+    }
 
-        String line ;
-        int lineno = 1 ;
-        while (true)
-        {
-            try {
-                line = br.readLine() ;
-                if (line == null)
-                    break ;
-                if (!processLine(filename, lineno, line))
-                {
-                    ret = false ;
-                    break ;
+    /// \brief apply the values staged by stageFile() and stageValue() and tell the listeners about the changes.
+    /// This should be called by the robot between robot loops.  A staged value that is the same as the value in
+    /// use is ignored.  A staged value that has a different type than the value in use is rejected, except that
+    /// an integer and a double may replace each other.  A double with no fraction replacing an integer stays an
+    /// integer, and an integer replacing a double becomes a double.  A double with a fraction replacing an integer,
+    /// for instance a gain going from 0 to 0.05, is rejected only if the value is read through an integer handle.
+    /// \returns the number of values that changed
+    public int applyChanges() {
+        if (!has_pending_)
+            return 0 ;
+
+        Map<String, SettingsValue> pending ;
+        synchronized(pending_lock_) {
+            pending = pending_ ;
+            pending_ = new LinkedHashMap<String, SettingsValue>() ;
+            has_pending_ = false ;
+        }
+
+        List<String> changed = new ArrayList<String>() ;
+        for(Map.Entry<String, SettingsValue> entry : pending.entrySet()) {
+            String name = entry.getKey() ;
+            SettingsValue v = entry.getValue() ;
+            SettingsValue old = values_.get(name) ;
+
+            if (old != null) {
+                try {
+                    if (old.isInteger() && v.isDouble()) {
+                        double d = v.getDouble() ;
+                        if (d == Math.rint(d))
+                            v = new SettingsValue((int)d) ;
+                    }
+                    else if (old.isDouble() && v.isInteger()) {
+                        v = new SettingsValue((double)v.getInteger()) ;
+                    }
+                }
+                catch(BadParameterTypeException ex) {
+                }
+
+                if (old.equals(v))
+                    continue ;
+
+                if (old.getType() != v.getType() && !(isNumber(old) && isNumber(v))) {
+                    logger_.startMessage(MessageType.Error) ;
+                    logger_.add("new value for parameter ").addQuoted(name) ;
+                    logger_.add(" ignored, the type changed from ").add(old.getType().toString()) ;
+                    logger_.add(" to ").add(v.getType().toString()) ;
+                    logger_.endMessage();
+                    continue ;
                 }
-                lineno++ ;
             }
-            catch(final Exception ex)
-            {
-                logger_.startMessage(MessageType.Error).add("cannot read line from file '").add(filename) ;
-                logger_.add("' - ").add(ex.getMessage()).endMessage();
-                ret = false ;
-                break ;
+
+            if (!updateSlot(name, v))
+                continue ;
+
+            values_.put(name, v) ;
+            changed.add(name) ;
+
+            logger_.startMessage(MessageType.Info) ;
+            logger_.add("parameter ").addQuoted(name).add(" changed to ").add(v.toString()) ;
+            logger_.endMessage();
+        }
+
+        if (changed.size() > 0)
+            notifyListeners(changed) ;
+
+        return changed.size() ;
+    }
+
+    /// \brief add a listener to be told when values change.
+    /// The listener is told once for each call to applyChanges() that changes one or more values whose
+    /// names start with the prefix given.  The listener is held with a weak reference.
+    /// \param prefix the prefix of the names of the values the listener uses
+    /// \param listener the listener
+    public void addListener(final String prefix, final SettingsListener listener) {
+        listeners_.removeIf((l) -> l.ref_.get() == null) ;
+        listeners_.add(new Listener(prefix, listener)) ;
+    }
+
+    /// \brief remove a listener
+    /// \param listener the listener to remove
+    public void removeListener(final SettingsListener listener) {
+        listeners_.removeIf((l) -> l.ref_.get() == null || l.ref_.get() == listener) ;
+    }
+
+    private static boolean isNumber(SettingsValue v) {
+        return v.isInteger() || v.isDouble() ;
+    }
+
+    //
+    // Tell each listener whose prefix matches one of the changed names.  A listener added with
+    // several prefixes is told once.
+    //
+    private void notifyListeners(List<String> changed) {
+        listeners_.removeIf((l) -> l.ref_.get() == null) ;
+
+        List<SettingsListener> told = new ArrayList<SettingsListener>() ;
+        for(Listener l : new ArrayList<Listener>(listeners_)) {
+            SettingsListener target = l.ref_.get() ;
+            if (target == null || told.contains(target))
+                continue ;
+
+            for(String name : changed) {
+                if (name.startsWith(l.prefix_)) {
+                    told.add(target) ;
+                    try {
+                        target.settingsChanged(this) ;
+                    }
+                    catch(Exception ex) {
+                        logger_.startMessage(MessageType.Error) ;
+                        logger_.add("exception thrown applying changed parameters with prefix ").addQuoted(l.prefix_) ;
+                        logger_.add(" - ").add(ex.getMessage()) ;
+                        logger_.endMessage();
+                    }
+                    break ;
+                }
             }
         }
+    }
+
+    //
+    // Read a settings file and return its values, or null if there is an error in the file.  This
+    // does not change the values in use, so it can run on any thread.
+    //
+    private synchronized Map<String, SettingsValue> parseFile(final String filename) {
+        char[] text ;
+
+        logger_.startMessage(MessageType.Debug, logger_id_).add("reading file '")
+                .add(filename).add("'").endMessage();
 
         try {
-            br.close() ;
-            rdr.close() ;
+            text = new String(Files.readAllBytes(Paths.get(filename))).toCharArray() ;
         }
-        catch(Exception ex)
+        catch(final Exception ex)
         {
-            logger_.startMessage(MessageType.Error).add("error closing file'").add(filename) ;
+            logger_.startMessage(MessageType.Error).add("cannot read file '").add(filename) ;
             logger_.add("' - ").add(ex.getMessage()).endMessage();
-            ret = false ;            
+            return null ;
         }
 
-        if (ret == false)
-            values_.clear() ;
-        return ret ;
+        return parseText(filename, text, text.length) ;
+    }
+
+    //
+    // Parse the text of a settings file and return its values, or null if there is an error
+    //
+    private Map<String, SettingsValue> parseText(final String filename, char[] text, int length) {
+        SettingsLexer lexer = new SettingsLexer(text, length) ;
+        Map<String, SettingsValue> values = new LinkedHashMap<String, SettingsValue>() ;
+
+        //
+        // If skipping > 0, we are skipping settings due to an if whose define is not set.  The
+        // value is the number of if statements seen since, plus one.  We must see a matching number
+        // of endif statements to be through skipping.
+        //
+        int skipping = 0 ;
+
+        while (true) {
+            SettingsLexer.Token token = lexer.next() ;
+            if (token == SettingsLexer.Token.End)
+                break ;
+
+            switch(token) {
+                case If:
+                    if (skipping > 0 || !define_set_.contains(lexer.getName()))
+                        skipping++ ;
+                    break ;
+
+                case EndIf:
+                    if (skipping > 0)
+                        skipping-- ;
+                    break ;
+
+                case Define:
+                    if (skipping > 0)
+                        break ;
+
+                    if (!lexer.hasValue()) {
+                        parseError(filename, lexer.getLine(), lexer.getValueColumn(), "missing value in line") ;
+                        return null ;
+                    }
+
+                    SettingsValue v = lexer.getValue() ;
+                    if (v == null) {
+                        parseError(filename, lexer.getLine(), lexer.getErrorColumn(), lexer.getError()) ;
+                        return null ;
+                    }
+
+                    values.put(lexer.getName(), v) ;
+                    break ;
+
+                default:
+                    break ;
+            }
+        }
+
+        return values ;
+    }
+
+    private void parseError(String filename, int line, int col, String msg) {
+        logger_.startMessage(MessageType.Error) ;
+        logger_.add(filename).add(":").add(line).add(":").add(col).add(": ").add(msg) ;
+        logger_.endMessage();
+    }
+
+    /// \brief returns the names of all of the values, sorted
+    /// \returns the names of all of the values
+    public List<String> getNames() {
+        List<String> names = new ArrayList<String>(values_.keySet()) ;
+        names.sort(null) ;
+        return names ;
     }
 
     /// \brief return a settings value given its name.
@@ -181,199 +488,126 @@ public final class SettingsParser
         // this one isn't returning null even though it's described in brief ?? //
     }    
 
-    private SettingsValue parseValue(String name, String s) {
-        SettingsValue v = null ;
-
-        if (s.charAt(0) == 8237) {
-            //
-            // Copied in a value from the microsoft windows calculator.  This prepends
-            // the text with a middle right to left indicator (to indicate left to right display)
-            // even when not needed.  Skip this character for now.
-            //
-            s = s.substring(1).trim() ;
-        }
-
-        if (s.toLowerCase().equals("true"))
-        {
-            v = new SettingsValue(true) ;
-        }
-        else if (s.toLowerCase().equals("false"))
-        {
-            v = new SettingsValue(false) ;
-        }
-        else if (s.startsWith("\"") && s.endsWith("\"") && s.length() > 1)
-        {
-            v = new SettingsValue(s.substring(1, s.length() - 1));
-        }
-        else
-        {
-            boolean isDouble = Pattern.matches("^[-+]?[0-9]*\\.?[0-9]+([eE][-+]?[0-9]+)?$", s);
-            boolean isInteger = Pattern.matches("^[-+]?\\d*$", s) ;
-
-            if (isInteger) {
-                try 
-                {
-                    int num = Integer.parseInt(s) ;
-                    v = new SettingsValue(num) ;
-                }                
-                catch(Exception ex)
-                {
-                }
-            }
-            else if (isDouble) {
-                try {
-                    double num = Double.parseDouble(s) ;
-                    v = new SettingsValue(num) ;
-                }
-                catch(Exception ex2) {
-                    logger_.startMessage(MessageType.Error) ;
-                    logger_.add("cannot parse value for parameter ").addQuoted(name) ;
-                    logger_.add(" the value ").add(s).add(" is not a legal value") ;
-                    logger_.endMessage();
-                }
-            }
-        }
-        return v ;
+    /// \brief returns a handle to a double value.
+    /// The name is looked up once, here.  Reading the value through the handle does not
+    /// look up the name again.  An integer value can be read as a double.
+    /// \param name the name of the value
+    /// \exception throws a MissingParameterException if a settings with the given name is not found
+    /// \exception throws a BadParameterTypeException if the value is not a double or an integer
+    /// \returns a handle to the value
+    public DoubleSetting doubleKey(final String name) throws MissingParameterException, BadParameterTypeException {
+        return new DoubleSetting(this, name, findSlot(name, SettingsValue.SettingsType.Double)) ;
     }
 
-    private boolean processLine(String filename, int lineno, String line) {
-        boolean ret = false ;
-
-        line = line.strip() ;
-        if (line.length() == 0 || line.charAt(0) == '#')
-            return true ;
+    /// \brief returns a handle to an integer value.
+    /// \param name the name of the value
+    /// \exception throws a MissingParameterException if a settings with the given name is not found
+    /// \exception throws a BadParameterTypeException if the value is not an integer
+    /// \returns a handle to the value
+    public IntegerSetting integerKey(final String name) throws MissingParameterException, BadParameterTypeException {
+        return new IntegerSetting(this, name, findSlot(name, SettingsValue.SettingsType.Integer)) ;
+    }
 
-        if (line.startsWith("if")) {
-            ret = processIf(filename, lineno, line) ;
-        }
-        else if (line.startsWith("endif")) {
-            ret = processEndIf(filename, lineno, line) ;
-        }
-        else {
-            if (!skipping_)
-                ret = processDefine(filename, lineno, line) ;
-            else
-                ret = true ;
-        }
+    /// \brief returns a handle to a boolean value.
+    /// \param name the name of the value
+    /// \exception throws a MissingParameterException if a settings with the given name is not found
+    /// \exception throws a BadParameterTypeException if the value is not a boolean
+    /// \returns a handle to the value
+    public BooleanSetting booleanKey(final String name) throws MissingParameterException, BadParameterTypeException {
+        return new BooleanSetting(this, name, findSlot(name, SettingsValue.SettingsType.Boolean)) ;
+    }
 
-        return ret ;
+    //
+    // Return the value stored in a slot.  This is the read behind all of the typed handles.
+    //
+    double getSlot(int slot) {
+        return slots_[slot] ;
     }
 
-    private boolean processIf(String filename, int lineno, String line) {
-        int index = 0 ;
-        String name ;
+    //
+    // Return the slot for a value, assigning a new slot if this is the first handle for the value.
+    // All handles to the same name share a slot.
+    //
+    private int findSlot(String name, SettingsValue.SettingsType type) throws MissingParameterException, BadParameterTypeException {
+        SettingsValue v = get(name) ;
+        checkSlotType(v, type) ;
 
-        if (skipping_) 
-        {
-            skipping_level_++ ;
+        Integer index = slot_index_.get(name) ;
+        if (index != null) {
+            //
+            // An integer handle and a double handle may share a slot, and the slot must then stay an integer
+            //
+            if (type == SettingsValue.SettingsType.Integer)
+                slot_types_[index] = type ;
+            return index ;
         }
-        else 
-        {
-            line = line.substring(2).trim() ;
-            while (index < line.length())
-            {
-                if (Character.isWhitespace(line.charAt(index)) || line.charAt(index) == '#')
-                    break ;
-
-                index++ ;
-            }
-            name = line.substring(0, index) ;
 
-            if (!defines_.contains(name)) {
-                skipping_ = true ;
-                skipping_level_ = 0 ;
-            }
+        if (slot_count_ == slots_.length) {
+            slots_ = Arrays.copyOf(slots_, slots_.length * 2) ;
+            slot_types_ = Arrays.copyOf(slot_types_, slot_types_.length * 2) ;
         }
 
-        return true ;
-    }
+        int slot = slot_count_++ ;
+        slot_types_[slot] = type ;
+        slots_[slot] = slotValue(v) ;
+        slot_index_.put(name, slot) ;
 
-    private boolean processEndIf(String filename, int lineno, String line) {
-        if (skipping_) {
-            if (skipping_level_ == 0)
-                skipping_ = false ;
-            else
-                skipping_level_-- ;
-        }
-        return true ;
+        return slot ;
     }
 
-    private boolean processDefine(String filename, int lineno, String line) {
-        String name, value ;
-        int index = 0 ;
-
-        //
-        // Parse the name of the value from the params file
-        //
-        while (index < line.length())
-        {
-            if (Character.isWhitespace(line.charAt(index)) || line.charAt(index) == '#')
-                break ;
+    //
+    // Check that a value can be read through a handle of the given type.  An integer value can be
+    // read through a double handle, and slotValue() converts it.
+    //
+    private static void checkSlotType(SettingsValue v, SettingsValue.SettingsType type) throws BadParameterTypeException {
+        if (v.getType() == type)
+            return ;
 
-            index++ ;
-        }
+        if (type == SettingsValue.SettingsType.Double && v.getType() == SettingsValue.SettingsType.Integer)
+            return ;
 
-        if (index == line.length() || line.charAt(index) == '#')
-        {
-            //
-            // Either we parsed to the end of the line, or we parsed to
-            // a comment.  In either case, we are missing the value
-            //
-            logger_.startMessage(MessageType.Error).add(filename).add(lineno).add(":") ;
-            logger_.add("missing value in line").endMessage();
-            return false ;
-        }
-        name = line.substring(0, index) ;
+        throw new BadParameterTypeException(type, v.getType()) ;
+    }
 
-        // Skip past name and any white space
-        line = line.substring(index).strip() ;
-        if (line.length() == 0)
-        {
-            logger_.startMessage(MessageType.Error).add(filename).add(lineno).add(":") ;
-            logger_.add("missing value in line").endMessage();
-            return false ;            
-        }
-        index = 0 ;
+    //
+    // Convert a value to the double stored in a slot.  Integers are converted exactly, so the slot
+    // serves both integer and double handles.
+    //
+    private static double slotValue(SettingsValue v) throws BadParameterTypeException {
+        if (v.isBoolean())
+            return v.getBoolean() ? 1.0 : 0.0 ;
 
-        if (line.charAt(0) == '"')
-        {
-            index++ ;
-            while (index < line.length() && line.charAt(index) != '"')
-                index++ ;
-
-            if (index == line.length())
-            {
-                logger_.startMessage(MessageType.Error).add(filename).add(lineno).add(":") ;
-                logger_.add("missing trailing quote (\") in value").endMessage();
-                return false ;                   
-            }
+        if (v.isInteger())
+            return v.getInteger() ;
 
-            value = line.substring(0, index + 1) ;
-        }
-        else
-        {
-            while (index < line.length())
-            {
-                char ch = line.charAt(index) ;
-                if (Character.isWhitespace(ch) || ch == '#')
-                    break ;
+        return v.getDouble() ;
+    }
 
-                index++ ;
-            }
+    //
+    // A value has been read from the settings file.  If the value has a slot, the slot is
+    // updated so the handles see the new value.  The value must still be readable with the type
+    // the handles asked for, so a double slot accepts an integer but an integer slot does not accept
+    // a double.
+    //
+    private boolean updateSlot(String name, SettingsValue v) {
+        Integer index = slot_index_.get(name) ;
+        if (index == null)
+            return true ;
 
-            value = line.substring(0, index) ;
+        try {
+            checkSlotType(v, slot_types_[index]) ;
+            slots_[index] = slotValue(v) ;
         }
-
-        SettingsValue v = parseValue(name, value) ;
-        if (v == null)
-        {
-            logger_.startMessage(MessageType.Error).add(filename).add(":").add(lineno).add(":") ;
-            logger_.add("invalid value in line").endMessage();
-            return false ;            
+        catch(BadParameterTypeException ex) {
+            logger_.startMessage(MessageType.Error) ;
+            logger_.add("value for parameter ").addQuoted(name) ;
+            logger_.add(" changed type to ").add(v.getType().toString()) ;
+            logger_.add(", but it is read as ").add(slot_types_[index].toString()) ;
+            logger_.endMessage();
+            return false ;
         }
-        values_.put(name, v) ;
+
         return true ;
     }
 
-
 }
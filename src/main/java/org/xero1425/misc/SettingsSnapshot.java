@@ -0,0 +1,307 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/// \file
+
+/// \brief This class reads and writes the compiled binary form of a settings file.
+///
+/// The settings file is compiled once for each set of defines, so the if statements are already
+/// resolved and the values already have their types.  The binary form is stored next to the settings
+/// file and records the size, modification time, and CRC of the settings file it was compiled from, and
+/// the defines used.  It is used only if the settings file still matches and the defines are the same.  If
+/// the size and modification time match, the settings file is not read.  If only the size matches, for
+/// instance when deploying the code touched the file, the CRC of the settings file is compared, and if it
+/// matches the new modification time is stored in the binary form so the CRC is not computed again on the
+/// next boot.  The binary form is memory mapped and read in one pass.
+class SettingsSnapshot
+{
+    /// \brief the magic number at the start of the file, "XSET"
+    static final int Magic = 0x58534554 ;
+
+    /// \brief the version of the file format
+    static final int Version = 1 ;
+
+    /// \brief the extension for the binary form of a settings file
+    static final String Extension = ".xset" ;
+
+    //
+    // The types of values in the file
+    //
+    private static final byte IntegerType = 1 ;
+    private static final byte DoubleType = 2 ;
+    private static final byte BooleanType = 3 ;
+    private static final byte StringType = 4 ;
+
+    //
+    // The size of the header before the defines, the magic number, the version, and the stamp of the settings file
+    //
+    private static final int HeaderSize = 4 + 4 + 3 * 8 ;
+
+    //
+    // The offset of the modification time of the settings file
+    //
+    private static final int ModifiedOffset = 4 + 4 + 8 ;
+
+    //
+    // How the settings file matches its stamp
+    //
+    private static final int NoMatch = 0 ;
+    private static final int SameModified = 1 ;
+    private static final int SameContents = 2 ;
+
+    /// \brief returns the binary file for a settings file and a set of defines.
+    /// The name is the name of the settings file, then the defines in sorted order separated by '.', then the
+    /// extension, for example droid.dat.PRACTICE.xset.
+    /// \param filename the name of the settings file
+    /// \param defines the defines
+    /// \returns the binary file
+    static File getFile(String filename, Collection<String> defines) {
+        List<String> sorted = new ArrayList<String>(defines) ;
+        sorted.sort(null) ;
+
+        StringBuilder name = new StringBuilder(filename) ;
+        for(String def : sorted)
+            name.append('.').append(def) ;
+        name.append(Extension) ;
+
+        return new File(name.toString()) ;
+    }
+
+    /// \brief read the binary form of a settings file
+    /// \param filename the name of the settings file
+    /// \param defines the defines
+    /// \returns the values, or null if the binary file is missing or does not match the settings file or defines
+    static Map<String, SettingsValue> read(String filename, Collection<String> defines) {
+        File cache = getFile(filename, defines) ;
+        if (!cache.exists())
+            return null ;
+
+        File settings = new File(filename) ;
+        Map<String, SettingsValue> values ;
+        int match ;
+
+        try(RandomAccessFile file = new RandomAccessFile(cache, "r")) {
+            FileChannel ch = file.getChannel() ;
+            if (ch.size() < HeaderSize + 8)
+                return null ;
+
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()) ;
+            if (buf.getInt() != Magic || buf.getInt() != Version)
+                return null ;
+
+            match = matches(buf, settings) ;
+            if (match == NoMatch)
+                return null ;
+
+            int count = buf.getInt() ;
+            if (count != defines.size())
+                return null ;
+
+            for(int i = 0 ; i < count ; i++) {
+                if (!defines.contains(getString(buf)))
+                    return null ;
+            }
+
+            count = buf.getInt() ;
+            values = new LinkedHashMap<String, SettingsValue>() ;
+            for(int i = 0 ; i < count ; i++) {
+                String name = getString(buf) ;
+                SettingsValue v ;
+
+                switch(buf.get()) {
+                    case IntegerType:
+                        v = new SettingsValue(buf.getInt()) ;
+                        break ;
+                    case DoubleType:
+                        v = new SettingsValue(buf.getDouble()) ;
+                        break ;
+                    case BooleanType:
+                        v = new SettingsValue(buf.get() != 0) ;
+                        break ;
+                    case StringType:
+                        v = new SettingsValue(getString(buf)) ;
+                        break ;
+                    default:
+                        return null ;
+                }
+
+                values.put(name, v) ;
+            }
+
+            if (buf.hasRemaining())
+                return null ;
+        }
+        catch(Exception ex) {
+            return null ;
+        }
+
+        if (match == SameContents)
+            restamp(cache, settings) ;
+
+        return values ;
+    }
+
+    /// \brief write the binary form of a settings file
+    /// The file is written under a unique temporary name and renamed, so a partly written file is never read.
+    /// \param filename the name of the settings file
+    /// \param defines the defines used to read the settings file
+    /// \param values the values read from the settings file
+    /// \returns the binary file written
+    static File write(String filename, Collection<String> defines, Map<String, SettingsValue> values) throws IOException, BadParameterTypeException {
+        File cache = getFile(filename, defines) ;
+
+        List<byte[]> strings = new ArrayList<byte[]>() ;
+        int size = HeaderSize + 4 + 4 ;
+        for(String def : defines) {
+            byte[] b = def.getBytes(StandardCharsets.UTF_8) ;
+            strings.add(b) ;
+            size += 4 + b.length ;
+        }
+
+        for(Map.Entry<String, SettingsValue> entry : values.entrySet()) {
+            byte[] b = entry.getKey().getBytes(StandardCharsets.UTF_8) ;
+            strings.add(b) ;
+            size += 4 + b.length + 1 ;
+
+            SettingsValue v = entry.getValue() ;
+            switch(v.getType()) {
+                case Integer:
+                    size += 4 ;
+                    break ;
+                case Double:
+                    size += 8 ;
+                    break ;
+                case Boolean:
+                    size += 1 ;
+                    break ;
+                case String:
+                    b = v.getString().getBytes(StandardCharsets.UTF_8) ;
+                    strings.add(b) ;
+                    size += 4 + b.length ;
+                    break ;
+            }
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size) ;
+        int next = 0 ;
+
+        buf.putInt(Magic) ;
+        buf.putInt(Version) ;
+        putStamp(buf, new File(filename)) ;
+
+        buf.putInt(defines.size()) ;
+        for(int i = 0 ; i < defines.size() ; i++)
+            putString(buf, strings.get(next++)) ;
+
+        buf.putInt(values.size()) ;
+        for(SettingsValue v : values.values()) {
+            putString(buf, strings.get(next++)) ;
+            switch(v.getType()) {
+                case Integer:
+                    buf.put(IntegerType) ;
+                    buf.putInt(v.getInteger()) ;
+                    break ;
+                case Double:
+                    buf.put(DoubleType) ;
+                    buf.putDouble(v.getDouble()) ;
+                    break ;
+                case Boolean:
+                    buf.put(BooleanType) ;
+                    buf.put((byte)(v.getBoolean() ? 1 : 0)) ;
+                    break ;
+                case String:
+                    buf.put(StringType) ;
+                    putString(buf, strings.get(next++)) ;
+                    break ;
+            }
+        }
+
+        buf.flip() ;
+
+        //
+        // Several simulations may write the same file at once, so each writes its own temporary file
+        //
+        File dir = cache.getAbsoluteFile().getParentFile() ;
+        Path tmp = Files.createTempFile(dir.toPath(), cache.getName(), ".tmp") ;
+        try {
+            try(RandomAccessFile file = new RandomAccessFile(tmp.toFile(), "rw")) {
+                FileChannel ch = file.getChannel() ;
+                while (buf.hasRemaining())
+                    ch.write(buf) ;
+            }
+
+            Files.move(tmp, cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE) ;
+        }
+        finally {
+            Files.deleteIfExists(tmp) ;
+        }
+        return cache ;
+    }
+
+    //
+    // Store the modification time of the settings file in the binary file after its contents were found
+    // to match by CRC.  The CRC is still checked if the time does not match, so a failed or partial write
+    // here does no harm.
+    //
+    private static void restamp(File cache, File settings) {
+        try(RandomAccessFile file = new RandomAccessFile(cache, "rw")) {
+            file.seek(ModifiedOffset) ;
+            file.writeLong(settings.lastModified()) ;
+        }
+        catch(IOException ex) {
+        }
+    }
+
+    private static void putString(ByteBuffer buf, byte[] b) {
+        buf.putInt(b.length) ;
+        buf.put(b) ;
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getInt()] ;
+        buf.get(b) ;
+        return new String(b, StandardCharsets.UTF_8) ;
+    }
+
+    private static void putStamp(ByteBuffer buf, File f) throws IOException {
+        buf.putLong(f.length()) ;
+        buf.putLong(f.lastModified()) ;
+        buf.putLong(crc(f)) ;
+    }
+
+    private static int matches(ByteBuffer buf, File f) throws IOException {
+        long size = buf.getLong() ;
+        long mtime = buf.getLong() ;
+        long crc = buf.getLong() ;
+
+        if (size != f.length())
+            return NoMatch ;
+
+        if (mtime == f.lastModified())
+            return SameModified ;
+
+        return (crc == crc(f)) ? SameContents : NoMatch ;
+    }
+
+    private static long crc(File f) throws IOException {
+        CRC32 crc = new CRC32() ;
+        crc.update(Files.readAllBytes(f.toPath())) ;
+        return crc.getValue() ;
+    }
+}
@@ -0,0 +1,90 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+
+/// \file
+
+/// \brief This class watches the settings file and reads it again when it changes.
+/// A background thread checks the modification time of the file.  When the file changes, the
+/// thread reads it with SettingsParser.stageFile(), which only stages the new values.  The values
+/// are applied, and listeners told, when the robot calls SettingsParser.applyChanges() between
+/// robot loops, so a robot loop never sees half of a change.
+public class SettingsWatcher
+{
+    //
+    // The settings parser whose file is watched
+    //
+    private final SettingsParser settings_ ;
+
+    //
+    // The time between checks of the file, in seconds
+    //
+    private final double period_ ;
+
+    //
+    // The thread checking the file
+    //
+    private Thread watcher_ ;
+
+    //
+    // If true, the watcher thread should exit
+    //
+    private volatile boolean stopping_ ;
+
+    /// \brief create a new watcher
+    /// \param settings the settings parser, which must have read a file
+    /// \param period the time between checks of the file, in seconds
+    public SettingsWatcher(SettingsParser settings, double period) {
+        settings_ = settings ;
+        period_ = period ;
+        watcher_ = null ;
+        stopping_ = false ;
+    }
+
+    /// \brief start the thread that watches the file
+    public void start() {
+        if (watcher_ != null || settings_.getFileName() == null)
+            return ;
+
+        stopping_ = false ;
+        watcher_ = new Thread(() -> watchLoop(), "settingswatcher") ;
+        watcher_.setDaemon(true) ;
+        watcher_.start() ;
+    }
+
+    /// \brief stop the thread that watches the file
+    public void stop() {
+        if (watcher_ == null)
+            return ;
+
+        stopping_ = true ;
+        watcher_.interrupt() ;
+        try {
+            watcher_.join() ;
+        }
+        catch(InterruptedException ex) {
+        }
+        watcher_ = null ;
+    }
+
+    private void watchLoop() {
+        File file = new File(settings_.getFileName()) ;
+        long modified = file.lastModified() ;
+        long sleep = Math.max(1, (long)(period_ * 1000.0)) ;
+
+        while (!stopping_) {
+            try {
+                Thread.sleep(sleep) ;
+            }
+            catch(InterruptedException ex) {
+                continue ;
+            }
+
+            long now = file.lastModified() ;
+            if (now != 0 && now != modified) {
+                modified = now ;
+                settings_.stageFile() ;
+            }
+        }
+    }
+} ;
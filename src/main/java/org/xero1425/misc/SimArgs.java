@@ -1,12 +1,142 @@
 package org.xero1425.misc ;
 
+import java.util.LinkedHashMap ;
+import java.util.Map ;
+
 /// \file
 
-/// \brief simulation arguments that need to be sorted in a global scope
+/// \brief simulation arguments given on the command line
+/// One object is created by the main program and given to the robot, rather than kept in static
+/// fields.  The HAL simulation and the driver station are process-wide, so each simulation still runs
+/// in its own process, see SimulationTestRunner.
 public class SimArgs {
-    /// \brief the name of the logfile
-    public static String LogFileName = null ;
+    //
+    // The name of the logfile
+    //
+    private String log_file_name_ ;
+
+    //
+    // The name of the input stimulus file
+    //
+    private String input_file_name_ ;
+
+    //
+    // The name of the file that receives the assert results
+    //
+    private String results_file_name_ ;
+
+    //
+    // If true, the simulation runs as fast as possible rather than in real time
+    //
+    private boolean headless_ ;
+
+    //
+    // Simulation model properties that replace the properties in the models file, keyed by
+    // model name, instance name, and property name separated by colons
+    //
+    private Map<String, SettingsValue> model_props_ ;
+
+    /// \brief create the arguments with no log file, no input file, and real time simulation
+    public SimArgs() {
+        log_file_name_ = null ;
+        input_file_name_ = null ;
+        results_file_name_ = null ;
+        headless_ = false ;
+        model_props_ = new LinkedHashMap<String, SettingsValue>() ;
+    }
+
+    /// \brief returns the name of the log file
+    /// \returns the name of the log file, or null if none was given
+    public String getLogFileName() {
+        return log_file_name_ ;
+    }
+
+    /// \brief set the name of the log file
+    /// \param name the name of the log file
+    public void setLogFileName(String name) {
+        log_file_name_ = name ;
+    }
+
+    /// \brief returns the name of the input stimulus file
+    /// \returns the name of the input stimulus file, or null if none was given
+    public String getInputFileName() {
+        return input_file_name_ ;
+    }
+
+    /// \brief set the name of the input stimulus file
+    /// \param name the name of the input stimulus file
+    public void setInputFileName(String name) {
+        input_file_name_ = name ;
+    }
+
+    /// \brief returns the name of the file that receives the assert results
+    /// \returns the name of the results file, or null if none was given
+    public String getResultsFileName() {
+        return results_file_name_ ;
+    }
+
+    /// \brief set the name of the file that receives the assert results when the simulation exits
+    /// \param name the name of the results file
+    public void setResultsFileName(String name) {
+        results_file_name_ = name ;
+    }
+
+    /// \brief returns true if the simulation runs as fast as possible
+    /// \returns true if the simulation runs as fast as possible
+    public boolean isHeadless() {
+        return headless_ ;
+    }
+
+    /// \brief set whether the simulation runs as fast as possible rather than in real time
+    /// \param b if true, the simulation runs as fast as possible
+    public void setHeadless(boolean b) {
+        headless_ = b ;
+    }
+
+    /// \brief set a simulation model property, replacing the value in the models file
+    /// \param key the model name, instance name, and property name separated by colons
+    /// \param value the value of the property
+    public void setModelProperty(String key, SettingsValue value) {
+        model_props_.put(key, value) ;
+    }
+
+    /// \brief set a simulation model property from a command line argument of the form key=value
+    /// The value is an integer, a double, true or false, or otherwise a string.
+    /// \param arg the command line argument
+    /// \returns false if the argument does not have the form key=value
+    public boolean parseModelProperty(String arg) {
+        int index = arg.indexOf('=') ;
+        if (index <= 0)
+            return false ;
+
+        String key = arg.substring(0, index) ;
+        String str = arg.substring(index + 1) ;
+        SettingsValue v ;
+
+        if (str.equals("true") || str.equals("false")) {
+            v = new SettingsValue(str.equals("true")) ;
+        }
+        else {
+            try {
+                v = new SettingsValue(Integer.parseInt(str)) ;
+            }
+            catch(NumberFormatException ex) {
+                try {
+                    v = new SettingsValue(Double.parseDouble(str)) ;
+                }
+                catch(NumberFormatException ex2) {
+                    v = new SettingsValue(str) ;
+                }
+            }
+        }
+
+        model_props_.put(key, v) ;
+        return true ;
+    }
 
-    /// \brief the name of the input stimulus file
-    public static String InputFileName = null ;
+    /// \brief returns the simulation model properties that replace the values in the models file
+    /// \returns the model properties, keyed by model name, instance name, and property name
+    public Map<String, SettingsValue> getModelProperties() {
+        return model_props_ ;
+    }
 } ;
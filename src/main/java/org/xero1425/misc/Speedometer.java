@@ -1,8 +1,5 @@
 package org.xero1425.misc ;
 
-import java.util.List ;
-import java.util.ArrayList ;
-
 /// \file
 
 /// \brief This class is used to measure the speed, velocity, and acceleration of a physical quantity.
@@ -11,6 +8,11 @@ import java.util.ArrayList ;
 /// number of samples which is configurable and computes the outputs based on the set of samples.  Note, the more
 /// samples, the more accurate the values are likely to be, especially in a noisy environment, but the bigger the
 /// latency.
+///
+/// The samples are kept in fixed size rings of primitive values, so an update takes constant time and does not
+/// allocate.  Optionally, the velocity and acceleration can be estimated by fitting a quadratic to all of the
+/// positions in the window with least squares, which gives smoother values from noisy positions.  This takes
+/// time proportional to the number of samples and needs at least three samples.
 public class Speedometer
 {
     //
@@ -18,25 +20,51 @@ public class Speedometer
     //
     private boolean angle_ ;
 
+    //
+    // If true, the velocity and acceleration are estimated with least squares
+    //
+    private boolean least_squares_ ;
+
     //
     // The maximum number of samples to keep
     //
     private int max_samples_ ;
 
     //
-    // The set of distances stored, up to max_samples_
+    // The ring of positions, up to max_samples_.  For angles, the positions are unwrapped so
+    // they change smoothly across the -180/180 boundary.
+    //
+    private double[] positions_ ;
+
+    //
+    // The ring of calculated velocities, up to max_samples_
+    //
+    private double[] velocities_ ;
+
+    //
+    // The ring of sample times, up to max_samples_.  The times are the sum of the delta times given.
     //
-    private List<Double> distances_ ;
+    private double[] times_ ;
 
     //
-    // The set of calculated velocities stored, up to max_samples_
+    // The index of the newest sample in the rings
     //
-    private List<Double> velocities_ ;
+    private int newest_ ;
 
     //
-    // The set of times stored, up to max_samples_
+    // The number of samples in the rings
     //
-    private List<Double> times_ ;
+    private int count_ ;
+
+    //
+    // The sum of all delta times given
+    //
+    private double now_ ;
+
+    //
+    // The latest position given
+    //
+    private double distance_ ;
 
     //
     // The acceleration of the system
@@ -53,11 +81,25 @@ public class Speedometer
     /// \param samples the number of samples to keep
     /// \param angle if true, we are measuring an angle
     public Speedometer(String name, int samples, boolean angle) {
+        this(name, samples, angle, false) ;
+    }
+
+    /// \brief create a new speedometer
+    /// \param name the name of the speedometer
+    /// \param samples the number of samples to keep
+    /// \param angle if true, we are measuring an angle
+    /// \param leastsq if true, the velocity and acceleration are estimated with least squares
+    public Speedometer(String name, int samples, boolean angle, boolean leastsq) {
         angle_ = angle ;
-        max_samples_ = samples ;
-        distances_ = new ArrayList<Double>() ;
-        velocities_ = new ArrayList<Double>() ;
-        times_ = new ArrayList<Double>() ;
+        least_squares_ = leastsq ;
+        max_samples_ = Math.max(1, samples) ;
+        positions_ = new double[max_samples_] ;
+        velocities_ = new double[max_samples_] ;
+        times_ = new double[max_samples_] ;
+        newest_ = max_samples_ - 1 ;
+        count_ = 0 ;
+        now_ = 0.0 ;
+        distance_ = 0.0 ;
         accel_ = 0.0 ;
         name_ = name ;
     }
@@ -72,54 +114,63 @@ public class Speedometer
     /// \param dtime the delta time since the last sample
     /// \param pos the new position of the quantity being measured
     public void update(double dtime, double pos) {
-        double vel ;
-
         if (dtime > 1e-4) {
-            times_.add(dtime) ;
-            if (times_.size() > max_samples_)
-                times_.remove(0) ;
-
-            distances_.add(pos) ;
-            if (distances_.size() > max_samples_)
-                distances_.remove(0) ;
-
-            double total = 0.0 ;
-            for(int i = 1 ; i < times_.size() ; i++)
-                total += times_.get(i) ;
-
-            if (angle_)
-                vel = XeroMath.normalizeAngleDegrees(getDistance() - getOldestDistance()) / total ;
+            double track = pos ;
+            if (angle_ && count_ > 0)
+                track = positions_[newest_] + XeroMath.normalizeAngleDegrees(pos - distance_) ;
+
+            now_ += dtime ;
+            distance_ = pos ;
+
+            newest_++ ;
+            if (newest_ == max_samples_)
+                newest_ = 0 ;
+
+            if (count_ < max_samples_)
+                count_++ ;
+
+            int oldest = getOldest() ;
+            times_[newest_] = now_ ;
+            positions_[newest_] = track ;
+
+            double total = now_ - times_[oldest] ;
+            double vel = 0.0 ;
+            if (least_squares_ && count_ >= 3 && fitQuadratic())
+            {
+                vel = fit_vel_ ;
+                accel_ = fit_accel_ ;
+            }
+            else if (total > 0.0)
+            {
+                vel = (track - positions_[oldest]) / total ;
+                accel_ = (vel - velocities_[oldest]) / total ;
+            }
             else
-                vel = (getDistance() - getOldestDistance()) / total ;
-
-            velocities_.add(vel) ;
-            if (velocities_.size() > max_samples_)
-                velocities_.remove(0) ;
+            {
+                accel_ = 0.0 ;
+            }
 
-            accel_ = (getVelocity() - getOldestVelocity()) / total ;
+            velocities_[newest_] = vel ;
         }
-    }    
+    }
 
     /// \brief return the distance traveled.
     /// This method returns the latest position sample provided via the update method.  If no
     /// samples have been provided, this method returns 0.0.
     /// \returns the distance traveled
     public double getDistance() {
-        if (distances_.size() == 0)
-            return 0.0 ;
-
-        return distances_.get(distances_.size() - 1) ;
+        return distance_ ;
     }
 
     /// \brief return the computed velocity of the system
-    /// This method returns the latest velocity based on the samples provided to date.  If no
+    /// This method returns the latest velocity based on the samples provided to date.  If zero or one
     /// samples have been provided, this method returns 0.0.
     /// \returns the velocity of the system
     public double getVelocity() {
-        if (velocities_.size() == 0)
+        if (count_ == 0)
             return 0.0 ;
 
-        return velocities_.get(velocities_.size() - 1) ;        
+        return velocities_[newest_] ;
     }
 
     /// \brief return the computed acceleration of the system
@@ -130,14 +181,69 @@ public class Speedometer
         return accel_ ;
     }
 
-    /// \returns the oldest distance
-    private double getOldestDistance()  {
-        return distances_.get(0) ;
+    /// \returns the index of the oldest sample in the rings
+    private int getOldest() {
+        int index = newest_ - count_ + 1 ;
+        if (index < 0)
+            index += max_samples_ ;
+
+        return index ;
     }
 
-    /// \returns the oldest velocity
-    private double getOldestVelocity() {
-        return velocities_.get(0) ;
-    }    
+    //
+    // The velocity and acceleration from the last call to fitQuadratic()
+    //
+    private double fit_vel_ ;
+    private double fit_accel_ ;
+
+    /// \brief fit pos = a + b * u + c * u * u to the samples in the window with least squares.
+    /// Time is scaled to u, which goes from -1 at the oldest sample to 0 at the newest sample, and the
+    /// positions are relative to the newest sample, so the equations are well conditioned.
+    /// \returns false if the times are too close together to fit
+    private boolean fitQuadratic() {
+        double s1 = 0.0, s2 = 0.0, s3 = 0.0, s4 = 0.0 ;
+        double y0 = 0.0, y1 = 0.0, y2 = 0.0 ;
+        double n = count_ ;
+
+        int index = getOldest() ;
+        double span = now_ - times_[index] ;
+        if (span <= 0.0)
+            return false ;
+
+        for(int i = 0 ; i < count_ ; i++) {
+            double t = (times_[index] - now_) / span ;
+            double y = positions_[index] - positions_[newest_] ;
+            double t2 = t * t ;
+
+            s1 += t ;
+            s2 += t2 ;
+            s3 += t2 * t ;
+            s4 += t2 * t2 ;
+            y0 += y ;
+            y1 += y * t ;
+            y2 += y * t2 ;
+
+            index++ ;
+            if (index == max_samples_)
+                index = 0 ;
+        }
 
-}
\ No newline at end of file
+        //
+        // Solve the normal equations with Cramer's rule
+        //
+        //   | n  s1 s2 | |a|   |y0|
+        //   | s1 s2 s3 | |b| = |y1|
+        //   | s2 s3 s4 | |c|   |y2|
+        //
+        double det = n * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2) ;
+        if (Math.abs(det) < 1e-9)
+            return false ;
+
+        double detb = n * (y1 * s4 - s3 * y2) - y0 * (s1 * s4 - s3 * s2) + s2 * (s1 * y2 - y1 * s2) ;
+        double detc = n * (s2 * y2 - y1 * s3) - s1 * (s1 * y2 - y1 * s2) + y0 * (s1 * s3 - s2 * s2) ;
+
+        fit_vel_ = detb / det / span ;
+        fit_accel_ = 2.0 * detc / det / (span * span) ;
+        return true ;
+    }
+}
@@ -0,0 +1,176 @@
+package org.xero1425.misc ;
+
+import java.util.Arrays;
+
+/// \file
+
+/// \brief This class records a histogram of times, such as the time taken by one part of the robot loop.
+/// The buckets are laid out like an HDR histogram.  Times are kept in microseconds.  Times below 64
+/// microseconds each have their own bucket, and above that each power of two is split into 32 buckets,
+/// so any time is known to within about 3 percent.  Times longer than MaxTime are counted as MaxTime.
+/// Recording a time does not allocate memory, so it is safe to do in the robot loop.  The minimum,
+/// maximum, and total are exact.
+public final class TimingHistogram
+{
+    /// \brief the longest time recorded in full, in microseconds (about 16.7 seconds)
+    public static final long MaxTime = (1L << 24) - 1 ;
+
+    //
+    // The number of bits of the time kept in each power of two, and the number of buckets this gives
+    //
+    private static final int SubBucketBits = 5 ;
+    private static final int SubBucketCount = 1 << SubBucketBits ;
+
+    //
+    // The number of buckets needed for times up to MaxTime
+    //
+    private static final int BucketCount = bucketIndex(MaxTime) + 1 ;
+
+    //
+    // The name of the histogram
+    //
+    private final String name_ ;
+
+    //
+    // The number of times in each bucket
+    //
+    private final long[] counts_ ;
+
+    //
+    // The number of times recorded
+    //
+    private long count_ ;
+
+    //
+    // The total of the times recorded, in microseconds
+    //
+    private long total_ ;
+
+    //
+    // The shortest and longest times recorded, in microseconds
+    //
+    private long min_ ;
+    private long max_ ;
+
+    /// \brief create a new, empty histogram
+    /// \param name the name of the histogram
+    public TimingHistogram(String name) {
+        name_ = name ;
+        counts_ = new long[BucketCount] ;
+        reset() ;
+    }
+
+    /// \brief returns the name of the histogram
+    /// \returns the name of the histogram
+    public String getName() {
+        return name_ ;
+    }
+
+    /// \brief remove all of the times recorded
+    public void reset() {
+        Arrays.fill(counts_, 0) ;
+        count_ = 0 ;
+        total_ = 0 ;
+        min_ = Long.MAX_VALUE ;
+        max_ = 0 ;
+    }
+
+    /// \brief record a time
+    /// \param nanos the time in nanoseconds, for instance the difference of two calls to System.nanoTime()
+    public void recordNanos(long nanos) {
+        long us = Math.min(Math.max(nanos, 0) / 1000, MaxTime) ;
+
+        counts_[bucketIndex(us)]++ ;
+        count_++ ;
+        total_ += us ;
+        min_ = Math.min(min_, us) ;
+        max_ = Math.max(max_, us) ;
+    }
+
+    /// \brief returns the number of times recorded
+    /// \returns the number of times recorded
+    public long getCount() {
+        return count_ ;
+    }
+
+    /// \brief returns the shortest time recorded in seconds, or zero if no times were recorded
+    /// \returns the shortest time recorded in seconds
+    public double getMin() {
+        return (count_ == 0) ? 0.0 : min_ / 1.0e6 ;
+    }
+
+    /// \brief returns the longest time recorded in seconds
+    /// \returns the longest time recorded in seconds
+    public double getMax() {
+        return max_ / 1.0e6 ;
+    }
+
+    /// \brief returns the average time recorded in seconds, or zero if no times were recorded
+    /// \returns the average time recorded in seconds
+    public double getMean() {
+        return (count_ == 0) ? 0.0 : (double)total_ / count_ / 1.0e6 ;
+    }
+
+    /// \brief returns the time that the given percent of the times recorded are at or below.
+    /// The time returned is the longest time in the bucket holding the percentile, but never more
+    /// than the longest time recorded.
+    /// \param percent the percentile, from 0 to 100
+    /// \returns the time in seconds, or zero if no times were recorded
+    public double getPercentile(double percent) {
+        if (count_ == 0)
+            return 0.0 ;
+
+        long target = (long)Math.ceil(count_ * Math.min(Math.max(percent, 0.0), 100.0) / 100.0) ;
+        if (target < 1)
+            target = 1 ;
+
+        long seen = 0 ;
+        for(int i = 0 ; i < counts_.length ; i++) {
+            seen += counts_[i] ;
+            if (seen >= target)
+                return Math.min(bucketHighest(i), max_) / 1.0e6 ;
+        }
+
+        return max_ / 1.0e6 ;
+    }
+
+    /// \brief returns the number of times recorded that are longer than a given time.
+    /// Since the times are kept in buckets, times within about 3 percent of the limit may be counted either way.
+    /// \param limit the time in seconds
+    /// \returns the number of times recorded that are longer than the given time
+    public long getCountAbove(double limit) {
+        long us = (long)(limit * 1.0e6) ;
+        if (us >= MaxTime)
+            return 0 ;
+
+        long ret = 0 ;
+        for(int i = bucketIndex(us) + 1 ; i < counts_.length ; i++)
+            ret += counts_[i] ;
+
+        return ret ;
+    }
+
+    //
+    // Return the bucket for a time in microseconds.  Times below 2 * SubBucketCount have a bucket each.
+    // Above that, the times from 2^e up to 2^(e+1) share SubBucketCount buckets.
+    //
+    private static int bucketIndex(long us) {
+        if (us < 2 * SubBucketCount)
+            return (int)us ;
+
+        int shift = 63 - Long.numberOfLeadingZeros(us) - SubBucketBits ;
+        return SubBucketCount * (shift + 1) + (int)(us >> shift) - SubBucketCount ;
+    }
+
+    //
+    // Return the longest time in microseconds that is counted in a bucket
+    //
+    private static long bucketHighest(int index) {
+        if (index < 2 * SubBucketCount)
+            return index ;
+
+        int shift = index / SubBucketCount - 1 ;
+        long lowest = (long)(index % SubBucketCount + SubBucketCount) << shift ;
+        return lowest + (1L << shift) - 1 ;
+    }
+}
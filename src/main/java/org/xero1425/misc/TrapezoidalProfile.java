@@ -1,9 +1,22 @@
 package org.xero1425.misc ;
 
+import java.util.ArrayList ;
+import java.util.List ;
+
 /// \file
 
 /// \brief this class is a solver for the trapezoidal speed profile required to travel a distance
-public class TrapezoidalProfile {
+///
+/// The profile can be evaluated one value at a time, or all values at once with sample().  For moves that
+/// are repeated, like a turret or lifter going to the same setpoints every match, a table of samples at
+/// the robot loop period can be kept for each move.  When the table exists, sample() evaluates the profile
+/// from the table entry at or before the time given without looking at the profile segments.
+public class TrapezoidalProfile implements MotionProfile, SettingsListener {
+    //
+    // The maximum number of moves with a table of samples
+    //
+    private static final int MaxTables = 8 ;
+
     //
     // The maximum acceleration
     //
@@ -64,6 +77,35 @@ public class TrapezoidalProfile {
     //
     private String type_ ;
 
+    //
+    // The time between samples in the tables, or zero if tables are not used
+    //
+    private double table_period_ ;
+
+    //
+    // The tables of samples for the most recent moves, the most recently used last
+    //
+    private List<Table> tables_ ;
+
+    //
+    // The table for the current move, or null if there is none
+    //
+    private Table table_ ;
+
+    //
+    // The handles to the characteristics in the settings file, or null if they were given.  The
+    // table period handle is also null if the settings file has no table period.
+    //
+    private DoubleSetting maxa_handle_ ;
+    private DoubleSetting maxd_handle_ ;
+    private DoubleSetting maxv_handle_ ;
+    private DoubleSetting table_period_handle_ ;
+
+    //
+    // If true, the characteristics changed in the settings file since the last call to update()
+    //
+    private boolean settings_changed_ ;
+
     /// \brief create the object given the performance characteristics of the movement
     /// \param accel the maximum acceleration
     /// \param decel the maximum deceleration
@@ -72,27 +114,78 @@ public class TrapezoidalProfile {
         maxa_ = accel ;
         maxd_ = decel ;
         maxv_ = maxv ;
+        table_period_ = 0.0 ;
+        tables_ = new ArrayList<Table>() ;
+        table_ = null ;
+        maxa_handle_ = null ;
+        maxd_handle_ = null ;
+        maxv_handle_ = null ;
+        table_period_handle_ = null ;
+        settings_changed_ = false ;
     }
 
     /// \brief create the object reading the performance characteristics from the settings file
     /// The max acceleration is found by appending ":maxa" to the basename.  The maximum deceleration
     /// is found by appending ":maxd" to the basename.  The maximum velocity is found by appending
-    /// ":maxv" to the basename.
+    /// ":maxv" to the basename.  If a value is found by appending ":table_period" to the basename, tables
+    /// of samples are kept with this time between samples, see setTablePeriod().
     /// \param settings the settings file parser
     /// \param name the basename used to look up parameters.
     public TrapezoidalProfile(SettingsParser settings, String name) throws BadParameterTypeException, MissingParameterException {
-        maxa_ = settings.get(name + ":maxa").getDouble() ;
-        maxd_ = settings.get(name + ":maxd").getDouble() ;
-        maxv_ = settings.get(name + ":maxv").getDouble() ;
+        tables_ = new ArrayList<Table>() ;
+        table_ = null ;
+
+        maxa_handle_ = settings.doubleKey(name + ":maxa") ;
+        maxd_handle_ = settings.doubleKey(name + ":maxd") ;
+        maxv_handle_ = settings.doubleKey(name + ":maxv") ;
+        table_period_handle_ = (settings.getOrNull(name + ":table_period") != null) ? settings.doubleKey(name + ":table_period") : null ;
+        readSettings() ;
+
+        settings_changed_ = false ;
+        settings.addListener(name + ":", this) ;
+    }
+
+    /// \brief note that the performance characteristics changed in the settings file.
+    /// The new values are used, and the tables of samples are thrown away, the next time update() is
+    /// called, so a move in progress keeps the profile it started with.
+    /// \param settings the settings parser
+    @Override
+    public void settingsChanged(SettingsParser settings) {
+        settings_changed_ = true ;
+    }
+
+    private void readSettings() {
+        maxa_ = maxa_handle_.get() ;
+        maxd_ = maxd_handle_.get() ;
+        maxv_ = maxv_handle_.get() ;
+        table_period_ = (table_period_handle_ != null) ? table_period_handle_.get() : 0.0 ;
+    }
+
+    /// \brief keep a table of samples for each move, with the time between samples given
+    /// Tables are kept for the last few distinct moves given to update().  When a move is repeated,
+    /// its table is used again.  The period should be the robot loop period.
+    /// \param period the time between samples, or zero to not use tables
+    public void setTablePeriod(double period) {
+        table_period_ = period ;
+        tables_.clear() ;
+        table_ = null ;
     }
 
     /// \brief create a speed profile that covers the distance given, with the start and end velocities as conditions
     /// The acceleration time (if any), cruise time (if any), and deceleration time (if any) are all stored internally.
+    /// The start velocity is in the direction of travel, and a start velocity above the maximum velocity is
+    /// limited to the maximum velocity.
     /// \param dist the distance the speed profile should cover
     /// \param start_velocity the start velocity of the object
     /// \param end_velocity the end velocity of the object
     public void update(double dist, double start_velocity, double end_velocity) {
-        start_velocity_ = Math.abs(start_velocity) ;
+        if (settings_changed_) {
+            settings_changed_ = false ;
+            readSettings() ;
+            tables_.clear() ;
+        }
+
+        start_velocity_ = Math.min(Math.abs(start_velocity), maxv_) ;
         end_velocity_ = Math.abs(end_velocity) ;
 
         isneg_ = (dist < 0) ;
@@ -103,7 +196,7 @@ public class TrapezoidalProfile {
         td_ = (end_velocity_ - maxv_) / maxd_ ;
 
         //distance accelerating
-        double da = start_velocity * ta_ + 0.5 * maxa_ * ta_ * ta_ ;
+        double da = start_velocity_ * ta_ + 0.5 * maxa_ * ta_ * ta_ ;
         //distance decelerating
         double dd = maxv_ * td_ + 0.5 * maxd_ * td_ * td_ ;
         
@@ -128,7 +221,7 @@ public class TrapezoidalProfile {
                 //
                 ta_ = 0 ;
                 tc_ = 0 ;
-                td_ = (end_velocity - start_velocity_) / maxd_ ;
+                td_ = (end_velocity_ - start_velocity_) / maxd_ ;
                 actual_max_velocity_ = start_velocity_ ;
                 type_ = "line" ;
             }
@@ -151,6 +244,24 @@ public class TrapezoidalProfile {
             actual_max_velocity_ = maxv_ ;                
             tc_ = (distance_ - da - dd) / maxv_ ;
         }
+
+        table_ = null ;
+        if (table_period_ > 0.0)
+            table_ = findTable(dist, start_velocity, end_velocity) ;
+    }
+
+    /// \brief return the planned distance, velocity, and acceleration for the time given relative to the time when update() was called
+    /// This gives the same values as getDistance(), getVelocity(), and getAccel() but finds the segment of the
+    /// profile only once.  If a table of samples exists for the move, the values come from the table.
+    /// \param t the time of interest
+    /// \param out the object that receives the values
+    public void sample(double t, ProfileSample out) {
+        if (table_ != null && t >= 0.0) {
+            table_.sample(t, out) ;
+            return ;
+        }
+
+        evaluate(t, out) ;
     }
 
     /// \brief return the planned acceleration for the time given relative to the time when update() was called
@@ -281,26 +392,25 @@ public class TrapezoidalProfile {
 
     /// \brief given a distance, return the when that distance will be hit
     /// \returns the time when a specific distance will be hit.
-    public double getTimeForDistance(double dist) throws Exception {
+    public double getTimeForDistance(double dist) {
         double ret ;
-        double sign = isneg_ ? -1.0 : 1.0 ;
-        Double [] roots ;
+        double da = start_velocity_ * ta_ + 0.5 * ta_ * ta_ * maxa_ ;
+        double dc = da + tc_ * actual_max_velocity_ ;
 
         if (isneg_)
             dist = -dist ;
 
-        if (dist < sign * getDistance(ta_)) {
-            roots = XeroMath.quadratic(0.5 * maxa_, start_velocity_, -dist) ;
-            ret = pickRoot(roots) ;
+        if (dist <= 0.0) {
+            ret = 0.0 ;
+        }
+        else if (dist < da) {
+            ret = timeToTravel(maxa_, start_velocity_, dist) ;
         }
-        else if (dist < sign * getDistance(ta_ + tc_)) {
-            dist -= sign * getDistance(ta_) ;
-            ret = ta_ + dist / actual_max_velocity_ ;
+        else if (dist < dc) {
+            ret = ta_ + (dist - da) / actual_max_velocity_ ;
         }
-        else if (dist < sign * getDistance(ta_ + tc_ + td_)) {
-            dist -= sign * getDistance(ta_ + tc_) ;
-            roots = XeroMath.quadratic(0.5 * maxd_, actual_max_velocity_, -dist) ;
-            ret = pickRoot(roots) + ta_ + tc_ ;
+        else if (dist < distance_) {
+            ret = ta_ + tc_ + Math.min(td_, timeToTravel(maxd_, actual_max_velocity_, dist - dc)) ;
         }
         else {
             ret = ta_ + tc_ + td_ ;
@@ -321,35 +431,131 @@ public class TrapezoidalProfile {
         return end_velocity_ ;
     }
 
-    private double pickRoot(Double [] roots) throws Exception {
-        double ret = 0.0 ;
+    // Fill in the sample for the time given from the profile segments
+    private void evaluate(double t, ProfileSample out) {
+        double dist, vel, accel ;
+
+        if (t < 0.0) {
+            dist = 0.0 ;
+            vel = start_velocity_ ;
+            accel = 0.0 ;
+        }
+        else if (t < ta_) {
+            dist = start_velocity_ * t + 0.5 * t * t * maxa_ ;
+            vel = start_velocity_ + t * maxa_ ;
+            accel = maxa_ ;
+        }
+        else {
+            double da = start_velocity_ * ta_ + 0.5 * ta_ * ta_ * maxa_ ;
+            if (t < ta_ + tc_) {
+                dist = da + (t - ta_) * actual_max_velocity_ ;
+                vel = actual_max_velocity_ ;
+                accel = 0.0 ;
+            }
+            else if (t < ta_ + tc_ + td_) {
+                double dt = t - ta_ - tc_ ;
+                dist = da + tc_ * actual_max_velocity_ + actual_max_velocity_ * dt + 0.5 * dt * dt * maxd_ ;
+                vel = actual_max_velocity_ + dt * maxd_ ;
+                accel = maxd_ ;
+            }
+            else {
+                dist = distance_ ;
+                vel = end_velocity_ ;
+                accel = 0.0 ;
+            }
+        }
 
-        if (roots.length == 0)
-            throw new Exception("no real roots for equation") ;
+        if (isneg_)
+            out.set(-dist, -vel, -accel) ;
+        else
+            out.set(dist, vel, accel) ;
+    }
 
-        if (roots.length == 1)
-        {
-            if (roots[0] < 0.0)
-                throw new Exception("all real roots are negative") ;
+    // Returns the smallest non-negative time to travel the distance given, starting at the velocity given
+    // with a constant acceleration.  The result is exact, without the cancellation in the quadratic formula.
+    private static double timeToTravel(double accel, double vel, double dist) {
+        if (dist <= 0.0)
+            return 0.0 ;
 
-            ret = roots[0] ;
-        }
-        else 
-        {
-            if (roots[0] < 0.0 && roots[1] < 0.0)
-                throw new Exception("all real roots are negative") ;
-
-            if (roots[0] < 0.0)
-                ret = roots[1] ;
-            else if (roots[1] < 0.0)
-                ret = roots[0] ;
-            else if (roots[0] < roots[1])
-                ret =  roots[0] ;
-            else
-                ret = roots[1] ;
+        if (Math.abs(accel) < 1e-12)
+            return dist / vel ;
+
+        double disc = Math.max(0.0, vel * vel + 2.0 * accel * dist) ;
+        return 2.0 * dist / (vel + Math.sqrt(disc)) ;
+    }
+
+    // Find the table for the move given, creating it if needed
+    private Table findTable(double dist, double start_velocity, double end_velocity) {
+        for(int i = 0 ; i < tables_.size() ; i++) {
+            Table t = tables_.get(i) ;
+            if (t.dist_ == dist && t.start_velocity_ == start_velocity && t.end_velocity_ == end_velocity) {
+                tables_.remove(i) ;
+                tables_.add(t) ;
+                return t ;
+            }
         }
 
-        return ret ;
+        if (tables_.size() == MaxTables)
+            tables_.remove(0) ;
+
+        Table t = new Table(dist, start_velocity, end_velocity) ;
+        tables_.add(t) ;
+        return t ;
     }
 
-}
\ No newline at end of file
+    //
+    // The samples of one move at multiples of the table period.  Between samples, the values are
+    // found from the sample before using its acceleration, which is exact except in the loop where
+    // the profile changes segments.
+    //
+    private class Table
+    {
+        Table(double dist, double start_velocity, double end_velocity) {
+            dist_ = dist ;
+            start_velocity_ = start_velocity ;
+            end_velocity_ = end_velocity ;
+            period_ = table_period_ ;
+            total_ = getTotalTime() ;
+
+            int count = (int)Math.ceil(total_ / period_) + 1 ;
+            dists_ = new double[count] ;
+            vels_ = new double[count] ;
+            accels_ = new double[count] ;
+
+            ProfileSample s = new ProfileSample() ;
+            for(int i = 0 ; i < count ; i++) {
+                evaluate(i * period_, s) ;
+                dists_[i] = s.getDistance() ;
+                vels_[i] = s.getVelocity() ;
+                accels_[i] = s.getAccel() ;
+            }
+
+            evaluate(total_, s) ;
+            end_dist_ = s.getDistance() ;
+            end_vel_ = s.getVelocity() ;
+        }
+
+        void sample(double t, ProfileSample out) {
+            if (t >= total_) {
+                out.set(end_dist_, end_vel_, 0.0) ;
+                return ;
+            }
+
+            int i = (int)(t / period_) ;
+            double dt = t - i * period_ ;
+            double a = accels_[i] ;
+            out.set(dists_[i] + vels_[i] * dt + 0.5 * a * dt * dt, vels_[i] + a * dt, a) ;
+        }
+
+        double dist_ ;
+        double start_velocity_ ;
+        double end_velocity_ ;
+        double period_ ;
+        double total_ ;
+        double end_dist_ ;
+        double end_vel_ ;
+        double[] dists_ ;
+        double[] vels_ ;
+        double[] accels_ ;
+    }
+}
@@ -1,49 +1,97 @@
 package org.xero1425.misc ;
 
-import java.util.List ;
-import java.util.ArrayList ;
-
 /// \file
 
 /// \brief This class represents a single path to be followed by the robot drive base
 /// The XeroPath object has a name and a set of X and Y data points for both the left and right sides
-/// of the drivebase
+/// of the drivebase.  The data is stored as one array of doubles for each column of each side, where the
+/// columns are the ones in a XeroPathSegment, in order time, x, y, position, velocity, acceleration, jerk,
+/// and heading.  The data can be looked up by segment index or by the time since the start of the path,
+/// in which case the values are interpolated between the two segments around the time.
 public class XeroPath
 {
+    /// \brief the column for the time of each segment
+    public static final int Time = 0 ;
+
+    /// \brief the column for the x position of each segment
+    public static final int X = 1 ;
+
+    /// \brief the column for the y position of each segment
+    public static final int Y = 2 ;
+
+    /// \brief the column for the distance along the path of each segment
+    public static final int Position = 3 ;
+
+    /// \brief the column for the velocity of each segment
+    public static final int Velocity = 4 ;
+
+    /// \brief the column for the acceleration of each segment
+    public static final int Accel = 5 ;
+
+    /// \brief the column for the jerk of each segment
+    public static final int Jerk = 6 ;
+
+    /// \brief the column for the heading of each segment
+    public static final int Heading = 7 ;
+
+    /// \brief the number of columns for each segment
+    public static final int Columns = 8 ;
+
     //
     // The name of the path
     //
     private String name_ ;
 
     //
-    // The set of segment for the left side of the robot
+    // The data for the left side of the robot, indexed by column and then segment
+    //
+    private double[][] left_ ;
+
+    //
+    // The data for the right side of the robot, indexed by column and then segment
     //
-    private List<XeroPathSegment> left_ ;
+    private double[][] right_ ;
 
     //
-    // The set of segment for the right side of the robot
+    // The number of segments in the path
     //
-    private List<XeroPathSegment> right_ ;
+    private int size_ ;
 
     /// \brief create a new path with the name given
     /// \param name the name of the path
     public XeroPath(String name) {
+        this(name, 64) ;
+    }
+
+    /// \brief create a new path with the name given and room for the number of segments given
+    /// \param name the name of the path
+    /// \param capacity the number of segments expected in the path
+    public XeroPath(String name, int capacity) {
         name_ = name ;
-        left_ = new ArrayList<XeroPathSegment>() ;
-        right_ = new ArrayList<XeroPathSegment>() ;
+        left_ = new double[Columns][Math.max(1, capacity)] ;
+        right_ = new double[Columns][Math.max(1, capacity)] ;
+        size_ = 0 ;
     }
 
     /// \brief create a new path with the name given and the left and right data
+    /// The data is used as is and not copied.
     /// \param name the name of the path
-    /// \param left the data for the left side of the drive base
-    /// \param right the data for the right side of the drive base
-    public XeroPath(String name, List<XeroPathSegment> left, List<XeroPathSegment> right) throws Exception {
-        if (left_.size() != right_.size())
-            throw new Exception("path '" + name + "' has differing sizes left vs right") ;
+    /// \param left the data for the left side of the drive base, indexed by column and then segment
+    /// \param right the data for the right side of the drive base, indexed by column and then segment
+    /// \param size the number of segments in the data
+    public XeroPath(String name, double[][] left, double[][] right, int size) throws Exception {
+        if (left.length != Columns || right.length != Columns)
+            throw new Exception("path '" + name + "' has the wrong number of columns") ;
+
+        for(int i = 0 ; i < Columns ; i++) {
+            if (left[i].length < size || right[i].length < size)
+                throw new Exception("path '" + name + "' has differing sizes left vs right") ;
+        }
 
         name_ = name ;
         left_ = left ;
         right_ = right ;
+        size_ = size ;
     }
 
     /// \brief return the name of the path
@@ -55,35 +103,174 @@ public class XeroPath
     /// \brief returns the number of data points in the path
     /// \returns the numer of data points in the path
     public int getSize() {
-        return left_.size() ;
+        return size_ ;
+    }
+
+    /// \brief returns the time of the first segment of the path in seconds
+    /// \returns the time of the first segment of the path in seconds
+    public double getStartTime() {
+        return left_[Time][0] ;
     }
 
     /// \brief returns the duration of the path in seconds
     /// \returns the duration of the path in seconds
     public double getDuration() {
-        return getLeftSegment(left_.size() - 1).getTime() ;
+        return left_[Time][size_ - 1] ;
     }
 
     /// \brief returns a single segment of the path for the left side of the robot
     /// \param index the index of the segment to return
     /// \returns a single segment of the path for the left side of the robot
     public XeroPathSegment getLeftSegment(int index) {
-        return left_.get(index) ;
+        return createSegment(left_, index) ;
     }
 
     /// \brief returns a single segment of the path for the right side of the robot
     /// \param index the index of the segment to return
     /// \returns a single segment of the path for the right side of the robot
     public XeroPathSegment getRightSegment(int index) {
-        return right_.get(index) ;
+        return createSegment(right_, index) ;
+    }
+
+    /// \brief returns one value of a segment for the left side of the robot
+    /// \param column the column of the value, for instance XeroPath.Velocity
+    /// \param index the index of the segment
+    /// \returns one value of a segment for the left side of the robot
+    public double getLeft(int column, int index) {
+        return left_[column][index] ;
+    }
+
+    /// \brief returns one value of a segment for the right side of the robot
+    /// \param column the column of the value, for instance XeroPath.Velocity
+    /// \param index the index of the segment
+    /// \returns one value of a segment for the right side of the robot
+    public double getRight(int column, int index) {
+        return right_[column][index] ;
+    }
+
+    /// \brief returns the index of the segment at or just before the time given
+    /// Times before the start of the path return the first segment and times after the end of the
+    /// path return the last segment.
+    /// \param time the time since the start of the path
+    /// \returns the index of the segment at or just before the time given
+    public int findIndex(double time) {
+        double[] times = left_[Time] ;
+        if (time <= times[0])
+            return 0 ;
+
+        if (time >= times[size_ - 1])
+            return size_ - 1 ;
+
+        int lo = 0 ;
+        int hi = size_ - 1 ;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1 ;
+            if (times[mid] <= time)
+                lo = mid ;
+            else
+                hi = mid ;
+        }
+
+        return lo ;
+    }
+
+    /// \brief returns one value for the left side of the robot at the time given
+    /// The value is interpolated between the segments before and after the time given.
+    /// \param column the column of the value, for instance XeroPath.Velocity
+    /// \param time the time since the start of the path
+    /// \returns one value for the left side of the robot at the time given
+    public double getLeftAtTime(int column, double time) {
+        return interpolate(left_, column, findIndex(time), time) ;
+    }
+
+    /// \brief returns one value for the right side of the robot at the time given
+    /// The value is interpolated between the segments before and after the time given.
+    /// \param column the column of the value, for instance XeroPath.Velocity
+    /// \param time the time since the start of the path
+    /// \returns one value for the right side of the robot at the time given
+    public double getRightAtTime(int column, double time) {
+        return interpolate(right_, column, findIndex(time), time) ;
+    }
+
+    /// \brief returns one value for the left side of the robot at the time given
+    /// This is the same as getLeftAtTime() but uses an index already returned by findIndex() for the
+    /// time, so several values at the same time only search the path once.
+    /// \param column the column of the value, for instance XeroPath.Velocity
+    /// \param index the index returned by findIndex() for the time
+    /// \param time the time since the start of the path
+    /// \returns one value for the left side of the robot at the time given
+    public double getLeftAtTime(int column, int index, double time) {
+        return interpolate(left_, column, index, time) ;
+    }
+
+    /// \brief returns one value for the right side of the robot at the time given
+    /// This is the same as getRightAtTime() but uses an index already returned by findIndex() for the
+    /// time, so several values at the same time only search the path once.
+    /// \param column the column of the value, for instance XeroPath.Velocity
+    /// \param index the index returned by findIndex() for the time
+    /// \param time the time since the start of the path
+    /// \returns one value for the right side of the robot at the time given
+    public double getRightAtTime(int column, int index, double time) {
+        return interpolate(right_, column, index, time) ;
     }
 
     /// \brief adds a new path segment to the left adn right sides of the robot
     /// \param left the segment for the left side of the robot
     /// \param right the segment for the right side of the robot
     public void addPathSegment(XeroPathSegment left, XeroPathSegment right) {
-        left_.add(left) ;
-        right_.add(right) ;
+        if (size_ == left_[0].length)
+            grow() ;
+
+        storeSegment(left_, left) ;
+        storeSegment(right_, right) ;
+        size_++ ;
     }
 
-} ;
\ No newline at end of file
+    private void storeSegment(double[][] data, XeroPathSegment seg) {
+        data[Time][size_] = seg.getTime() ;
+        data[X][size_] = seg.getX() ;
+        data[Y][size_] = seg.getY() ;
+        data[Position][size_] = seg.getPosition() ;
+        data[Velocity][size_] = seg.getVelocity() ;
+        data[Accel][size_] = seg.getAccel() ;
+        data[Jerk][size_] = seg.getJerk() ;
+        data[Heading][size_] = seg.getHeading() ;
+    }
+
+    private static XeroPathSegment createSegment(double[][] data, int index) {
+        return new XeroPathSegment(data[Time][index], data[X][index], data[Y][index], data[Position][index],
+                                   data[Velocity][index], data[Accel][index], data[Jerk][index], data[Heading][index]) ;
+    }
+
+    private double interpolate(double[][] data, int column, int index, double time) {
+        double v0 = data[column][index] ;
+        if (index + 1 >= size_)
+            return v0 ;
+
+        double t0 = left_[Time][index] ;
+        double t1 = left_[Time][index + 1] ;
+        if (time <= t0 || t1 <= t0)
+            return v0 ;
+
+        double frac = Math.min(1.0, (time - t0) / (t1 - t0)) ;
+        double v1 = data[column][index + 1] ;
+
+        if (column == Heading)
+            return XeroMath.normalizeAngleDegrees(v0 + frac * XeroMath.normalizeAngleDegrees(v1 - v0)) ;
+
+        return v0 + frac * (v1 - v0) ;
+    }
+
+    private void grow() {
+        int capacity = left_[0].length * 2 ;
+        for(int i = 0 ; i < Columns ; i++) {
+            double[] l = new double[capacity] ;
+            System.arraycopy(left_[i], 0, l, 0, size_) ;
+            left_[i] = l ;
+
+            double[] r = new double[capacity] ;
+            System.arraycopy(right_[i], 0, r, 0, size_) ;
+            right_[i] = r ;
+        }
+    }
+} ;
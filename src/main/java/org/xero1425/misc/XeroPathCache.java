@@ -0,0 +1,199 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/// \file
+
+/// \brief This class reads and writes the compiled binary form of a path.
+///
+/// The binary form of a path is stored next to the path CSV files and records the size, modification
+/// time, and CRC of the left and right CSV files it was compiled from.  The binary form is used only
+/// if the CSV files still match.  If the size and modification time match, the CSV files are not read.
+/// If only the size matches, for instance when deploying the code touched the files, the CRC of the
+/// CSV files is compared, and if it matches the new modification time is stored in the binary form so
+/// the CRC is not computed again on the next boot.  The binary form is memory mapped and the data is
+/// copied straight into the arrays of the path.
+class XeroPathCache
+{
+    /// \brief the magic number at the start of the file, "XPTH"
+    static final int Magic = 0x58505448 ;
+
+    /// \brief the version of the file format
+    static final int Version = 1 ;
+
+    /// \brief the extension for the binary form of a path
+    static final String Extension = ".xpath" ;
+
+    //
+    // The size of the header, the magic number, the version, the stamps of the two CSV files,
+    // and the number of segments
+    //
+    private static final int HeaderSize = 4 + 4 + 2 * 3 * 8 + 4 ;
+
+    //
+    // The offsets of the stamps of the two CSV files, and the offset of the modification time in a stamp
+    //
+    private static final int LeftStampOffset = 4 + 4 ;
+    private static final int RightStampOffset = LeftStampOffset + 3 * 8 ;
+    private static final int ModifiedOffset = 8 ;
+
+    //
+    // How a CSV file matches its stamp
+    //
+    private static final int NoMatch = 0 ;
+    private static final int SameModified = 1 ;
+    private static final int SameContents = 2 ;
+
+    /// \brief read the binary form of a path
+    /// \param name the name of the path
+    /// \param cache the binary file
+    /// \param left the CSV file for the left side of the path
+    /// \param right the CSV file for the right side of the path
+    /// \returns the path, or null if the binary file is missing or does not match the CSV files
+    static XeroPath read(String name, File cache, File left, File right) {
+        if (!cache.exists())
+            return null ;
+
+        XeroPath path ;
+        int lmatch, rmatch ;
+
+        try(RandomAccessFile file = new RandomAccessFile(cache, "r")) {
+            FileChannel ch = file.getChannel() ;
+            if (ch.size() < HeaderSize)
+                return null ;
+
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()) ;
+            if (buf.getInt() != Magic || buf.getInt() != Version)
+                return null ;
+
+            lmatch = matches(buf, left) ;
+            if (lmatch == NoMatch)
+                return null ;
+
+            rmatch = matches(buf, right) ;
+            if (rmatch == NoMatch)
+                return null ;
+
+            int size = buf.getInt() ;
+            if (size <= 0 || buf.remaining() != (long)size * XeroPath.Columns * 2 * 8)
+                return null ;
+
+            DoubleBuffer data = buf.asDoubleBuffer() ;
+            double[][] ldata = new double[XeroPath.Columns][size] ;
+            double[][] rdata = new double[XeroPath.Columns][size] ;
+            for(int i = 0 ; i < XeroPath.Columns ; i++)
+                data.get(ldata[i]) ;
+            for(int i = 0 ; i < XeroPath.Columns ; i++)
+                data.get(rdata[i]) ;
+
+            path = new XeroPath(name, ldata, rdata, size) ;
+        }
+        catch(Exception ex) {
+            return null ;
+        }
+
+        if (lmatch == SameContents || rmatch == SameContents)
+            restamp(cache, left, right) ;
+
+        return path ;
+    }
+
+    /// \brief write the binary form of a path
+    /// The file is written under a unique temporary name and renamed, so a partly written file is never read.
+    /// \param path the path to write
+    /// \param cache the binary file
+    /// \param left the CSV file for the left side of the path
+    /// \param right the CSV file for the right side of the path
+    static void write(XeroPath path, File cache, File left, File right) throws IOException {
+        int size = path.getSize() ;
+        ByteBuffer buf = ByteBuffer.allocate(HeaderSize + size * XeroPath.Columns * 2 * 8) ;
+
+        buf.putInt(Magic) ;
+        buf.putInt(Version) ;
+        putStamp(buf, left) ;
+        putStamp(buf, right) ;
+        buf.putInt(size) ;
+
+        for(int col = 0 ; col < XeroPath.Columns ; col++) {
+            for(int i = 0 ; i < size ; i++)
+                buf.putDouble(path.getLeft(col, i)) ;
+        }
+
+        for(int col = 0 ; col < XeroPath.Columns ; col++) {
+            for(int i = 0 ; i < size ; i++)
+                buf.putDouble(path.getRight(col, i)) ;
+        }
+
+        buf.flip() ;
+
+        //
+        // Several simulations may write the same file at once, so each writes its own temporary file
+        //
+        File dir = cache.getAbsoluteFile().getParentFile() ;
+        Path tmp = Files.createTempFile(dir.toPath(), cache.getName(), ".tmp") ;
+        try {
+            try(RandomAccessFile file = new RandomAccessFile(tmp.toFile(), "rw")) {
+                FileChannel ch = file.getChannel() ;
+                while (buf.hasRemaining())
+                    ch.write(buf) ;
+            }
+
+            Files.move(tmp, cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE) ;
+        }
+        finally {
+            Files.deleteIfExists(tmp) ;
+        }
+    }
+
+    //
+    // Store the modification times of the CSV files in the binary file after their contents were found
+    // to match by CRC.  Only the modification times change, and the CRC is still checked if a time does
+    // not match, so a failed or partial write here does no harm.
+    //
+    private static void restamp(File cache, File left, File right) {
+        try(RandomAccessFile file = new RandomAccessFile(cache, "rw")) {
+            file.seek(LeftStampOffset + ModifiedOffset) ;
+            file.writeLong(left.lastModified()) ;
+            file.seek(RightStampOffset + ModifiedOffset) ;
+            file.writeLong(right.lastModified()) ;
+        }
+        catch(IOException ex) {
+        }
+    }
+
+    private static void putStamp(ByteBuffer buf, File f) throws IOException {
+        buf.putLong(f.length()) ;
+        buf.putLong(f.lastModified()) ;
+        buf.putLong(crc(f)) ;
+    }
+
+    private static int matches(ByteBuffer buf, File f) throws IOException {
+        long size = buf.getLong() ;
+        long mtime = buf.getLong() ;
+        long crc = buf.getLong() ;
+
+        if (size != f.length())
+            return NoMatch ;
+
+        if (mtime == f.lastModified())
+            return SameModified ;
+
+        return (crc == crc(f)) ? SameContents : NoMatch ;
+    }
+
+    private static long crc(File f) throws IOException {
+        CRC32 crc = new CRC32() ;
+        crc.update(Files.readAllBytes(f.toPath())) ;
+        return crc.getValue() ;
+    }
+}
@@ -1,15 +1,14 @@
 package org.xero1425.misc;
 
+import java.util.List;
 import java.util.Map;
-import java.io.Reader;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Iterator;
-
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser ;
-import org.apache.commons.csv.CSVRecord ;
+import java.util.Set;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /// \file
 
@@ -18,8 +17,21 @@ import org.apache.commons.csv.CSVRecord ;
 /// files that have the given name as the base name.  These files are loaded and
 /// the path can be retreived using the name provided at any future time.
 ///
+/// A set of paths can be loaded one after the other, in parallel on a small pool of threads,
+/// or lazily, where each path is loaded the first time it is retreived.  When the cache is
+/// enabled, each path is also stored in a compiled binary form next to the CSV files, which is
+/// read instead of the CSV files as long as the CSV files do not change.
+///
 public class XeroPathManager
 {
+    /// \brief how loadPaths() loads a set of paths
+    public enum LoadMode
+    {
+        Serial,                 ///< Load the paths one after the other
+        Parallel,               ///< Load the paths in parallel on a small pool of threads
+        Lazy                    ///< Load each path the first time it is retreived with getPath()
+    } ;
+
     //
     // The message logger, for logging path manager related messages to the log file
     //
@@ -35,6 +47,21 @@ public class XeroPathManager
     //
     private Map<String, XeroPath> paths_ ;
 
+    //
+    // The set of paths that are loaded the first time they are retreived
+    //
+    private Set<String> lazy_paths_ ;
+
+    //
+    // How loadPaths() loads a set of paths
+    //
+    private LoadMode mode_ ;
+
+    //
+    // If true, paths are read from and written to the compiled binary form
+    //
+    private boolean cache_ ;
+
     //
     // The base directory for finding path files
     //
@@ -62,7 +89,11 @@ public class XeroPathManager
     /// \param basedir the base directory where all paths are found
     public XeroPathManager(MessageLogger logger, String basedir) {
         basedir_ = basedir ;
-        paths_ = new HashMap<String, XeroPath>() ;
+        paths_ = new ConcurrentHashMap<String, XeroPath>() ;
+        lazy_paths_ = ConcurrentHashMap.newKeySet() ;
+        mode_ = LoadMode.Parallel ;
+        cache_ = true ;
+        logger_ = logger ;
         logger_id_ = logger.registerSubsystem(LoggerName) ;
 
         setExtensions("_left.csv", "_right.csv");
@@ -74,145 +105,168 @@ public class XeroPathManager
         return basedir_ ;
     }
 
-    /// \brief load a path from the path data files
-    /// The path manager will look for two files named BASEDIR/name.left_ext and BASEDIR/name.right_ext
-    /// where BASEDIR is the base directory specified when the path manager was created, name is the
-    /// name given in thie call, and left_ext and right_ext are the extensions set in the setExtensions()
-    /// call.
-    /// \param name the name of the path to load
-    public boolean loadPath(String name) {
-        String filename = null ;
-        Reader lrdr, rrdr ;
+    /// \brief set how loadPaths() loads a set of paths
+    /// \param mode how loadPaths() loads a set of paths
+    public void setLoadMode(LoadMode mode) {
+        mode_ = mode ;
+    }
 
-        try {
-            filename = basedir_ + "/" + name + left_ext_ ;
-            lrdr = Files.newBufferedReader(Paths.get(filename)) ;
-        }
-        catch(Exception ex) {
-            logger_.startMessage(MessageType.Error) ;
-            logger_.add("cannot load path file (left) '").add(filename).add("' - ").add(ex.getMessage()) ;
-            logger_.endMessage();
-            return false ;
-        }
+    /// \brief if true, paths are read from and written to a compiled binary form next to the CSV files
+    /// \param b if true, the compiled binary form is used
+    public void setCacheEnabled(boolean b) {
+        cache_ = b ;
+    }
 
-        try {
-            filename = basedir_ + "/" + name + right_ext_ ;
-            rrdr = Files.newBufferedReader(Paths.get(filename)) ;
+    /// \brief load a set of paths as given by setLoadMode()
+    /// In the lazy mode, only the existence of the path files is checked here.
+    /// \param names the names of the paths to load
+    /// \returns the number of paths loaded, or found in the lazy mode
+    public int loadPaths(List<String> names) {
+        int count = 0 ;
+        long start = System.nanoTime() ;
+
+        if (mode_ == LoadMode.Lazy) {
+            for(String name : names) {
+                if (new File(basedir_ + "/" + name + left_ext_).exists() && new File(basedir_ + "/" + name + right_ext_).exists()) {
+                    lazy_paths_.add(name) ;
+                    count++ ;
+                }
+                else {
+                    logger_.startMessage(MessageType.Error) ;
+                    logger_.add("cannot find path files for path '").add(name).add("'") ;
+                    logger_.endMessage();
+                }
+            }
         }
-        catch(Exception ex) {
+        else if (mode_ == LoadMode.Parallel && names.size() > 1) {
+            int threads = Math.min(names.size(), Math.max(2, Runtime.getRuntime().availableProcessors())) ;
+            ExecutorService pool = Executors.newFixedThreadPool(threads, (r) -> {
+                Thread th = new Thread(r, "pathloader") ;
+                th.setDaemon(true) ;
+                return th ;
+            }) ;
+
             try {
-                lrdr.close() ;
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>() ;
+                for(String name : names)
+                    results.add(pool.submit(() -> loadPath(name))) ;
+
+                for(Future<Boolean> result : results) {
+                    try {
+                        if (result.get())
+                            count++ ;
+                    }
+                    catch(Exception ex) {
+                        logger_.startMessage(MessageType.Error) ;
+                        logger_.add("exception loading path - ").add(ex.getMessage()) ;
+                        logger_.endMessage();
+                    }
+                }
             }
-            catch(Exception ex2) {
+            finally {
+                pool.shutdown() ;
             }
-            logger_.startMessage(MessageType.Error) ;
-            logger_.add("cannot load path file (right)'").add(filename).add("' - ").add(ex.getMessage()) ;
-            logger_.endMessage();
-            return false ;
-        }        
-
-        CSVParser lparser = null ;
-        CSVParser rparser = null ;
-
-        try {
-            lparser = new CSVParser(lrdr, CSVFormat.DEFAULT) ;
-            rparser = new CSVParser(rrdr, CSVFormat.DEFAULT) ;
         }
-        catch(Exception ex) {
-            try {
-                if (lparser != null)
-                    lparser.close() ;
-                else
-                    lrdr.close() ;
-
-                if (rparser != null)
-                    rparser.close() ;
-                else
-                    rrdr.close() ;
+        else {
+            for(String name : names) {
+                if (loadPath(name))
+                    count++ ;
             }
-            catch(Exception ex2) {                
-            }
-
-            logger_.startMessage(MessageType.Error) ;
-            logger_.add("cannot load path '").add(name).add("' - ").add(ex.getMessage()) ;
-            logger_.endMessage();                
         }
 
-        Iterator<CSVRecord> liter = lparser.iterator() ;
-        Iterator<CSVRecord> riter = rparser.iterator() ;
-        XeroPath path = new XeroPath(name) ;
-        boolean first = true ;
+        logger_.startMessage(MessageType.Info, logger_id_) ;
+        logger_.add("loaded ").add(count).add(" paths") ;
+        logger_.add("mode", mode_.toString()) ;
+        logger_.add("cache", cache_) ;
+        logger_.add("ms", (System.nanoTime() - start) / 1.0e6) ;
+        logger_.endMessage();
 
-        while (liter.hasNext() && riter.hasNext())
-        {
-            CSVRecord lrec = liter.next() ;
-            CSVRecord rrec = riter.next() ;
+        return count ;
+    }
 
-            if (first)
-            {
-                first = false ;
-                continue ;
-            }
+    /// \brief load a path from the path data files
+    /// The path manager will look for two files named BASEDIR/name.left_ext and BASEDIR/name.right_ext
+    /// where BASEDIR is the base directory specified when the path manager was created, name is the
+    /// name given in thie call, and left_ext and right_ext are the extensions set in the setExtensions()
+    /// call.  This method can be called from more than one thread at a time.
+    /// \param name the name of the path to load
+    public boolean loadPath(String name) {
+        XeroPath path = readPath(name) ;
+        if (path == null)
+            return false ;
 
-            if (lrec.size() != 8)
-            {
-                logger_.startMessage(MessageType.Error) ;
-                logger_.add("cannot load path '").add(name) ;
-                logger_.add("' - left file contains invalid number of columns, line") ;
-                logger_.add(lrec.getRecordNumber()) ;
-                logger_.endMessage();   
-                return false ;
-            }
+        paths_.put(name, path) ;
+        return true ;
+    }
 
-            if (rrec.size() != 8)
-            {
-                logger_.startMessage(MessageType.Error) ;
-                logger_.add("cannot load path '").add(name) ;
-                logger_.add("' - right file contains invalid number of columns, line") ;
-                logger_.add(lrec.getRecordNumber()) ;
-                logger_.endMessage();   
-                return false ;
-            }
+    // Read a path from the compiled binary form if it is valid, otherwise from the CSV files
+    private XeroPath readPath(String name) {
+        File left = new File(basedir_ + "/" + name + left_ext_) ;
+        File right = new File(basedir_ + "/" + name + right_ext_) ;
+        File cache = new File(basedir_ + "/" + name + XeroPathCache.Extension) ;
 
-            XeroPathSegment lseg, rseg ;
-            try {
-                lseg = parseCSVRecord(lrec) ;
-            }
-            catch(Exception ex) {
-                logger_.startMessage(MessageType.Error) ;
-                logger_.add("cannot load path '").add(name) ;
-                logger_.add("' - left file contains invalid floating point number, line") ;
-                logger_.add(lrec.getRecordNumber()) ;
-                logger_.endMessage();   
-                return false ;
-            }
+        if (cache_) {
+            XeroPath path = XeroPathCache.read(name, cache, left, right) ;
+            if (path != null)
+                return path ;
+        }
 
+        XeroPath path = parseCSVFiles(name) ;
+        if (path != null && cache_) {
             try {
-                rseg = parseCSVRecord(lrec) ;
+                XeroPathCache.write(path, cache, left, right) ;
             }
             catch(Exception ex) {
-                logger_.startMessage(MessageType.Error) ;
-                logger_.add("cannot load path '").add(name) ;
-                logger_.add("' - right file contains invalid floating point number, line") ;
-                logger_.add(lrec.getRecordNumber()) ;
-                logger_.endMessage();   
-                return false ;
+                logger_.startMessage(MessageType.Warning) ;
+                logger_.add("cannot write compiled path file '").add(cache.getPath()).add("' - ").add(ex.getMessage()) ;
+                logger_.endMessage();
             }
+        }
+
+        return path ;
+    }
 
-            path.addPathSegment(lseg, rseg);
+    private XeroPath parseCSVFiles(String name) {
+        XeroPathParser left = new XeroPathParser(basedir_ + "/" + name + left_ext_) ;
+        XeroPathParser right = new XeroPathParser(basedir_ + "/" + name + right_ext_) ;
+
+        try {
+            left.parseFile() ;
+            right.parseFile() ;
+        }
+        catch(Exception ex) {
+            logger_.startMessage(MessageType.Error) ;
+            logger_.add("cannot load path '").add(name).add("' - ").add(ex.getMessage()) ;
+            logger_.endMessage();
+            return null ;
         }
 
-        if (liter.hasNext() || riter.hasNext())
+        if (left.getSize() != right.getSize())
         {
             logger_.startMessage(MessageType.Error) ;
             logger_.add("cannot load path '").add(name) ;
             logger_.add("' - left and right files contains differing number of segments") ;
-            logger_.endMessage();   
-            return false ;
+            logger_.endMessage();
+            return null ;
         }
 
-        paths_.put(name, path) ;
-        return true ;
+        if (left.getSize() == 0)
+        {
+            logger_.startMessage(MessageType.Error) ;
+            logger_.add("cannot load path '").add(name).add("' - path files contain no segments") ;
+            logger_.endMessage();
+            return null ;
+        }
+
+        try {
+            return new XeroPath(name, left.getData(), right.getData(), left.getSize()) ;
+        }
+        catch(Exception ex) {
+            logger_.startMessage(MessageType.Error) ;
+            logger_.add("cannot load path '").add(name).add("' - ").add(ex.getMessage()) ;
+            logger_.endMessage();
+            return null ;
+        }
     }
 
     /// \brief returns a path given the path name
@@ -221,6 +275,9 @@ public class XeroPathManager
     /// \returns a path given its name
     public XeroPath getPath(String name) throws MissingPathException {
         XeroPath p = paths_.get(name) ;
+        if (p == null && lazy_paths_.contains(name))
+            p = paths_.computeIfAbsent(name, (n) -> readPath(n)) ;
+
         if (p == null)
             throw new MissingPathException(name) ;
 
@@ -230,7 +287,7 @@ public class XeroPathManager
     /// \brief returns true if the path manager has loaded a path with the name given
     /// \returns true if the path manager has loaded a path with the name given
     public boolean hasPath(String name) {
-        return paths_.containsKey(name) ;
+        return paths_.containsKey(name) || lazy_paths_.contains(name) ;
     }
 
     /// \brief sets the extensions for loading paths
@@ -240,20 +297,4 @@ public class XeroPathManager
         left_ext_ = left ;
         right_ext_ = right ;
     }
-
-    private XeroPathSegment parseCSVRecord(CSVRecord r) throws NumberFormatException {
-        double time, x, y, pos, vel, accel, jerk, heading ;
-
-        time = Double.parseDouble(r.get(0)) ;
-        x = Double.parseDouble(r.get(1)) ;
-        y = Double.parseDouble(r.get(2)) ;
-        pos = Double.parseDouble(r.get(3)) ;
-        vel = Double.parseDouble(r.get(4)) ;
-        accel = Double.parseDouble(r.get(5)) ;
-        jerk = Double.parseDouble(r.get(6)) ;
-        heading = Double.parseDouble(r.get(7)) ;
-
-        return new XeroPathSegment(time, x, y, pos, vel, accel, jerk, heading) ;
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,280 @@
+package org.xero1425.misc ;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/// \file
+
+/// \brief This class parses the CSV files that hold one side of a path.
+///
+/// The file has a header line with the column names, followed by one line for each segment with
+/// the eight numeric columns time, x, y, position, velocity, acceleration, jerk, and heading.  The
+/// bytes are read straight from a ByteBuffer, usually a memory mapped file, and the numbers are
+/// parsed in place into one array per column, so no strings or records are created.  Numbers with
+/// up to 18 significant digits and small exponents, which covers the path files, are converted with
+/// a single exact multiply or divide, which gives the same result as Double.parseDouble().  Other
+/// numbers are given to Double.parseDouble().
+public class XeroPathParser
+{
+    //
+    // Exact powers of ten as doubles
+    //
+    private static final double[] Pow10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    } ;
+
+    //
+    // The largest mantissa that is exactly a double
+    //
+    private static final long MaxExactMantissa = 1L << 53 ;
+
+    //
+    // The name of the file, for error messages
+    //
+    private String filename_ ;
+
+    //
+    // The data parsed, indexed by column and then segment
+    //
+    private double[][] data_ ;
+
+    //
+    // The number of segments parsed
+    //
+    private int size_ ;
+
+    //
+    // The current line number, starting at one
+    //
+    private int line_ ;
+
+    /// \brief create a new parser
+    /// \param filename the name of the file, used in error messages
+    public XeroPathParser(String filename) {
+        filename_ = filename ;
+        data_ = null ;
+        size_ = 0 ;
+    }
+
+    /// \brief returns the data parsed, indexed by column and then segment
+    /// The arrays may be longer than the number of segments.
+    /// \returns the data parsed
+    public double[][] getData() {
+        return data_ ;
+    }
+
+    /// \brief returns the number of segments parsed
+    /// \returns the number of segments parsed
+    public int getSize() {
+        return size_ ;
+    }
+
+    /// \brief memory map the file given to the constructor and parse it
+    /// \returns the number of segments parsed
+    public int parseFile() throws IOException, BadPathFileException {
+        try(RandomAccessFile file = new RandomAccessFile(filename_, "r")) {
+            FileChannel ch = file.getChannel() ;
+            return parse(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size())) ;
+        }
+    }
+
+    /// \brief parse the contents of a path file
+    /// \param buf the contents of the path file, from the position to the limit
+    /// \returns the number of segments parsed
+    public int parse(ByteBuffer buf) throws BadPathFileException {
+        int pos = buf.position() ;
+        int end = buf.limit() ;
+
+        //
+        // A segment line is around 60 bytes, so this usually avoids growing the arrays
+        //
+        int capacity = Math.max(16, (end - pos) / 48) ;
+        data_ = new double[XeroPath.Columns][capacity] ;
+        size_ = 0 ;
+        line_ = 1 ;
+
+        //
+        // Skip the header line
+        //
+        pos = skipLine(buf, pos, end) ;
+
+        while (pos < end) {
+            line_++ ;
+
+            byte ch = buf.get(pos) ;
+            if (ch == '\n' || ch == '\r') {
+                pos = skipLine(buf, pos, end) ;
+                continue ;
+            }
+
+            if (size_ == data_[0].length)
+                grow() ;
+
+            int col = 0 ;
+            while (true) {
+                if (col == XeroPath.Columns)
+                    throw new BadPathFileException(filename_, line_, "too many columns, expected " + Integer.toString(XeroPath.Columns)) ;
+
+                pos = parseNumber(buf, pos, end, col) ;
+                col++ ;
+
+                if (pos == end)
+                    break ;
+
+                ch = buf.get(pos) ;
+                if (ch == ',') {
+                    pos++ ;
+                }
+                else if (ch == '\r' || ch == '\n') {
+                    break ;
+                }
+                else {
+                    throw new BadPathFileException(filename_, line_, "invalid character '" + (char)ch + "' after column " + Integer.toString(col)) ;
+                }
+            }
+
+            if (col != XeroPath.Columns)
+                throw new BadPathFileException(filename_, line_, "found " + Integer.toString(col) + " columns, expected " + Integer.toString(XeroPath.Columns)) ;
+
+            size_++ ;
+            pos = skipLine(buf, pos, end) ;
+        }
+
+        return size_ ;
+    }
+
+    // Returns the position just after the end of the line that contains pos
+    private static int skipLine(ByteBuffer buf, int pos, int end) {
+        while (pos < end && buf.get(pos) != '\n')
+            pos++ ;
+
+        return pos < end ? pos + 1 : end ;
+    }
+
+    // Parse one number starting at pos, store it in the column given, and return the position after it
+    private int parseNumber(ByteBuffer buf, int pos, int end, int col) throws BadPathFileException {
+        int start = pos ;
+        boolean neg = false ;
+        boolean exact = true ;
+        long mantissa = 0 ;
+        int digits = 0 ;
+        int scale = 0 ;
+
+        while (pos < end && buf.get(pos) == ' ')
+            pos++ ;
+
+        if (pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+            neg = (buf.get(pos) == '-') ;
+            pos++ ;
+        }
+
+        int first = pos ;
+        while (pos < end) {
+            byte ch = buf.get(pos) ;
+            if (ch < '0' || ch > '9')
+                break ;
+
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (ch - '0') ;
+                if (mantissa != 0)
+                    digits++ ;
+            }
+            else {
+                exact = false ;
+            }
+            pos++ ;
+        }
+
+        if (pos < end && buf.get(pos) == '.') {
+            pos++ ;
+            while (pos < end) {
+                byte ch = buf.get(pos) ;
+                if (ch < '0' || ch > '9')
+                    break ;
+
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (ch - '0') ;
+                    scale-- ;
+                    if (mantissa != 0)
+                        digits++ ;
+                }
+                else if (ch != '0') {
+                    exact = false ;
+                }
+                pos++ ;
+            }
+        }
+
+        if (pos == first || (pos == first + 1 && buf.get(first) == '.'))
+            throw new BadPathFileException(filename_, line_, "invalid number in column " + Integer.toString(col + 1)) ;
+
+        if (pos < end && (buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+            pos++ ;
+            boolean eneg = false ;
+            if (pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+                eneg = (buf.get(pos) == '-') ;
+                pos++ ;
+            }
+
+            int efirst = pos ;
+            int exp = 0 ;
+            while (pos < end) {
+                byte ch = buf.get(pos) ;
+                if (ch < '0' || ch > '9')
+                    break ;
+
+                if (exp < 10000)
+                    exp = exp * 10 + (ch - '0') ;
+                pos++ ;
+            }
+
+            if (pos == efirst)
+                throw new BadPathFileException(filename_, line_, "invalid exponent in column " + Integer.toString(col + 1)) ;
+
+            scale += eneg ? -exp : exp ;
+        }
+
+        double value ;
+        if (exact && mantissa < MaxExactMantissa && scale >= -22 && scale <= 22) {
+            value = (double)mantissa ;
+            if (scale < 0)
+                value /= Pow10[-scale] ;
+            else
+                value *= Pow10[scale] ;
+
+            if (neg)
+                value = -value ;
+        }
+        else {
+            byte[] bytes = new byte[pos - start] ;
+            for(int i = 0 ; i < bytes.length ; i++)
+                bytes[i] = buf.get(start + i) ;
+
+            try {
+                value = Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII)) ;
+            }
+            catch(NumberFormatException ex) {
+                throw new BadPathFileException(filename_, line_, "invalid number in column " + Integer.toString(col + 1)) ;
+            }
+        }
+
+        while (pos < end && buf.get(pos) == ' ')
+            pos++ ;
+
+        data_[col][size_] = value ;
+        return pos ;
+    }
+
+    private void grow() {
+        int capacity = data_[0].length * 2 ;
+        for(int i = 0 ; i < XeroPath.Columns ; i++) {
+            double[] d = new double[capacity] ;
+            System.arraycopy(data_[i], 0, d, 0, size_) ;
+            data_[i] = d ;
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package org.xero1425.simulator.engine;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
@@ -15,7 +17,48 @@ import org.xero1425.misc.SettingsValue;
 public class EventsManager {
     public EventsManager(SimulationEngine engine) {
         engine_ = engine ;
-        events_ = new ArrayList<SimulationEvent>() ;
+        events_ = new PriorityQueue<SimulationEvent>(EventOrder) ;
+        sequence_ = 0 ;
+        stream_ = null ;
+        stream_time_ = Double.NEGATIVE_INFINITY ;
+    }
+
+    //
+    // Open a stimulus file and read its time points as they are needed, rather than all at
+    // once.  The time points in the file must be in time order.  Each time the first event is
+    // requested, time points are read until one is after the current simulation time.
+    //
+    public boolean openEventsFile(String file) {
+        MessageLogger logger = engine_.getMessageLogger();
+
+        logger.startMessage(MessageType.Info);
+        logger.add("streaming simulator events file ").addQuoted(file) ;
+        logger.endMessage();
+
+        closeStream() ;
+
+        StimulusReader reader = null ;
+        try {
+            reader = new StimulusReader(new BufferedReader(new FileReader(file))) ;
+            if (!reader.open()) {
+                logger.startMessage(MessageType.Error);
+                logger.add("cannot read events file ").addQuoted(file).add(" - ");
+                logger.add("top level json object does not contain a stimulus entry").endMessage();
+                reader.close() ;
+                return false ;
+            }
+        }
+        catch(IOException e) {
+            logger.startMessage(MessageType.Error);
+            logger.add("cannot read events file ").addQuoted(file).add(" - ");
+            logger.add(e.getMessage()).endMessage();
+            return false;
+        }
+
+        stream_ = reader ;
+        stream_name_ = file ;
+        stream_time_ = Double.NEGATIVE_INFINITY ;
+        return true ;
     }
 
     public boolean readEventsFile(String file) {
@@ -67,27 +110,88 @@ public class EventsManager {
         return true;        
     }
 
+    //
+    // The number of events waiting to be run, not counting events that have not been read from
+    // a streamed file yet
+    //
     public int size() {
         return events_.size() ;
     }
 
+    //
+    // Returns the event with the earliest time, or null if there are no events left.  Events
+    // with the same time are returned in the order they were read.
+    //
     public SimulationEvent getFirstEvent() {
-        return events_.get(0) ;
+        if (stream_ != null)
+            readAhead(engine_.getSimulationTime()) ;
+
+        return events_.peek() ;
     }
 
     public void removeFirstEvent() {
-        events_.remove(0) ;
+        events_.poll() ;
     }
 
-    private void parseTimePoint(JSONObject tpt) {
+    private void readAhead(double now) {
+        while (stream_ != null && stream_time_ <= now) {
+            JSONObject tpt ;
+
+            try {
+                tpt = stream_.next() ;
+            }
+            catch(IOException e) {
+                MessageLogger logger = engine_.getMessageLogger();
+                logger.startMessage(MessageType.Error);
+                logger.add("cannot read events file ").addQuoted(stream_name_).add(" - ");
+                logger.add(e.getMessage()).endMessage();
+                tpt = null ;
+            }
+
+            if (tpt == null) {
+                closeStream() ;
+                break ;
+            }
+
+            double t = parseTimePoint(tpt) ;
+            if (Double.isNaN(t))
+                continue ;
+
+            if (t < stream_time_) {
+                MessageLogger logger = engine_.getMessageLogger();
+                logger.startMessage(MessageType.Warning);
+                logger.add("events file ").addQuoted(stream_name_).add(" - time point ").add(t) ;
+                logger.add(" is before the time point ").add(stream_time_).add(", its events may run late").endMessage();
+            }
+            else {
+                stream_time_ = t ;
+            }
+        }
+    }
+
+    private void closeStream() {
+        if (stream_ != null) {
+            try {
+                stream_.close() ;
+            }
+            catch(IOException e) {
+            }
+            stream_ = null ;
+        }
+    }
+
+    //
+    // Returns the time of the time point, or NaN if it does not have one
+    //
+    private double parseTimePoint(JSONObject tpt) {
         Object obj ;
 
         if (!tpt.containsKey("time"))
-            return ;
+            return Double.NaN ;
 
         obj = tpt.get("time") ;
         if (!(obj instanceof Double))
-            return ;
+            return Double.NaN ;
 
         double t = (Double)obj ;
 
@@ -102,6 +206,8 @@ public class EventsManager {
             if (obj instanceof JSONArray)
                 parseSimAsserts(t, (JSONArray)obj);
         }
+
+        return t ;
     }
 
     private void parseSimEvents(double t, JSONArray evs) {
@@ -296,26 +402,27 @@ public class EventsManager {
     }
 
     private void insertEvent(SimulationEvent ev) {
-        if (events_.size() == 0) {
-            events_.add(ev) ;
-        } else {
-            boolean ins = false ;
-            int i = 0 ;
-            while (i < events_.size()) {
-                if (ev.getTime() < events_.get(i).getTime()) {
-                    events_.add(i, ev) ;
-                    ins = true ;
-                    break ;
-                }
+        ev.setSequence(sequence_++) ;
+        events_.add(ev) ;
+    }
 
-                i++ ;
-            }
+    //
+    // Events are ordered by time, and events with the same time in the order they were inserted
+    //
+    private static final Comparator<SimulationEvent> EventOrder = new Comparator<SimulationEvent>() {
+        public int compare(SimulationEvent a, SimulationEvent b) {
+            int ret = Double.compare(a.getTime(), b.getTime()) ;
+            if (ret == 0)
+                ret = Long.compare(a.getSequence(), b.getSequence()) ;
 
-            if (!ins)
-                events_.add(ev) ;
+            return ret ;
         }
-    }
+    } ;
 
     private SimulationEngine engine_ ;
-    private List<SimulationEvent> events_ ;
+    private PriorityQueue<SimulationEvent> events_ ;
+    private long sequence_ ;
+    private StimulusReader stream_ ;
+    private String stream_name_ ;
+    private double stream_time_ ;
 } ;
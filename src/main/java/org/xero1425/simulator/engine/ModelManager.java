@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Map;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
@@ -133,6 +134,15 @@ public class ModelManager {
             }
         }
 
+        //
+        // Properties given on the command line replace the properties in the file
+        //
+        String prefix = (String)modelname + ":" + (String)instname + ":" ;
+        for(Map.Entry<String, SettingsValue> entry : engine_.getRobot().getSimArgs().getModelProperties().entrySet()) {
+            if (entry.getKey().startsWith(prefix))
+                model.setProperty(entry.getKey().substring(prefix.length()), entry.getValue()) ;
+        }
+
         engine_.addModel(model) ;        
         return true ;
     }
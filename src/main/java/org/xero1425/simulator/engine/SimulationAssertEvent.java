@@ -26,7 +26,7 @@ public class SimulationAssertEvent extends SimulationEvent {
             logger.add("subsystem", subsystem_);
             logger.add(" - does not exist in the robot");
             logger.endMessage();
-            engine.addAssertError();
+            engine.addAssertError(getTime() + ": subsystem " + subsystem_ + " does not exist in the robot");
         } else {
             MessageLogger logger = engine.getMessageLogger();
             SettingsValue v = sub.getProperty(name_);
@@ -37,7 +37,7 @@ public class SimulationAssertEvent extends SimulationEvent {
                 logger.add(" property ", name_);
                 logger.add(" - subsystem did not contain the given property");
                 logger.endMessage();
-                engine.addAssertError();
+                engine.addAssertError(getTime() + ": subsystem " + subsystem_ + " does not contain property " + name_);
             } else {
                 boolean pass = false;
 
@@ -61,7 +61,8 @@ public class SimulationAssertEvent extends SimulationEvent {
                     logger.add(" expected ").addQuoted(value_.toString()) ;
                     logger.add(" got ").addQuoted(v.toString()) ;
                     logger.endMessage();
-                    engine.addAssertError();                
+                    engine.addAssertError(getTime() + ": subsystem " + subsystem_ + " property " + name_ +
+                                          " expected " + value_.toString() + " got " + v.toString());
                 }
                 else {
                     logger.startMessage(MessageType.Info) ;
@@ -1,11 +1,18 @@
 package org.xero1425.simulator.engine;
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import edu.wpi.first.hal.sim.DriverStationSim;
 import edu.wpi.first.hal.sim.SimHooks;
-import edu.wpi.first.wpilibj.DriverStation;
 import org.xero1425.base.XeroRobot;
+import org.xero1425.base.controllers.AutoController;
 import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.MessageType;
 
@@ -13,9 +20,13 @@ public class SimulationEngine {
     public static final String LoggerName = "simulator" ;
     public static final String NetworkTableName = "XeroSim" ;
 
+    // The smallest step taken, in case a model asks for a step of zero
+    private static final double MinStepSize = 1.0e-6 ;
+
+    // The longest the headless clock waits for a robot loop, in seconds, before it steps the time anyway
+    private static final long LoopWaitTimeout = 30 ;
+
 
-    private static SimulationEngine the_one_ = null ;
-    
     private DriverStationSim dssim_ = null ;
     private MessageLogger logger_ ;
     private XeroRobot robot_ ;
@@ -29,8 +40,13 @@ public class SimulationEngine {
     private List<SimulationModel> active_models_ ;
     private int failed_count_ ;
     private int passed_count_ ;    
+    private List<String> failures_ ;
 
-    private SimulationEngine(XeroRobot robot, MessageLogger logger) {
+    private boolean headless_ ;
+    private Thread clock_ ;
+    private Semaphore loop_done_ ;
+
+    public SimulationEngine(XeroRobot robot, MessageLogger logger) {
         logger_ = logger ;
         robot_ = robot ;
         logger_id_ = logger_.registerSubsystem(LoggerName);
@@ -42,20 +58,68 @@ public class SimulationEngine {
 
         failed_count_ = 0 ;
         passed_count_ = 0 ;
+        failures_ = new ArrayList<String>() ;
         delta_t_ = robot.getPeriod() / 10 ;
+
+        headless_ = false ;
+        clock_ = null ;
+        loop_done_ = new Semaphore(0) ;
     }
 
-    static public SimulationEngine getInstance() {
-        return the_one_;
+    public boolean isHeadless() {
+        return headless_ ;
+    }
+
+    //
+    // Run the simulation as fast as possible rather than in real time.  The robot time is paused for the
+    // whole simulation, and a clock thread steps it forward one robot period at a time once the robot
+    // program has started.  In WPILib 2020, SimHooks.stepTiming() only moves the clock and wakes the
+    // notifiers, it does not wait for the robot loop.  So after each step the clock thread waits for the
+    // robot to call loopDone() at the end of the robot loop before it steps again.  Every robot loop sees
+    // exactly one period of simulated time.
+    //
+    public void startHeadless() {
+        if (clock_ != null)
+            return ;
+
+        headless_ = true ;
+        SimHooks.pauseTiming() ;
+
+        final double period = robot_.getPeriod() ;
+        clock_ = new Thread(() -> {
+            SimHooks.waitForProgramStart() ;
+            while (true) {
+                SimHooks.stepTiming(period) ;
+                try {
+                    if (!loop_done_.tryAcquire(LoopWaitTimeout, TimeUnit.SECONDS)) {
+                        logger_.startMessage(MessageType.Warning) ;
+                        logger_.add("simulator clock stepped without a robot loop for ").add(LoopWaitTimeout).add(" seconds") ;
+                        logger_.endMessage() ;
+                    }
+                }
+                catch(InterruptedException ex) {
+                    break ;
+                }
+            }
+        }, "simclock") ;
+        clock_.setDaemon(true) ;
+        clock_.start() ;
+
+        logger_.startMessage(MessageType.Info).add("simulator running headless, faster than real time").endMessage() ;
     }
 
-    static public void initializeSimulator(XeroRobot robot, MessageLogger logger) {
-        DriverStation.getInstance();
-        the_one_ = new SimulationEngine(robot, logger);
+    //
+    // Called by the robot at the end of each robot loop.  When headless, this lets the clock thread
+    // step the time for the next robot loop.
+    //
+    public void loopDone() {
+        if (headless_)
+            loop_done_.release() ;
     }
 
-    public void addAssertError() {
+    public void addAssertError(String msg) {
         failed_count_++ ;
+        failures_.add(msg) ;
     }
 
     public void addAssertPassed() {
@@ -78,6 +142,7 @@ public class SimulationEngine {
             logger_.startMessage(MessageType.Info).add("    ").add(failed_count_).add(" asserts failed").endMessage();            
         }
 
+        writeResults() ;
         java.lang.System.exit(code) ;
     }
 
@@ -116,28 +181,43 @@ public class SimulationEngine {
         dssim_.notifyNewData();
     }
 
+    //
+    // The step used by models that do not ask for another step
+    //
+    public double getDefaultStepSize() {
+        return delta_t_ ;
+    }
+
     //
     // This is the amount of time to run forward to have the simulation
-    // models catch up with the simulation
+    // models catch up with the simulation.  The robot time is paused while the models run, so events are
+    // processed once at the start.  Each step is the smallest step any model asks for, so the steps are large
+    // when nothing is moving.  The driver station is told about new data once at the end.
     //
     public void run(double t) {
         double sofar = 0 ;
-        SimHooks.pauseTiming();
+
+        //
+        // In headless mode the time is always paused and is stepped by the clock thread
+        //
+        if (!headless_)
+            SimHooks.pauseTiming();
         for(SimulationModel model : active_models_)
             model.startCycle();
 
+        processEvents() ;
         while (sofar < t) {
-            double dt = t - sofar ;
-            if (dt > delta_t_)
-                dt = delta_t_ ;
-            processEvents() ;           
+            double dt = Math.min(t - sofar, getStepSize()) ;
             runModels(dt) ;
-            dssim_.notifyNewData() ;
             sofar += dt ;
         }
+        dssim_.notifyNewData() ;
+
         for(SimulationModel model : active_models_)
             model.endCycle();        
-        SimHooks.resumeTiming();
+
+        if (!headless_)
+            SimHooks.resumeTiming();
     }
 
     public MessageLogger getMessageLogger() {
@@ -162,9 +242,9 @@ public class SimulationEngine {
     }
 
     private void processEvents() {
-        while (events_.size() > 0) {
+        while (true) {
             SimulationEvent ev = events_.getFirstEvent() ;
-            if (ev.getTime() > getRobot().getTime())
+            if (ev == null || ev.getTime() > getRobot().getTime())
                 break ;
 
             logger_.startMessage(MessageType.Debug, logger_id_) ;
@@ -175,6 +255,16 @@ public class SimulationEngine {
         }
     }
 
+    private double getStepSize() {
+        double step = SimulationModel.NoStepLimit ;
+        for(SimulationModel m : active_models_) {
+            if (m.isCreated())
+                step = Math.min(step, m.getStepSize()) ;
+        }
+
+        return Math.max(step, MinStepSize) ;
+    }
+
     private void runModels(double dt) {
         for(SimulationModel m : active_models_) {
             if (m.isCreated())
@@ -188,12 +278,57 @@ public class SimulationEngine {
         }
     }    
 
+    //
+    // Returns the values that describe the outcome of the simulation from the models and the robot
+    //
+    public Map<String, Double> getResults() {
+        Map<String, Double> results = new LinkedHashMap<String, Double>() ;
+
+        AutoController auto = robot_.getAutoController() ;
+        if (auto != null && auto.getAutoModeTime() >= 0.0)
+            results.put("auto:time", auto.getAutoModeTime()) ;
+
+        for(SimulationModel m : active_models_) {
+            Map<String, Double> values = new LinkedHashMap<String, Double>() ;
+            m.addResults(values) ;
+            for(Map.Entry<String, Double> entry : values.entrySet())
+                results.put(m.getModelName() + ":" + m.getInstanceName() + ":" + entry.getKey(), entry.getValue()) ;
+        }
+
+        return results ;
+    }
+
+    //
+    // Write the assert results for the simulation test runner.  The file has the number of asserts
+    // that passed and failed, followed by one line for each failure, and one line for each result
+    // value from getResults().
+    //
+    private void writeResults() {
+        String file = robot_.getSimArgs().getResultsFileName() ;
+        if (file == null)
+            return ;
+
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("passed " + passed_count_) ;
+            out.println("failed " + failed_count_) ;
+            for(String msg : failures_)
+                out.println("failure " + msg) ;
+
+            for(Map.Entry<String, Double> entry : getResults().entrySet())
+                out.println("result " + entry.getKey() + " " + entry.getValue()) ;
+        }
+        catch(IOException ex) {
+            logger_.startMessage(MessageType.Error).add("cannot write results file ").addQuoted(file) ;
+            logger_.add(" - ").add(ex.getMessage()).endMessage() ;
+        }
+    }
+
     private void readModelFile(String file) {
         models_.readModelFile(file) ;
     }
 
     private void readEventsFile(String file) {
-        events_.readEventsFile(file) ;
+        events_.openEventsFile(file) ;
     }
     
     public void initAll(String simfile) {
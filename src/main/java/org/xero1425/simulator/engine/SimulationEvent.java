@@ -13,5 +13,14 @@ public abstract class SimulationEvent {
     public abstract String toString() ;
     public abstract void run(SimulationEngine enging) ;
 
+    long getSequence() {
+        return sequence_ ;
+    }
+
+    void setSequence(long seq) {
+        sequence_ = seq ;
+    }
+
     private double time_ ;
+    private long sequence_ ;
 }
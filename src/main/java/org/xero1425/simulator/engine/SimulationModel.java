@@ -3,9 +3,20 @@ package org.xero1425.simulator.engine;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.xero1425.misc.BadParameterTypeException;
 import org.xero1425.misc.SettingsValue;
 
 public abstract class SimulationModel {
+    //
+    // The step size returned by a model that can take steps of any size
+    //
+    public static final double NoStepLimit = Double.MAX_VALUE ;
+
+    //
+    // The name of the property that sets the step size for a model
+    //
+    public static final String StepProperty = "step" ;
+
     public SimulationModel(SimulationEngine engine, String model, String instance) {
         engine_ = engine ;
         model_ = model ;
@@ -31,7 +42,35 @@ public abstract class SimulationModel {
 
     public abstract boolean create() ;
     public abstract void run(double dt) ;
+
+    //
+    // Returns the largest step the model can take right now without losing accuracy.  The
+    // simulator runs every model with the smallest step any model asks for.  By default this is
+    // the "step" property of the model, or the default step of the simulator.  Models whose
+    // state is not changing should return a larger step, or NoStepLimit.
+    //
+    public double getStepSize() {
+        SettingsValue v = props_.get(StepProperty) ;
+        if (v != null && v.isDouble()) {
+            try {
+                return v.getDouble() ;
+            }
+            catch(BadParameterTypeException ex) {
+            }
+        }
+
+        return engine_.getDefaultStepSize() ;
+    }
+
     public abstract boolean processEvent(String name, SettingsValue value) ;
+    //
+    // Add the values that describe the outcome of the simulation, such as the final position of the
+    // robot, to the results written when the simulator exits.  The names are prefixed with the model
+    // and instance names.
+    //
+    public void addResults(Map<String, Double> results) {
+    }
+
     public void startCycle()  {
     }
 
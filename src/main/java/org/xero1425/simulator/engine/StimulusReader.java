@@ -0,0 +1,192 @@
+package org.xero1425.simulator.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+//
+// Reads the time points of a stimulus file one at a time.  The file is a JSON object with a
+// "stimulus" array of time points.  The text of the file is scanned, without parsing it, until the
+// start of the array.  Each call to next() then copies the text of one time point and parses it, so
+// only one time point is in memory at a time.
+//
+class StimulusReader {
+    public StimulusReader(Reader reader) {
+        reader_ = reader ;
+        pushback_ = -1 ;
+        done_ = false ;
+    }
+
+    //
+    // Find the start of the stimulus array.  Returns false if the file does not have one.
+    //
+    public boolean open() throws IOException {
+        if (skipSpace() != '{')
+            throw new IOException("file does not contain a JSON object") ;
+
+        while (true) {
+            int ch = skipSpace() ;
+            if (ch == '}')
+                return false ;
+
+            if (ch != '"')
+                throw new IOException("expected a property name in the top level JSON object") ;
+
+            StringBuilder key = new StringBuilder() ;
+            copyString(key) ;
+
+            if (skipSpace() != ':')
+                throw new IOException("expected ':' after property name in the top level JSON object") ;
+
+            if (key.toString().equals("\"stimulus\"")) {
+                if (skipSpace() != '[')
+                    throw new IOException("the 'stimulus' property is not an array") ;
+                return true ;
+            }
+
+            copyValue(null, skipSpace()) ;
+
+            ch = skipSpace() ;
+            if (ch == '}')
+                return false ;
+
+            if (ch != ',')
+                throw new IOException("expected ',' or '}' in the top level JSON object") ;
+        }
+    }
+
+    //
+    // Returns the next time point, or null at the end of the stimulus array
+    //
+    public JSONObject next() throws IOException {
+        while (!done_) {
+            int ch = skipSpace() ;
+            if (ch == ',')
+                ch = skipSpace() ;
+
+            if (ch == ']' || ch == -1) {
+                done_ = true ;
+                break ;
+            }
+
+            text_.setLength(0) ;
+            copyValue(text_, ch) ;
+
+            Object obj = JSONValue.parse(text_.toString()) ;
+            if (obj instanceof JSONObject)
+                return (JSONObject)obj ;
+        }
+
+        return null ;
+    }
+
+    public boolean isDone() {
+        return done_ ;
+    }
+
+    public void close() throws IOException {
+        done_ = true ;
+        reader_.close() ;
+    }
+
+    private int read() throws IOException {
+        if (pushback_ != -1) {
+            int ch = pushback_ ;
+            pushback_ = -1 ;
+            return ch ;
+        }
+
+        return reader_.read() ;
+    }
+
+    private int skipSpace() throws IOException {
+        int ch = read() ;
+        while (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
+            ch = read() ;
+
+        return ch ;
+    }
+
+    //
+    // Copy a string whose opening quote has been read, including both quotes
+    //
+    private void copyString(StringBuilder out) throws IOException {
+        if (out != null)
+            out.append('"') ;
+
+        while (true) {
+            int ch = read() ;
+            if (ch == -1)
+                throw new IOException("unexpected end of file in a string") ;
+
+            if (out != null)
+                out.append((char)ch) ;
+
+            if (ch == '"')
+                break ;
+
+            if (ch == '\\') {
+                ch = read() ;
+                if (ch == -1)
+                    throw new IOException("unexpected end of file in a string") ;
+
+                if (out != null)
+                    out.append((char)ch) ;
+            }
+        }
+    }
+
+    //
+    // Copy a value whose first character has been read.  Objects and arrays are copied up to the
+    // matching closing character.  Other values are copied up to the next ',', '}', or ']', which is
+    // left to be read.
+    //
+    private void copyValue(StringBuilder out, int ch) throws IOException {
+        if (ch == '"') {
+            copyString(out) ;
+            return ;
+        }
+
+        if (ch != '{' && ch != '[') {
+            while (ch != -1 && ch != ',' && ch != '}' && ch != ']') {
+                if (out != null)
+                    out.append((char)ch) ;
+                ch = read() ;
+            }
+
+            pushback_ = ch ;
+            return ;
+        }
+
+        int depth = 0 ;
+        while (true) {
+            if (ch == -1)
+                throw new IOException("unexpected end of file in a JSON value") ;
+
+            if (ch == '"') {
+                copyString(out) ;
+            }
+            else {
+                if (out != null)
+                    out.append((char)ch) ;
+
+                if (ch == '{' || ch == '[') {
+                    depth++ ;
+                }
+                else if (ch == '}' || ch == ']') {
+                    depth-- ;
+                    if (depth == 0)
+                        break ;
+                }
+            }
+
+            ch = read() ;
+        }
+    }
+
+    private Reader reader_ ;
+    private int pushback_ ;
+    private boolean done_ ;
+    private final StringBuilder text_ = new StringBuilder() ;
+}
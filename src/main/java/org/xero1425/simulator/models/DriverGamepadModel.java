@@ -131,6 +131,11 @@ public class DriverGamepadModel extends SimulationModel {
     public void run(double dt) {
     }
 
+    // Nothing changes with time, so any step size is fine
+    public double getStepSize() {
+        return NoStepLimit ;
+    }
+
     public boolean processEvent(String name, SettingsValue value) {
         int which = 0 ;
 
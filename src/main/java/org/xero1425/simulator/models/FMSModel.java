@@ -40,6 +40,25 @@ public class FMSModel extends SimulationModel {
     }
 
     public void run(final double dt) {
+        //
+        // Make every transition that is due, so the result does not depend on the number of
+        // steps the simulator takes in a robot loop
+        //
+        FMSState prev ;
+        do {
+            prev = state_ ;
+            runState() ;
+        } while (state_ != prev) ;
+    }
+
+    //
+    // The FMS only depends on the robot time, so any step size is fine
+    //
+    public double getStepSize() {
+        return NoStepLimit ;
+    }
+
+    private void runState() {
         final DriverStationSim ds = getEngine().getDriverStation() ;
 
         final double elapsed = getRobotTime() - period_start_time_ ;
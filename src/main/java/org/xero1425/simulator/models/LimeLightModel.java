@@ -47,6 +47,11 @@ public class LimeLightModel extends SimulationModel {
         table_.getEntry("tl").setNumber(latency_) ;
     }
 
+    // The outputs are computed from the current state, not integrated, so any step size is fine
+    public double getStepSize() {
+        return NoStepLimit ;
+    }
+
     public void setTX(double v) {
         table_.getEntry("tx").setNumber(v) ;        
     }
@@ -29,6 +29,11 @@ public class NavXModel extends SimulationModel {
     public void run(double dt) {
     }
 
+    // Nothing changes with time, so any step size is fine
+    public double getStepSize() {
+        return NoStepLimit ;
+    }
+
     public boolean processEvent(String name, SettingsValue value) {
         return true ;
     }
@@ -1,5 +1,7 @@
 package org.xero1425.simulator.models;
 
+import java.util.Map;
+
 import org.xero1425.simulator.engine.SimulationModel;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
@@ -123,6 +125,21 @@ public class TankDriveModel extends SimulationModel {
     //
     private double left_motor_mult_ ;
     private double right_motor_mult_ ;
+
+    //
+    // The scale factor applied to the speed of each side of the robot.  These default to 1.0 and
+    // are used to model a drivebase where one side is weaker than the other.
+    //
+    private double left_motor_scale_ ;
+    private double right_motor_scale_ ;
+
+    //
+    // Offsets added to the position and angle set by the xpos, ypos, and angle events.  These default
+    // to 0.0 and are used to model error in placing the robot at the start of a match.
+    //
+    private double xpos_offset_ ;
+    private double ypos_offset_ ;
+    private double angle_offset_ ;
     
     //
     // The current speed of the motors in revolutions per second
@@ -207,6 +224,12 @@ public class TankDriveModel extends SimulationModel {
         xpos_ = 0.0 ;
         ypos_ = 0.0 ;
         angle_ = 0.0 ;
+
+        left_motor_scale_ = 1.0 ;
+        right_motor_scale_ = 1.0 ;
+        xpos_offset_ = 0.0 ;
+        ypos_offset_ = 0.0 ;
+        angle_offset_ = 0.0 ;
     }
     
     /// \brief called once at the end of the simulator loop
@@ -383,6 +406,21 @@ public class TankDriveModel extends SimulationModel {
             ticks_per_rev_ = getProperty("ticks_per_rev").getDouble() ;
             max_velocity_ = getProperty("maxvelocity").getDouble() ;
             max_accel_ = getProperty("maxacceleration").getDouble() ;
+
+            if (hasProperty("left:motor:scale"))
+                left_motor_scale_ = getProperty("left:motor:scale").getDouble() ;
+
+            if (hasProperty("right:motor:scale"))
+                right_motor_scale_ = getProperty("right:motor:scale").getDouble() ;
+
+            if (hasProperty("offset:xpos"))
+                xpos_offset_ = getProperty("offset:xpos").getDouble() ;
+
+            if (hasProperty("offset:ypos"))
+                ypos_offset_ = getProperty("offset:ypos").getDouble() ;
+
+            if (hasProperty("offset:angle"))
+                angle_offset_ = getProperty("offset:angle").getDouble() ;
         } catch (Exception e) {
             return false ;
         }
@@ -420,6 +458,15 @@ public class TankDriveModel extends SimulationModel {
         return true ;
     }
 
+    /// \brief add the final position of the robot to the simulation results
+    /// \param results the map of result names to values
+    @Override
+    public void addResults(Map<String, Double> results) {
+        results.put(TankDriveXPos, xpos_) ;
+        results.put(TankDriveYPos, ypos_) ;
+        results.put(TankDriveAngle, XeroMath.rad2deg(angle_)) ;
+    }
+
     /// \brief return the robot pose
     /// \returns the robot pose
     public Pose2d getPose() {
@@ -475,8 +522,8 @@ public class TankDriveModel extends SimulationModel {
         //
         // Calculated the desired left and right revolutions per second based on the motor power
         //
-        double desired_left_rps = left_rps_per_power_per_time_ * leftpower * left_motor_mult_ ;
-        double desired_right_rps = right_rps_per_power_per_time_ * rightpower * right_motor_mult_ ;
+        double desired_left_rps = left_rps_per_power_per_time_ * leftpower * left_motor_mult_ * left_motor_scale_ ;
+        double desired_right_rps = right_rps_per_power_per_time_ * rightpower * right_motor_mult_ * right_motor_scale_ ;
 
         //
         // Calculate the actual left and right revolutions per second based on the maximum allows acceleration
@@ -542,6 +589,17 @@ public class TankDriveModel extends SimulationModel {
         }
     }
 
+    /// \brief return the largest step the model can take
+    /// When there is no power to the motors and the robot is stopped, nothing changes
+    /// and any step size is fine.
+    /// \returns the largest step the model can take
+    public double getStepSize() {
+        if (left_.getPower() == 0.0 && right_.getPower() == 0.0 && current_left_rps_ == 0.0 && current_right_rps_ == 0.0)
+            return NoStepLimit ;
+
+        return super.getStepSize() ;
+    }
+
     /// \brief process an event assigned to the subsystem
     /// This subsystem understands the "xpos", "ypos", and "angle" events which
     /// allow the simulation stimulus file to set the position of the robot.  While not
@@ -563,7 +621,7 @@ public class TankDriveModel extends SimulationModel {
             }
 
             try {
-                xpos_ = value.getDouble();
+                xpos_ = value.getDouble() + xpos_offset_ ;
             } catch (BadParameterTypeException e) {
             }
         }
@@ -579,7 +637,7 @@ public class TankDriveModel extends SimulationModel {
             }
 
             try {
-                ypos_ = value.getDouble();
+                ypos_ = value.getDouble() + ypos_offset_ ;
             } catch (BadParameterTypeException e) {
             }
         }  
@@ -595,7 +653,7 @@ public class TankDriveModel extends SimulationModel {
             }
 
             try {
-                angle_ = XeroMath.deg2rad(value.getDouble()) ;
+                angle_ = XeroMath.deg2rad(value.getDouble() + angle_offset_) ;
             } catch (BadParameterTypeException e) {
             }
         }               
@@ -0,0 +1,402 @@
+package org.xero1425.simulator.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//
+// Runs one autonomous stimulus file many times with the model properties varied at random, and
+// reports how the outcome of the automode is spread across the trials.  This shows how sensitive
+// an automode is to things like start position error or a weak side of the drivebase, which a
+// single simulation cannot.
+//
+// Each trial is a separate simulation run in its own JVM (see SimulationProcess).  The values for
+// each trial are drawn from one seeded random number generator before any trials are started, so
+// the same seed gives the same trials no matter how many jobs are used.  Trial 0 is the nominal
+// trial with no properties varied, and the final pose of every other trial is compared to it.
+//
+// The trials run headless, stepping the simulation as fast as it will go, unless --realtime is
+// given to run each trial against the wall clock.
+//
+// usage: MonteCarloRunner --input STIM [--trials N] [--jobs N] [--seed S] [--out DIR] [--csv FILE]
+//                         [--main CLASS] [--timeout SECONDS] [--realtime] [--drive MODEL:INST]
+//                         [--vary MODEL:INST:PROP=uniform:LOW:HIGH]
+//                         [--vary MODEL:INST:PROP=normal:MEAN:STDDEV] ...
+//
+// For example, to vary the start position and the strength of the left side of the drivebase
+//
+//      --vary tankdrive:1:offset:xpos=normal:0:2 --vary tankdrive:1:offset:ypos=normal:0:2
+//      --vary tankdrive:1:left:motor:scale=uniform:0.95:1.05
+//
+public class MonteCarloRunner {
+    public static final String DefaultDrive = "tankdrive:1" ;
+    public static final String PoseError = "pose:error" ;
+    public static final String HeadingError = "heading:error" ;
+
+    //
+    // A model property that is given a random value for each trial
+    //
+    private static class Variation {
+        public Variation(String arg) {
+            int eq = arg.indexOf('=') ;
+            if (eq <= 0)
+                throw new IllegalArgumentException("variation '" + arg + "' is not of the form MODEL:INST:PROP=DIST:A:B") ;
+
+            name_ = arg.substring(0, eq) ;
+            String[] parts = arg.substring(eq + 1).split(":") ;
+            if (parts.length != 3 || (!parts[0].equals("uniform") && !parts[0].equals("normal")))
+                throw new IllegalArgumentException("variation '" + arg + "' must use uniform:LOW:HIGH or normal:MEAN:STDDEV") ;
+
+            normal_ = parts[0].equals("normal") ;
+            try {
+                a_ = Double.parseDouble(parts[1]) ;
+                b_ = Double.parseDouble(parts[2]) ;
+            }
+            catch(NumberFormatException ex) {
+                throw new IllegalArgumentException("variation '" + arg + "' has a value that is not a number") ;
+            }
+        }
+
+        public String getName() {
+            return name_ ;
+        }
+
+        public double sample(Random random) {
+            if (normal_)
+                return a_ + random.nextGaussian() * b_ ;
+
+            return a_ + random.nextDouble() * (b_ - a_) ;
+        }
+
+        private String name_ ;
+        private boolean normal_ ;
+        private double a_ ;
+        private double b_ ;
+    }
+
+    //
+    // The values given to the varied properties for one trial, and the result of running it
+    //
+    private static class Trial {
+        public Trial(int index, int count) {
+            index_ = index ;
+            values_ = new double[count] ;
+            result_ = null ;
+        }
+
+        private int index_ ;
+        private double[] values_ ;
+        private SimulationResult result_ ;
+    }
+
+    public MonteCarloRunner() {
+        input_ = null ;
+        trials_ = 100 ;
+        jobs_ = Runtime.getRuntime().availableProcessors() ;
+        seed_ = 1425 ;
+        out_ = new File("montecarlo") ;
+        csv_ = null ;
+        main_class_ = SimulationTestRunner.DefaultMainClass ;
+        timeout_ = 300 ;
+        headless_ = true ;
+        drive_ = DefaultDrive ;
+        variations_ = new ArrayList<Variation>() ;
+    }
+
+    public static void main(String[] args) {
+        MonteCarloRunner runner = new MonteCarloRunner() ;
+
+        try {
+            int i = 0 ;
+            while (i < args.length) {
+                String arg = args[i] ;
+                if (arg.equals("--input")) {
+                    runner.input_ = value(args, ++i, arg) ;
+                }
+                else if (arg.equals("--trials")) {
+                    runner.trials_ = Integer.parseInt(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--jobs")) {
+                    runner.jobs_ = Integer.parseInt(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--seed")) {
+                    runner.seed_ = Long.parseLong(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--out")) {
+                    runner.out_ = new File(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--csv")) {
+                    runner.csv_ = new File(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--main")) {
+                    runner.main_class_ = value(args, ++i, arg) ;
+                }
+                else if (arg.equals("--timeout")) {
+                    runner.timeout_ = Integer.parseInt(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--headless")) {
+                    runner.headless_ = true ;
+                }
+                else if (arg.equals("--realtime")) {
+                    runner.headless_ = false ;
+                }
+                else if (arg.equals("--drive")) {
+                    runner.drive_ = value(args, ++i, arg) ;
+                }
+                else if (arg.equals("--vary")) {
+                    runner.variations_.add(new Variation(value(args, ++i, arg))) ;
+                }
+                else {
+                    throw new IllegalArgumentException("unknown command line argument '" + arg + "'") ;
+                }
+                i++ ;
+            }
+
+            if (runner.input_ == null)
+                throw new IllegalArgumentException("the --input argument is required") ;
+
+            if (runner.trials_ < 1)
+                throw new IllegalArgumentException("the --trials argument must be at least one") ;
+        }
+        catch(IllegalArgumentException ex) {
+            System.err.println(ex.getMessage()) ;
+            System.exit(2) ;
+        }
+
+        int failed = 0 ;
+        try {
+            failed = runner.run() ;
+        }
+        catch(Exception ex) {
+            System.err.println("monte carlo runner failed - " + ex.getMessage()) ;
+            System.exit(2) ;
+        }
+
+        System.exit(failed == 0 ? 0 : 1) ;
+    }
+
+    //
+    // Run all of the trials, print the report, and return the number of trials that failed
+    //
+    public int run() throws Exception {
+        out_.mkdirs() ;
+
+        List<Trial> trials = createTrials() ;
+
+        System.out.println("Running " + trials.size() + " trials of " + input_ + " with " + jobs_ + " jobs, seed " + seed_) ;
+
+        long start = System.nanoTime() ;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, jobs_)) ;
+        List<Future<SimulationResult>> futures = new ArrayList<Future<SimulationResult>>() ;
+        for(Trial trial : trials)
+            futures.add(pool.submit(() -> runOne(trial))) ;
+        pool.shutdown() ;
+
+        for(int i = 0 ; i < trials.size() ; i++)
+            trials.get(i).result_ = futures.get(i).get() ;
+
+        double elapsed = (System.nanoTime() - start) / 1.0e9 ;
+
+        addPoseErrors(trials) ;
+
+        int failed = 0 ;
+        for(Trial trial : trials) {
+            if (!trial.result_.isPassed())
+                failed++ ;
+        }
+
+        System.out.println() ;
+        System.out.println((trials.size() - failed) + " of " + trials.size() + " trials passed (" +
+                            String.format("%.1f", 100.0 * (trials.size() - failed) / trials.size()) + "%) in " +
+                            String.format("%.1f", elapsed) + " seconds") ;
+        System.out.println() ;
+
+        printReport(trials) ;
+
+        if (csv_ != null)
+            writeCSV(trials) ;
+
+        return failed ;
+    }
+
+    //
+    // Draw the values for every trial.  Trial 0 is the nominal trial and has no properties varied.
+    //
+    private List<Trial> createTrials() {
+        Random random = new Random(seed_) ;
+        List<Trial> trials = new ArrayList<Trial>() ;
+
+        trials.add(new Trial(0, 0)) ;
+        for(int i = 1 ; i < trials_ ; i++) {
+            Trial trial = new Trial(i, variations_.size()) ;
+            for(int j = 0 ; j < variations_.size() ; j++)
+                trial.values_[j] = variations_.get(j).sample(random) ;
+            trials.add(trial) ;
+        }
+
+        return trials ;
+    }
+
+    private SimulationResult runOne(Trial trial) {
+        String name = String.format("trial%04d", trial.index_) ;
+        SimulationProcess proc = new SimulationProcess(name, main_class_, out_) ;
+        proc.setHeadless(headless_) ;
+        proc.setTimeout(timeout_) ;
+        proc.addArgs("--input", input_) ;
+        for(int i = 0 ; i < trial.values_.length ; i++)
+            proc.addArgs("--prop", variations_.get(i).getName() + "=" + trial.values_[i]) ;
+
+        SimulationResult result = proc.run() ;
+
+        synchronized(this) {
+            System.out.println("Running trial " + trial.index_ + " ... " + (result.isPassed() ? "passed" : "failed")) ;
+        }
+
+        return result ;
+    }
+
+    //
+    // Add the distance and heading between the final pose of each trial and the final pose of the
+    // nominal trial to the results of each trial
+    //
+    private void addPoseErrors(List<Trial> trials) {
+        SimulationResult nominal = trials.get(0).result_ ;
+        String xname = drive_ + ":xpos" ;
+        String yname = drive_ + ":ypos" ;
+        String aname = drive_ + ":angle" ;
+
+        if (!nominal.hasValue(xname) || !nominal.hasValue(yname) || !nominal.hasValue(aname))
+            return ;
+
+        for(Trial trial : trials) {
+            SimulationResult r = trial.result_ ;
+            if (!r.hasValue(xname) || !r.hasValue(yname) || !r.hasValue(aname))
+                continue ;
+
+            double dx = r.getValue(xname) - nominal.getValue(xname) ;
+            double dy = r.getValue(yname) - nominal.getValue(yname) ;
+            double da = r.getValue(aname) - nominal.getValue(aname) ;
+            while (da > 180.0)
+                da -= 360.0 ;
+            while (da <= -180.0)
+                da += 360.0 ;
+
+            r.setValue(PoseError, Math.sqrt(dx * dx + dy * dy)) ;
+            r.setValue(HeadingError, Math.abs(da)) ;
+        }
+    }
+
+    //
+    // Returns the names of all of the values reported by any trial, in the order first seen
+    //
+    private static Set<String> valueNames(List<Trial> trials) {
+        Set<String> names = new LinkedHashSet<String>() ;
+        for(Trial trial : trials)
+            names.addAll(trial.result_.getValues().keySet()) ;
+
+        return names ;
+    }
+
+    private void printReport(List<Trial> trials) {
+        SimulationResult nominal = trials.get(0).result_ ;
+
+        System.out.println(String.format("%-32s %6s %10s %10s %10s %10s %10s %10s %10s %10s",
+                            "value", "n", "nominal", "mean", "stddev", "min", "p5", "p50", "p95", "max")) ;
+
+        for(String name : valueNames(trials)) {
+            List<Double> values = new ArrayList<Double>() ;
+            for(Trial trial : trials) {
+                if (trial.index_ != 0 && trial.result_.hasValue(name))
+                    values.add(trial.result_.getValue(name)) ;
+            }
+
+            if (values.size() == 0) {
+                System.out.println(String.format("%-32s %6d %10.3f", name, 0, nominal.getValue(name))) ;
+                continue ;
+            }
+
+            double[] data = new double[values.size()] ;
+            double sum = 0.0 ;
+            for(int i = 0 ; i < data.length ; i++) {
+                data[i] = values.get(i) ;
+                sum += data[i] ;
+            }
+            Arrays.sort(data) ;
+
+            double mean = sum / data.length ;
+            double sumsq = 0.0 ;
+            for(double v : data)
+                sumsq += (v - mean) * (v - mean) ;
+            double stddev = data.length > 1 ? Math.sqrt(sumsq / (data.length - 1)) : 0.0 ;
+
+            System.out.println(String.format("%-32s %6d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f",
+                                name, data.length, nominal.getValue(name), mean, stddev, data[0],
+                                percentile(data, 5.0), percentile(data, 50.0), percentile(data, 95.0), data[data.length - 1])) ;
+        }
+    }
+
+    //
+    // Returns a percentile of sorted data, interpolating between the two nearest values
+    //
+    private static double percentile(double[] data, double pct) {
+        double pos = pct / 100.0 * (data.length - 1) ;
+        int lower = (int)Math.floor(pos) ;
+        int upper = Math.min(lower + 1, data.length - 1) ;
+        return data[lower] + (pos - lower) * (data[upper] - data[lower]) ;
+    }
+
+    private void writeCSV(List<Trial> trials) throws IOException {
+        Set<String> names = valueNames(trials) ;
+
+        File dir = csv_.getAbsoluteFile().getParentFile() ;
+        if (dir != null)
+            dir.mkdirs() ;
+
+        try (PrintWriter out = new PrintWriter(csv_, "UTF-8")) {
+            out.print("trial,passed") ;
+            for(Variation v : variations_)
+                out.print("," + v.getName()) ;
+            for(String name : names)
+                out.print("," + name) ;
+            out.println() ;
+
+            for(Trial trial : trials) {
+                SimulationResult r = trial.result_ ;
+                out.print(trial.index_ + "," + r.isPassed()) ;
+                for(int i = 0 ; i < variations_.size() ; i++)
+                    out.print("," + (trial.index_ == 0 ? "" : Double.toString(trial.values_[i]))) ;
+                for(String name : names)
+                    out.print("," + (r.hasValue(name) ? Double.toString(r.getValue(name)) : "")) ;
+                out.println() ;
+            }
+        }
+    }
+
+    private static String value(String[] args, int i, String arg) {
+        if (i == args.length)
+            throw new IllegalArgumentException("command line argument " + arg + " requires an additional argument") ;
+
+        return args[i] ;
+    }
+
+    private String input_ ;
+    private int trials_ ;
+    private int jobs_ ;
+    private long seed_ ;
+    private File out_ ;
+    private File csv_ ;
+    private String main_class_ ;
+    private int timeout_ ;
+    private boolean headless_ ;
+    private String drive_ ;
+    private List<Variation> variations_ ;
+}
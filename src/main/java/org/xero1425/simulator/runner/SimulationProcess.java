@@ -0,0 +1,127 @@
+package org.xero1425.simulator.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//
+// Runs one simulation in its own JVM.  The HAL simulation and the driver station are global to a
+// process, so simulations cannot share a JVM.  The child uses the same java, class path, and library
+// path as the current process.  The child writes a results file when it exits, and this is read back
+// into a SimulationResult.
+//
+class SimulationProcess {
+    public SimulationProcess(String name, String main_class, File out) {
+        name_ = name ;
+        main_class_ = main_class ;
+        out_ = out ;
+        headless_ = false ;
+        timeout_ = 300 ;
+        args_ = new ArrayList<String>() ;
+    }
+
+    public void setHeadless(boolean b) {
+        headless_ = b ;
+    }
+
+    public void setTimeout(int secs) {
+        timeout_ = secs ;
+    }
+
+    //
+    // Add arguments passed to the main class of the simulation
+    //
+    public void addArgs(String ... args) {
+        for(String arg : args)
+            args_.add(arg) ;
+    }
+
+    public File getLogFile() {
+        return new File(out_, name_ + ".log") ;
+    }
+
+    public SimulationResult run() {
+        File output = new File(out_, name_ + ".out") ;
+        File results = new File(out_, name_ + ".results") ;
+        results.delete() ;
+
+        List<String> cmd = new ArrayList<String>() ;
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java") ;
+        cmd.add("-Djava.library.path=" + System.getProperty("java.library.path")) ;
+        cmd.add("-cp") ;
+        cmd.add(System.getProperty("java.class.path")) ;
+        cmd.add(main_class_) ;
+        if (headless_)
+            cmd.add("--headless") ;
+        cmd.add("--logfile") ;
+        cmd.add(getLogFile().getPath()) ;
+        cmd.add("--results") ;
+        cmd.add(results.getPath()) ;
+        cmd.addAll(args_) ;
+
+        SimulationResult result = new SimulationResult(name_) ;
+        long start = System.nanoTime() ;
+
+        try {
+            ProcessBuilder pb = new ProcessBuilder(cmd) ;
+            pb.redirectErrorStream(true) ;
+            pb.redirectOutput(output) ;
+
+            Process proc = pb.start() ;
+            if (!proc.waitFor(timeout_, TimeUnit.SECONDS)) {
+                proc.destroyForcibly() ;
+                proc.waitFor() ;
+                result.setError("timed out after " + timeout_ + " seconds") ;
+            }
+            else {
+                result.setExitCode(proc.exitValue()) ;
+                readResults(result, results) ;
+            }
+        }
+        catch(Exception ex) {
+            result.setError("cannot run simulation - " + ex.getMessage()) ;
+        }
+
+        result.setTime((System.nanoTime() - start) / 1.0e9) ;
+        return result ;
+    }
+
+    private static void readResults(SimulationResult result, File file) throws IOException {
+        if (!file.exists()) {
+            result.setError("simulation exited with code " + result.getExitCode() + " without writing results") ;
+            return ;
+        }
+
+        for(String line : Files.readAllLines(file.toPath())) {
+            if (line.startsWith("passed ")) {
+                result.setPassedAsserts(Integer.parseInt(line.substring(7).trim())) ;
+            }
+            else if (line.startsWith("failed ")) {
+                result.setFailedAsserts(Integer.parseInt(line.substring(7).trim())) ;
+            }
+            else if (line.startsWith("failure ")) {
+                result.addFailure(line.substring(8)) ;
+            }
+            else if (line.startsWith("result ")) {
+                String[] parts = line.substring(7).trim().split(" ") ;
+                if (parts.length == 2) {
+                    try {
+                        result.setValue(parts[0], Double.parseDouble(parts[1])) ;
+                    }
+                    catch(NumberFormatException ex) {
+                    }
+                }
+            }
+        }
+    }
+
+    private String name_ ;
+    private String main_class_ ;
+    private File out_ ;
+    private boolean headless_ ;
+    private int timeout_ ;
+    private List<String> args_ ;
+}
@@ -0,0 +1,113 @@
+package org.xero1425.simulator.runner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// The result of running one stimulus file
+//
+public class SimulationResult {
+    public SimulationResult(String name) {
+        name_ = name ;
+        exit_code_ = -1 ;
+        passed_asserts_ = 0 ;
+        failed_asserts_ = 0 ;
+        failures_ = new ArrayList<String>() ;
+        values_ = new LinkedHashMap<String, Double>() ;
+        error_ = null ;
+        time_ = 0.0 ;
+    }
+
+    public String getName() {
+        return name_ ;
+    }
+
+    //
+    // A simulation passes if it ran to completion, exited normally, and no asserts failed
+    //
+    public boolean isPassed() {
+        return error_ == null && exit_code_ == 0 && failed_asserts_ == 0 ;
+    }
+
+    public int getExitCode() {
+        return exit_code_ ;
+    }
+
+    public void setExitCode(int code) {
+        exit_code_ = code ;
+    }
+
+    public int getPassedAsserts() {
+        return passed_asserts_ ;
+    }
+
+    public void setPassedAsserts(int n) {
+        passed_asserts_ = n ;
+    }
+
+    public int getFailedAsserts() {
+        return failed_asserts_ ;
+    }
+
+    public void setFailedAsserts(int n) {
+        failed_asserts_ = n ;
+    }
+
+    public List<String> getFailures() {
+        return failures_ ;
+    }
+
+    public void addFailure(String msg) {
+        failures_.add(msg) ;
+    }
+
+    //
+    // The values the models reported at the end of the simulation, such as the final position of the robot
+    //
+    public Map<String, Double> getValues() {
+        return values_ ;
+    }
+
+    public boolean hasValue(String name) {
+        return values_.containsKey(name) ;
+    }
+
+    public double getValue(String name) {
+        Double v = values_.get(name) ;
+        return v == null ? Double.NaN : v ;
+    }
+
+    public void setValue(String name, double v) {
+        values_.put(name, v) ;
+    }
+
+    //
+    // The reason the simulation did not run to completion, or null if it did
+    //
+    public String getError() {
+        return error_ ;
+    }
+
+    public void setError(String msg) {
+        error_ = msg ;
+    }
+
+    public double getTime() {
+        return time_ ;
+    }
+
+    public void setTime(double t) {
+        time_ = t ;
+    }
+
+    private String name_ ;
+    private int exit_code_ ;
+    private int passed_asserts_ ;
+    private int failed_asserts_ ;
+    private List<String> failures_ ;
+    private Map<String, Double> values_ ;
+    private String error_ ;
+    private double time_ ;
+}
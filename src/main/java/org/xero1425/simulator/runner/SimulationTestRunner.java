@@ -0,0 +1,288 @@
+package org.xero1425.simulator.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+//
+// Runs the simulation stimulus files in parallel and writes a JUnit style XML report.
+//
+// The HAL simulation and the driver station are global to a process, so each stimulus file is run
+// in its own JVM with the same class path and library path as the runner.  Each simulation writes
+// the number of asserts that passed and failed to a results file when it exits.  The simulations
+// run headless, stepping as fast as they will go, unless --realtime is given.
+//
+// usage: SimulationTestRunner [--jobs N] [--sims DIR] [--out DIR] [--report FILE] [--main CLASS]
+//                             [--timeout SECONDS] [--realtime] [--list] [PATTERN ...]
+//
+// Only the stimulus files whose name contains a match for one of the patterns are run.
+//
+public class SimulationTestRunner {
+    public static final String DefaultMainClass = "org.frc2020.droid.Main" ;
+
+    public SimulationTestRunner() {
+        jobs_ = Runtime.getRuntime().availableProcessors() ;
+        sims_ = new File("src/sim/sims") ;
+        out_ = new File("testout") ;
+        report_ = null ;
+        main_class_ = DefaultMainClass ;
+        timeout_ = 300 ;
+        headless_ = true ;
+        patterns_ = new ArrayList<Pattern>() ;
+    }
+
+    public static void main(String[] args) {
+        SimulationTestRunner runner = new SimulationTestRunner() ;
+        boolean list = false ;
+
+        try {
+            int i = 0 ;
+            while (i < args.length) {
+                String arg = args[i] ;
+                if (arg.equals("--jobs")) {
+                    runner.jobs_ = Integer.parseInt(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--sims")) {
+                    runner.sims_ = new File(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--out")) {
+                    runner.out_ = new File(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--report")) {
+                    runner.report_ = new File(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--main")) {
+                    runner.main_class_ = value(args, ++i, arg) ;
+                }
+                else if (arg.equals("--timeout")) {
+                    runner.timeout_ = Integer.parseInt(value(args, ++i, arg)) ;
+                }
+                else if (arg.equals("--headless")) {
+                    runner.headless_ = true ;
+                }
+                else if (arg.equals("--realtime")) {
+                    runner.headless_ = false ;
+                }
+                else if (arg.equals("--list")) {
+                    list = true ;
+                }
+                else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("unknown command line argument '" + arg + "'") ;
+                }
+                else {
+                    runner.patterns_.add(Pattern.compile(arg)) ;
+                }
+                i++ ;
+            }
+        }
+        catch(IllegalArgumentException ex) {
+            System.err.println(ex.getMessage()) ;
+            System.exit(2) ;
+        }
+
+        List<String> tests = runner.findTests() ;
+        if (list) {
+            System.out.println("Available tests") ;
+            for(String test : tests)
+                System.out.println("     " + test) ;
+            System.exit(0) ;
+        }
+
+        int failed = 0 ;
+        try {
+            failed = runner.run(tests) ;
+        }
+        catch(Exception ex) {
+            System.err.println("simulation runner failed - " + ex.getMessage()) ;
+            System.exit(2) ;
+        }
+
+        System.exit(failed == 0 ? 0 : 1) ;
+    }
+
+    //
+    // Returns the names of the stimulus files to run, without the directory or extension
+    //
+    public List<String> findTests() {
+        List<String> tests = new ArrayList<String>() ;
+        File[] files = sims_.listFiles() ;
+        if (files == null)
+            return tests ;
+
+        Arrays.sort(files) ;
+        for(File f : files) {
+            String name = f.getName() ;
+            if (!name.endsWith(".json"))
+                continue ;
+
+            name = name.substring(0, name.length() - 5) ;
+            if (matches(name))
+                tests.add(name) ;
+        }
+
+        return tests ;
+    }
+
+    //
+    // Run the tests given, and return the number of tests that failed
+    //
+    public int run(List<String> tests) throws Exception {
+        out_.mkdirs() ;
+
+        System.out.println("Running " + tests.size() + " tests with " + jobs_ + " jobs") ;
+
+        long start = System.nanoTime() ;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, jobs_)) ;
+        List<Future<SimulationResult>> futures = new ArrayList<Future<SimulationResult>>() ;
+        for(String test : tests)
+            futures.add(pool.submit(() -> runOne(test))) ;
+        pool.shutdown() ;
+
+        List<SimulationResult> results = new ArrayList<SimulationResult>() ;
+        for(Future<SimulationResult> f : futures)
+            results.add(f.get()) ;
+
+        double elapsed = (System.nanoTime() - start) / 1.0e9 ;
+
+        int failed = 0 ;
+        int passed_asserts = 0 ;
+        int failed_asserts = 0 ;
+        for(SimulationResult r : results) {
+            if (!r.isPassed())
+                failed++ ;
+            passed_asserts += r.getPassedAsserts() ;
+            failed_asserts += r.getFailedAsserts() ;
+        }
+
+        System.out.println() ;
+        System.out.println((tests.size() - failed) + " tests passed, " + failed + " tests failed, " +
+                            passed_asserts + " asserts passed, " + failed_asserts + " asserts failed in " +
+                            String.format("%.1f", elapsed) + " seconds") ;
+
+        if (report_ != null)
+            writeReport(results, elapsed) ;
+
+        return failed ;
+    }
+
+    private SimulationResult runOne(String test) {
+        SimulationProcess proc = new SimulationProcess(test, main_class_, out_) ;
+        proc.setHeadless(headless_) ;
+        proc.setTimeout(timeout_) ;
+        proc.addArgs("--input", test) ;
+
+        SimulationResult result = proc.run() ;
+
+        synchronized(this) {
+            System.out.println("Running test " + test + " ... " + (result.isPassed() ? "passed" : "failed")) ;
+        }
+
+        return result ;
+    }
+
+    private void writeReport(List<SimulationResult> results, double elapsed) throws IOException {
+        int failures = 0 ;
+        int errors = 0 ;
+        for(SimulationResult r : results) {
+            if (r.getError() != null)
+                errors++ ;
+            else if (!r.isPassed())
+                failures++ ;
+        }
+
+        File dir = report_.getAbsoluteFile().getParentFile() ;
+        if (dir != null)
+            dir.mkdirs() ;
+
+        try (PrintWriter out = new PrintWriter(report_, "UTF-8")) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>") ;
+            out.println("<testsuite name=\"simulation\" tests=\"" + results.size() + "\" failures=\"" + failures +
+                        "\" errors=\"" + errors + "\" time=\"" + String.format("%.3f", elapsed) + "\">") ;
+
+            for(SimulationResult r : results) {
+                out.print("  <testcase classname=\"simulation\" name=\"" + escape(r.getName()) + "\" time=\"" +
+                          String.format("%.3f", r.getTime()) + "\"") ;
+
+                if (r.isPassed()) {
+                    out.println("/>") ;
+                    continue ;
+                }
+
+                out.println(">") ;
+                if (r.getError() != null) {
+                    out.println("    <error message=\"" + escape(r.getError()) + "\"/>") ;
+                }
+                else {
+                    String msg = r.getFailedAsserts() + " asserts failed" ;
+                    if (r.getFailedAsserts() == 0)
+                        msg = "simulation exited with code " + r.getExitCode() ;
+
+                    out.print("    <failure message=\"" + escape(msg) + "\">") ;
+                    for(String f : r.getFailures())
+                        out.print(escape(f) + "\n") ;
+                    out.println("</failure>") ;
+                }
+                out.println("    <system-out>" + escape("see " + new File(out_, r.getName() + ".log").getPath()) + "</system-out>") ;
+                out.println("  </testcase>") ;
+            }
+
+            out.println("</testsuite>") ;
+        }
+    }
+
+    private boolean matches(String name) {
+        if (patterns_.size() == 0)
+            return true ;
+
+        for(Pattern p : patterns_) {
+            if (p.matcher(name).find())
+                return true ;
+        }
+
+        return false ;
+    }
+
+    private static String value(String[] args, int i, String arg) {
+        if (i == args.length)
+            throw new IllegalArgumentException("command line argument " + arg + " requires an additional argument") ;
+
+        return args[i] ;
+    }
+
+    private static String escape(String s) {
+        StringBuilder b = new StringBuilder() ;
+        for(int i = 0 ; i < s.length() ; i++) {
+            char ch = s.charAt(i) ;
+            switch(ch) {
+                case '<': b.append("&lt;") ; break ;
+                case '>': b.append("&gt;") ; break ;
+                case '&': b.append("&amp;") ; break ;
+                case '"': b.append("&quot;") ; break ;
+                default:
+                    if (ch < ' ' && ch != '\n' && ch != '\t')
+                        b.append(' ') ;
+                    else
+                        b.append(ch) ;
+                    break ;
+            }
+        }
+
+        return b.toString() ;
+    }
+
+    private int jobs_ ;
+    private File sims_ ;
+    private File out_ ;
+    private File report_ ;
+    private String main_class_ ;
+    private int timeout_ ;
+    private boolean headless_ ;
+    private List<Pattern> patterns_ ;
+}
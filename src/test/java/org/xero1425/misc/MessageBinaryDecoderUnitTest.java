@@ -0,0 +1,116 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+
+public class MessageBinaryDecoderUnitTest
+{
+    private void logMessages(MessageLogger logger, int sub) {
+        logger.startMessage(MessageType.Info).add("robot code starting").endMessage() ;
+        logger.startMessage(MessageType.Debug, sub).add("tankdrive:").add("left", 12.5).add("right", -3).add("moving", true).endMessage() ;
+        logger.startMessage(MessageType.Warning, sub).add("state").add("name", "collect, shoot").add(' ').addQuoted("path").endMessage() ;
+        logger.startMessage(MessageType.Error, sub).add("line one\nline two ").add(42L).add(' ').add(1.5f).endMessage() ;
+    }
+
+    @Test
+    public void testTextRoundTrip() throws Exception {
+        File f = File.createTempFile("binlog", ".xlog") ;
+        f.deleteOnExit() ;
+
+        MessageLogger logger = new MessageLogger() ;
+        logger.setTimeSource(() -> 12.34567) ;
+        int sub = logger.registerSubsystem("tankdrive") ;
+        logger.enableSubsystem("tankdrive") ;
+
+        List<String> text = new ArrayList<String>() ;
+        logger.addDestination((type, subsystem, msg) -> text.add(msg)) ;
+
+        MessageDestinationBinaryFile bin = new MessageDestinationBinaryFile(f.getPath()) ;
+        logger.addDataDestination(bin) ;
+
+        logMessages(logger, sub) ;
+        logger.flush() ;
+        bin.close() ;
+
+        StringWriter out = new StringWriter() ;
+        new MessageBinaryDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(f.toPath())), out, false) ;
+
+        StringBuilder expected = new StringBuilder() ;
+        for(String line : text)
+            expected.append(line).append('\n') ;
+
+        Assert.assertEquals(expected.toString(), out.toString()) ;
+    }
+
+    @Test
+    public void testCSV() throws Exception {
+        File f = File.createTempFile("binlog", ".xlog") ;
+        f.deleteOnExit() ;
+
+        MessageLogger logger = new MessageLogger() ;
+        logger.setTimeSource(() -> 1.0) ;
+        int sub = logger.registerSubsystem("tankdrive") ;
+        logger.enableSubsystem("tankdrive") ;
+
+        MessageDestinationBinaryFile bin = new MessageDestinationBinaryFile(f.getPath()) ;
+        logger.addDataDestination(bin) ;
+
+        logMessages(logger, sub) ;
+        logger.flush() ;
+        bin.close() ;
+
+        StringWriter out = new StringWriter() ;
+        new MessageBinaryDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(f.toPath())), out, true) ;
+
+        String expected =
+            "time,type,subsystem,name,value\n" +
+            "1.0,Debug,tankdrive,left,12.5\n" +
+            "1.0,Debug,tankdrive,right,-3\n" +
+            "1.0,Debug,tankdrive,moving,true\n" +
+            "1.0,Warning,tankdrive,name,\"collect, shoot\"\n" ;
+
+        Assert.assertEquals(expected, out.toString()) ;
+    }
+
+    @Test
+    public void testManyBuffers() throws Exception {
+        File f = File.createTempFile("binlog", ".xlog") ;
+        f.deleteOnExit() ;
+
+        MessageLogger logger = new MessageLogger() ;
+        logger.setTimeSource(() -> 2.0) ;
+        int sub = logger.registerSubsystem("tankdrive") ;
+        logger.enableSubsystem("tankdrive") ;
+
+        List<String> text = new ArrayList<String>() ;
+        logger.addDestination((type, subsystem, msg) -> text.add(msg)) ;
+
+        MessageDestinationBinaryFile bin = new MessageDestinationBinaryFile(f.getPath()) ;
+        logger.addDataDestination(bin) ;
+
+        //
+        // Enough messages to fill more buffers than the writer thread is given at once, with strings
+        // that go in the dictionary and strings that are stored in place once the dictionary is full
+        //
+        for(int i = 0 ; i < 40000 ; i++)
+            logger.startMessage(MessageType.Debug, sub).add("loop").add("count", i).add("name", "value " + i).endMessage() ;
+        logger.flush() ;
+        bin.close() ;
+
+        StringWriter out = new StringWriter() ;
+        new MessageBinaryDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(f.toPath())), out, false) ;
+
+        StringBuilder expected = new StringBuilder() ;
+        for(String line : text)
+            expected.append(line).append('\n') ;
+
+        Assert.assertEquals(expected.toString(), out.toString()) ;
+        Assert.assertTrue(f.length() > 16 * 64 * 1024) ;
+    }
+}
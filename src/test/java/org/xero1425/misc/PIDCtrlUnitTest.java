@@ -1,5 +1,8 @@
 package org.xero1425.misc ;
 
+import java.io.File;
+import java.nio.file.Files;
+
 import org.junit.*;
 
 public class PIDCtrlUnitTest
@@ -14,4 +17,22 @@ public class PIDCtrlUnitTest
         final PIDCtrl p = new PIDCtrl(0.01, 0.0, 0.0, 0.0, -1.0, 1.0, 10.0, false);
         Assert.assertEquals(p.getOutput(100, 98, 0.02), 0.02, 1e-6) ;
     }
+
+    @Test
+    public void testSettings() throws Exception {
+        File file = File.createTempFile("pid", ".dat") ;
+        file.deleteOnExit() ;
+        Files.write(file.toPath(), "p:kp 0.01\np:ki 0\np:kd 0\np:kf 0\np:min -1\np:max 1\np:imax 10\n".getBytes()) ;
+
+        SettingsParser settings = new SettingsParser(new MessageLogger()) ;
+        Assert.assertTrue(settings.readFile(file.getPath())) ;
+
+        final PIDCtrl p = new PIDCtrl(settings, "p", false) ;
+        Assert.assertEquals(p.getOutput(100, 98, 0.02), 0.02, 1e-6) ;
+
+        settings.stageValue("p:kp", new SettingsValue(0.02)) ;
+        Assert.assertEquals(settings.applyChanges(), 1) ;
+        p.reset() ;
+        Assert.assertEquals(p.getOutput(100, 98, 0.02), 0.04, 1e-6) ;
+    }
 }
\ No newline at end of file
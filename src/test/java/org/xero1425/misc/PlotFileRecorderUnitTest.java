@@ -0,0 +1,150 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.*;
+
+public class PlotFileRecorderUnitTest
+{
+    @Test
+    public void testCSV() throws Exception {
+        File f = File.createTempFile("plots", ".xplot") ;
+        f.deleteOnExit() ;
+
+        PlotFileRecorder rec = new PlotFileRecorder(f.getPath(), 4096) ;
+        rec.startPlot(0, "turret-goto 45", new String[] { "time", "pos" }) ;
+        rec.startPlot(1, "tankdrive", new String[] { "time", "left", "right" }) ;
+        rec.addPlotData(0, new double[] { 0.0, 1.5 }) ;
+        rec.addPlotData(1, new double[] { 0.0, 2.0, -2.0 }) ;
+        rec.addPlotData(0, new double[] { 0.02, 3.25 }) ;
+        rec.addPlotData(0, new double[] { 0.04 }) ;
+        rec.endPlot(0) ;
+        rec.startPlot(0, "turret-goto 45", new String[] { "time", "pos" }) ;
+        rec.addPlotData(0, new double[] { 0.0, 4.0 }) ;
+        rec.flush() ;
+
+        File dir = Files.createTempDirectory("plots").toFile() ;
+        List<String> files = new PlotFileConverter(dir.getPath()).convert(ByteBuffer.wrap(Files.readAllBytes(f.toPath()))) ;
+
+        Assert.assertEquals(files.size(), 3) ;
+        Assert.assertEquals(new File(files.get(0)).getName(), "turret-goto_45_1.csv") ;
+        Assert.assertEquals(new File(files.get(2)).getName(), "turret-goto_45_2.csv") ;
+        Assert.assertEquals(new String(Files.readAllBytes(new File(files.get(0)).toPath())), "time,pos\n0.0,1.5\n0.02,3.25\n") ;
+        Assert.assertEquals(new String(Files.readAllBytes(new File(files.get(1)).toPath())), "time,left,right\n0.0,2.0,-2.0\n") ;
+        Assert.assertEquals(new String(Files.readAllBytes(new File(files.get(2)).toPath())), "time,pos\n0.0,4.0\n") ;
+
+        for(String name : files)
+            new File(name).delete() ;
+        dir.delete() ;
+    }
+
+    @Test
+    public void testFull() throws Exception {
+        File f = File.createTempFile("plots", ".xplot") ;
+        f.deleteOnExit() ;
+
+        PlotFileRecorder rec = new PlotFileRecorder(f.getPath(), 256) ;
+        rec.startPlot(0, "full", new String[] { "time", "value" }) ;
+
+        int written = 0 ;
+        for(int i = 0 ; i < 100 ; i++) {
+            rec.addPlotData(0, new double[] { i * 0.02, i }) ;
+            if (rec.getDroppedCount() == 0)
+                written++ ;
+        }
+
+        Assert.assertTrue(written > 0) ;
+        Assert.assertEquals(rec.getDroppedCount(), 100 - written) ;
+        Assert.assertTrue(rec.getSize() < 256) ;
+    }
+
+    @Test
+    public void testEndThenAdd() throws Exception {
+        File f = File.createTempFile("plots", ".xplot") ;
+        f.deleteOnExit() ;
+
+        //
+        // An action may end its plot and then add a sample in the same robot loop.  The sample is
+        // not recorded, and ending the plot again does nothing.
+        //
+        PlotFileRecorder rec = new PlotFileRecorder(f.getPath(), 4096) ;
+        rec.addPlotData(0, new double[] { 0.0, 1.0 }) ;
+        rec.startPlot(0, "fire", new String[] { "time", "rpm" }) ;
+        rec.addPlotData(0, new double[] { 0.0, 1.0 }) ;
+        rec.endPlot(0) ;
+        rec.addPlotData(0, new double[] { 0.02, 2.0 }) ;
+        rec.endPlot(0) ;
+        rec.startPlot(1, "tankdrive", new String[] { "time", "left" }) ;
+        rec.addPlotData(1, new double[] { 0.0, 3.0 }) ;
+        rec.flush() ;
+
+        File dir = Files.createTempDirectory("plots").toFile() ;
+        PlotFileConverter conv = new PlotFileConverter(dir.getPath()) ;
+        List<String> files = conv.convert(ByteBuffer.wrap(Files.readAllBytes(f.toPath()))) ;
+
+        Assert.assertEquals(files.size(), 2) ;
+        Assert.assertEquals(new String(Files.readAllBytes(new File(files.get(0)).toPath())), "time,rpm\n0.0,1.0\n") ;
+        Assert.assertEquals(new String(Files.readAllBytes(new File(files.get(1)).toPath())), "time,left\n0.0,3.0\n") ;
+        Assert.assertEquals(conv.getSkippedCount(), 0) ;
+        Assert.assertNull(conv.getStoppedReason()) ;
+
+        for(String name : files)
+            new File(name).delete() ;
+
+        //
+        // A file that holds a sample after the end of its plot, as recorders before this check wrote,
+        // skips the sample and converts the plots after it.  A sample for a plot that was never started
+        // stops the conversion, and the CSV files already written are kept.
+        //
+        ByteBuffer buf = ByteBuffer.allocate(512) ;
+        buf.putInt(PlotFileRecorder.Magic) ;
+        buf.putInt(PlotFileRecorder.Version) ;
+        putStart(buf, 0, "fire", "time", "rpm") ;
+        putSample(buf, 0, 0.0, 1.0) ;
+        buf.put(PlotFileRecorder.CompleteTag) ;
+        buf.putInt(0) ;
+        putSample(buf, 0, 0.02, 2.0) ;
+        putStart(buf, 1, "tankdrive", "time", "left") ;
+        putSample(buf, 1, 0.0, 3.0) ;
+        putSample(buf, 7, 0.0, 4.0) ;
+        putSample(buf, 1, 0.02, 5.0) ;
+        buf.flip() ;
+
+        conv = new PlotFileConverter(dir.getPath()) ;
+        files = conv.convert(buf) ;
+
+        Assert.assertEquals(files.size(), 2) ;
+        Assert.assertEquals(new String(Files.readAllBytes(new File(files.get(0)).toPath())), "time,rpm\n0.0,1.0\n") ;
+        Assert.assertEquals(new String(Files.readAllBytes(new File(files.get(1)).toPath())), "time,left\n0.0,3.0\n") ;
+        Assert.assertEquals(conv.getSkippedCount(), 1) ;
+        Assert.assertNotNull(conv.getStoppedReason()) ;
+
+        for(String name : files)
+            new File(name).delete() ;
+        dir.delete() ;
+    }
+
+    private static void putString(ByteBuffer buf, String str) {
+        buf.putShort((short)str.length()) ;
+        buf.put(str.getBytes()) ;
+    }
+
+    private static void putStart(ByteBuffer buf, int id, String name, String... cols) {
+        buf.put(PlotFileRecorder.StartTag) ;
+        buf.putInt(id) ;
+        putString(buf, name) ;
+        buf.putShort((short)cols.length) ;
+        for(String col : cols)
+            putString(buf, col) ;
+    }
+
+    private static void putSample(ByteBuffer buf, int id, double... data) {
+        buf.put(PlotFileRecorder.SampleTag) ;
+        buf.putInt(id) ;
+        for(double d : data)
+            buf.putDouble(d) ;
+    }
+}
@@ -0,0 +1,179 @@
+package org.xero1425.misc ;
+
+import org.junit.*;
+
+public class SCurveProfileUnitTest
+{
+    @Before
+    public void init() {
+    }
+
+    @Test
+    public void testSCurve() {
+        SCurveProfile profile = new SCurveProfile(2, -4, 20, 2) ;
+        profile.update(550, 0, 0) ;
+
+        Assert.assertEquals(profile.getTimeAccel(), 11.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeCruise(), 18.5, 1e-6) ;
+        Assert.assertEquals(profile.getTimeDecel(), 7.0, 1e-6) ;
+        Assert.assertEquals(profile.getTotalTime(), 36.5, 1e-6) ;
+        Assert.assertEquals(profile.getActualMaxVelocity(), 20.0, 1e-6) ;
+        Assert.assertEquals(profile.getDistance(1.0), 1.0 / 3.0, 1e-6) ;
+        Assert.assertEquals(profile.getVelocity(1.0), 1.0, 1e-6) ;
+        Assert.assertEquals(profile.getAccel(1.0), 2.0, 1e-6) ;
+        Assert.assertEquals(profile.getDistance(11.0), 110.0, 1e-6) ;
+        Assert.assertEquals(profile.getVelocity(11.0), 20.0, 1e-6) ;
+        Assert.assertEquals(profile.getDistance(20.0), 290.0, 1e-6) ;
+        Assert.assertEquals(profile.getAccel(32.5), -4.0, 1e-6) ;
+        Assert.assertEquals(profile.getDistance(36.5), 550.0, 1e-6) ;
+        Assert.assertEquals(profile.getVelocity(36.5), 0.0, 1e-6) ;
+    }
+
+    @Test
+    public void testNoConstantAccel() {
+        SCurveProfile profile = new SCurveProfile(2, -4, 1, 1) ;
+        profile.update(-10, 0, 0) ;
+
+        Assert.assertEquals(profile.getTimeAccel(), 2.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeCruise(), 8.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeDecel(), 2.0, 1e-6) ;
+        Assert.assertEquals(profile.getActualMaxVelocity(), -1.0, 1e-6) ;
+        Assert.assertEquals(profile.getAccel(1.0), -1.0, 1e-6) ;
+        Assert.assertEquals(profile.getVelocity(1.0), -0.5, 1e-6) ;
+        Assert.assertEquals(profile.getDistance(2.0), -1.0, 1e-6) ;
+        Assert.assertEquals(profile.getDistance(12.0), -10.0, 1e-6) ;
+    }
+
+    @Test
+    public void testLargeJerkPositiveV() {
+        SCurveProfile profile = new SCurveProfile(2, -4, 100, 1e6) ;
+        profile.update(96.0, 0.0, 0.0) ;
+
+        Assert.assertEquals(profile.getTimeAccel(), 8.0, 1e-3) ;
+        Assert.assertEquals(profile.getTimeCruise(), 0.0, 1e-3) ;
+        Assert.assertEquals(profile.getTimeDecel(), 4.0, 1e-3) ;
+        Assert.assertEquals(profile.getActualMaxVelocity(), 16.0, 1e-3) ;
+        Assert.assertEquals(profile.getDistance(4.0), 16.0, 1e-3) ;
+        Assert.assertEquals(profile.getVelocity(4.0), 8.0, 1e-3) ;
+        Assert.assertEquals(profile.getDistance(10.0), 88.0, 1e-3) ;
+        Assert.assertEquals(profile.getVelocity(10.0), 8.0, 1e-3) ;
+    }
+
+    @Test
+    public void testLargeJerkNonZeroEnd() {
+        SCurveProfile profile = new SCurveProfile(2, -6, 100, 1e6) ;
+        profile.update(-309.0, -12.0, -22.0) ;
+
+        Assert.assertEquals(profile.getTimeAccel(), 11.0, 1e-3) ;
+        Assert.assertEquals(profile.getTimeCruise(), 0.0, 1e-3) ;
+        Assert.assertEquals(profile.getTimeDecel(), 2.0, 1e-3) ;
+        Assert.assertEquals(profile.getActualMaxVelocity(), -34.0, 1e-3) ;
+        Assert.assertEquals(profile.getDistance(9.0), -189.0, 1e-3) ;
+        Assert.assertEquals(profile.getVelocity(9.0), -30.0, 1e-3) ;
+        Assert.assertEquals(profile.getDistance(12.0), -284.0, 1e-3) ;
+        Assert.assertEquals(profile.getVelocity(12.0), -28.0, 1e-3) ;
+    }
+
+    @Test
+    public void testLargeJerkCruiseDecelOnly() {
+        SCurveProfile profile = new SCurveProfile(2, -8, 40, 1e6) ;
+        profile.update(500, 40, 0) ;
+
+        Assert.assertEquals(profile.getTimeAccel(), 0.0, 1e-3) ;
+        Assert.assertEquals(profile.getTimeCruise(), 10.0, 1e-3) ;
+        Assert.assertEquals(profile.getTimeDecel(), 5.0, 1e-3) ;
+        Assert.assertEquals(profile.getDistance(13.0), 484.0, 1e-3) ;
+        Assert.assertEquals(profile.getVelocity(13.0), 16.0, 1e-3) ;
+    }
+
+    @Test
+    public void testLimits() {
+        SCurveProfile profile = new SCurveProfile(9, -13, 95, 30) ;
+        profile.update(2564, 5, 69) ;
+
+        ProfileSample sample = new ProfileSample() ;
+        double dt = 0.001 ;
+        double prevv = profile.getVelocity(0.0) ;
+        double preva = profile.getAccel(0.0) ;
+        Assert.assertEquals(prevv, 5.0, 1e-9) ;
+        Assert.assertEquals(preva, 0.0, 1e-9) ;
+
+        for(double t = dt ; t < profile.getTotalTime() ; t += dt) {
+            profile.sample(t, sample) ;
+            Assert.assertEquals(sample.getDistance(), profile.getDistance(t), 1e-9) ;
+            Assert.assertEquals(sample.getVelocity(), profile.getVelocity(t), 1e-9) ;
+            Assert.assertEquals(sample.getAccel(), profile.getAccel(t), 1e-9) ;
+
+            Assert.assertTrue(sample.getAccel() <= 9.0 + 1e-9) ;
+            Assert.assertTrue(sample.getAccel() >= -13.0 - 1e-9) ;
+            Assert.assertTrue(sample.getVelocity() <= 95.0 + 1e-9) ;
+            Assert.assertTrue(Math.abs(sample.getAccel() - preva) <= 30.0 * dt + 1e-9) ;
+            Assert.assertTrue(Math.abs(sample.getVelocity() - prevv) <= 13.0 * dt + 1e-9) ;
+
+            Assert.assertEquals(profile.getTimeForDistance(sample.getDistance()), t, 1e-6) ;
+
+            prevv = sample.getVelocity() ;
+            preva = sample.getAccel() ;
+        }
+
+        Assert.assertEquals(profile.getDistance(profile.getTotalTime()), 2564.0, 1e-6) ;
+        Assert.assertEquals(profile.getVelocity(profile.getTotalTime()), 69.0, 1e-6) ;
+    }
+
+    @Test
+    public void testTimeForDistance() {
+        SCurveProfile profile = new SCurveProfile(2, -4, 20, 2) ;
+        profile.update(-550, 0, 0) ;
+
+        Assert.assertEquals(profile.getTimeForDistance(-1.0 / 3.0), 1.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(-110.0), 11.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(-290.0), 20.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(-600.0), 36.5, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(0.0), 0.0, 1e-6) ;
+    }
+
+    @Test
+    public void testSettingsChanged() throws Exception {
+        java.io.File file = java.io.File.createTempFile("profile", ".dat") ;
+        file.deleteOnExit() ;
+        java.nio.file.Files.write(file.toPath(), "p:type \"scurve\"\np:maxa 2\np:maxd -4\np:maxv 20\np:maxj 2\n".getBytes()) ;
+
+        SettingsParser settings = new SettingsParser(new MessageLogger()) ;
+        Assert.assertTrue(settings.readFile(file.getPath())) ;
+
+        MotionProfile profile = MotionProfile.create(settings, "p") ;
+        Assert.assertTrue(profile instanceof SCurveProfile) ;
+        profile.update(550, 0, 0) ;
+        Assert.assertEquals(profile.getTotalTime(), 36.5, 1e-6) ;
+
+        //
+        // The move in progress keeps its profile, and the next move uses the new values
+        //
+        settings.stageValue("p:maxv", new SettingsValue(10.0)) ;
+        Assert.assertEquals(settings.applyChanges(), 1) ;
+        Assert.assertEquals(profile.getTotalTime(), 36.5, 1e-6) ;
+
+        profile.update(550, 0, 0) ;
+        Assert.assertEquals(profile.getActualMaxVelocity(), 10.0, 1e-6) ;
+        Assert.assertEquals(profile.getDistance(profile.getTotalTime()), 550.0, 1e-6) ;
+    }
+
+    @Test
+    public void testCreateBadType() throws Exception {
+        java.io.File file = java.io.File.createTempFile("profile", ".dat") ;
+        file.deleteOnExit() ;
+        java.nio.file.Files.write(file.toPath(), "p:type \"sine\"\np:maxa 2\np:maxd -4\np:maxv 20\n".getBytes()) ;
+
+        SettingsParser settings = new SettingsParser(new MessageLogger()) ;
+        Assert.assertTrue(settings.readFile(file.getPath())) ;
+
+        try {
+            MotionProfile.create(settings, "p") ;
+            Assert.fail("profile created with an unknown type") ;
+        }
+        catch(BadParameterValueException ex) {
+            Assert.assertEquals(ex.getParameter(), "p:type") ;
+            Assert.assertEquals(ex.getValue(), "sine") ;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.xero1425.misc ;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/// \file
+
+/// \brief This program compares the time to read a settings file with the line by line, regular
+/// expression parser SettingsParser used before, and with SettingsParser and SettingsLexer.
+/// Run it with "gradlew settingsBenchmark" or with the settings file and then the defines as arguments.
+public class SettingsParserBenchmark
+{
+    private static final int Rounds = 200 ;
+
+    public static void main(String[] args) throws Exception {
+        String filename = (args.length > 0) ? args[0] : "src/main/deploy/droid.dat" ;
+        List<String> defines = new ArrayList<String>() ;
+        for(int i = 1 ; i < args.length ; i++)
+            defines.add(args[i]) ;
+
+        MessageLogger logger = new MessageLogger() ;
+
+        //
+        // Run each parser once to warm up, then time the rounds
+        //
+        for(int i = 0 ; i < 2 ; i++) {
+            long legacy = 0, lexer = 0 ;
+            int count = 0 ;
+            int rounds = (i == 0) ? 1 : Rounds ;
+
+            for(int r = 0 ; r < rounds ; r++) {
+                long start = System.nanoTime() ;
+                Map<String, SettingsValue> values = readLegacy(filename, defines) ;
+                legacy += System.nanoTime() - start ;
+                if (values == null)
+                    throw new Exception("legacy parser cannot read '" + filename + "'") ;
+
+                start = System.nanoTime() ;
+                SettingsParser parser = new SettingsParser(logger) ;
+                for(String def : defines)
+                    parser.addDefine(def) ;
+                if (!parser.readFile(filename))
+                    throw new Exception("settings parser cannot read '" + filename + "'") ;
+                lexer += System.nanoTime() - start ;
+
+                if (parser.getNames().size() != values.size())
+                    throw new Exception("parsers read different values") ;
+                count = values.size() ;
+            }
+
+            if (i == 1) {
+                System.out.println(count + " values, average of " + rounds + " rounds") ;
+                System.out.println(String.format("  regular expressions  %8.3f ms", legacy / 1.0e6 / rounds)) ;
+                System.out.println(String.format("  SettingsLexer        %8.3f ms", lexer / 1.0e6 / rounds)) ;
+            }
+        }
+    }
+
+    // The way SettingsParser read settings files before SettingsLexer
+    private static Map<String, SettingsValue> readLegacy(String filename, List<String> defines) throws Exception {
+        Map<String, SettingsValue> values = new HashMap<String, SettingsValue>() ;
+        boolean skipping = false ;
+        int level = 0 ;
+
+        try(BufferedReader br = new BufferedReader(new FileReader(filename))) {
+            String line ;
+            while ((line = br.readLine()) != null) {
+                line = line.strip() ;
+                if (line.length() == 0 || line.charAt(0) == '#')
+                    continue ;
+
+                if (line.startsWith("if")) {
+                    if (skipping) {
+                        level++ ;
+                    }
+                    else {
+                        line = line.substring(2).trim() ;
+                        int index = 0 ;
+                        while (index < line.length() && !Character.isWhitespace(line.charAt(index)) && line.charAt(index) != '#')
+                            index++ ;
+
+                        if (!defines.contains(line.substring(0, index))) {
+                            skipping = true ;
+                            level = 0 ;
+                        }
+                    }
+                }
+                else if (line.startsWith("endif")) {
+                    if (skipping) {
+                        if (level == 0)
+                            skipping = false ;
+                        else
+                            level-- ;
+                    }
+                }
+                else if (!skipping) {
+                    int index = 0 ;
+                    while (index < line.length() && !Character.isWhitespace(line.charAt(index)) && line.charAt(index) != '#')
+                        index++ ;
+
+                    if (index == line.length() || line.charAt(index) == '#')
+                        return null ;
+
+                    String name = line.substring(0, index) ;
+                    line = line.substring(index).strip() ;
+
+                    String value ;
+                    index = 0 ;
+                    if (line.charAt(0) == '"') {
+                        index++ ;
+                        while (index < line.length() && line.charAt(index) != '"')
+                            index++ ;
+
+                        if (index == line.length())
+                            return null ;
+
+                        value = line.substring(0, index + 1) ;
+                    }
+                    else {
+                        while (index < line.length() && !Character.isWhitespace(line.charAt(index)) && line.charAt(index) != '#')
+                            index++ ;
+
+                        value = line.substring(0, index) ;
+                    }
+
+                    SettingsValue v = parseLegacyValue(value) ;
+                    if (v == null)
+                        return null ;
+
+                    values.put(name, v) ;
+                }
+            }
+        }
+
+        return values ;
+    }
+
+    private static SettingsValue parseLegacyValue(String s) {
+        if (s.charAt(0) == 8237)
+            s = s.substring(1).trim() ;
+
+        if (s.toLowerCase().equals("true"))
+            return new SettingsValue(true) ;
+
+        if (s.toLowerCase().equals("false"))
+            return new SettingsValue(false) ;
+
+        if (s.startsWith("\"") && s.endsWith("\"") && s.length() > 1)
+            return new SettingsValue(s.substring(1, s.length() - 1)) ;
+
+        boolean isDouble = Pattern.matches("^[-+]?[0-9]*\\.?[0-9]+([eE][-+]?[0-9]+)?$", s);
+        boolean isInteger = Pattern.matches("^[-+]?\\d*$", s) ;
+
+        try {
+            if (isInteger)
+                return new SettingsValue(Integer.parseInt(s)) ;
+
+            if (isDouble)
+                return new SettingsValue(Double.parseDouble(s)) ;
+        }
+        catch(NumberFormatException ex) {
+        }
+
+        return null ;
+    }
+}
@@ -1,5 +1,9 @@
 package org.xero1425.misc ;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
 import org.junit.*;
 
 import org.xero1425.misc.SettingsValue.SettingsType;
@@ -183,5 +187,339 @@ public class SettingsParserUnitTest
         }        
     }    
 
+    @Test
+    public void testTypedKeys() throws Exception {
+        logger_.startMessage(MessageType.Info).add("Starting 'testTypedKeys'").endMessage(); ;
+
+        SettingsParser parser = createParser() ;
+        boolean b = parser.readFile("src/test/java/org/xero1425/misc/param1") ;
+        Assert.assertEquals(b, true);
+
+        DoubleSetting d = parser.doubleKey("c:double") ;
+        IntegerSetting i = parser.integerKey("b:integer") ;
+        BooleanSetting bl = parser.booleanKey("a:bool") ;
+        DoubleSetting di = parser.doubleKey("b:integer") ;
+
+        Assert.assertEquals(d.getName(), "c:double") ;
+        Assert.assertEquals(d.get(), 3.14, 0.00001) ;
+        Assert.assertEquals(i.get(), 1) ;
+        Assert.assertEquals(bl.get(), true) ;
+        Assert.assertEquals(di.get(), 1.0, 0.00001) ;
+
+        try {
+            parser.integerKey("c:double") ;
+            Assert.fail("integer handle to a double value") ;
+        }
+        catch(BadParameterTypeException ex) {
+        }
+
+        try {
+            parser.doubleKey("d:string") ;
+            Assert.fail("double handle to a string value") ;
+        }
+        catch(BadParameterTypeException ex) {
+        }
+
+        try {
+            parser.doubleKey("x:missing") ;
+            Assert.fail("handle to a missing value") ;
+        }
+        catch(MissingParameterException ex) {
+        }
+
+        //
+        // Reading the file again with other values updates the handles
+        //
+        parser.addDefine("SECOND") ;
+        b = parser.readFile("src/test/java/org/xero1425/misc/param2") ;
+        Assert.assertEquals(b, true);
+        Assert.assertEquals(d.get(), 42.42, 0.00001) ;
+        Assert.assertEquals(i.get(), 13) ;
+        Assert.assertEquals(bl.get(), false) ;
+        Assert.assertEquals(di.get(), 13.0, 0.00001) ;
+    }
+
+    @Test
+    public void testHandleTypes() throws Exception {
+        logger_.startMessage(MessageType.Info).add("Starting 'testHandleTypes'").endMessage(); ;
+
+        File file = File.createTempFile("settings", ".dat") ;
+        file.deleteOnExit() ;
+        Files.write(file.toPath(), "a:kp 0\na:count 3\n".getBytes()) ;
+
+        SettingsParser parser = createParser() ;
+        Assert.assertEquals(parser.readFile(file.getPath()), true) ;
+
+        //
+        // A double handle to an integer value keeps reading as a double when the value gets a fraction
+        //
+        DoubleSetting kp = parser.doubleKey("a:kp") ;
+        DoubleSetting dcount = parser.doubleKey("a:count") ;
+        IntegerSetting icount = parser.integerKey("a:count") ;
+        Assert.assertEquals(kp.get(), 0.0, 1e-9) ;
+
+        Files.write(file.toPath(), "a:kp 0.05\na:count 4\n".getBytes()) ;
+        Assert.assertEquals(parser.readFile(file.getPath()), true) ;
+        Assert.assertEquals(kp.get(), 0.05, 1e-9) ;
+        Assert.assertEquals(dcount.get(), 4.0, 1e-9) ;
+        Assert.assertEquals(icount.get(), 4) ;
+
+        //
+        // An integer handle does not accept a value with a fraction, even if a double handle shares the slot
+        //
+        Files.write(file.toPath(), "a:kp 0.05\na:count 4.5\n".getBytes()) ;
+        Assert.assertEquals(parser.readFile(file.getPath()), false) ;
+        Assert.assertEquals(icount.get(), 4) ;
+    }
+
+    private class CountingListener implements SettingsListener {
+        public int count_ = 0 ;
+
+        public void settingsChanged(SettingsParser settings) {
+            count_++ ;
+        }
+    }
+
+    @Test
+    public void testApplyChanges() throws Exception {
+        logger_.startMessage(MessageType.Info).add("Starting 'testApplyChanges'").endMessage(); ;
+
+        File file = File.createTempFile("settings", ".dat") ;
+        file.deleteOnExit() ;
+        Files.write(file.toPath(), "a:kp 1.0\na:kd 2\nb:flag true\n".getBytes()) ;
+
+        SettingsParser parser = createParser() ;
+        Assert.assertEquals(parser.readFile(file.getPath()), true) ;
+
+        DoubleSetting kp = parser.doubleKey("a:kp") ;
+        CountingListener a = new CountingListener() ;
+        CountingListener b = new CountingListener() ;
+        parser.addListener("a:", a) ;
+        parser.addListener("b:", b) ;
+
+        //
+        // Nothing changes until the staged values are applied
+        //
+        parser.stageValue("a:kp", new SettingsValue(1.5)) ;
+        Assert.assertEquals(kp.get(), 1.0, 1e-9) ;
+        Assert.assertEquals(parser.applyChanges(), 1) ;
+        Assert.assertEquals(kp.get(), 1.5, 1e-9) ;
+        Assert.assertEquals(parser.get("a:kp").getDouble(), 1.5, 1e-9) ;
+        Assert.assertEquals(a.count_, 1) ;
+        Assert.assertEquals(b.count_, 0) ;
+
+        //
+        // The same value, or a value of another type, is not a change
+        //
+        parser.stageValue("a:kp", new SettingsValue(1.5)) ;
+        parser.stageValue("b:flag", new SettingsValue("yes")) ;
+        Assert.assertEquals(parser.applyChanges(), 0) ;
+        Assert.assertEquals(parser.get("b:flag").getBoolean(), true) ;
+
+        //
+        // A double with no fraction may replace an integer
+        //
+        parser.stageValue("a:kd", new SettingsValue(3.0)) ;
+        Assert.assertEquals(parser.applyChanges(), 1) ;
+        Assert.assertEquals(parser.get("a:kd").getInteger(), 3) ;
+        Assert.assertEquals(a.count_, 2) ;
+
+        //
+        // Reading the file again stages the values in the file
+        //
+        Files.write(file.toPath(), "a:kp 1.5\na:kd 3\nb:flag false\n".getBytes()) ;
+        Assert.assertEquals(parser.stageFile(), true) ;
+        Assert.assertEquals(parser.get("b:flag").getBoolean(), true) ;
+        Assert.assertEquals(parser.applyChanges(), 1) ;
+        Assert.assertEquals(parser.get("b:flag").getBoolean(), false) ;
+        Assert.assertEquals(a.count_, 2) ;
+        Assert.assertEquals(b.count_, 1) ;
+    }
+
+    @Test
+    public void testApplyNumberChanges() throws Exception {
+        logger_.startMessage(MessageType.Info).add("Starting 'testApplyNumberChanges'").endMessage(); ;
+
+        File file = File.createTempFile("settings", ".dat") ;
+        file.deleteOnExit() ;
+        Files.write(file.toPath(), "a:kp 0\na:kd 0.5\nb:count 2\n".getBytes()) ;
+
+        SettingsParser parser = createParser() ;
+        Assert.assertEquals(parser.readFile(file.getPath()), true) ;
+
+        DoubleSetting kp = parser.doubleKey("a:kp") ;
+        IntegerSetting count = parser.integerKey("b:count") ;
+
+        //
+        // A gain written as an integer may get a fraction, and a double may be replaced by an integer
+        //
+        parser.stageValue("a:kp", new SettingsValue(0.05)) ;
+        parser.stageValue("a:kd", new SettingsValue(1)) ;
+        Assert.assertEquals(parser.applyChanges(), 2) ;
+        Assert.assertEquals(kp.get(), 0.05, 1e-9) ;
+        Assert.assertEquals(parser.get("a:kp").getDouble(), 0.05, 1e-9) ;
+        Assert.assertEquals(parser.get("a:kd").getType(), SettingsType.Double) ;
+        Assert.assertEquals(parser.get("a:kd").getDouble(), 1.0, 1e-9) ;
+
+        //
+        // A value read through an integer handle does not accept a fraction
+        //
+        parser.stageValue("b:count", new SettingsValue(2.5)) ;
+        Assert.assertEquals(parser.applyChanges(), 0) ;
+        Assert.assertEquals(count.get(), 2) ;
+        Assert.assertEquals(parser.get("b:count").getInteger(), 2) ;
+    }
+
+    private SettingsLexer createLexer(String text) {
+        return new SettingsLexer(text.toCharArray(), text.length()) ;
+    }
+
+    @Test
+    public void testLexer() throws Exception {
+        logger_.startMessage(MessageType.Info).add("Starting 'testLexer'").endMessage(); ;
+
+        SettingsLexer lexer = createLexer("# comment\r\n\r\na:int -42 # comment\r\nif PRACTICE\rb:double .5e2#x\nendif\n  c:str \"two words\"\nd:bool TRUE") ;
+
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.Define) ;
+        Assert.assertEquals(lexer.getLine(), 3) ;
+        Assert.assertEquals(lexer.getName(), "a:int") ;
+        Assert.assertEquals(lexer.getValue().getInteger(), -42) ;
+
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.If) ;
+        Assert.assertEquals(lexer.getLine(), 4) ;
+        Assert.assertEquals(lexer.getName(), "PRACTICE") ;
+
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.Define) ;
+        Assert.assertEquals(lexer.getLine(), 5) ;
+        Assert.assertEquals(lexer.getValue().getType(), SettingsType.Double) ;
+        Assert.assertEquals(lexer.getValue().getDouble(), 50.0, 0.00001) ;
+
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.EndIf) ;
+
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.Define) ;
+        Assert.assertEquals(lexer.getName(), "c:str") ;
+        Assert.assertEquals(lexer.getValueColumn(), 9) ;
+        Assert.assertEquals(lexer.getValue().getString(), "two words") ;
+
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.Define) ;
+        Assert.assertEquals(lexer.getLine(), 8) ;
+        Assert.assertEquals(lexer.getValue().getBoolean(), true) ;
+
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.End) ;
+
+        //
+        // A name that starts with a keyword is not a keyword
+        //
+        lexer = createLexer("ifx 1") ;
+        Assert.assertEquals(lexer.next(), SettingsLexer.Token.Define) ;
+        Assert.assertEquals(lexer.getName(), "ifx") ;
+
+        //
+        // Bad values give the column of the problem
+        //
+        String[] bad = { "x 12a", "x 1.", "x 2e+", "x \"open", "x 99999999999", "x -", "x # none" } ;
+        int[] cols = { 3, 5, 6, 8, 3, 3, 3 } ;
+        for(int i = 0 ; i < bad.length ; i++) {
+            lexer = createLexer(bad[i]) ;
+            Assert.assertEquals(lexer.next(), SettingsLexer.Token.Define) ;
+            if (lexer.hasValue()) {
+                Assert.assertNull(bad[i], lexer.getValue()) ;
+                Assert.assertEquals(bad[i], lexer.getErrorColumn(), cols[i]) ;
+            }
+            else {
+                Assert.assertEquals(bad[i], lexer.getValueColumn(), cols[i]) ;
+            }
+        }
+
+        Assert.assertEquals(createIntValue("x 2147483647"), Integer.MAX_VALUE) ;
+        Assert.assertEquals(createIntValue("x -2147483648"), Integer.MIN_VALUE) ;
+        Assert.assertEquals(createIntValue("x +7"), 7) ;
+    }
+
+    private int createIntValue(String text) throws Exception {
+        SettingsLexer lexer = createLexer(text) ;
+        lexer.next() ;
+        return lexer.getValue().getInteger() ;
+    }
+
+    @Test
+    public void testSkippedValues() {
+        logger_.startMessage(MessageType.Info).add("Starting 'testSkippedValues'").endMessage(); ;
+
+        //
+        // Values inside an if that is not defined are not checked
+        //
+        SettingsParser parser = createParser() ;
+        Assert.assertEquals(parser.readFile("src/test/java/org/xero1425/misc/param3"), true) ;
+        Assert.assertNull(parser.getOrNull("b:skipped")) ;
+        Assert.assertNull(parser.getOrNull("c:nested")) ;
+        Assert.assertNotNull(parser.getOrNull("d:after")) ;
+
+        parser = createParser() ;
+        parser.addDefine("BAD") ;
+        Assert.assertEquals(parser.readFile("src/test/java/org/xero1425/misc/param3"), false) ;
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        logger_.startMessage(MessageType.Info).add("Starting 'testSnapshot'").endMessage(); ;
+
+        File file = File.createTempFile("settings", ".dat") ;
+        file.deleteOnExit() ;
+        Files.write(file.toPath(), "a:int 1\nif A\nb:double 2.5\nendif\nc:str \"x y\"\nd:bool true\n".getBytes()) ;
+
+        SettingsParser parser = createParser() ;
+        parser.addDefine("A") ;
+        Assert.assertEquals(parser.readFile(file.getPath()), true) ;
+
+        java.util.Map<String, SettingsValue> values = new java.util.LinkedHashMap<String, SettingsValue>() ;
+        for(String name : parser.getNames())
+            values.put(name, parser.getOrNull(name)) ;
+
+        File snapshot = SettingsSnapshot.write(file.getPath(), parser.getDefines(), values) ;
+        snapshot.deleteOnExit() ;
+        Assert.assertEquals(snapshot.getPath(), file.getPath() + ".A.xset") ;
+
+        java.util.Map<String, SettingsValue> read = SettingsSnapshot.read(file.getPath(), parser.getDefines()) ;
+        Assert.assertNotNull(read) ;
+        Assert.assertEquals(read, values) ;
+
+        //
+        // The snapshot is only for the defines it was compiled with
+        //
+        Assert.assertNull(SettingsSnapshot.read(file.getPath(), java.util.Arrays.asList("B"))) ;
+
+        //
+        // The snapshot is read in place of the settings file
+        //
+        parser = createParser() ;
+        parser.addDefine("A") ;
+        Assert.assertEquals(parser.readFile(file.getPath()), true) ;
+        Assert.assertEquals(parser.get("b:double").getDouble(), 2.5, 0.00001) ;
+        Assert.assertEquals(parser.get("c:str").getString(), "x y") ;
+
+        //
+        // A settings file that was only touched still matches, and the new time is stored in the snapshot
+        //
+        Assert.assertTrue(file.setLastModified(file.lastModified() + 2000)) ;
+        Assert.assertNotNull(SettingsSnapshot.read(file.getPath(), parser.getDefines())) ;
+        try(RandomAccessFile f = new RandomAccessFile(snapshot, "r")) {
+            f.seek(16) ;
+            Assert.assertEquals(f.readLong(), file.lastModified()) ;
+        }
+
+        //
+        // A changed settings file of the same size does not match the snapshot
+        //
+        Files.write(file.toPath(), "a:int 2\nif A\nb:double 2.5\nendif\nc:str \"x y\"\nd:bool true\n".getBytes()) ;
+        file.setLastModified(file.lastModified() + 2000) ;
+        Assert.assertNull(SettingsSnapshot.read(file.getPath(), parser.getDefines())) ;
+
+        parser = createParser() ;
+        parser.addDefine("A") ;
+        Assert.assertEquals(parser.readFile(file.getPath()), true) ;
+        Assert.assertEquals(parser.get("a:int").getInteger(), 2) ;
+    }
+
     private MessageLogger logger_ = null ;
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package org.xero1425.misc ;
+
+import org.junit.*;
+
+public class SpeedometerUnitTest
+{
+    @Test
+    public void testConstantVelocity() {
+        Speedometer sp = new Speedometer("test", 2, false) ;
+
+        Assert.assertEquals(sp.getVelocity(), 0.0, 1e-9) ;
+        sp.update(0.02, 1.0) ;
+        Assert.assertEquals(sp.getVelocity(), 0.0, 1e-9) ;
+        Assert.assertEquals(sp.getAcceleration(), 0.0, 1e-9) ;
+
+        for(int i = 2 ; i < 50 ; i++) {
+            sp.update(0.02, 1.0 + (i - 1) * 0.02 * 3.0) ;
+            Assert.assertEquals(sp.getVelocity(), 3.0, 1e-9) ;
+        }
+        Assert.assertEquals(sp.getDistance(), 1.0 + 48 * 0.02 * 3.0, 1e-9) ;
+        Assert.assertEquals(sp.getAcceleration(), 0.0, 1e-6) ;
+    }
+
+    @Test
+    public void testAngleWrap() {
+        Speedometer sp = new Speedometer("angle", 4, true) ;
+        double angle = 170.0 ;
+        for(int i = 0 ; i < 10 ; i++) {
+            sp.update(0.02, XeroMath.normalizeAngleDegrees(angle)) ;
+            angle += 2.0 ;
+        }
+
+        Assert.assertEquals(sp.getVelocity(), 100.0, 1e-6) ;
+        Assert.assertEquals(sp.getDistance(), XeroMath.normalizeAngleDegrees(188.0), 1e-9) ;
+    }
+
+    @Test
+    public void testLeastSquares() {
+        Speedometer sp = new Speedometer("lsq", 8, false, true) ;
+        double accel = 4.0 ;
+        double vel0 = 1.0 ;
+        double t = 0.0 ;
+        for(int i = 0 ; i < 20 ; i++) {
+            t += 0.02 ;
+            double noise = (i % 2 == 0) ? 1e-4 : -1e-4 ;
+            sp.update(0.02, vel0 * t + 0.5 * accel * t * t + noise) ;
+        }
+
+        Assert.assertEquals(sp.getVelocity(), vel0 + accel * t, 0.05) ;
+        Assert.assertEquals(sp.getAcceleration(), accel, 1.0) ;
+    }
+}
@@ -0,0 +1,62 @@
+package org.xero1425.misc ;
+
+import org.junit.*;
+
+public class TimingHistogramUnitTest
+{
+    @Test
+    public void testEmpty() {
+        TimingHistogram h = new TimingHistogram("empty") ;
+
+        Assert.assertEquals(h.getCount(), 0) ;
+        Assert.assertEquals(h.getMin(), 0.0, 1e-9) ;
+        Assert.assertEquals(h.getMax(), 0.0, 1e-9) ;
+        Assert.assertEquals(h.getMean(), 0.0, 1e-9) ;
+        Assert.assertEquals(h.getPercentile(99.0), 0.0, 1e-9) ;
+    }
+
+    @Test
+    public void testPercentiles() {
+        TimingHistogram h = new TimingHistogram("loop") ;
+
+        //
+        // 1 to 1000 microseconds, once each
+        //
+        for(int us = 1 ; us <= 1000 ; us++)
+            h.recordNanos(us * 1000L) ;
+
+        Assert.assertEquals(h.getCount(), 1000) ;
+        Assert.assertEquals(h.getMin(), 1.0e-6, 1e-12) ;
+        Assert.assertEquals(h.getMax(), 1.0e-3, 1e-12) ;
+        Assert.assertEquals(h.getMean(), 500.5e-6, 1e-12) ;
+
+        // Times below 64 microseconds are exact, above that within about 3 percent
+        Assert.assertEquals(h.getPercentile(1.0), 10.0e-6, 1e-12) ;
+        Assert.assertEquals(h.getPercentile(50.0), 500.0e-6, 500.0e-6 * 0.032) ;
+        Assert.assertEquals(h.getPercentile(99.0), 990.0e-6, 990.0e-6 * 0.032) ;
+        Assert.assertEquals(h.getPercentile(100.0), 1.0e-3, 1e-12) ;
+
+        Assert.assertEquals(h.getCountAbove(0.0009), 100, 16) ;
+        Assert.assertEquals(h.getCountAbove(0.001), 0) ;
+
+        h.reset() ;
+        Assert.assertEquals(h.getCount(), 0) ;
+        Assert.assertEquals(h.getPercentile(50.0), 0.0, 1e-9) ;
+    }
+
+    @Test
+    public void testLongTimes() {
+        TimingHistogram h = new TimingHistogram("long") ;
+
+        h.recordNanos(20000000L) ;
+        h.recordNanos(Long.MAX_VALUE) ;
+        h.recordNanos(-5) ;
+
+        Assert.assertEquals(h.getCount(), 3) ;
+        Assert.assertEquals(h.getMin(), 0.0, 1e-9) ;
+        Assert.assertEquals(h.getMax(), TimingHistogram.MaxTime / 1.0e6, 1e-9) ;
+        Assert.assertEquals(h.getPercentile(50.0), 0.020, 0.020 * 0.032) ;
+        Assert.assertEquals(h.getPercentile(100.0), TimingHistogram.MaxTime / 1.0e6, 1e-9) ;
+        Assert.assertEquals(h.getCountAbove(0.020 * 1.04), 1) ;
+    }
+}
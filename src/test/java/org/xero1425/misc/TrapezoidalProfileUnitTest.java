@@ -1,5 +1,8 @@
 package org.xero1425.misc ;
 
+import java.io.File;
+import java.nio.file.Files;
+
 import org.junit.*;
 
 public class TrapezoidalProfileUnitTest
@@ -125,4 +128,105 @@ public class TrapezoidalProfileUnitTest
         Assert.assertEquals(profile.getTimeDecel(), 2.0, 1e-6) ;
         Assert.assertEquals(profile.getActualMaxVelocity(), 95.0, 1e-6) ;
     }
+
+    @Test
+    public void testSample() {
+        TrapezoidalProfile profile = new TrapezoidalProfile(9, -13, 95) ;
+        profile.update(-2564, -5, -69) ;
+
+        ProfileSample sample = new ProfileSample() ;
+        for(double t = -0.5 ; t < profile.getTotalTime() + 1.0 ; t += 0.01) {
+            profile.sample(t, sample) ;
+            Assert.assertEquals(sample.getDistance(), profile.getDistance(t), 1e-9) ;
+            Assert.assertEquals(sample.getVelocity(), profile.getVelocity(t), 1e-9) ;
+            Assert.assertEquals(sample.getAccel(), profile.getAccel(t), 1e-9) ;
+        }
+    }
+
+    @Test
+    public void testTable() {
+        TrapezoidalProfile profile = new TrapezoidalProfile(2, -4, 20) ;
+        profile.setTablePeriod(0.02) ;
+
+        ProfileSample sample = new ProfileSample() ;
+        for(int move = 0 ; move < 2 ; move++) {
+            profile.update(550, 0, 0) ;
+            for(int i = 0 ; i < 2000 ; i++) {
+                double t = i * 0.02 + 0.003 ;
+                profile.sample(t, sample) ;
+                Assert.assertEquals(sample.getDistance(), profile.getDistance(t), 1e-3) ;
+                Assert.assertEquals(sample.getVelocity(), profile.getVelocity(t), 0.1) ;
+            }
+
+            profile.update(100, 0, 0) ;
+            profile.sample(3.0, sample) ;
+            Assert.assertEquals(sample.getDistance(), profile.getDistance(3.0), 1e-9) ;
+        }
+    }
+
+    @Test
+    public void testTimeForDistance() {
+        TrapezoidalProfile profile = new TrapezoidalProfile(2, -4, 20) ;
+        profile.update(550, 0, 0) ;
+
+        Assert.assertEquals(profile.getTimeForDistance(25.0), 5.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(300.0), 20.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(542.0), 33.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(600.0), 35.0, 1e-6) ;
+
+        profile.update(-96.0, 0.0, 0.0) ;
+        Assert.assertEquals(profile.getTimeForDistance(-16.0), 4.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeForDistance(-88.0), 10.0, 1e-6) ;
+    }
+
+    @Test
+    public void testReplan() {
+        TrapezoidalProfile profile = new TrapezoidalProfile(2, -4, 20) ;
+        profile.update(550, 0, 0) ;
+        double dist = profile.getDistance(5.0) ;
+        double vel = profile.getVelocity(5.0) ;
+
+        TrapezoidalProfile replan = new TrapezoidalProfile(2, -4, 20) ;
+        replan.update(-(600.0 - dist), -vel, 0.0) ;
+        Assert.assertEquals(replan.getVelocity(0.0), -10.0, 1e-6) ;
+        Assert.assertEquals(replan.getTimeAccel(), 5.0, 1e-6) ;
+        Assert.assertEquals(replan.getTimeDecel(), 5.0, 1e-6) ;
+        Assert.assertEquals(replan.getDistance(replan.getTotalTime()), -575.0, 1e-6) ;
+        Assert.assertEquals(replan.getTotalTime(), profile.getTotalTime() - 5.0 + 2.5, 1e-6) ;
+
+        replan.update(100, 25, 0) ;
+        Assert.assertEquals(replan.getVelocity(0.0), 20.0, 1e-6) ;
+        Assert.assertEquals(replan.getTimeAccel(), 0.0, 1e-6) ;
+        Assert.assertEquals(replan.getDistance(replan.getTotalTime()), 100.0, 1e-6) ;
+    }
+
+    @Test
+    public void testSettingsChanged() throws Exception {
+        File file = File.createTempFile("profile", ".dat") ;
+        file.deleteOnExit() ;
+        Files.write(file.toPath(), "p:maxa 2\np:maxd -4\np:maxv 100\np:table_period 0.02\n".getBytes()) ;
+
+        SettingsParser settings = new SettingsParser(new MessageLogger()) ;
+        Assert.assertTrue(settings.readFile(file.getPath())) ;
+
+        TrapezoidalProfile profile = new TrapezoidalProfile(settings, "p") ;
+        profile.update(96.0, 0.0, 0.0) ;
+        Assert.assertEquals(profile.getActualMaxVelocity(), 16.0, 1e-6) ;
+
+        //
+        // The move in progress keeps its profile, and the next move uses the new values
+        //
+        settings.stageValue("p:maxa", new SettingsValue(4.0)) ;
+        settings.stageValue("p:maxv", new SettingsValue(10.0)) ;
+        Assert.assertEquals(settings.applyChanges(), 2) ;
+        Assert.assertEquals(profile.getTotalTime(), 12.0, 1e-6) ;
+
+        ProfileSample sample = new ProfileSample() ;
+        profile.update(96.0, 0.0, 0.0) ;
+        Assert.assertEquals(profile.getActualMaxVelocity(), 10.0, 1e-6) ;
+        Assert.assertEquals(profile.getTimeAccel(), 2.5, 1e-6) ;
+        profile.sample(1.0, sample) ;
+        Assert.assertEquals(sample.getVelocity(), 4.0, 1e-6) ;
+        Assert.assertEquals(sample.getAccel(), 4.0, 1e-6) ;
+    }
 }
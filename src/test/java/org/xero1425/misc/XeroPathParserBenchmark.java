@@ -0,0 +1,102 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/// \file
+
+/// \brief This program compares the time to load all of the paths in a directory with commons-csv,
+/// which the path manager used before, with XeroPathParser, and with the compiled path files.
+/// Run it with "gradlew pathBenchmark" or with the paths directory as the only argument.
+public class XeroPathParserBenchmark
+{
+    private static final int Rounds = 20 ;
+
+    public static void main(String[] args) throws Exception {
+        String dir = (args.length > 0) ? args[0] : "src/main/deploy/paths" ;
+
+        List<File> files = new ArrayList<File>() ;
+        for(File f : new File(dir).listFiles()) {
+            if (f.getName().endsWith("_left.csv") || f.getName().endsWith("_right.csv"))
+                files.add(f) ;
+        }
+
+        File cachedir = Files.createTempDirectory("pathbench").toFile() ;
+        List<File> caches = new ArrayList<File>() ;
+        for(File f : files) {
+            XeroPathParser p = new XeroPathParser(f.getPath()) ;
+            p.parseFile() ;
+            XeroPath path = new XeroPath(f.getName(), p.getData(), p.getData(), p.getSize()) ;
+            File cache = new File(cachedir, f.getName() + XeroPathCache.Extension) ;
+            XeroPathCache.write(path, cache, f, f) ;
+            caches.add(cache) ;
+        }
+
+        //
+        // Run each loader once to warm up, then time the rounds
+        //
+        for(int i = 0 ; i < 2 ; i++) {
+            long csv = 0, parser = 0, cached = 0 ;
+            int rounds = (i == 0) ? 1 : Rounds ;
+
+            for(int r = 0 ; r < rounds ; r++) {
+                long start = System.nanoTime() ;
+                for(File f : files)
+                    loadCommonsCSV(f) ;
+                csv += System.nanoTime() - start ;
+
+                start = System.nanoTime() ;
+                for(File f : files)
+                    new XeroPathParser(f.getPath()).parseFile() ;
+                parser += System.nanoTime() - start ;
+
+                start = System.nanoTime() ;
+                for(int k = 0 ; k < files.size() ; k++) {
+                    if (XeroPathCache.read("bench", caches.get(k), files.get(k), files.get(k)) == null)
+                        throw new Exception("compiled path file not valid") ;
+                }
+                cached += System.nanoTime() - start ;
+            }
+
+            if (i == 1) {
+                System.out.println(files.size() + " path files, average of " + rounds + " rounds") ;
+                System.out.println(String.format("  commons-csv     %8.2f ms", csv / 1.0e6 / rounds)) ;
+                System.out.println(String.format("  XeroPathParser  %8.2f ms", parser / 1.0e6 / rounds)) ;
+                System.out.println(String.format("  compiled paths  %8.2f ms", cached / 1.0e6 / rounds)) ;
+            }
+        }
+
+        for(File f : caches)
+            f.delete() ;
+        cachedir.delete() ;
+    }
+
+    // The way the path manager read path files before XeroPathParser
+    private static int loadCommonsCSV(File f) throws Exception {
+        int count = 0 ;
+        try(Reader rdr = Files.newBufferedReader(f.toPath()) ; CSVParser parser = new CSVParser(rdr, CSVFormat.DEFAULT)) {
+            boolean first = true ;
+            for(CSVRecord r : parser) {
+                if (first) {
+                    first = false ;
+                    continue ;
+                }
+
+                double[] values = new double[XeroPath.Columns] ;
+                for(int i = 0 ; i < XeroPath.Columns ; i++)
+                    values[i] = Double.parseDouble(r.get(i)) ;
+
+                new XeroPathSegment(values[0], values[1], values[2], values[3], values[4], values[5], values[6], values[7]) ;
+                count++ ;
+            }
+        }
+        return count ;
+    }
+}
@@ -0,0 +1,81 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.*;
+
+public class XeroPathParserUnitTest
+{
+    private static final String Header = "\"time\",\"x\",\"y\",\"position\",\"velocity\",\"acceleration\",\"jerk\",\"heading\"\n" ;
+
+    private XeroPathParser parse(String text) throws Exception {
+        XeroPathParser parser = new XeroPathParser("test.csv") ;
+        parser.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII))) ;
+        return parser ;
+    }
+
+    private int errorLine(String text) {
+        try {
+            parse(text) ;
+        }
+        catch(BadPathFileException ex) {
+            return ex.getLine() ;
+        }
+        catch(Exception ex) {
+        }
+        return -1 ;
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        XeroPathParser p = parse(Header + "0,490.269,5.6108,0,0,0,0,180\r\n0.02,-1.5e-3,1E2,0.141977,7.09887,354.943,17747.2,-179.996\n\n") ;
+        double[][] data = p.getData() ;
+
+        Assert.assertEquals(p.getSize(), 2) ;
+        Assert.assertEquals(data[XeroPath.X][0], 490.269, 0.0) ;
+        Assert.assertEquals(data[XeroPath.Heading][0], 180.0, 0.0) ;
+        Assert.assertEquals(data[XeroPath.Time][1], 0.02, 0.0) ;
+        Assert.assertEquals(data[XeroPath.X][1], -1.5e-3, 0.0) ;
+        Assert.assertEquals(data[XeroPath.Y][1], 100.0, 0.0) ;
+        Assert.assertEquals(data[XeroPath.Jerk][1], 17747.2, 0.0) ;
+        Assert.assertEquals(data[XeroPath.Heading][1], -179.996, 0.0) ;
+    }
+
+    @Test
+    public void testMatchesParseDouble() throws Exception {
+        File dir = new File("src/main/deploy/paths") ;
+        for(File f : dir.listFiles()) {
+            if (!f.getName().endsWith("_left.csv") && !f.getName().endsWith("_right.csv"))
+                continue ;
+
+            XeroPathParser p = new XeroPathParser(f.getPath()) ;
+            p.parseFile() ;
+
+            List<String> lines = Files.readAllLines(f.toPath()) ;
+            int row = 0 ;
+            for(int i = 1 ; i < lines.size() ; i++) {
+                if (lines.get(i).isEmpty())
+                    continue ;
+
+                String[] fields = lines.get(i).split(",") ;
+                for(int col = 0 ; col < XeroPath.Columns ; col++) {
+                    Assert.assertEquals(Double.doubleToLongBits(p.getData()[col][row]), Double.doubleToLongBits(Double.parseDouble(fields[col]))) ;
+                }
+                row++ ;
+            }
+            Assert.assertEquals(p.getSize(), row) ;
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        Assert.assertEquals(errorLine(Header + "0,1,2,3,4,5,6,7\n0,1,2,3,4,5,6\n"), 3) ;
+        Assert.assertEquals(errorLine(Header + "0,1,2,3,4,5,6,7,8\n"), 2) ;
+        Assert.assertEquals(errorLine(Header + "0,1,2,3,4,5,6,7\n\n0,1,2,abc,4,5,6,7\n"), 4) ;
+        Assert.assertEquals(errorLine(Header + "0,1,2,3,4,5,6,1e\n"), 2) ;
+    }
+}
@@ -0,0 +1,96 @@
+package org.xero1425.misc ;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.*;
+
+public class XeroPathUnitTest
+{
+    private XeroPath createPath(int count) {
+        XeroPath path = new XeroPath("test", 2) ;
+        for(int i = 0 ; i < count ; i++) {
+            double t = i * 0.02 ;
+            double heading = XeroMath.normalizeAngleDegrees(170.0 + i * 4.0) ;
+            XeroPathSegment left = new XeroPathSegment(t, 0.0, 0.0, t * t, 2.0 * t, 2.0, 0.0, heading) ;
+            XeroPathSegment right = new XeroPathSegment(t, 0.0, 0.0, 2.0 * t * t, 4.0 * t, 4.0, 0.0, heading) ;
+            path.addPathSegment(left, right) ;
+        }
+        return path ;
+    }
+
+    @Test
+    public void testIndex() {
+        XeroPath path = createPath(100) ;
+
+        Assert.assertEquals(path.getSize(), 100) ;
+        Assert.assertEquals(path.getDuration(), 99 * 0.02, 1e-9) ;
+        Assert.assertEquals(path.findIndex(-1.0), 0) ;
+        Assert.assertEquals(path.findIndex(0.0), 0) ;
+        Assert.assertEquals(path.findIndex(0.021), 1) ;
+        Assert.assertEquals(path.findIndex(0.5 + 0.001), 25) ;
+        Assert.assertEquals(path.findIndex(100.0), 99) ;
+
+        XeroPathSegment seg = path.getRightSegment(10) ;
+        Assert.assertEquals(seg.getTime(), 0.2, 1e-9) ;
+        Assert.assertEquals(seg.getVelocity(), 0.8, 1e-9) ;
+    }
+
+    @Test
+    public void testInterpolate() {
+        XeroPath path = createPath(100) ;
+
+        Assert.assertEquals(path.getLeftAtTime(XeroPath.Velocity, 0.51), 1.02, 1e-9) ;
+        Assert.assertEquals(path.getRightAtTime(XeroPath.Velocity, 0.51), 2.04, 1e-9) ;
+        Assert.assertEquals(path.getLeftAtTime(XeroPath.Velocity, 10.0), 2.0 * 99 * 0.02, 1e-9) ;
+
+        // The heading goes from 178 to -178 between the segments at 0.04 and 0.06
+        Assert.assertEquals(path.getLeftAtTime(XeroPath.Heading, 0.05), 180.0, 1e-6) ;
+        Assert.assertEquals(path.getLeftAtTime(XeroPath.Heading, 0.055), -179.0, 1e-6) ;
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        File dir = Files.createTempDirectory("paths").toFile() ;
+        dir.deleteOnExit() ;
+        File left = new File(dir, "test_left.csv") ;
+        File right = new File(dir, "test_right.csv") ;
+        File cache = new File(dir, "test" + XeroPathCache.Extension) ;
+        left.deleteOnExit() ;
+        right.deleteOnExit() ;
+        cache.deleteOnExit() ;
+
+        Files.write(left.toPath(), "left 1\n".getBytes()) ;
+        Files.write(right.toPath(), "right 1\n".getBytes()) ;
+        Assert.assertTrue(left.setLastModified(1000000000000L)) ;
+
+        XeroPath path = createPath(50) ;
+        XeroPathCache.write(path, cache, left, right) ;
+        Assert.assertEquals(dir.list().length, 3) ;
+
+        XeroPath read = XeroPathCache.read("test", cache, left, right) ;
+        Assert.assertNotNull(read) ;
+        Assert.assertEquals(read.getSize(), 50) ;
+        Assert.assertEquals(read.getLeft(XeroPath.Velocity, 10), path.getLeft(XeroPath.Velocity, 10), 0.0) ;
+        Assert.assertEquals(read.getRight(XeroPath.Heading, 49), path.getRight(XeroPath.Heading, 49), 0.0) ;
+
+        //
+        // A new modification time with the same contents still matches, and the new time is stored
+        // so the CRC is not computed again
+        //
+        Assert.assertTrue(left.setLastModified(1000000010000L)) ;
+        Assert.assertNotNull(XeroPathCache.read("test", cache, left, right)) ;
+        try(RandomAccessFile file = new RandomAccessFile(cache, "r")) {
+            file.seek(16) ;
+            Assert.assertEquals(file.readLong(), left.lastModified()) ;
+        }
+
+        //
+        // Different contents of the same size do not match
+        //
+        Files.write(left.toPath(), "left 2\n".getBytes()) ;
+        Assert.assertTrue(left.setLastModified(1000000020000L)) ;
+        Assert.assertNull(XeroPathCache.read("test", cache, left, right)) ;
+    }
+}
@@ -0,0 +1,177 @@
+package org.xero1425.simulator.engine ;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.*;
+
+public class StimulusReaderUnitTest
+{
+    //
+    // Create a reader for the text given, with single quotes standing for double quotes
+    //
+    private StimulusReader createReader(String text) {
+        return new StimulusReader(new StringReader(text.replace('\'', '"'))) ;
+    }
+
+    private double getNumber(JSONObject obj, String name) {
+        return ((Number)obj.get(name)).doubleValue() ;
+    }
+
+    @Test
+    public void testEscapes() throws Exception {
+        //
+        // Strings with escaped quotes, backslashes, and closing characters must not end the
+        // property or the time point that holds them
+        //
+        StimulusReader reader = createReader(
+            "{ 'name' : 'quote \\' } ] , \\\\', 'stimulus' : [\n" +
+            "  { 'time' : 1.0, 'text' : 'a \\'b\\' ]}, c\\\\' },\n" +
+            "  { 'time' : 2.0, 'text' : 'line\\none \\u0041' }\n" +
+            "] }") ;
+
+        Assert.assertTrue(reader.open()) ;
+
+        JSONObject obj = reader.next() ;
+        Assert.assertNotNull(obj) ;
+        Assert.assertEquals(getNumber(obj, "time"), 1.0, 1e-9) ;
+        Assert.assertEquals(obj.get("text"), "a \"b\" ]}, c\\") ;
+
+        obj = reader.next() ;
+        Assert.assertNotNull(obj) ;
+        Assert.assertEquals(getNumber(obj, "time"), 2.0, 1e-9) ;
+        Assert.assertEquals(obj.get("text"), "line\none A") ;
+
+        Assert.assertNull(reader.next()) ;
+        Assert.assertTrue(reader.isDone()) ;
+    }
+
+    @Test
+    public void testNestedArrays() throws Exception {
+        //
+        // The properties before the stimulus array hold nested objects and arrays that are skipped
+        //
+        StimulusReader reader = createReader(
+            "{ 'meta' : { 'a' : [ 1, { 'b' : [ 2, [ 3 ] ] } ], 'c' : [] },\n" +
+            "  'stimulus' : [\n" +
+            "    { 'time' : 1, 'values' : [ [ 1, [ 2, 3 ] ], [], [ { 'x' : [ 4 ] } ] ] },\n" +
+            "    { 'time' : 2, 'values' : [] }\n" +
+            "  ],\n" +
+            "  'after' : [ [ 5 ] ]\n" +
+            "}") ;
+
+        Assert.assertTrue(reader.open()) ;
+
+        JSONObject obj = reader.next() ;
+        Assert.assertNotNull(obj) ;
+        Assert.assertEquals(getNumber(obj, "time"), 1.0, 1e-9) ;
+
+        JSONArray values = (JSONArray)obj.get("values") ;
+        Assert.assertEquals(values.size(), 3) ;
+        Assert.assertEquals(((JSONArray)values.get(0)).size(), 2) ;
+        Assert.assertEquals(((JSONArray)((JSONArray)values.get(0)).get(1)).size(), 2) ;
+        Assert.assertEquals(((JSONArray)values.get(1)).size(), 0) ;
+        Assert.assertTrue(((JSONArray)values.get(2)).get(0) instanceof JSONObject) ;
+
+        obj = reader.next() ;
+        Assert.assertNotNull(obj) ;
+        Assert.assertEquals(getNumber(obj, "time"), 2.0, 1e-9) ;
+        Assert.assertEquals(((JSONArray)obj.get("values")).size(), 0) ;
+
+        Assert.assertNull(reader.next()) ;
+    }
+
+    @Test
+    public void testExponents() throws Exception {
+        //
+        // Numbers outside of objects and arrays end at the next ',', '}', or ']'
+        //
+        StimulusReader reader = createReader(
+            "{ 'version' : 1e2, 'scale' : -2.5E+2, 'stimulus' : [\n" +
+            "  { 'time' : 1.5e-3, 'value' : -2.5E+2 },\n" +
+            "  { 'value' : 4E1, 'time' : 2e0 }\n" +
+            "] }") ;
+
+        Assert.assertTrue(reader.open()) ;
+
+        JSONObject obj = reader.next() ;
+        Assert.assertNotNull(obj) ;
+        Assert.assertEquals(getNumber(obj, "time"), 0.0015, 1e-12) ;
+        Assert.assertEquals(getNumber(obj, "value"), -250.0, 1e-9) ;
+
+        obj = reader.next() ;
+        Assert.assertNotNull(obj) ;
+        Assert.assertEquals(getNumber(obj, "time"), 2.0, 1e-9) ;
+        Assert.assertEquals(getNumber(obj, "value"), 40.0, 1e-9) ;
+
+        Assert.assertNull(reader.next()) ;
+    }
+
+    @Test
+    public void testNoStimulus() throws Exception {
+        Assert.assertFalse(createReader("{ 'name' : 'x', 'values' : [ 1, 2 ] }").open()) ;
+        Assert.assertFalse(createReader("{ }").open()) ;
+
+        try {
+            createReader("[ 1, 2 ]").open() ;
+            Assert.fail("file that is not a JSON object") ;
+        }
+        catch(IOException ex) {
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        //
+        // The time points before the end of the file are returned, and a time point cut off
+        // by the end of the file is an error
+        //
+        StimulusReader reader = createReader("{ 'stimulus' : [ { 'time' : 1 }, { 'time' : 2, 'ev") ;
+        Assert.assertTrue(reader.open()) ;
+        Assert.assertNotNull(reader.next()) ;
+
+        try {
+            reader.next() ;
+            Assert.fail("time point cut off by the end of the file") ;
+        }
+        catch(IOException ex) {
+        }
+
+        reader = createReader("{ 'stimulus' : [ { 'time' : 1, 'text' : 'abc") ;
+        Assert.assertTrue(reader.open()) ;
+        try {
+            reader.next() ;
+            Assert.fail("string cut off by the end of the file") ;
+        }
+        catch(IOException ex) {
+        }
+
+        //
+        // A file that ends after a complete time point, without closing the array, ends the stimulus
+        //
+        reader = createReader("{ 'stimulus' : [ { 'time' : 1 }") ;
+        Assert.assertTrue(reader.open()) ;
+        Assert.assertNotNull(reader.next()) ;
+        Assert.assertNull(reader.next()) ;
+        Assert.assertTrue(reader.isDone()) ;
+
+        //
+        // A file that ends in the properties before the stimulus array is an error
+        //
+        try {
+            createReader("{ 'name' : 'abc").open() ;
+            Assert.fail("property cut off by the end of the file") ;
+        }
+        catch(IOException ex) {
+        }
+
+        try {
+            createReader("{ 'stimulus'").open() ;
+            Assert.fail("stimulus property cut off by the end of the file") ;
+        }
+        catch(IOException ex) {
+        }
+    }
+}